@@ -663,6 +663,8 @@ public class MartBuilderXML extends DefaultHandler {
 					.isHideMasked()), xmlWriter);
 			this.writeAttribute("indexOptimiser", Boolean.toString(ds
 					.isIndexOptimiser()), xmlWriter);
+			this.writeAttribute("aggregateOptimiser", Boolean.toString(ds
+					.isAggregateOptimiser()), xmlWriter);
 
 			// Write out visibleModified keys (toString()) for
 			// all vismod relations, keys, and columns.
@@ -2406,6 +2408,9 @@ public class MartBuilderXML extends DefaultHandler {
 				final boolean index = Boolean.valueOf(
 						(String) attributes.get("indexOptimiser"))
 						.booleanValue();
+				final boolean aggregate = Boolean.valueOf(
+						(String) attributes.get("aggregateOptimiser"))
+						.booleanValue();
 
 				// Construct the dataset.
 				final DataSet ds = new DataSet(this.constructedMart,
@@ -2428,6 +2433,7 @@ public class MartBuilderXML extends DefaultHandler {
 				ds.setMasked(masked);
 				ds.setHideMasked(hideMasked);
 				ds.setIndexOptimiser(index);
+				ds.setAggregateOptimiser(aggregate);
 				element = ds;
 			} catch (final Exception e) {
 				if (e instanceof SAXException)
@@ -86,6 +86,7 @@ import org.biomart.builder.model.TransformationUnit.UnrollTable;
 import org.biomart.common.exceptions.BioMartError;
 import org.biomart.common.resources.Log;
 import org.biomart.common.resources.Resources;
+import org.biomart.common.resources.Settings;
 import org.biomart.common.utils.InverseMap;
 
 /**
@@ -200,11 +201,30 @@ public interface MartConstructor {
 	 * that no action is reached before all actions it depends on have been
 	 * reached. Each action it iterates over fires an action event to all
 	 * listeners registered with it.
+	 * <p>
+	 * The actions for each dataset in each schema partition are generated in
+	 * parallel, by as many threads as the 'constructorthreads' property in the
+	 * BioMart properties file allows, or one per processor if it is not set.
+	 * See {@link Settings#getProperty(String)}. Listeners still hear the
+	 * events in the same order as if they had been generated one at a time.
 	 */
 	public static class GenericConstructorRunnable implements
 			ConstructorRunnable {
+		private static final Object PARTITION_TABLE_LOCK = new Object();
+
+		// How many units each thread may make ahead of the listeners.
+		private static final int UNITS_AHEAD = 2;
+
 		private boolean cancelled = false;
 
+		private boolean stopped = false;
+
+		private GenericConstructorRunnable parent = null;
+
+		private int unitNumber = 0;
+
+		private List units = Collections.EMPTY_LIST;
+
 		private Collection datasets;
 
 		private Collection schemaPrefixes;
@@ -215,7 +235,7 @@ public interface MartConstructor {
 
 		private Collection martConstructorListeners;
 
-		private double percentComplete = 0.0;
+		private volatile double percentComplete = 0.0;
 
 		private final Map uniqueOptCols = new HashMap();
 
@@ -257,18 +277,28 @@ public interface MartConstructor {
 			this.datasetSchemaName = datasetSchemaName;
 		}
 
+		private GenericConstructorRunnable(
+				final GenericConstructorRunnable parent,
+				final ConstructionUnit unit) {
+			this(parent.datasetSchemaName, parent.datasets,
+					parent.schemaPrefixes);
+			this.parent = parent;
+			this.unitNumber = unit.number;
+			this.martConstructorListeners.add(unit);
+		}
+
 		private void checkCancelled() throws ConstructorException {
-			if (this.cancelled)
+			if (this.cancelled || this.parent != null
+					&& (this.parent.cancelled || this.parent.stopped))
 				throw new ConstructorException(Resources.get("mcCancelled"));
 		}
 
 		/**
 		 * This is the starting point for the conversion of a dataset into a set
-		 * of actions. Internally, it constructs a graph of actions specific to
-		 * this dataset, populates the graph, then iterates over the graph at
-		 * the end emitting those actions as events in the correct order, so
-		 * that any action that depends on another action is guaranteed to be
-		 * emitted after the action it depends on.
+		 * of actions. Internally, it divides the work into one unit for each
+		 * schema partition the dataset is to be built in. Each unit is turned
+		 * into actions by {@link #makeActionsForPartition(ConstructionUnit)}
+		 * on a fresh runnable, so that the units can be made in parallel.
 		 * 
 		 * @param dataset
 		 *            the dataset to build an action graph for and then emit
@@ -277,21 +307,20 @@ public interface MartConstructor {
 		 *            a counter informing this method how many datasets in total
 		 *            there are to process. It is used to work out percentage
 		 *            process.
+		 * @param firstUnitNumber
+		 *            the number to give the first unit.
+		 * @return the units, in the order their events should be issued.
 		 * @throws Exception
 		 *             if anything goes wrong at all during the transformation
 		 *             process.
 		 */
-		private void makeActionsForDataset(final DataSet dataset,
-				final int totalDataSetCount) throws ListenerException,
-				ValidationException, ConstructorException, SQLException,
-				PartitionException {
-			Log.debug("Making actions for dataset " + dataset);
+		private List getUnitsForDataset(final DataSet dataset,
+				final int totalDataSetCount, final int firstUnitNumber)
+				throws ValidationException, ConstructorException, SQLException {
+			Log.debug("Dividing up dataset " + dataset);
 			// Check not cancelled.
 			this.checkCancelled();
 
-			// Start with a fresh set of final names.
-			this.finalNameCache.clear();
-
 			// Find out the main table source schema.
 			final Schema templateSchema = dataset.getCentralTable().getSchema();
 			final PartitionTableApplication dsPta = dataset
@@ -327,7 +356,7 @@ public interface MartConstructor {
 
 			// Work out the progress step size : 1 step = 1 table per source
 			// schema partition.
-			final Collection tablesToProcess = this.getTablesToProcess(dataset);
+			final List tablesToProcess = this.getTablesToProcess(dataset);
 			double stepPercent = 100.0 / totalDataSetCount;
 			stepPercent /= tablesToProcess.size();
 			stepPercent /= schemaPartitions.size();
@@ -335,90 +364,126 @@ public interface MartConstructor {
 				stepPercent /= ((PartitionAppliedRow) dsPta
 						.getPartitionAppliedRows().get(0)).getCompound();
 
-			// Process the tables.
-			for (final Iterator s = schemaPartitions.iterator(); s.hasNext();) {
-				final Map.Entry schemaPartition = (Map.Entry) s.next();
-				final Set droppedTables = new HashSet();
-				// Clear out optimiser col names so that they start
-				// again on this partition.
-				this.uniqueOptCols.clear();
-				this.indexOptCols.clear();
+			// Partition tables keep track of their current row, so units
+			// that use them cannot be made at the same time as each other.
+			boolean usesPartitionTables = dsPta != null;
+			for (final Iterator i = tablesToProcess.iterator(); i.hasNext()
+					&& !usesPartitionTables;)
+				usesPartitionTables = ((DataSetTable) i.next())
+						.getPartitionTableApplication() != null;
+
+			final List units = new ArrayList();
+			for (final Iterator s = schemaPartitions.iterator(); s.hasNext();)
+				units.add(new ConstructionUnit(firstUnitNumber + units.size(),
+						dataset, (Map.Entry) s.next(), tablesToProcess,
+						stepPercent, usesPartitionTables));
+			return units;
+		}
+
+		/**
+		 * Makes the actions for one dataset in one schema partition, emitting
+		 * them as events in the correct order, so that any action that depends
+		 * on another action is guaranteed to be emitted after the action it
+		 * depends on. Each runnable makes only one unit, so the final name and
+		 * optimiser column caches start empty.
+		 * 
+		 * @param unit
+		 *            the dataset and partition to make actions for.
+		 * @throws Exception
+		 *             if anything goes wrong at all during the transformation
+		 *             process.
+		 */
+		private void makeActionsForPartition(final ConstructionUnit unit)
+				throws ListenerException, ValidationException,
+				ConstructorException, SQLException, PartitionException {
+			final DataSet dataset = unit.dataset;
+			final Map.Entry schemaPartition = unit.schemaPartition;
+			final Collection tablesToProcess = unit.tablesToProcess;
+			final double stepPercent = unit.stepPercent;
+			Log.debug("Making actions for dataset " + dataset
+					+ " in partition " + schemaPartition.getKey());
+			// Check not cancelled.
+			this.checkCancelled();
+
+			final Schema templateSchema = dataset.getCentralTable().getSchema();
+			final PartitionTableApplication dsPta = dataset
+					.getPartitionTableApplication();
 
-				Log.debug("Starting schema partition " + schemaPartition);
+			final Set droppedTables = new HashSet();
+			Log.debug("Starting schema partition " + schemaPartition);
+			this.issueListenerEvent(
+					MartConstructorListener.PARTITION_STARTED,
+					schemaPartition.getKey());
+
+			// Loop over dataset partitions.
+			boolean fakeDSPartition = dsPta == null;
+			if (!fakeDSPartition)
+				dsPta.getPartitionTable().prepareRows(
+						(String) schemaPartition.getValue(),
+						PartitionTable.UNLIMITED_ROWS);
+			while (fakeDSPartition ? true : dsPta != null
+					&& dsPta.getPartitionTable().nextRow()) {
+				fakeDSPartition = false;
+				// Make more specific.
+				String partitionedDataSetName = dataset.getName();
+				if (dsPta != null)
+					partitionedDataSetName = dsPta.getNamePartitionCol()
+							.getValueForRow(
+									dsPta.getNamePartitionCol()
+											.getPartitionTable()
+											.currentRow())
+							+ Resources.get("tablenameSubSep")
+							+ partitionedDataSetName;
 				this.issueListenerEvent(
-						MartConstructorListener.PARTITION_STARTED,
-						schemaPartition.getKey());
-
-				// Loop over dataset partitions.
-				boolean fakeDSPartition = dsPta == null;
-				if (!fakeDSPartition)
-					dsPta.getPartitionTable().prepareRows(
-							(String) schemaPartition.getValue(),
-							PartitionTable.UNLIMITED_ROWS);
-				while (fakeDSPartition ? true : dsPta != null
-						&& dsPta.getPartitionTable().nextRow()) {
-					fakeDSPartition = false;
-					// Make more specific.
-					String partitionedDataSetName = dataset.getName();
-					if (dsPta != null)
-						partitionedDataSetName = dsPta.getNamePartitionCol()
-								.getValueForRow(
-										dsPta.getNamePartitionCol()
-												.getPartitionTable()
-												.currentRow())
-								+ Resources.get("tablenameSubSep")
-								+ partitionedDataSetName;
-					this.issueListenerEvent(
-							MartConstructorListener.DATASET_STARTED,
-							partitionedDataSetName);
-					final Map bigParents = new HashMap();
-					for (final Iterator i = tablesToProcess.iterator(); i
-							.hasNext();) {
-						final DataSetTable dsTable = (DataSetTable) i.next();
-						if (!droppedTables.contains(dsTable.getParent())) {
-							// Loop over dataset table partitions.
-							final PartitionTableApplication dmPta = dsTable
-									.getPartitionTableApplication();
-							boolean fakeDMPartition = dmPta == null;
-							if (!fakeDMPartition)
-								dmPta.getPartitionTable().prepareRows(
-										(String) schemaPartition.getValue(),
-										PartitionTable.UNLIMITED_ROWS);
-							final double subStepPercent = dmPta == null ? stepPercent
-									: stepPercent
-											/ dmPta.getPartitionTable()
-													.countRows();
-							while (fakeDMPartition ? true : dmPta != null
-									&& dmPta.getPartitionTable().nextRow()) {
-								fakeDMPartition = false;
-								final double targetPercent = this.percentComplete
-										+ subStepPercent;
-								if (!this.makeActionsForDatasetTable(
-										bigParents, subStepPercent,
-										templateSchema,
-										(String) schemaPartition.getKey(),
-										(String) schemaPartition.getValue(),
-										dsPta, dmPta, dataset, dsTable))
-									droppedTables.add(dsTable);
-								// In case the construction didn't do all the
-								// steps.
-								this.percentComplete = targetPercent;
-							}
+						MartConstructorListener.DATASET_STARTED,
+						partitionedDataSetName);
+				final Map bigParents = new HashMap();
+				for (final Iterator i = tablesToProcess.iterator(); i
+						.hasNext();) {
+					final DataSetTable dsTable = (DataSetTable) i.next();
+					if (!droppedTables.contains(dsTable.getParent())) {
+						// Loop over dataset table partitions.
+						final PartitionTableApplication dmPta = dsTable
+								.getPartitionTableApplication();
+						boolean fakeDMPartition = dmPta == null;
+						if (!fakeDMPartition)
+							dmPta.getPartitionTable().prepareRows(
+									(String) schemaPartition.getValue(),
+									PartitionTable.UNLIMITED_ROWS);
+						final double subStepPercent = dmPta == null ? stepPercent
+								: stepPercent
+										/ dmPta.getPartitionTable().countRows();
+						while (fakeDMPartition ? true : dmPta != null
+								&& dmPta.getPartitionTable().nextRow()) {
+							fakeDMPartition = false;
+							final double targetPercent = this.percentComplete
+									+ subStepPercent;
+							if (!this.makeActionsForDatasetTable(
+									bigParents, subStepPercent,
+									templateSchema,
+									(String) schemaPartition.getKey(),
+									(String) schemaPartition.getValue(),
+									dsPta, dmPta, dataset, dsTable))
+								droppedTables.add(dsTable);
+							// In case the construction didn't do all the
+							// steps.
+							this.percentComplete = targetPercent;
 						}
-
-						// Check not cancelled.
-						this.checkCancelled();
 					}
-					this.issueListenerEvent(
-							MartConstructorListener.DATASET_ENDED,
-							partitionedDataSetName);
-				}
 
+					// Check not cancelled.
+					this.checkCancelled();
+				}
 				this.issueListenerEvent(
-						MartConstructorListener.PARTITION_ENDED,
-						schemaPartition.getKey());
+						MartConstructorListener.DATASET_ENDED,
+						partitionedDataSetName);
 			}
-			Log.debug("Finished dataset " + dataset);
+
+			this.issueListenerEvent(
+					MartConstructorListener.PARTITION_ENDED,
+					schemaPartition.getKey());
+			Log.debug("Finished dataset " + dataset + " in partition "
+					+ schemaPartition.getKey());
 		}
 
 		private List getTablesToProcess(final DataSet dataset)
@@ -473,7 +538,6 @@ public interface MartConstructor {
 			Log.debug("Creating actions for table " + dsTable);
 			final String finalCombinedName = this.getFinalName(schemaPrefix,
 					dsPta, dmPta, dsTable);
-			final String tempName = "TEMP";
 			String previousTempTable = null;
 			boolean firstJoin = true;
 			boolean requiresFinalLeftJoin = false;
@@ -502,7 +566,7 @@ public interface MartConstructor {
 				final TransformationUnit tu = (TransformationUnit) j.next();
 				if (!tu.appliesToPartition(schemaPrefix))
 					continue;
-				final String tempTable = tempName + this.tempNameCount++;
+				final String tempTable = this.getNewTempTableName();
 
 				// Translate TU to Action.
 				// Expression?
@@ -584,7 +648,7 @@ public interface MartConstructor {
 			if (requiresFinalLeftJoin
 					&& !dsTable.getType().equals(DataSetTableType.MAIN)
 					&& !dsTable.isNoFinalLeftJoin()) {
-				final String tempTable = tempName + this.tempNameCount++;
+				final String tempTable = this.getNewTempTableName();
 				bigness = Math.max(bigness, ((Integer) bigParents.get(dsTable
 						.getParent())).intValue());
 				this.doParentLeftJoin(schemaPrefix, dsPta, dmPta, dataset,
@@ -609,7 +673,7 @@ public interface MartConstructor {
 
 			// Does it need a final distinct?
 			if (requiresDistinct) {
-				final String tempTable = tempName + this.tempNameCount++;
+				final String tempTable = this.getNewTempTableName();
 				final Set keepColNames = new HashSet();
 				for (final Iterator i = keepCols.iterator(); i.hasNext();)
 					keepColNames.add(((DataSetColumn) i.next())
@@ -923,6 +987,9 @@ public interface MartConstructor {
 										: splitOptDef.getSeparator());
 						update.setValueColumnSize(splitContentCol == null ? 255
 								: splitOptDef.getSize());
+						if (dataset.isAggregateOptimiser())
+							update.setAggregateTableName(this
+									.getNewTempTableName());
 						this.issueAction(update);
 
 						// Store the reference for later.
@@ -1459,54 +1526,59 @@ public interface MartConstructor {
 			// marked. Don't renumber nodes already numbered.
 			// Number used to mark last set of nodes is length of
 			// longest path.
-			// Open connection and query.
-			final Connection conn = ((JDBCDataLink) templateSchema)
-					.getConnection(schemaPartition);
-			final String sqlStr = DatabaseDialect.getDialect(templateSchema)
-					.getUnrollTableSQL(schemaPrefix, dataset, dsTable,
-							parentRel, childRel, schemaPartition,
-							templateSchema, utu);
-			Log.debug("Executing unroll statement: " + sqlStr);
-			final ResultSet rs = conn.prepareStatement(sqlStr).executeQuery();
-			// Iterate over all pairs in db.
-			// For each pair:
-			// 1. if L not in allNodes, add.
-			// 2. if R not in childNodes, add.
-			// 3. get L from allNodes and add R to children.
 			final Map allNodes = new HashMap();
 			int max = 0;
 			int min = 0;
-			while (rs.next()) {
-				final String L = rs.getString(1);
-				final String R = rs.getString(2);
-				final boolean Lnew = !allNodes.containsKey(L);
-				final boolean Rnew = !allNodes.containsKey(R);
-				if (Rnew) {
-					if (Lnew) {
-						// R new L new
-						allNodes.put(L, new Integer(0));
-						allNodes.put(R, new Integer(1));
-					} else
-						// R new L old
-						allNodes.put(R, new Integer(((Integer) allNodes.get(L))
-								.intValue() + 1));
-				} else if (Lnew)
-					// R old L new
-					allNodes.put(L, new Integer(((Integer) allNodes.get(R))
-							.intValue() - 1));
-				else
-					// R old L old
-					allNodes.put(L, new Integer(Math.min(((Integer) allNodes
-							.get(L)).intValue(), ((Integer) allNodes.get(R))
-							.intValue() - 1)));
-				min = Math.min(min, ((Integer) allNodes.get(L)).intValue());
-				max = Math.max(max, ((Integer) allNodes.get(R)).intValue());
-				this.checkCancelled();
+			// Only one unit at a time may use the schema connection, as it is
+			// closed again afterwards.
+			synchronized (templateSchema) {
+				// Open connection and query.
+				final Connection conn = ((JDBCDataLink) templateSchema)
+						.getConnection(schemaPartition);
+				final String sqlStr = DatabaseDialect.getDialect(templateSchema)
+						.getUnrollTableSQL(schemaPrefix, dataset, dsTable,
+								parentRel, childRel, schemaPartition,
+								templateSchema, utu);
+				Log.debug("Executing unroll statement: " + sqlStr);
+				final ResultSet rs = conn.prepareStatement(sqlStr)
+						.executeQuery();
+				// Iterate over all pairs in db.
+				// For each pair:
+				// 1. if L not in allNodes, add.
+				// 2. if R not in childNodes, add.
+				// 3. get L from allNodes and add R to children.
+				while (rs.next()) {
+					final String L = rs.getString(1);
+					final String R = rs.getString(2);
+					final boolean Lnew = !allNodes.containsKey(L);
+					final boolean Rnew = !allNodes.containsKey(R);
+					if (Rnew) {
+						if (Lnew) {
+							// R new L new
+							allNodes.put(L, new Integer(0));
+							allNodes.put(R, new Integer(1));
+						} else
+							// R new L old
+							allNodes.put(R, new Integer(((Integer) allNodes
+									.get(L)).intValue() + 1));
+					} else if (Lnew)
+						// R old L new
+						allNodes.put(L, new Integer(((Integer) allNodes.get(R))
+								.intValue() - 1));
+					else
+						// R old L old
+						allNodes.put(L, new Integer(Math.min(((Integer) allNodes
+								.get(L)).intValue(), ((Integer) allNodes.get(R))
+								.intValue() - 1)));
+					min = Math.min(min, ((Integer) allNodes.get(L)).intValue());
+					max = Math.max(max, ((Integer) allNodes.get(R)).intValue());
+					this.checkCancelled();
+				}
+				// Close query and connection.
+				rs.close();
+				conn.close();
 			}
 			final int n = max - min;
-			// Close query and connection.
-			rs.close();
-			conn.close();
 
 			// Create initial select table with unrolled child cols and
 			// iteration col.
@@ -1713,6 +1785,11 @@ public interface MartConstructor {
 					action);
 		}
 
+		private String getNewTempTableName() {
+			// Numbered by unit, as units share the target schema.
+			return "TEMP" + this.unitNumber + "_" + this.tempNameCount++;
+		}
+
 		private String getOptimiserTableName(
 				final String schemaPartitionPrefix,
 				final PartitionTableApplication dsPta,
@@ -1948,8 +2025,14 @@ public interface MartConstructor {
 			return this.failure;
 		}
 
-		public int getPercentComplete() {
-			return (int) this.percentComplete;
+		public synchronized int getPercentComplete() {
+			double percentComplete = this.percentComplete;
+			for (final Iterator i = this.units.iterator(); i.hasNext();) {
+				final ConstructionUnit unit = (ConstructionUnit) i.next();
+				if (unit.worker != null)
+					percentComplete += unit.worker.percentComplete;
+			}
+			return (int) percentComplete;
 		}
 
 		public String getStatusMessage() {
@@ -1957,6 +2040,8 @@ public interface MartConstructor {
 		}
 
 		public void run() {
+			final List threads = new ArrayList();
+			UnitQueue queue = null;
 			try {
 				// Begin.
 				Log.debug("Construction started");
@@ -1966,15 +2051,47 @@ public interface MartConstructor {
 				// Work out how many datasets we have.
 				final int totalDataSetCount = this.datasets.size();
 
+				final List units = new ArrayList();
 				for (final Iterator j = this.datasets.iterator(); j.hasNext();) {
 					// Loop over all the datasets we want included from this
-					// mart. Build actions for each one.
+					// mart. Divide each one up into units.
 					final DataSet ds = (DataSet) j.next();
-					try {
-						this.makeActionsForDataset(ds, totalDataSetCount);
-					} catch (final Throwable t) {
-						throw t;
-					}
+					units.addAll(this.getUnitsForDataset(ds,
+							totalDataSetCount, units.size()));
+				}
+				synchronized (this) {
+					this.units = units;
+				}
+
+				// Make the units in parallel, each thread taking the next
+				// unit in order when it is free. A unit's events are held
+				// until it is passed on, so threads may only get so far
+				// ahead of the listeners.
+				final int threadCount = Math.min(units.size(),
+						GenericConstructorRunnable.getThreadCount());
+				queue = new UnitQueue(units, threadCount
+						* GenericConstructorRunnable.UNITS_AHEAD);
+				Log.debug("Making " + units.size() + " units with "
+						+ threadCount + " threads");
+				for (int i = 0; i < threadCount; i++) {
+					final UnitQueue threadQueue = queue;
+					final Thread thread = new Thread("MartConstructor-" + i) {
+						public void run() {
+							ConstructionUnit unit;
+							while ((unit = threadQueue.take()) != null)
+								unit.make();
+						}
+					};
+					thread.start();
+					threads.add(thread);
+				}
+
+				// Pass on the events of each unit in turn, so that the
+				// listeners hear them in the same order however many threads
+				// there are.
+				for (final Iterator j = units.iterator(); j.hasNext();) {
+					((ConstructionUnit) j.next()).issueEvents();
+					queue.issued();
 				}
 				this
 						.issueListenerEvent(MartConstructorListener.CONSTRUCTION_ENDED);
@@ -1985,10 +2102,26 @@ public interface MartConstructor {
 			} catch (final Throwable t) {
 				this.failure = new ConstructorException(t);
 			} finally {
+				// Stop any units still being made after a failure.
+				this.stopped = true;
+				if (queue != null)
+					queue.stop();
+				for (final Iterator i = threads.iterator(); i.hasNext();)
+					try {
+						((Thread) i.next()).join();
+					} catch (final InterruptedException e) {
+						// Don't care.
+					}
 				this.alive = false;
 			}
 		}
 
+		private static int getThreadCount() {
+			final String threads = Settings.getProperty("constructorthreads");
+			return threads == null ? Runtime.getRuntime().availableProcessors()
+					: Math.max(1, Integer.parseInt(threads));
+		}
+
 		public boolean isAlive() {
 			return this.alive;
 		}
@@ -1996,6 +2129,137 @@ public interface MartConstructor {
 		public void finalize() {
 			this.alive = false;
 		}
+
+		/**
+		 * Hands out units to the threads that make them, in order, no more
+		 * than a given number ahead of the last unit passed on to the
+		 * listeners.
+		 */
+		private static class UnitQueue {
+			private final List units;
+
+			private final int maxAhead;
+
+			private int next = 0;
+
+			private int issued = 0;
+
+			private UnitQueue(final List units, final int maxAhead) {
+				this.units = units;
+				this.maxAhead = maxAhead;
+			}
+
+			private synchronized ConstructionUnit take() {
+				while (this.next < this.units.size()
+						&& this.next - this.issued >= this.maxAhead)
+					try {
+						this.wait();
+					} catch (final InterruptedException e) {
+						// Check again.
+					}
+				return this.next < this.units.size() ? (ConstructionUnit) this.units
+						.get(this.next++)
+						: null;
+			}
+
+			private synchronized void issued() {
+				this.issued++;
+				this.notifyAll();
+			}
+
+			private synchronized void stop() {
+				this.next = this.units.size();
+				this.notifyAll();
+			}
+		}
+
+		/**
+		 * The actions for one dataset in one schema partition. Each unit is
+		 * made by a runnable of its own, which issues its events to the unit.
+		 * The unit keeps them until all the units before it have issued
+		 * theirs to the real listeners.
+		 */
+		private class ConstructionUnit implements MartConstructorListener {
+			private final int number;
+
+			private final DataSet dataset;
+
+			private final Map.Entry schemaPartition;
+
+			private final List tablesToProcess;
+
+			private final double stepPercent;
+
+			private final boolean usesPartitionTables;
+
+			private List events = new ArrayList();
+
+			private GenericConstructorRunnable worker = null;
+
+			private Throwable failure = null;
+
+			private boolean done = false;
+
+			private ConstructionUnit(final int number, final DataSet dataset,
+					final Map.Entry schemaPartition,
+					final List tablesToProcess, final double stepPercent,
+					final boolean usesPartitionTables) {
+				this.number = number;
+				this.dataset = dataset;
+				this.schemaPartition = schemaPartition;
+				this.tablesToProcess = tablesToProcess;
+				this.stepPercent = stepPercent;
+				this.usesPartitionTables = usesPartitionTables;
+			}
+
+			public void martConstructorEventOccurred(final int event,
+					final Object data, final MartConstructorAction action) {
+				this.events.add(new Object[] { new Integer(event), data,
+						action });
+			}
+
+			private void make() {
+				final GenericConstructorRunnable worker = new GenericConstructorRunnable(
+						GenericConstructorRunnable.this, this);
+				synchronized (GenericConstructorRunnable.this) {
+					this.worker = worker;
+				}
+				try {
+					if (this.usesPartitionTables)
+						synchronized (GenericConstructorRunnable.PARTITION_TABLE_LOCK) {
+							worker.makeActionsForPartition(this);
+						}
+					else
+						worker.makeActionsForPartition(this);
+				} catch (final Throwable t) {
+					this.failure = t;
+				} finally {
+					synchronized (this) {
+						this.done = true;
+						this.notifyAll();
+					}
+				}
+			}
+
+			private void issueEvents() throws Throwable {
+				synchronized (this) {
+					while (!this.done)
+						this.wait();
+				}
+				if (this.failure != null)
+					throw this.failure;
+				for (final Iterator i = this.events.iterator(); i.hasNext();) {
+					final Object[] event = (Object[]) i.next();
+					if (event[2] != null)
+						GenericConstructorRunnable.this
+								.issueAction((MartConstructorAction) event[2]);
+					else
+						GenericConstructorRunnable.this.issueListenerEvent(
+								((Integer) event[0]).intValue(), event[1]);
+				}
+				this.events = null;
+			}
+		}
 	}
 
 	/**
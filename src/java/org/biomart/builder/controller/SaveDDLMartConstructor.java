@@ -25,9 +25,11 @@ import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -205,6 +207,97 @@ public class SaveDDLMartConstructor implements MartConstructor {
 		return cr;
 	}
 
+	/**
+	 * Work out which dataset tables have to be built before which others.
+	 * Every table that writes to another waits for the tables before it that
+	 * write to the same one, so that their changes do not run at the same
+	 * time, and every table that reads another waits for all the tables that
+	 * write to it. A wait that would make two tables wait for each other is
+	 * left out, in which case the one that came first in construction order
+	 * runs first.
+	 * 
+	 * @param tableActions
+	 *            the actions for each dataset table, in construction order.
+	 *            Keys are table names, values are lists of
+	 *            {@link MartConstructorAction}s.
+	 * @return the names of the tables each table waits for. Keys are the
+	 *         keys of <tt>tableActions</tt>, in the same order, values are
+	 *         sets of table names.
+	 */
+	public static Map getDependencies(final Map tableActions) {
+		final List tables = new ArrayList(tableActions.keySet());
+		// Who writes to each table, in construction order?
+		final Map writers = new HashMap();
+		for (final Iterator i = tables.iterator(); i.hasNext();) {
+			final Object table = i.next();
+			for (final Iterator j = ((List) tableActions.get(table))
+					.iterator(); j.hasNext();)
+				for (final Iterator k = ((MartConstructorAction) j.next())
+						.getOutputTables().iterator(); k.hasNext();) {
+					final Object outputTable = k.next();
+					List tableWriters = (List) writers.get(outputTable);
+					if (tableWriters == null)
+						writers.put(outputTable,
+								tableWriters = new ArrayList());
+					if (!tableWriters.contains(table))
+						tableWriters.add(table);
+				}
+		}
+		final Map dependencies = new LinkedHashMap();
+		for (final Iterator i = tables.iterator(); i.hasNext();)
+			dependencies.put(i.next(), new LinkedHashSet());
+		// Writers of the same table go one after another.
+		for (final Iterator i = writers.values().iterator(); i.hasNext();) {
+			final List tableWriters = (List) i.next();
+			for (int j = 1; j < tableWriters.size(); j++)
+				((Set) dependencies.get(tableWriters.get(j)))
+						.add(tableWriters.get(j - 1));
+		}
+		// Readers wait for all writers, those earlier in construction order
+		// first, as those can never make a cycle.
+		for (int pass = 0; pass < 2; pass++)
+			for (int i = 0; i < tables.size(); i++) {
+				final Object table = tables.get(i);
+				final Set tableDependencies = (Set) dependencies.get(table);
+				for (final Iterator j = ((List) tableActions.get(table))
+						.iterator(); j.hasNext();)
+					for (final Iterator k = ((MartConstructorAction) j.next())
+							.getInputTables().iterator(); k.hasNext();) {
+						final List tableWriters = (List) writers.get(k.next());
+						if (tableWriters == null)
+							continue;
+						for (final Iterator l = tableWriters.iterator(); l
+								.hasNext();) {
+							final Object writer = l.next();
+							if (writer.equals(table))
+								continue;
+							if (pass == 0 ? tables.indexOf(writer) < i
+									: tables.indexOf(writer) > i
+											&& !SaveDDLMartConstructor
+													.waitsFor(dependencies,
+															writer, table))
+								tableDependencies.add(writer);
+						}
+					}
+			}
+		return dependencies;
+	}
+
+	private static boolean waitsFor(final Map dependencies,
+			final Object table, final Object other) {
+		final Set seen = new HashSet();
+		final List toVisit = new ArrayList();
+		toVisit.add(table);
+		while (!toVisit.isEmpty()) {
+			final Object next = toVisit.remove(toVisit.size() - 1);
+			if (next.equals(other))
+				return true;
+			if (seen.add(next))
+				toVisit.addAll((Set) dependencies.get(next));
+		}
+		return false;
+	}
+
 	/**
 	 * This abstract class is the base for all DDL helpers.
 	 */
@@ -583,6 +676,21 @@ public class SaveDDLMartConstructor implements MartConstructor {
 								tableName, (String[]) actions
 										.toArray(new String[0]));
 					}
+					// Tell MartRunner which tables use tables made or changed
+					// by which others, so that it can build the rest at the
+					// same time.
+					final Map dependencies = SaveDDLMartConstructor
+							.getDependencies(this.actions);
+					for (final Iterator i = dependencies.entrySet().iterator(); i
+							.hasNext();) {
+						final Map.Entry entry = (Map.Entry) i.next();
+						final Set tableDependencies = (Set) entry.getValue();
+						MartRunnerProtocol.Client.setDependencies(
+								this.clientSocket, this.job, this.partition,
+								this.dataset, (String) entry.getKey(),
+								(String[]) tableDependencies
+										.toArray(new String[0]));
+					}
 				} else if (event == MartConstructorListener.ACTION_EVENT) {
 					// Add the action to the current map.
 					final String dsTableName = action.getDataSetTableName();
@@ -36,6 +36,7 @@ import org.biomart.builder.model.Relation;
 import org.biomart.builder.model.Schema;
 import org.biomart.builder.model.Table;
 import org.biomart.builder.model.DataSet.DataSetTable;
+import org.biomart.builder.model.MartConstructorAction.UpdateOptimiser;
 import org.biomart.builder.model.Schema.JDBCSchema;
 import org.biomart.builder.model.TransformationUnit.UnrollTable;
 import org.biomart.common.resources.Log;
@@ -199,6 +200,63 @@ public abstract class DatabaseDialect {
 					columnName));
 	}
 
+	/**
+	 * Optimiser columns are usually filled by updating each row of the
+	 * optimiser table with a subquery against the dimension. If the action
+	 * names an aggregate table, dialects instead group the dimension by its
+	 * key columns into that table with the statement returned here, then fill
+	 * the optimiser column from it with a single join. Keys with no matching
+	 * dimension rows have no row in the aggregate table, so the optimiser
+	 * column should default to the value the subquery would have given them.
+	 * 
+	 * @param action
+	 *            the optimiser update.
+	 * @param valueExpression
+	 *            the aggregate giving the optimiser column value for each
+	 *            key, in terms of the dimension table aliased as <tt>b</tt>.
+	 * @return the statement creating the aggregate table, which has the key
+	 *         columns and one column named after the optimiser column.
+	 */
+	protected String getOptimiserAggregateSQL(final UpdateOptimiser action,
+			final String valueExpression) {
+		final String schemaName = action.getDataSetSchemaName();
+		final StringBuffer keys = new StringBuffer();
+		for (final Iterator i = action.getKeyColumns().iterator(); i.hasNext();) {
+			keys.append("b.");
+			keys.append((String) i.next());
+			if (i.hasNext())
+				keys.append(',');
+		}
+		final StringBuffer sb = new StringBuffer();
+		sb.append("create table " + schemaName + "."
+				+ action.getAggregateTableName() + " as select " + keys + ","
+				+ valueExpression + " as " + action.getOptColumnName()
+				+ " from " + schemaName + "." + action.getSourceTableName()
+				+ " b where ");
+		if (action.getOptRestrictColumn() != null) {
+			sb.append("b.");
+			sb.append(action.getOptRestrictColumn());
+			if (action.getOptRestrictValue() == null)
+				sb.append(" is null and ");
+			else {
+				sb.append("='");
+				sb.append(action.getOptRestrictValue());
+				sb.append("' and ");
+			}
+		}
+		sb.append("not (");
+		for (final Iterator i = action.getNonNullColumns().iterator(); i
+				.hasNext();) {
+			sb.append("b.");
+			sb.append((String) i.next());
+			sb.append(" is null");
+			if (i.hasNext())
+				sb.append(" and ");
+		}
+		sb.append(") group by " + keys);
+		return sb.toString();
+	}
+
 	/**
 	 * Get the SQL for unrolling a table's rolled-up relations.
 	 * 
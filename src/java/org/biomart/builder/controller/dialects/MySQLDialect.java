@@ -762,8 +762,12 @@ public class MySQLDialect extends DatabaseDialect {
 
 		this.checkColumnName(optColName);
 
-		final String colType = action.getValueColumnName() == null ? "integer default 0"
-				: "varchar("+action.getValueColumnSize()+")";
+		final String aggTableName = action.getAggregateTableName();
+		final String colType = action.getValueColumnName() != null ? "varchar("
+				+ action.getValueColumnSize() + ")"
+				: aggTableName != null && !action.isCountNotBool()
+						&& action.isNullNotZero() ? "integer"
+						: "integer default 0";
 
 		statements.add("alter table " + schemaName + "." + optTableName
 				+ " add column (" + optColName + " " + colType + ")");
@@ -775,6 +779,35 @@ public class MySQLDialect extends DatabaseDialect {
 						+ " separator '" + action.getValueColumnSeparator()
 						+ "')";
 
+		if (aggTableName != null) {
+			statements.add(this.getOptimiserAggregateSQL(action, countStmt));
+			final StringBuffer index = new StringBuffer();
+			final StringBuffer update = new StringBuffer();
+			index.append("create index I_" + this.indexCount++ + " on "
+					+ schemaName + "." + aggTableName + "(");
+			update.append("update " + schemaName + "." + optTableName + " a,"
+					+ schemaName + "." + aggTableName + " b set a."
+					+ optColName + "=b." + optColName + " where ");
+			for (final Iterator i = action.getKeyColumns().iterator(); i
+					.hasNext();) {
+				final String keyCol = (String) i.next();
+				index.append(keyCol);
+				update.append("a.");
+				update.append(keyCol);
+				update.append("=b.");
+				update.append(keyCol);
+				if (i.hasNext()) {
+					index.append(',');
+					update.append(" and ");
+				}
+			}
+			index.append(')');
+			statements.add(index.toString());
+			statements.add(update.toString());
+			statements.add("drop table " + schemaName + "." + aggTableName);
+			return;
+		}
+
 		final StringBuffer sb = new StringBuffer();
 		sb.append("update " + schemaName + "." + optTableName + " a set "
 				+ optColName + "=(select " + countStmt + " from " + schemaName
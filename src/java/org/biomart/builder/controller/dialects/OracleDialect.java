@@ -682,13 +682,52 @@ public class OracleDialect extends DatabaseDialect {
 
 		this.checkColumnName(optColName);
 
-		statements.add("alter table " + schemaName + "." + optTableName
-				+ " add (" + optColName + " number default 0)");
+		final String aggTableName = action.getAggregateTableName();
+		statements.add("alter table "
+				+ schemaName
+				+ "."
+				+ optTableName
+				+ " add ("
+				+ optColName
+				+ (aggTableName != null && !action.isCountNotBool()
+						&& action.isNullNotZero() ? " number)"
+						: " number default 0)"));
 
 		final String countStmt = action.isCountNotBool() ? "count(1)"
 				: "decode(count(1),0,"
 						+ (action.isNullNotZero() ? "null" : "0") + ",1)";
 
+		if (aggTableName != null) {
+			statements.add(this.getOptimiserAggregateSQL(action, countStmt));
+			final StringBuffer index = new StringBuffer();
+			final StringBuffer merge = new StringBuffer();
+			index.append("create index I_" + this.indexCount++ + " on "
+					+ schemaName + "." + aggTableName + "(");
+			merge.append("merge into " + schemaName + "." + optTableName
+					+ " a using " + schemaName + "." + aggTableName
+					+ " b on (");
+			for (final Iterator i = action.getKeyColumns().iterator(); i
+					.hasNext();) {
+				final String keyCol = (String) i.next();
+				index.append(keyCol);
+				merge.append("a.");
+				merge.append(keyCol);
+				merge.append("=b.");
+				merge.append(keyCol);
+				if (i.hasNext()) {
+					index.append(',');
+					merge.append(" and ");
+				}
+			}
+			index.append(')');
+			merge.append(") when matched then update set a." + optColName
+					+ "=b." + optColName);
+			statements.add(index.toString());
+			statements.add(merge.toString());
+			statements.add("drop table " + schemaName + "." + aggTableName);
+			return;
+		}
+
 		final StringBuffer sb = new StringBuffer();
 		sb.append("update " + schemaName + "." + optTableName + " a set "
 				+ optColName + "=(select " + countStmt + " from " + schemaName
@@ -709,14 +709,54 @@ public class PostgreSQLDialect extends DatabaseDialect {
 
 		statements.add("set search_path=" + schemaName + ",pg_catalog");
 
-		statements.add("alter table " + schemaName + "." + optTableName
-				+ " add " + optColName + " integer default 0");
+		final String aggTableName = action.getAggregateTableName();
+		statements.add("alter table "
+				+ schemaName
+				+ "."
+				+ optTableName
+				+ " add "
+				+ optColName
+				+ (aggTableName != null && !action.isCountNotBool()
+						&& action.isNullNotZero() ? " integer"
+						: " integer default 0"));
 
 		final String countStmt = action.isCountNotBool() ? "count(1)"
 				: "case count(1) when 0 then "
 						+ (action.isNullNotZero() ? "null" : "0")
 						+ " else 1 end";
 
+		if (aggTableName != null) {
+			statements.add(this.getOptimiserAggregateSQL(action, countStmt));
+			final StringBuffer index = new StringBuffer();
+			final StringBuffer update = new StringBuffer();
+			index.append("create index I_" + this.indexCount++ + " on "
+					+ schemaName + "." + aggTableName + "(");
+			update.append("update " + schemaName + "." + optTableName
+					+ " set " + optColName + "=b." + optColName + " from "
+					+ schemaName + "." + aggTableName + " b where ");
+			for (final Iterator i = action.getKeyColumns().iterator(); i
+					.hasNext();) {
+				final String keyCol = (String) i.next();
+				index.append(keyCol);
+				update.append(schemaName);
+				update.append('.');
+				update.append(optTableName);
+				update.append('.');
+				update.append(keyCol);
+				update.append("=b.");
+				update.append(keyCol);
+				if (i.hasNext()) {
+					index.append(',');
+					update.append(" and ");
+				}
+			}
+			index.append(')');
+			statements.add(index.toString());
+			statements.add(update.toString());
+			statements.add("drop table " + schemaName + "." + aggTableName);
+			return;
+		}
+
 		final StringBuffer sb = new StringBuffer();
 		sb.append("update " + schemaName + "." + optTableName + " set "
 				+ optColName + "=(select " + countStmt + " from " + schemaName
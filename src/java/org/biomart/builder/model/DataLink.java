@@ -102,7 +102,9 @@ public interface DataLink {
 	public interface JDBCDataLink extends DataLink {
 		/**
 		 * Returns a JDBC connection connected to this database using the data
-		 * supplied to all the other methods in this interface.
+		 * supplied to all the other methods in this interface. The connection
+		 * is shared, so callers that may run alongside others should hold the
+		 * lock on this data link for as long as they use it.
 		 * 
 		 * @param overrideDataLinkSchema
 		 *            the schema to connect to, if any. <tt>null</tt> is used
@@ -141,6 +141,8 @@ public class DataSet extends Schema {
 
 	private boolean indexOptimiser;
 
+	private boolean aggregateOptimiser;
+
 	private PartitionTableApplication partitionTableApplication = null;
 
 	private boolean deadCheck = false;
@@ -190,6 +192,7 @@ public class DataSet extends Schema {
 		this.addPropertyChangeListener("partitionTable", this.listener);
 		this.addPropertyChangeListener("datasetOptimiser", this.listener);
 		this.addPropertyChangeListener("indexOptimiser", this.listener);
+		this.addPropertyChangeListener("aggregateOptimiser", this.listener);
 		this.addPropertyChangeListener("invisible", this.listener);
 		this.addPropertyChangeListener("partitionTableApplication",
 				this.listener);
@@ -267,6 +270,7 @@ public class DataSet extends Schema {
 		copy.invisible = this.invisible;
 		copy.optimiser = this.optimiser;
 		copy.indexOptimiser = this.indexOptimiser;
+		copy.aggregateOptimiser = this.aggregateOptimiser;
 		if (this.partitionTable != null) {
 			copy.setPartitionTable(true);
 			copy.asPartitionTable().setSelectedColumnNames(
@@ -2067,6 +2071,16 @@ public class DataSet extends Schema {
 		return this.indexOptimiser;
 	}
 
+	/**
+	 * Sees if the optimiser columns will be filled from a grouped copy of each
+	 * dimension, instead of by a subquery for each row.
+	 * 
+	 * @return <tt>true</tt> if they will.
+	 */
+	public boolean isAggregateOptimiser() {
+		return this.aggregateOptimiser;
+	}
+
 	/**
 	 * Test to see if this dataset is invisible.
 	 * 
@@ -2106,6 +2120,24 @@ public class DataSet extends Schema {
 		this.pcs.firePropertyChange("indexOptimiser", oldValue, index);
 	}
 
+	/**
+	 * Sets how the optimiser columns are filled.
+	 * 
+	 * @param aggregate
+	 *            fill them from a grouped copy of each dimension if
+	 *            <tt>true</tt>, or by a subquery for each row if
+	 *            <tt>false</tt>.
+	 */
+	public void setAggregateOptimiser(final boolean aggregate) {
+		Log.debug("Setting optimiser aggregate to " + aggregate + " in "
+				+ this);
+		final boolean oldValue = this.aggregateOptimiser;
+		if (oldValue == aggregate)
+			return;
+		this.aggregateOptimiser = aggregate;
+		this.pcs.firePropertyChange("aggregateOptimiser", oldValue, aggregate);
+	}
+
 	/**
 	 * Sets the inivisibility of this dataset.
 	 * 
@@ -18,7 +18,9 @@
 
 package org.biomart.builder.model;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -90,6 +92,25 @@ public abstract class MartConstructorAction {
 	 */
 	public abstract String getStatusMessage();
 
+	/**
+	 * Which existing tables does this action read or change? Used to work out
+	 * which dataset tables have to be built before which others.
+	 * 
+	 * @return the table names. Empty unless overridden.
+	 */
+	public Collection getInputTables() {
+		return Collections.EMPTY_LIST;
+	}
+
+	/**
+	 * Which tables does this action create, or add columns to or update?
+	 * 
+	 * @return the table names. Empty unless overridden.
+	 */
+	public Collection getOutputTables() {
+		return Collections.EMPTY_LIST;
+	}
+
 	/**
 	 * Update optimiser table actions.
 	 */
@@ -120,6 +141,8 @@ public abstract class MartConstructorAction {
 		
 		private int valueColumnSize = 255;
 
+		private String aggregateTableName;
+
 		/**
 		 * Creates a new UpdateOptimiser action.
 		 * 
@@ -138,6 +161,15 @@ public abstract class MartConstructorAction {
 					this.getOptTableName(), this.getOptColumnName() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getSourceTableName(),
+					this.getOptTableName() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getOptTableName() });
+		}
+
 		/**
 		 * @return the countNotBool
 		 */
@@ -312,6 +344,23 @@ public abstract class MartConstructorAction {
 		public void setValueColumnSize(int valueColumnSize) {
 			this.valueColumnSize = valueColumnSize;
 		}
+
+		/**
+		 * @return the table to group the source table into before filling
+		 *         the optimiser column from it, or <tt>null</tt> to fill it
+		 *         with a subquery for each row.
+		 */
+		public String getAggregateTableName() {
+			return this.aggregateTableName;
+		}
+
+		/**
+		 * @param aggregateTableName
+		 *            the aggregateTableName to set
+		 */
+		public void setAggregateTableName(final String aggregateTableName) {
+			this.aggregateTableName = aggregateTableName;
+		}
 	}
 
 	/**
@@ -346,6 +395,15 @@ public abstract class MartConstructorAction {
 					this.getOptTableName(), this.getOptColumnName() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getParentOptTableName(),
+					this.getOptTableName() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getOptTableName() });
+		}
+
 		/**
 		 * @return the keyColumns
 		 */
@@ -436,6 +494,14 @@ public abstract class MartConstructorAction {
 			return Resources.get("mcCreateOpt", this.getOptTableName());
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getDataSetTableName() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getOptTableName() });
+		}
+
 		/**
 		 * @return the keyColumns
 		 */
@@ -523,6 +589,15 @@ public abstract class MartConstructorAction {
 					this.getRightTable(), this.getResultTable() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getLeftTable(),
+					this.getRightTable() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getResultTable() });
+		}
+
 		/**
 		 * @return the leftJoinColumns
 		 */
@@ -716,6 +791,15 @@ public abstract class MartConstructorAction {
 					this.getRightTable(), this.getResultTable() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getLeftTable(),
+					this.getRightTable() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getResultTable() });
+		}
+
 		/**
 		 * Get the mutable map of partition restrictions to apply.
 		 * 
@@ -1004,6 +1088,14 @@ public abstract class MartConstructorAction {
 					.keySet().toString());
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getTable() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getResultTable() });
+		}
+
 		/**
 		 * @return the expressionColumns
 		 */
@@ -1128,6 +1220,14 @@ public abstract class MartConstructorAction {
 					this.getResultTable(), this.getTable() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getTable() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getResultTable() });
+		}
+
 		/**
 		 * @return the resultTable
 		 */
@@ -1243,6 +1343,14 @@ public abstract class MartConstructorAction {
 					this.getResultTable(), this.getTable() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getTable() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getResultTable() });
+		}
+
 		/**
 		 * Get the mutable map of partition restrictions to apply.
 		 * 
@@ -1398,6 +1506,14 @@ public abstract class MartConstructorAction {
 			return Resources.get("mcInitialUnroll");
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getSourceTable() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getTable() });
+		}
+
 		/**
 		 * @return the namingCol
 		 */
@@ -1580,6 +1696,10 @@ public abstract class MartConstructorAction {
 			return Resources.get("mcExpandUnroll");
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getSourceTable() });
+		}
+
 		/**
 		 * @return the namingCol
 		 */
@@ -1786,6 +1906,10 @@ public abstract class MartConstructorAction {
 			return Resources.get("mcDropCols", this.getColumns().toString());
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getTable() });
+		}
+
 		/**
 		 * @return the columns
 		 */
@@ -1842,6 +1966,10 @@ public abstract class MartConstructorAction {
 			return Resources.get("mcDrop", this.getTable());
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getTable() });
+		}
+
 		/**
 		 * @return the table
 		 */
@@ -1886,6 +2014,10 @@ public abstract class MartConstructorAction {
 					this.getColumns().toString() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getTable() });
+		}
+
 		/**
 		 * @return the columns
 		 */
@@ -1945,6 +2077,14 @@ public abstract class MartConstructorAction {
 					this.getTo() });
 		}
 
+		public Collection getInputTables() {
+			return Arrays.asList(new String[] { this.getFrom() });
+		}
+
+		public Collection getOutputTables() {
+			return Arrays.asList(new String[] { this.getTo() });
+		}
+
 		/**
 		 * @return the from
 		 */
@@ -703,7 +703,7 @@ public class Schema implements Comparable, DataLink, TransactionListener {
 	 * @throws SQLException
 	 *             if the partitions could not be retrieved.
 	 */
-	public Map getPartitions() throws SQLException {
+	public synchronized Map getPartitions() throws SQLException {
 		if (this.partitionCache.isEmpty() && this.partitionRegex != null
 				&& this.partitionNameExpression != null)
 			this.populatePartitionCache(this.partitionCache);
@@ -943,9 +943,11 @@ public class Schema implements Comparable, DataLink, TransactionListener {
 			}
 		}
 
-		public Collection getUniqueValues(final String schemaPrefix,
-				final Column column) throws SQLException {
-			// Do the select.
+		public synchronized Collection getUniqueValues(
+				final String schemaPrefix, final Column column)
+				throws SQLException {
+			// Do the select. Callers on other threads share the connection,
+			// so hold the lock on this schema until the rows are read.
 			final List results = new ArrayList();
 			final String schemaName = schemaPrefix == null ? this
 					.getDataLinkSchema() : (!this.getPartitions()
@@ -965,8 +967,8 @@ public class Schema implements Comparable, DataLink, TransactionListener {
 			return results;
 		}
 
-		public List getRows(final String schemaPrefix, final Table table,
-				final int count) throws SQLException {
+		public synchronized List getRows(final String schemaPrefix,
+				final Table table, final int count) throws SQLException {
 			// Do the select.
 			final List results = new ArrayList();
 			final String schemaName = schemaPrefix == null ? this
@@ -1063,8 +1065,8 @@ public class Schema implements Comparable, DataLink, TransactionListener {
 			}
 		}
 
-		public Connection getConnection(final String overrideDataLinkSchema)
-				throws SQLException {
+		public synchronized Connection getConnection(
+				final String overrideDataLinkSchema) throws SQLException {
 			// If we are already connected, test to see if we are
 			// still connected. If not, reset our connection.
 			if (this.connection != null && this.connection.isClosed())
@@ -1153,7 +1155,7 @@ public class Schema implements Comparable, DataLink, TransactionListener {
 			}
 		}
 
-		private void closeConnection() throws SQLException {
+		private synchronized void closeConnection() throws SQLException {
 			Log.debug("Closing JDBC connection");
 			if (this.connection != null)
 				try {
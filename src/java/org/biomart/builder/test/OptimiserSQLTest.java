@@ -0,0 +1,245 @@
+/*
+ Copyright (C) 2006 EBI
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.builder.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.biomart.builder.controller.dialects.DatabaseDialect;
+import org.biomart.builder.controller.dialects.MySQLDialect;
+import org.biomart.builder.controller.dialects.OracleDialect;
+import org.biomart.builder.controller.dialects.PostgreSQLDialect;
+import org.biomart.builder.model.MartConstructorAction.UpdateOptimiser;
+
+/**
+ * Tests the statements the MySQL, PostgreSQL and Oracle dialects generate to
+ * fill an optimiser column from a grouped aggregate table, for count, bool,
+ * null/1 bool and split optimiser columns. Does not need a database
+ * connection.
+ *
+ * @version $Revision$, $Date$, modified by $Author$
+ * @since 0.7
+ */
+public class OptimiserSQLTest extends TestCase {
+
+	private static final String AGGREGATE = "create table mart.TEMP0_1 as select b.gene_id_key,";
+
+	private static final String FROM = " from mart.ds__xref__dm b where ";
+
+	private static final String NOT_NULL = "not (b.xref_id is null) group by b.gene_id_key";
+
+	/**
+	 * Run the tests.
+	 *
+	 * @param args
+	 *            ignored.
+	 */
+	public static void main(final String[] args) {
+		TestRunner.run(OptimiserSQLTest.suite());
+	}
+
+	/**
+	 * @return the tests.
+	 */
+	public static Test suite() {
+		return new TestSuite(OptimiserSQLTest.class);
+	}
+
+	/**
+	 * @param name
+	 *            the test to run.
+	 */
+	public OptimiserSQLTest(final String name) {
+		super(name);
+	}
+
+	/**
+	 * MySQL joins the optimiser table to the aggregate table in a
+	 * multiple-table update.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testMySQL() throws Exception {
+		final DatabaseDialect dialect = new MySQLDialect();
+		final String update = "update mart.ds__gene__main a,mart.TEMP0_1 b set a.xref_count=b.xref_count where a.gene_id_key=b.gene_id_key";
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add column (xref_count integer default 0)",
+				OptimiserSQLTest.AGGREGATE + "count(1) as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", update,
+				"drop table mart.TEMP0_1" }, dialect, this.count());
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add column (xref_count integer default 0)",
+				OptimiserSQLTest.AGGREGATE
+						+ "case count(1) when 0 then 0 else 1 end as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", update,
+				"drop table mart.TEMP0_1" }, dialect, this.bool(false));
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add column (xref_count integer)",
+				OptimiserSQLTest.AGGREGATE
+						+ "case count(1) when 0 then null else 1 end as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", update,
+				"drop table mart.TEMP0_1" }, dialect, this.bool(true));
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add column (xref_go_count integer default 0)",
+				"create table mart.TEMP0_1 as select b.gene_id_key,b.transcript_id_key,count(1) as xref_go_count"
+						+ OptimiserSQLTest.FROM
+						+ "b.dbname='GO' and not (b.xref_id is null) group by b.gene_id_key,b.transcript_id_key",
+				"create index I_0 on mart.TEMP0_1(gene_id_key,transcript_id_key)",
+				"update mart.ds__gene__main a,mart.TEMP0_1 b set a.xref_go_count=b.xref_go_count where a.gene_id_key=b.gene_id_key and a.transcript_id_key=b.transcript_id_key",
+				"drop table mart.TEMP0_1" }, dialect, this.split("GO"));
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add column (xref_go_count integer default 0)",
+				"create table mart.TEMP0_1 as select b.gene_id_key,b.transcript_id_key,count(1) as xref_go_count"
+						+ OptimiserSQLTest.FROM
+						+ "b.dbname is null and not (b.xref_id is null) group by b.gene_id_key,b.transcript_id_key",
+				"create index I_0 on mart.TEMP0_1(gene_id_key,transcript_id_key)",
+				"update mart.ds__gene__main a,mart.TEMP0_1 b set a.xref_go_count=b.xref_go_count where a.gene_id_key=b.gene_id_key and a.transcript_id_key=b.transcript_id_key",
+				"drop table mart.TEMP0_1" }, dialect, this.split(null));
+	}
+
+	/**
+	 * PostgreSQL updates the optimiser table from the aggregate table. The
+	 * first statement after a reset creates the schema.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testPostgreSQL() throws Exception {
+		final DatabaseDialect dialect = new PostgreSQLDialect();
+		final String update = "update mart.ds__gene__main set xref_count=b.xref_count from mart.TEMP0_1 b where mart.ds__gene__main.gene_id_key=b.gene_id_key";
+		this.assertStatements(new String[] { "create schema mart",
+				"set search_path=mart,pg_catalog",
+				"alter table mart.ds__gene__main add xref_count integer default 0",
+				OptimiserSQLTest.AGGREGATE + "count(1) as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", update,
+				"drop table mart.TEMP0_1" }, dialect, this.count());
+		this.assertStatements(new String[] { "create schema mart",
+				"set search_path=mart,pg_catalog",
+				"alter table mart.ds__gene__main add xref_count integer default 0",
+				OptimiserSQLTest.AGGREGATE
+						+ "case count(1) when 0 then 0 else 1 end as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", update,
+				"drop table mart.TEMP0_1" }, dialect, this.bool(false));
+		this.assertStatements(new String[] { "create schema mart",
+				"set search_path=mart,pg_catalog",
+				"alter table mart.ds__gene__main add xref_count integer",
+				OptimiserSQLTest.AGGREGATE
+						+ "case count(1) when 0 then null else 1 end as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", update,
+				"drop table mart.TEMP0_1" }, dialect, this.bool(true));
+		this.assertStatements(new String[] { "create schema mart",
+				"set search_path=mart,pg_catalog",
+				"alter table mart.ds__gene__main add xref_go_count integer default 0",
+				"create table mart.TEMP0_1 as select b.gene_id_key,b.transcript_id_key,count(1) as xref_go_count"
+						+ OptimiserSQLTest.FROM
+						+ "b.dbname='GO' and not (b.xref_id is null) group by b.gene_id_key,b.transcript_id_key",
+				"create index I_0 on mart.TEMP0_1(gene_id_key,transcript_id_key)",
+				"update mart.ds__gene__main set xref_go_count=b.xref_go_count from mart.TEMP0_1 b where mart.ds__gene__main.gene_id_key=b.gene_id_key and mart.ds__gene__main.transcript_id_key=b.transcript_id_key",
+				"drop table mart.TEMP0_1" }, dialect, this.split("GO"));
+	}
+
+	/**
+	 * Oracle merges the aggregate table into the optimiser table.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testOracle() throws Exception {
+		final DatabaseDialect dialect = new OracleDialect();
+		final String merge = "merge into mart.ds__gene__main a using mart.TEMP0_1 b on (a.gene_id_key=b.gene_id_key) when matched then update set a.xref_count=b.xref_count";
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add (xref_count number default 0)",
+				OptimiserSQLTest.AGGREGATE + "count(1) as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", merge,
+				"drop table mart.TEMP0_1" }, dialect, this.count());
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add (xref_count number default 0)",
+				OptimiserSQLTest.AGGREGATE
+						+ "decode(count(1),0,0,1) as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", merge,
+				"drop table mart.TEMP0_1" }, dialect, this.bool(false));
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add (xref_count number)",
+				OptimiserSQLTest.AGGREGATE
+						+ "decode(count(1),0,null,1) as xref_count"
+						+ OptimiserSQLTest.FROM + OptimiserSQLTest.NOT_NULL,
+				"create index I_0 on mart.TEMP0_1(gene_id_key)", merge,
+				"drop table mart.TEMP0_1" }, dialect, this.bool(true));
+		this.assertStatements(new String[] {
+				"alter table mart.ds__gene__main add (xref_go_count number default 0)",
+				"create table mart.TEMP0_1 as select b.gene_id_key,b.transcript_id_key,count(1) as xref_go_count"
+						+ OptimiserSQLTest.FROM
+						+ "b.dbname='GO' and not (b.xref_id is null) group by b.gene_id_key,b.transcript_id_key",
+				"create index I_0 on mart.TEMP0_1(gene_id_key,transcript_id_key)",
+				"merge into mart.ds__gene__main a using mart.TEMP0_1 b on (a.gene_id_key=b.gene_id_key and a.transcript_id_key=b.transcript_id_key) when matched then update set a.xref_go_count=b.xref_go_count",
+				"drop table mart.TEMP0_1" }, dialect, this.split("GO"));
+	}
+
+	private UpdateOptimiser count() {
+		final UpdateOptimiser action = new UpdateOptimiser("mart",
+				"ds__xref__dm");
+		action.setKeyColumns(Collections.singletonList("gene_id_key"));
+		action.setNonNullColumns(Collections.singletonList("xref_id"));
+		action.setOptTableName("ds__gene__main");
+		action.setOptColumnName("xref_count");
+		action.setSourceTableName("ds__xref__dm");
+		action.setCountNotBool(true);
+		action.setAggregateTableName("TEMP0_1");
+		return action;
+	}
+
+	private UpdateOptimiser bool(final boolean nullNotZero) {
+		final UpdateOptimiser action = this.count();
+		action.setCountNotBool(false);
+		action.setNullNotZero(nullNotZero);
+		return action;
+	}
+
+	private UpdateOptimiser split(final String restrictValue) {
+		final UpdateOptimiser action = this.count();
+		action.setKeyColumns(Arrays.asList(new String[] { "gene_id_key",
+				"transcript_id_key" }));
+		action.setOptColumnName("xref_go_count");
+		action.setOptRestrictColumn("dbname");
+		action.setOptRestrictValue(restrictValue);
+		return action;
+	}
+
+	private void assertStatements(final String[] expected,
+			final DatabaseDialect dialect, final UpdateOptimiser action)
+			throws Exception {
+		dialect.reset();
+		final String[] actual = dialect.getStatementsForAction(action);
+		assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ Copyright (C) 2006 EBI
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.builder.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.biomart.builder.controller.SaveDDLMartConstructor;
+import org.biomart.builder.model.MartConstructorAction;
+import org.biomart.builder.model.MartConstructorAction.CopyOptimiser;
+import org.biomart.builder.model.MartConstructorAction.CreateOptimiser;
+import org.biomart.builder.model.MartConstructorAction.Rename;
+import org.biomart.builder.model.MartConstructorAction.UpdateOptimiser;
+
+/**
+ * Tests the dependencies between dataset tables that
+ * {@link SaveDDLMartConstructor#getDependencies(Map)} works out from the
+ * tables each action reads and writes. Does not need a database connection.
+ *
+ * @version $Revision$, $Date$, modified by $Author$
+ * @since 0.6
+ */
+public class TableDependenciesTest extends TestCase {
+
+	private final Map tableActions = new LinkedHashMap();
+
+	/**
+	 * Run the tests.
+	 *
+	 * @param args
+	 *            ignored.
+	 */
+	public static void main(final String[] args) {
+		TestRunner.run(TableDependenciesTest.suite());
+	}
+
+	/**
+	 * @return the tests.
+	 */
+	public static Test suite() {
+		return new TestSuite(TableDependenciesTest.class);
+	}
+
+	/**
+	 * @param name
+	 *            the test to run.
+	 */
+	public TableDependenciesTest(final String name) {
+		super(name);
+	}
+
+	/**
+	 * Dimensions that update the optimiser of the main table go one after
+	 * another, and a subclass that copies from that optimiser waits for all of
+	 * them, even though it is built before them.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testOptimiserWriters() throws Exception {
+		this.add("main", this.rename("main", "tmp0", "main"));
+		this.add("main", this.createOptimiser("main", "main__opt"));
+		this.add("sub", this.rename("sub", "tmp1", "sub"));
+		this.add("sub", this.createOptimiser("sub", "sub__opt"));
+		this.add("sub", this.copyOptimiser("sub", "main__opt", "sub__opt"));
+		this.add("dim1", this.rename("dim1", "tmp2", "dim1"));
+		this.add("dim1", this.updateOptimiser("dim1", "main__opt"));
+		this.add("dim2", this.rename("dim2", "tmp3", "dim2"));
+		this.add("dim2", this.updateOptimiser("dim2", "main__opt"));
+
+		final Map dependencies = SaveDDLMartConstructor
+				.getDependencies(this.tableActions);
+		assertEquals(Arrays.asList(new String[] { "main", "sub", "dim1",
+				"dim2" }), new ArrayList(dependencies.keySet()));
+		this.assertDependencies(new String[0], dependencies.get("main"));
+		this.assertDependencies(new String[] { "main", "dim1", "dim2" },
+				dependencies.get("sub"));
+		this.assertDependencies(new String[] { "main" }, dependencies
+				.get("dim1"));
+		this.assertDependencies(new String[] { "main", "dim1" }, dependencies
+				.get("dim2"));
+	}
+
+	/**
+	 * Tables that read what the other writes do not wait for each other, the
+	 * first in construction order running first.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testNoCycles() throws Exception {
+		this.add("a", this.rename("a", "x", "a"));
+		this.add("a", this.rename("a", "y", "z"));
+		this.add("b", this.rename("b", "a", "y"));
+
+		final Map dependencies = SaveDDLMartConstructor
+				.getDependencies(this.tableActions);
+		this.assertDependencies(new String[0], dependencies.get("a"));
+		this.assertDependencies(new String[] { "a" }, dependencies.get("b"));
+	}
+
+	private void add(final String table, final MartConstructorAction action) {
+		List actions = (List) this.tableActions.get(table);
+		if (actions == null)
+			this.tableActions.put(table, actions = new ArrayList());
+		actions.add(action);
+	}
+
+	private MartConstructorAction rename(final String table,
+			final String from, final String to) {
+		final Rename action = new Rename("schema", table);
+		action.setFrom(from);
+		action.setTo(to);
+		return action;
+	}
+
+	private MartConstructorAction createOptimiser(final String table,
+			final String optTable) {
+		final CreateOptimiser action = new CreateOptimiser("schema", table);
+		action.setOptTableName(optTable);
+		return action;
+	}
+
+	private MartConstructorAction copyOptimiser(final String table,
+			final String parentOptTable, final String optTable) {
+		final CopyOptimiser action = new CopyOptimiser("schema", table);
+		action.setParentOptTableName(parentOptTable);
+		action.setOptTableName(optTable);
+		return action;
+	}
+
+	private MartConstructorAction updateOptimiser(final String table,
+			final String optTable) {
+		final UpdateOptimiser action = new UpdateOptimiser("schema", table);
+		action.setSourceTableName(table);
+		action.setOptTableName(optTable);
+		return action;
+	}
+
+	private void assertDependencies(final String[] expected,
+			final Object actual) {
+		final Set expectedSet = new HashSet(Arrays.asList(expected));
+		assertEquals(expectedSet, actual);
+	}
+}
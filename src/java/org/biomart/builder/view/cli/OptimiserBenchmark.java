@@ -0,0 +1,293 @@
+/*
+ Copyright (C) 2006 EBI
+ 
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+ 
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+ 
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.builder.view.cli;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.biomart.builder.controller.dialects.DatabaseDialect;
+import org.biomart.builder.model.Mart;
+import org.biomart.builder.model.MartConstructorAction;
+import org.biomart.builder.model.Schema.JDBCSchema;
+import org.biomart.builder.model.MartConstructorAction.CreateOptimiser;
+import org.biomart.builder.model.MartConstructorAction.Index;
+import org.biomart.builder.model.MartConstructorAction.UpdateOptimiser;
+import org.biomart.common.resources.Resources;
+import org.biomart.common.resources.Settings;
+
+/**
+ * Compares the two ways a {@link DatabaseDialect} can fill optimiser columns:
+ * updating each row of the optimiser table with a subquery against the
+ * dimension, and grouping the dimension into an aggregate table first then
+ * updating from that with one join.
+ * <p>
+ * A main table and a dimension table are generated in the given schema. Each
+ * main table row has up to twice the given number of dimension rows, some of
+ * which have nothing but nulls in them, chosen at random from a fixed seed so
+ * that every run sees the same data. For each way, an optimiser table is
+ * built from the main table and given a count column and a null/1 boolean
+ * column for the dimension, using the statements the dialect generates for
+ * the actions MartBuilder would issue. The time each way takes is reported,
+ * and the two optimiser tables are checked to be the same. The generated
+ * tables are dropped at the end.
+ * <p>
+ * The syntax is:
+ * 
+ * <pre>
+ *             java org.biomart.builder.view.cli.OptimiserBenchmark &lt;driver&gt; &lt;url&gt; &lt;schema&gt; &lt;username&gt; &lt;password&gt; &lt;rows&gt; [&lt;dimrows&gt;]
+ * </pre>
+ * 
+ * where <tt>&lt;rows&gt;</tt> is the number of main table rows and
+ * <tt>&lt;dimrows&gt;</tt> the average number of dimension rows for each,
+ * 5 if not given.
+ * 
+ * @version $Revision$, $Date$, modified by $Author$
+ * @since 0.7
+ */
+public class OptimiserBenchmark {
+
+	private static final String MAIN_TABLE = "bench_main";
+
+	private static final String DIM_TABLE = "bench_dim";
+
+	private static final String[] OPT_TABLES = new String[] {
+			"bench_opt_subquery", "bench_opt_aggregate" };
+
+	private static final String AGG_TABLE = "bench_agg";
+
+	private static final String KEY_COL = "id";
+
+	private static final String VALUE_COL = "val";
+
+	private static final String COUNT_COL = "dim_count";
+
+	private static final String BOOL_COL = "dim_bool";
+
+	private final Connection conn;
+
+	private final DatabaseDialect dialect;
+
+	private final String schema;
+
+	private OptimiserBenchmark(final JDBCSchema dataLink, final String schema)
+			throws SQLException {
+		this.conn = dataLink.getConnection(null);
+		this.dialect = DatabaseDialect.getDialect(dataLink);
+		this.schema = schema;
+	}
+
+	/**
+	 * Run the benchmark.
+	 * 
+	 * @param args
+	 *            the command line arguments, see above.
+	 * @throws Exception
+	 *             if the benchmark could not be run.
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length != 6 && args.length != 7) {
+			System.err
+					.println("Usage: OptimiserBenchmark <driver> <url> <schema> <username> <password> <rows> [<dimrows>]");
+			System.exit(1);
+		}
+		final String schema = args[2];
+		final int rows = Integer.parseInt(args[5]);
+		final int dimRows = args.length == 7 ? Integer.parseInt(args[6]) : 5;
+
+		Settings.setApplication(Settings.MARTBUILDER);
+		Resources.setResourceLocation("org/biomart/builder/resources");
+
+		final JDBCSchema dataLink = new JDBCSchema(new Mart(), args[0],
+				args[1], schema, schema, args[3], args[4], schema, false, null,
+				null);
+		final OptimiserBenchmark benchmark = new OptimiserBenchmark(dataLink,
+				schema);
+		if (benchmark.dialect == null) {
+			System.err.println("No dialect understands " + args[1]);
+			System.exit(1);
+		}
+		try {
+			benchmark.generate(rows, dimRows);
+			final long[] times = new long[OptimiserBenchmark.OPT_TABLES.length];
+			for (int i = 0; i < times.length; i++)
+				times[i] = benchmark.optimise(
+						OptimiserBenchmark.OPT_TABLES[i], i > 0);
+			final int differences = benchmark.compare();
+			System.out.println("main table rows          : " + rows);
+			System.out.println("dimension rows per row   : " + dimRows);
+			System.out.println("subquery update (ms)     : " + times[0]);
+			System.out.println("aggregate update (ms)    : " + times[1]);
+			System.out.println("rows that differ         : " + differences);
+		} finally {
+			benchmark.drop();
+			benchmark.conn.close();
+		}
+	}
+
+	private void generate(final int rows, final int dimRows)
+			throws Exception {
+		this.drop();
+		this.execute("create table " + this.schema + "."
+				+ OptimiserBenchmark.MAIN_TABLE + " ("
+				+ OptimiserBenchmark.KEY_COL + " integer primary key)");
+		this.execute("create table " + this.schema + "."
+				+ OptimiserBenchmark.DIM_TABLE + " ("
+				+ OptimiserBenchmark.KEY_COL + " integer, "
+				+ OptimiserBenchmark.VALUE_COL + " varchar(20))");
+		final boolean autoCommit = this.conn.getAutoCommit();
+		this.conn.setAutoCommit(false);
+		try {
+			final PreparedStatement main = this.conn
+					.prepareStatement("insert into " + this.schema + "."
+							+ OptimiserBenchmark.MAIN_TABLE + " values (?)");
+			final PreparedStatement dim = this.conn
+					.prepareStatement("insert into " + this.schema + "."
+							+ OptimiserBenchmark.DIM_TABLE + " values (?,?)");
+			final Random random = new Random(1);
+			for (int i = 0; i < rows; i++) {
+				main.setInt(1, i);
+				main.addBatch();
+				for (int j = random.nextInt(dimRows * 2 + 1); j > 0; j--) {
+					dim.setInt(1, i);
+					if (random.nextInt(10) == 0)
+						dim.setString(2, null);
+					else
+						dim.setString(2, "value" + j);
+					dim.addBatch();
+				}
+				if (i % 1000 == 999) {
+					main.executeBatch();
+					dim.executeBatch();
+				}
+			}
+			main.executeBatch();
+			dim.executeBatch();
+			main.close();
+			dim.close();
+			this.conn.commit();
+		} finally {
+			this.conn.setAutoCommit(autoCommit);
+		}
+		// The constructor always indexes the keys of dimension tables.
+		final Index index = new Index(this.schema,
+				OptimiserBenchmark.DIM_TABLE);
+		index.setTable(OptimiserBenchmark.DIM_TABLE);
+		index.setColumns(Collections.singletonList(OptimiserBenchmark.KEY_COL));
+		this.execute(index);
+	}
+
+	private long optimise(final String optTable, final boolean aggregate)
+			throws Exception {
+		final List keyCols = Collections
+				.singletonList(OptimiserBenchmark.KEY_COL);
+		final long start = System.currentTimeMillis();
+
+		final CreateOptimiser create = new CreateOptimiser(this.schema,
+				OptimiserBenchmark.MAIN_TABLE);
+		create.setKeyColumns(keyCols);
+		create.setOptTableName(optTable);
+		this.execute(create);
+		final Index index = new Index(this.schema,
+				OptimiserBenchmark.MAIN_TABLE);
+		index.setTable(optTable);
+		index.setColumns(keyCols);
+		this.execute(index);
+
+		for (int i = 0; i < 2; i++) {
+			final boolean count = i == 0;
+			final UpdateOptimiser update = new UpdateOptimiser(this.schema,
+					OptimiserBenchmark.DIM_TABLE);
+			update.setKeyColumns(keyCols);
+			update.setNonNullColumns(Collections
+					.singletonList(OptimiserBenchmark.VALUE_COL));
+			update.setSourceTableName(OptimiserBenchmark.DIM_TABLE);
+			update.setOptTableName(optTable);
+			update.setOptColumnName(count ? OptimiserBenchmark.COUNT_COL
+					: OptimiserBenchmark.BOOL_COL);
+			update.setCountNotBool(count);
+			update.setNullNotZero(!count);
+			if (aggregate)
+				update.setAggregateTableName(OptimiserBenchmark.AGG_TABLE);
+			this.execute(update);
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private int compare() throws SQLException {
+		final List[] values = new List[OptimiserBenchmark.OPT_TABLES.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = new ArrayList();
+			final Statement stmt = this.conn.createStatement();
+			final ResultSet rs = stmt.executeQuery("select "
+					+ OptimiserBenchmark.COUNT_COL + ","
+					+ OptimiserBenchmark.BOOL_COL + " from " + this.schema
+					+ "." + OptimiserBenchmark.OPT_TABLES[i] + " order by "
+					+ OptimiserBenchmark.KEY_COL);
+			while (rs.next())
+				values[i].add(rs.getString(1) + "/" + rs.getString(2));
+			rs.close();
+			stmt.close();
+		}
+		int differences = Math.abs(values[0].size() - values[1].size());
+		for (int i = 0; i < Math.min(values[0].size(), values[1].size()); i++)
+			if (!values[0].get(i).equals(values[1].get(i)))
+				differences++;
+		return differences;
+	}
+
+	private void drop() {
+		final List tables = new ArrayList();
+		tables.add(OptimiserBenchmark.MAIN_TABLE);
+		tables.add(OptimiserBenchmark.DIM_TABLE);
+		tables.add(OptimiserBenchmark.AGG_TABLE);
+		for (int i = 0; i < OptimiserBenchmark.OPT_TABLES.length; i++)
+			tables.add(OptimiserBenchmark.OPT_TABLES[i]);
+		for (int i = 0; i < tables.size(); i++)
+			try {
+				this.execute("drop table " + this.schema + "."
+						+ tables.get(i));
+			} catch (final SQLException e) {
+				// Wasn't there.
+			}
+	}
+
+	private void execute(final MartConstructorAction action)
+			throws Exception {
+		final String[] statements = this.dialect
+				.getStatementsForAction(action);
+		for (int i = 0; i < statements.length; i++)
+			this.execute(statements[i]);
+	}
+
+	private void execute(final String sql) throws SQLException {
+		final Statement stmt = this.conn.createStatement();
+		try {
+			stmt.execute(sql);
+		} finally {
+			stmt.close();
+		}
+	}
+}
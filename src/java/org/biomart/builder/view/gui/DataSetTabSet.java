@@ -2137,4 +2137,24 @@ public class DataSetTabSet extends JTabbedPane {
 			}
 		}.start();
 	}
+
+	/**
+	 * Requests that the dataset fill its optimiser columns from grouped
+	 * copies of its dimensions.
+	 * 
+	 * @param dataset
+	 *            the dataset to do this to.
+	 * @param aggregateOptimiser
+	 *            whether to do it.
+	 */
+	public void requestAggregateOptimiser(final DataSet dataset,
+			final boolean aggregateOptimiser) {
+		new LongProcess() {
+			public void run() {
+				Transaction.start(false);
+				dataset.setAggregateOptimiser(aggregateOptimiser);
+				Transaction.end();
+			}
+		}.start();
+	}
 }
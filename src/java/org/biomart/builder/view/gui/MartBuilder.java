@@ -154,6 +154,8 @@ public class MartBuilder extends BioMartGUI {
 
 		private JMenuItem indexOptimiser;
 
+		private JMenuItem aggregateOptimiser;
+
 		private JMenuItem convertPartitionTable;
 
 		private JMenuItem datasetAcceptAll;
@@ -497,6 +499,12 @@ public class MartBuilder extends BioMartGUI {
 					"indexOptimiserMnemonic").charAt(0));
 			this.indexOptimiser.addActionListener(this);
 			this.optimiseDatasetSubmenu.add(this.indexOptimiser);
+			this.aggregateOptimiser = new JCheckBoxMenuItem(Resources
+					.get("aggregateOptimiserTitle"));
+			this.aggregateOptimiser.setMnemonic(Resources.get(
+					"aggregateOptimiserMnemonic").charAt(0));
+			this.aggregateOptimiser.addActionListener(this);
+			this.optimiseDatasetSubmenu.add(this.aggregateOptimiser);
 
 			// Construct the file menu.
 			final JMenu fileMenu = new JMenu(Resources.get("fileMenuTitle"));
@@ -878,6 +886,11 @@ public class MartBuilder extends BioMartGUI {
 							.setEnabled(ds != null);
 					MartBuilderMenuBar.this.indexOptimiser
 							.setSelected(ds != null && ds.isIndexOptimiser());
+					MartBuilderMenuBar.this.aggregateOptimiser
+							.setEnabled(ds != null);
+					MartBuilderMenuBar.this.aggregateOptimiser
+							.setSelected(ds != null
+									&& ds.isAggregateOptimiser());
 					int index = 0;
 					for (final Iterator i = DataSetOptimiserType.getTypes()
 							.values().iterator(); i.hasNext(); index++) {
@@ -1059,6 +1072,13 @@ public class MartBuilder extends BioMartGUI {
 				this.getMartBuilder().martTabSet.getSelectedMartTab()
 						.getDataSetTabSet().requestIndexOptimiser(ds,
 								this.indexOptimiser.isSelected());
+			} else if (e.getSource() == this.aggregateOptimiser) {
+				final DataSet ds = this.getMartBuilder().martTabSet
+						.getSelectedMartTab().getDataSetTabSet()
+						.getSelectedDataSet();
+				this.getMartBuilder().martTabSet.getSelectedMartTab()
+						.getDataSetTabSet().requestAggregateOptimiser(ds,
+								this.aggregateOptimiser.isSelected());
 			} else if (e.getSource() == this.datasetAcceptAll) {
 				final DataSet ds = this.getMartBuilder().martTabSet
 						.getSelectedMartTab().getDataSetTabSet()
@@ -18,6 +18,8 @@
 
 package org.biomart.runner.controller;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -26,6 +28,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -68,10 +71,18 @@ public class JobHandler {
 
 	private static final int SAVE_INTERVAL = 5; // Seconds.
 
+	private static final int JOURNAL_SYNC_INTERVAL = 1; // Seconds.
+
+	private static final int CHECKPOINT_INTERVAL = 60; // Seconds.
+
+	private static final int CHECKPOINT_ENTRIES = 100000;
+
+	private static final int MAX_CACHED_SECTIONS = 1000;
+
 	private static long nextJob = System.currentTimeMillis();
 
-	private static final File jobsDir = new File(
-			Settings.getStorageDirectory(), "jobs");
+	private static volatile File jobsDir = new File(Settings
+			.getStorageDirectory(), "jobs");
 
 	private static JobList jobList = null;
 
@@ -82,41 +93,91 @@ public class JobHandler {
 
 	private static final Timer t = new Timer();
 
+	// Status changes go to a journal per job and to the actions held here,
+	// and are only written to the section files at checkpoints. All guarded
+	// by planDirLock.
+	private static final Map journals = new HashMap();
+
+	private static final Map dirtySections = new HashMap();
+
+	private static final Map sectionCache = new LinkedHashMap(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(final Map.Entry eldest) {
+			// Changed sections stay until they have been written.
+			final List key = (List) eldest.getKey();
+			final Set dirty = (Set) JobHandler.dirtySections.get(key.get(0));
+			return this.size() > JobHandler.MAX_CACHED_SECTIONS
+					&& (dirty == null || !dirty.contains(key.get(1)));
+		}
+	};
+
 	static {
 		if (!JobHandler.jobsDir.exists())
 			JobHandler.jobsDir.mkdir();
 		t.schedule(new TimerTask() {
 			public void run() {
-				if (JobHandler.jobListIsDirty)
-					synchronized (JobHandler.planDirLock) {
-						Log.debug("Saving list");
-						// Save (overwrite) file with plan.
-						FileOutputStream fos = null;
-						try {
-							final File jobListFile = JobHandler
-									.getJobListFile();
-							fos = new FileOutputStream(jobListFile);
-							final ObjectOutputStream oos = new ObjectOutputStream(
-									fos);
-							oos.writeObject(JobHandler.jobList);
-							oos.flush();
-							fos.flush();
-						} catch (final IOException e) {
-							// What else to do with it?
-							Log.error(e);
-						} finally {
-							if (fos != null)
-								try {
-									fos.close();
-								} catch (final IOException e) {
-									// What else to do with it?
-									Log.error(e);
-								}
-						}
+				synchronized (JobHandler.planDirLock) {
+					if (!JobHandler.jobListIsDirty)
+						return;
+					try {
+						JobHandler.writeJobList(false);
+						JobHandler.jobListIsDirty = false;
+					} catch (final IOException e) {
+						// Try again next time.
+						Log.error(e);
 					}
-				JobHandler.jobListIsDirty = false;
+				}
 			}
 		}, 0, JobHandler.SAVE_INTERVAL * 1000);
+		t.schedule(new TimerTask() {
+			public void run() {
+				// One disk sync for all the changes since the last one.
+				final Collection journals;
+				synchronized (JobHandler.planDirLock) {
+					journals = new ArrayList(JobHandler.journals.values());
+				}
+				for (final Iterator i = journals.iterator(); i.hasNext();)
+					try {
+						((StatusJournal) i.next()).sync();
+					} catch (final IOException e) {
+						// What else to do with it?
+						Log.error(e);
+					}
+			}
+		}, 0, JobHandler.JOURNAL_SYNC_INTERVAL * 1000);
+		t.schedule(new TimerTask() {
+			public void run() {
+				try {
+					JobHandler.checkpoint();
+				} catch (final JobException e) {
+					// What else to do with it?
+					Log.error(e);
+				}
+			}
+		}, JobHandler.CHECKPOINT_INTERVAL * 1000,
+				JobHandler.CHECKPOINT_INTERVAL * 1000);
+	}
+
+	private static void writeJobList(final boolean sync) throws IOException {
+		synchronized (JobHandler.planDirLock) {
+			if (JobHandler.jobList == null)
+				return;
+			Log.debug("Saving list");
+			// Save (overwrite) file with plan.
+			final FileOutputStream fos = new FileOutputStream(JobHandler
+					.getJobListFile());
+			try {
+				final ObjectOutputStream oos = new ObjectOutputStream(fos);
+				oos.writeObject(JobHandler.jobList);
+				oos.flush();
+				if (sync)
+					fos.getFD().sync();
+			} finally {
+				fos.close();
+			}
+		}
 	}
 
 	/**
@@ -145,6 +206,9 @@ public class JobHandler {
 		final Set stoppedJobs = new HashSet();
 		// Update job summaries.
 		final JobList jobList = JobHandler.getJobList();
+		// Bring the sections up to date with the journals first.
+		for (final Iterator i = jobList.getAllJobs().iterator(); i.hasNext();)
+			JobHandler.replayJournal(((JobPlan) i.next()).getJobId());
 		for (final Iterator i = jobList.getAllJobs().iterator(); i.hasNext();) {
 			final JobPlan plan = (JobPlan) i.next();
 			final List sections = new ArrayList();
@@ -166,6 +230,7 @@ public class JobHandler {
 				}
 			}
 		}
+		JobHandler.checkpoint();
 		// Send an email when find stopped jobs.
 		for (final Iterator i = stoppedJobs.iterator(); i.hasNext();) {
 			final JobPlan plan = (JobPlan) i.next();
@@ -251,7 +316,11 @@ public class JobHandler {
 	public static void setStatus(final String jobId,
 			final Collection identifiers, final JobStatus status,
 			final String message) throws JobException {
-		JobHandler.setStatus(jobId, identifiers, status, message, true);
+		// Job threads and clients update statuses concurrently, so read,
+		// modify and write the actions files in one go.
+		synchronized (JobHandler.planDirLock) {
+			JobHandler.setStatus(jobId, identifiers, status, message, true);
+		}
 	}
 
 	/**
@@ -280,7 +349,6 @@ public class JobHandler {
 			final String message, final boolean saveList) throws JobException {
 		Map actions = null;
 		String previousSectionId = null;
-		boolean sectionHasUpdatedActions = false;
 		for (final Iterator i = identifiers.iterator(); i.hasNext();) {
 			final String identifier = (String) i.next();
 			String sectionId = null;
@@ -296,16 +364,10 @@ public class JobHandler {
 				sectionId = parts[0];
 				actionId = parts[1];
 			}
-			if (!sectionId.equals(previousSectionId)) {
-				if (previousSectionId != null && sectionHasUpdatedActions)
-					JobHandler.setActions(jobId, previousSectionId, actions,
-							false);
-				sectionHasUpdatedActions = false;
+			if (!sectionId.equals(previousSectionId))
 				actions = JobHandler.getActions(jobId, sectionId);
-			}
 			previousSectionId = sectionId;
 			if (actionId != null) {
-				sectionHasUpdatedActions = true;
 				final JobPlanAction action = (JobPlanAction) actions
 						.get(identifier);
 				// Set the status.
@@ -322,6 +384,8 @@ public class JobHandler {
 					action.setStarted(null, actions.values());
 					action.setEnded(null, actions.values());
 				}
+				// Journal the change instead of rewriting the section.
+				JobHandler.journal(jobId, action);
 			} else {
 				// Find all subsections and recurse on them.
 				final Collection newIdentifiers = new ArrayList();
@@ -340,8 +404,6 @@ public class JobHandler {
 						false);
 			}
 		}
-		if (previousSectionId != null && sectionHasUpdatedActions)
-			JobHandler.setActions(jobId, previousSectionId, actions, false);
 		// Now save the list if required.
 		if (saveList)
 			try {
@@ -428,11 +490,23 @@ public class JobHandler {
 	 */
 	public static void updateAction(final String jobId, final String sectionId,
 			final String actionId, final String action) throws JobException {
-		final Map actions = JobHandler.getActions(jobId, sectionId);
-		final JobPlanAction jpAction = (JobPlanAction) actions.get(actionId);
-		jpAction.setAction(action);
-		jpAction.setStatus(JobStatus.NOT_QUEUED, actions.values());
-		JobHandler.setActions(jobId, sectionId, actions, true);
+		// Clients are served concurrently, so read, modify and write the
+		// actions file in one go.
+		synchronized (JobHandler.planDirLock) {
+			final Map actions = JobHandler.getActions(jobId, sectionId);
+			final JobPlanAction jpAction = (JobPlanAction) actions
+					.get(actionId);
+			jpAction.setAction(action);
+			jpAction.setStatus(JobStatus.NOT_QUEUED, actions.values());
+			// Write the section, and any journalled changes to it, now.
+			JobHandler.markDirty(jobId, sectionId);
+			JobHandler.checkpoint(jobId);
+			try {
+				JobHandler.saveJobList();
+			} catch (final IOException e) {
+				throw new JobException(e);
+			}
+		}
 	}
 
 	/**
@@ -450,29 +524,64 @@ public class JobHandler {
 	public static void setActions(final String jobId,
 			final String[] sectionPath, final Collection actions)
 			throws JobException {
-		final JobPlan jobPlan = JobHandler.getJobPlan(jobId);
-		// Add the action to the job.
-		jobPlan.setActionCount(sectionPath, actions.size());
-		// Get the section ID.
-		JobPlanSection section = jobPlan.getRoot();
-		for (int i = 0; i < sectionPath.length; i++)
-			section = section.getSubSection(sectionPath[i]);
-		// Convert each action into an action object and create
-		// a map.
-		final Map actionMap = new LinkedHashMap();
-		for (final Iterator i = actions.iterator(); i.hasNext();) {
-			final JobPlanAction action = new JobPlanAction(jobId, (String) i
-					.next(), section.getIdentifier());
-			actionMap.put(action.getIdentifier(), action);
-		}
-		// Do the work.
-		JobHandler.setActions(jobId, section.getIdentifier(), actionMap, false);
-		// Update the status to QUEUED (for external requests only).
-		JobHandler.setStatus(jobId, actionMap.keySet(), JobStatus.QUEUED, null);
-	}
-
-	private static void setActions(final String jobId, final String sectionId,
-			final Map actionMap, final boolean saveList) throws JobException {
+		// Clients are served concurrently, so keep other updates out of
+		// the plan while this section is replaced.
+		synchronized (JobHandler.planDirLock) {
+			final JobPlan jobPlan = JobHandler.getJobPlan(jobId);
+			// Add the action to the job.
+			jobPlan.setActionCount(sectionPath, actions.size());
+			// Get the section ID.
+			JobPlanSection section = jobPlan.getRoot();
+			for (int i = 0; i < sectionPath.length; i++)
+				section = section.getSubSection(sectionPath[i]);
+			// Convert each action into an action object and create
+			// a map.
+			final Map actionMap = new LinkedHashMap();
+			for (final Iterator i = actions.iterator(); i.hasNext();) {
+				final JobPlanAction action = new JobPlanAction(jobId,
+						(String) i.next(), section.getIdentifier());
+				actionMap.put(action.getIdentifier(), action);
+			}
+			// Do the work.
+			JobHandler.sectionCache.put(Arrays.asList(new String[] { jobId,
+					section.getIdentifier() }), actionMap);
+			JobHandler.markDirty(jobId, section.getIdentifier());
+			// Update the status to QUEUED (for external requests only).
+			JobHandler.setStatus(jobId, actionMap.keySet(), JobStatus.QUEUED,
+					null);
+			// Write the new section now.
+			JobHandler.checkpoint(jobId);
+		}
+	}
+
+	/**
+	 * Say which sibling sections have to complete before a section can start.
+	 * 
+	 * @param jobId
+	 *            the job ID.
+	 * @param sectionPath
+	 *            the section this applies to.
+	 * @param dependencies
+	 *            the labels of the sibling sections it depends on.
+	 * @throws JobException
+	 *             if anything went wrong.
+	 */
+	public static void setDependencies(final String jobId,
+			final String[] sectionPath, final Collection dependencies)
+			throws JobException {
+		synchronized (JobHandler.planDirLock) {
+			JobHandler.getJobPlan(jobId).setDependencies(sectionPath,
+					dependencies);
+			try {
+				JobHandler.saveJobList();
+			} catch (final IOException e) {
+				throw new JobException(e);
+			}
+		}
+	}
+
+	private static void writeActions(final String jobId,
+			final String sectionId, final Map actionMap) throws JobException {
 		Log.debug("Saving actions for job " + jobId + " section " + sectionId);
 		FileOutputStream fos = null;
 		try {
@@ -483,9 +592,8 @@ public class JobHandler {
 			oos.writeObject(actionMap);
 			oos.flush();
 			fos.flush();
-			// Save the list.
-			if (saveList)
-				JobHandler.saveJobList();
+			// The journal is truncated once this returns.
+			fos.getFD().sync();
 		} catch (final IOException e) {
 			throw new JobException(e);
 		} finally {
@@ -500,7 +608,9 @@ public class JobHandler {
 
 	/**
 	 * Get the actions for the specified job section. Keys are identifiers,
-	 * values are actions.
+	 * values are actions. The actions returned are the ones held in memory,
+	 * which status changes are made to, and reflect the latest changes
+	 * whether or not they have been written to disk yet.
 	 * 
 	 * @param jobId
 	 *            the job ID.
@@ -512,6 +622,42 @@ public class JobHandler {
 	 */
 	public static Map getActions(final String jobId, final String sectionId)
 			throws JobException {
+		synchronized (JobHandler.planDirLock) {
+			final List key = Arrays.asList(new String[] { jobId, sectionId });
+			Map actions = (Map) JobHandler.sectionCache.get(key);
+			if (actions == null) {
+				actions = JobHandler.readActions(jobId, sectionId);
+				if (!actions.isEmpty())
+					JobHandler.sectionCache.put(key, actions);
+			}
+			return actions;
+		}
+	}
+
+	/**
+	 * Get a copy of the actions for the specified job section, as they are
+	 * now, which can be sent to a client without holding up others.
+	 * 
+	 * @param jobId
+	 *            the job ID.
+	 * @param sectionId
+	 *            the section ID.
+	 * @return a copy of the actions.
+	 * @throws JobException
+	 *             if they could not be read.
+	 */
+	public static Collection getActionsSnapshot(final String jobId,
+			final String sectionId) throws JobException {
+		final byte[] bytes;
+		synchronized (JobHandler.planDirLock) {
+			bytes = JobHandler.serialise(new ArrayList(JobHandler.getActions(
+					jobId, sectionId).values()));
+		}
+		return (Collection) JobHandler.deserialise(bytes);
+	}
+
+	private static Map readActions(final String jobId, final String sectionId)
+			throws JobException {
 		Log.debug("Loading actions for job " + jobId + " section " + sectionId);
 		// Load actions from file.
 		synchronized (JobHandler.planDirLock) {
@@ -546,6 +692,146 @@ public class JobHandler {
 		}
 	}
 
+	private static void markDirty(final String jobId, final String sectionId) {
+		synchronized (JobHandler.planDirLock) {
+			Set dirty = (Set) JobHandler.dirtySections.get(jobId);
+			if (dirty == null)
+				JobHandler.dirtySections.put(jobId, dirty = new HashSet());
+			dirty.add(sectionId);
+		}
+	}
+
+	private static void markDirty(final String jobId, final Set sectionIds) {
+		synchronized (JobHandler.planDirLock) {
+			for (final Iterator i = sectionIds.iterator(); i.hasNext();)
+				JobHandler.markDirty(jobId, (String) i.next());
+		}
+	}
+
+	private static File getJournalFile(final String jobId) {
+		return new File(new File(JobHandler.jobsDir, jobId), "journal");
+	}
+
+	private static void journal(final String jobId, final JobPlanAction action)
+			throws JobException {
+		synchronized (JobHandler.planDirLock) {
+			JobHandler.markDirty(jobId, action.getParentIdentifier());
+			try {
+				StatusJournal journal = (StatusJournal) JobHandler.journals
+						.get(jobId);
+				if (journal == null) {
+					final File journalFile = JobHandler.getJournalFile(jobId);
+					journalFile.getParentFile().mkdirs();
+					journal = new StatusJournal(journalFile);
+					JobHandler.journals.put(jobId, journal);
+				}
+				journal.append(action);
+				// Keep the journal short enough to replay quickly.
+				if (journal.getEntryCount() >= JobHandler.CHECKPOINT_ENTRIES)
+					JobHandler.checkpoint(jobId);
+			} catch (final IOException e) {
+				throw new JobException(e);
+			}
+		}
+	}
+
+	/**
+	 * Write every section with journalled changes to disk, then empty the
+	 * journals.
+	 * 
+	 * @throws JobException
+	 *             if anything could not be written.
+	 */
+	public static void checkpoint() throws JobException {
+		synchronized (JobHandler.planDirLock) {
+			final Collection jobIds = new HashSet(JobHandler.dirtySections
+					.keySet());
+			jobIds.addAll(JobHandler.journals.keySet());
+			for (final Iterator i = jobIds.iterator(); i.hasNext();)
+				JobHandler.checkpoint((String) i.next());
+		}
+	}
+
+	private static void checkpoint(final String jobId) throws JobException {
+		synchronized (JobHandler.planDirLock) {
+			final Set dirty = (Set) JobHandler.dirtySections.remove(jobId);
+			if (dirty != null) {
+				Log.debug("Checkpointing " + dirty.size()
+						+ " sections for job " + jobId);
+				try {
+					for (final Iterator i = dirty.iterator(); i.hasNext();) {
+						final String sectionId = (String) i.next();
+						final Map actions = (Map) JobHandler.sectionCache
+								.get(Arrays.asList(new String[] { jobId,
+										sectionId }));
+						if (actions != null)
+							JobHandler.writeActions(jobId, sectionId, actions);
+					}
+					// Section statuses live in the list, so it must be on
+					// disk before the journal that could rebuild them goes.
+					JobHandler.writeJobList(true);
+				} catch (final IOException e) {
+					JobHandler.markDirty(jobId, dirty);
+					throw new JobException(e);
+				} catch (final JobException e) {
+					// Keep the journal, and try again next checkpoint.
+					JobHandler.markDirty(jobId, dirty);
+					throw e;
+				}
+			}
+			final StatusJournal journal = (StatusJournal) JobHandler.journals
+					.get(jobId);
+			if (journal != null)
+				try {
+					journal.truncate();
+				} catch (final IOException e) {
+					throw new JobException(e);
+				}
+		}
+	}
+
+	private static void replayJournal(final String jobId) throws JobException {
+		synchronized (JobHandler.planDirLock) {
+			final List entries;
+			try {
+				entries = StatusJournal.read(JobHandler.getJournalFile(jobId));
+			} catch (final IOException e) {
+				throw new JobException(e);
+			}
+			if (entries.isEmpty())
+				return;
+			Log.info("Replaying " + entries.size()
+					+ " journalled status changes for job " + jobId);
+			for (final Iterator i = entries.iterator(); i.hasNext();) {
+				final StatusJournal.Entry entry = (StatusJournal.Entry) i
+						.next();
+				final String sectionId = entry.identifier.split("#")[0];
+				final Map actions = JobHandler.getActions(jobId, sectionId);
+				final JobPlanAction action = (JobPlanAction) actions
+						.get(entry.identifier);
+				if (action == null)
+					continue;
+				action.setStatus(entry.status, actions.values());
+				action.setMessage(entry.message);
+				if (entry.started == null ? action.getStarted() != null
+						: !entry.started.equals(action.getStarted()))
+					action.setStarted(entry.started, actions.values());
+				if (entry.ended == null ? action.getEnded() != null
+						: !entry.ended.equals(action.getEnded()))
+					action.setEnded(entry.ended, actions.values());
+				JobHandler.markDirty(jobId, sectionId);
+			}
+			// Opens the journal so that the checkpoint empties it.
+			try {
+				JobHandler.journals.put(jobId, new StatusJournal(JobHandler
+						.getJournalFile(jobId)));
+			} catch (final IOException e) {
+				throw new JobException(e);
+			}
+			JobHandler.checkpoint(jobId);
+		}
+	}
+
 	private static File getActionsFile(final String jobId,
 			final String sectionId) throws IOException {
 		synchronized (JobHandler.planDirLock) {
@@ -619,6 +905,46 @@ public class JobHandler {
 		}
 	}
 
+	/**
+	 * Obtain a copy of the list of jobs, taken while nothing else can change
+	 * it, which can then be sent to a client without holding up others.
+	 * 
+	 * @return a copy of the list of jobs.
+	 * @throws JobException
+	 *             if anything went wrong.
+	 */
+	public static JobList getJobListSnapshot() throws JobException {
+		final byte[] bytes;
+		synchronized (JobHandler.planDirLock) {
+			bytes = JobHandler.serialise(JobHandler.getJobList());
+		}
+		return (JobList) JobHandler.deserialise(bytes);
+	}
+
+	private static byte[] serialise(final Object object) throws JobException {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final ObjectOutputStream oos = new ObjectOutputStream(bytes);
+			oos.writeObject(object);
+			oos.flush();
+			return bytes.toByteArray();
+		} catch (final IOException e) {
+			throw new JobException(e);
+		}
+	}
+
+	private static Object deserialise(final byte[] bytes) throws JobException {
+		try {
+			final ObjectInputStream ois = new ObjectInputStream(
+					new ByteArrayInputStream(bytes));
+			return ois.readObject();
+		} catch (final IOException e) {
+			throw new JobException(e);
+		} catch (final ClassNotFoundException e) {
+			throw new JobException(e);
+		}
+	}
+
 	/**
 	 * Makes MartRunner forget about a job.
 	 * 
@@ -635,8 +961,20 @@ public class JobHandler {
 			final JobList jobList = JobHandler.getJobList();
 			jobList.removeJob(jobId);
 			JobHandler.saveJobList();
-			// Recursively delete the job directory.
-			FileUtils.delete(new File(JobHandler.jobsDir, jobId));
+			synchronized (JobHandler.planDirLock) {
+				// Forget its journal and actions.
+				final StatusJournal journal = (StatusJournal) JobHandler.journals
+						.remove(jobId);
+				if (journal != null)
+					journal.close();
+				JobHandler.dirtySections.remove(jobId);
+				for (final Iterator i = JobHandler.sectionCache.keySet()
+						.iterator(); i.hasNext();)
+					if (((List) i.next()).get(0).equals(jobId))
+						i.remove();
+				// Recursively delete the job directory.
+				FileUtils.delete(new File(JobHandler.jobsDir, jobId));
+			}
 		} catch (final IOException e) {
 			throw new JobException(e);
 		}
@@ -735,6 +1073,12 @@ public class JobHandler {
 				new JobThreadManagerListener() {
 					public void jobStopped(final String jobId) {
 						JobHandler.jobManagers.remove(jobId);
+						try {
+							JobHandler.checkpoint(jobId);
+						} catch (final JobException e) {
+							// What else to do with it?
+							Log.error(e);
+						}
 						Log.info("Thread manager stopped for " + jobId);
 					}
 				});
@@ -761,6 +1105,38 @@ public class JobHandler {
 		Log.info("Stopped thread manager " + jobId);
 	}
 
+	/**
+	 * Keep jobs in the given directory instead of the one in the MartRunner
+	 * storage directory, so that a server used for testing can run alongside
+	 * a real one without touching its jobs. Should be called before any job
+	 * is used, as changes to jobs in the old directory that have not been
+	 * checkpointed are left in their journals.
+	 * 
+	 * @param dir
+	 *            the directory to keep jobs in.
+	 */
+	public static void setJobsDirectory(final File dir) {
+		synchronized (JobHandler.planDirLock) {
+			if (!dir.exists())
+				dir.mkdirs();
+			// Forget the jobs in the old directory without checkpointing
+			// them, as a restart would, so their journals are replayed.
+			for (final Iterator i = JobHandler.journals.values().iterator(); i
+					.hasNext();)
+				try {
+					((StatusJournal) i.next()).close();
+				} catch (final IOException e) {
+					Log.error(e);
+				}
+			JobHandler.journals.clear();
+			JobHandler.dirtySections.clear();
+			JobHandler.sectionCache.clear();
+			JobHandler.jobsDir = dir;
+			JobHandler.jobList = null;
+			JobHandler.jobListIsDirty = false;
+		}
+	}
+
 	private static File getJobListFile() throws IOException {
 		return new File(JobHandler.jobsDir, "list");
 	}
@@ -56,8 +56,6 @@ import org.biomart.runner.model.JobPlan.JobPlanSection;
  */
 public class JobThreadManager extends Thread {
 
-	private static final String SYNC_KEY = "__SYNC__KEY__";
-
 	private final String jobId;
 
 	private final JobThreadManagerListener listener;
@@ -67,6 +65,8 @@ public class JobThreadManager extends Thread {
 
 	private boolean jobStopped = false;
 
+	private SectionScheduler scheduler;
+
 	/**
 	 * Create a new manager for the given job ID.
 	 * 
@@ -106,6 +106,7 @@ public class JobThreadManager extends Thread {
 			final JobPlan plan = JobHandler.getJobPlan(this.jobId);
 			final String contactEmail = plan.getContactEmailAddress();
 			plan.callbackStart();
+			this.scheduler = new SectionScheduler(plan);
 
 			// Send emails.
 			if (contactEmail != null && !"".equals(contactEmail.trim()))
@@ -189,7 +190,8 @@ public class JobThreadManager extends Thread {
 			}
 	}
 
-	private static class JobThread extends Thread {
+	private static class JobThread extends Thread implements
+			SectionScheduler.Worker {
 
 		private final JobThreadManager manager;
 
@@ -232,24 +234,30 @@ public class JobThreadManager extends Thread {
 				// Each thread grabs sections from the queue until none are
 				// left.
 				while (this.continueRunning()
-						&& (this.currentSection = this.getNextSection()) != null) {
-					// Process section.
-					final Map actions = JobHandler.getActions(this.plan
-							.getJobId(), this.currentSection.getIdentifier());
-					for (final Iterator i = actions.values().iterator(); i
-							.hasNext()
-							&& this.continueRunning();) {
-						final JobPlanAction action = (JobPlanAction) i.next();
-						// Only process queued/stopped actions.
-						if (!(action.getStatus().equals(JobStatus.QUEUED) || action
-								.getStatus().equals(JobStatus.STOPPED)))
-							continue;
-						// Process the action.
-						else if (!this.processAction(action))
-							break;
+						&& (this.currentSection = this.manager.scheduler
+								.next(this)) != null)
+					try {
+						// Process section.
+						final Map actions = JobHandler.getActions(this.plan
+								.getJobId(), this.currentSection
+								.getIdentifier());
+						for (final Iterator i = actions.values().iterator(); i
+								.hasNext()
+								&& this.continueRunning();) {
+							final JobPlanAction action = (JobPlanAction) i
+									.next();
+							// Only process queued/stopped actions.
+							if (!(action.getStatus().equals(JobStatus.QUEUED) || action
+									.getStatus().equals(JobStatus.STOPPED)))
+								continue;
+							// Process the action.
+							else if (!this.processAction(action))
+								break;
+						}
+					} finally {
+						this.manager.scheduler.finished(this.currentSection);
+						this.currentSection = null;
 					}
-					this.currentSection = null;
-				}
 			} catch (final Throwable t) {
 				// Break out early and complain.
 				Log.error(t);
@@ -260,12 +268,7 @@ public class JobThreadManager extends Thread {
 			}
 		}
 
-		private String getCurrentSectionIdentifier() {
-			return this.currentSection == null ? null : this.currentSection
-					.getIdentifier();
-		}
-
-		private boolean continueRunning() {
+		public boolean continueRunning() {
 			return !this.manager.jobStopped && !this.cancelled;
 		}
 
@@ -417,65 +420,6 @@ public class JobThreadManager extends Thread {
 					// We really don't care.
 				}
 		}
-
-		private synchronized JobPlanSection getNextSection() {
-			synchronized (JobThreadManager.SYNC_KEY) {
-				final List sections = new ArrayList();
-				sections.add(this.plan.getRoot());
-				for (int i = 0; i < sections.size(); i++) {
-					final JobPlanSection section = (JobPlanSection) sections
-							.get(i);
-					// Check actions. If none failed and none running,
-					// and at least one queued or stopped, then select it.
-					boolean hasUsableActions = false;
-					boolean hasUnusableSiblings = false;
-					// Only do check if has actions at all and is not
-					// running or failed.
-					if (section.getActionCount() > 0
-							&& (section.getStatus().equals(JobStatus.STOPPED) || section
-									.getStatus().equals(JobStatus.QUEUED))) {
-						hasUsableActions = true;
-						// Check that no sibling sections have actions that are
-						// running.
-						final JobPlanSection parent = section.getParent();
-						final List siblings = new ArrayList();
-						if (parent != null)
-							if (parent.getStatus().equals(JobStatus.RUNNING))
-								hasUnusableSiblings = true;
-							else
-								siblings.addAll(parent.getSubSections());
-						// If any sibling claimed by another section, then this
-						// section is not usable.
-						for (final Iterator k = siblings.iterator(); !hasUnusableSiblings
-								&& k.hasNext();) {
-							final JobPlanSection sibling = (JobPlanSection) k
-									.next();
-							if (sibling.getStatus().equals(JobStatus.RUNNING))
-								hasUnusableSiblings = true;
-							else
-								for (final Iterator j = this.manager.jobThreadPool
-										.iterator(); !hasUnusableSiblings
-										&& j.hasNext();) {
-									final String threadId = ((JobThread) j
-											.next())
-											.getCurrentSectionIdentifier();
-									hasUnusableSiblings = threadId != null
-											&& threadId.equals(sibling
-													.getIdentifier());
-								}
-						}
-					}
-					// If all three checks satisfied, we can use this section.
-					if (hasUsableActions && !hasUnusableSiblings)
-						return section;
-					// Otherwise, add subsections to list and keep looking.
-					else
-						sections.addAll(section.getSubSections());
-				}
-				// Return null if there are no more sections to process.
-				return null;
-			}
-		}
 	}
 
 	/**
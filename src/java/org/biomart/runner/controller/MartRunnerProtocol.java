@@ -26,6 +26,7 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -66,6 +67,8 @@ public class MartRunnerProtocol {
 
 	private static final String GET_ACTIONS = "GET_ACTIONS";
 
+	private static final String SET_DEPENDENCIES = "SET_DEPENDENCIES";
+
 	private static final String EMAIL_ADDRESS = "EMAIL_ADDRESS";
 
 	private static final String SKIP_DROP_TABLE = "SKIP_DROP_TABLE";
@@ -91,6 +94,30 @@ public class MartRunnerProtocol {
 
 	private static final String NEXT = "___NEXT___";
 
+	private static long maxUploadSize = 64 * 1024 * 1024; // 64M characters.
+
+	/**
+	 * Set the largest number of characters of actions that will be accepted
+	 * in one upload. Larger uploads are refused part way through, so that
+	 * one client cannot fill the server's memory.
+	 * 
+	 * @param maxUploadSize
+	 *            the limit, in characters.
+	 */
+	public static void setMaxUploadSize(final long maxUploadSize) {
+		MartRunnerProtocol.maxUploadSize = maxUploadSize;
+	}
+
+	/**
+	 * Get the largest number of characters of actions that will be accepted
+	 * in one upload.
+	 * 
+	 * @return the limit, in characters.
+	 */
+	public static long getMaxUploadSize() {
+		return MartRunnerProtocol.maxUploadSize;
+	}
+
 	/**
 	 * Handles a client communication attempt. Receives an open socket and
 	 * should return it still open.
@@ -124,6 +151,8 @@ public class MartRunnerProtocol {
 				}
 			} catch (final EOFException eof) {
 				// So what?
+			} catch (final SocketTimeoutException e) {
+				Log.info("Client idle for too long, disconnecting");
 			}
 		} catch (final InvocationTargetException e) {
 			final Throwable cause = e.getCause();
@@ -224,13 +253,22 @@ public class MartRunnerProtocol {
 	public static void handle_SET_ACTIONS(final ObjectInputStream in,
 			final ObjectOutputStream out) throws Exception {
 		final String jobId = (String) in.readObject();
-		final String[] sectionPath = ((String) in.readObject()).split(",");
+		final String path = (String) in.readObject();
+		final String[] sectionPath = path.split(",");
 		final StringBuffer actions = new StringBuffer();
 		final Collection finalActions = new ArrayList();
+		final long limit = MartRunnerProtocol.maxUploadSize;
+		long size = 0;
 		String line;
 		while (!(line = (String) in.readObject())
 				.equals(MartRunnerProtocol.END_MESSAGE))
-			if (line.equals(MartRunnerProtocol.NEXT)) {
+			if ((size += line.length()) > limit)
+				// Stop reading. The connection is dropped, so the client
+				// cannot send any more.
+				throw new ProtocolException(Resources.get(
+						"protocolUploadTooLarge", new String[] { path,
+								"" + limit }));
+			else if (line.equals(MartRunnerProtocol.NEXT)) {
 				final String action = actions.toString();
 				finalActions.add(action);
 				Log.debug("Receiving action: " + action);
@@ -240,6 +278,28 @@ public class MartRunnerProtocol {
 		JobHandler.setActions(jobId, sectionPath, finalActions);
 	}
 
+	/**
+	 * Does something useful.
+	 * 
+	 * @param in
+	 *            the input stream from the client.
+	 * @param out
+	 *            the output stream back to the client.
+	 * @throws Exception
+	 *             if the protocol fails.
+	 */
+	public static void handle_SET_DEPENDENCIES(final ObjectInputStream in,
+			final ObjectOutputStream out) throws Exception {
+		final String jobId = (String) in.readObject();
+		final String[] sectionPath = ((String) in.readObject()).split(",");
+		final Collection dependencies = new ArrayList();
+		String line;
+		while (!(line = (String) in.readObject())
+				.equals(MartRunnerProtocol.END_MESSAGE))
+			dependencies.add(line);
+		JobHandler.setDependencies(jobId, sectionPath, dependencies);
+	}
+
 	/**
 	 * Does something useful.
 	 * 
@@ -293,7 +353,7 @@ public class MartRunnerProtocol {
 	 */
 	public static void handle_LIST_JOBS(final ObjectInputStream in,
 			final ObjectOutputStream out) throws Exception {
-		out.writeObject(JobHandler.getJobList());
+		out.writeObject(JobHandler.getJobListSnapshot());
 		out.flush();
 	}
 
@@ -346,8 +406,7 @@ public class MartRunnerProtocol {
 			final ObjectOutputStream out) throws Exception {
 		final String jobId = (String) in.readObject();
 		final String sectionId = (String) in.readObject();
-		out.writeObject(new ArrayList(JobHandler.getActions(jobId, sectionId)
-				.values()));
+		out.writeObject(JobHandler.getActionsSnapshot(jobId, sectionId));
 		out.flush();
 	}
 
@@ -722,6 +781,43 @@ public class MartRunnerProtocol {
 			}
 		}
 
+		/**
+		 * Say which other tables of the same dataset have to be built before
+		 * a table can be.
+		 * 
+		 * @param clientSocket
+		 *            the socket to the host.
+		 * @param jobId
+		 *            the job ID.
+		 * @param partition
+		 *            the partition.
+		 * @param dataset
+		 *            the dataset.
+		 * @param table
+		 *            the table.
+		 * @param dependencies
+		 *            the tables it depends on.
+		 * @throws ProtocolException
+		 *             if something went wrong.
+		 */
+		public static void setDependencies(final Socket clientSocket,
+				final String jobId, final String partition,
+				final String dataset, final String table,
+				final String[] dependencies) throws ProtocolException {
+			try {
+				final ObjectOutputStream oos = (ObjectOutputStream) clientSocket
+						.getOutputStream();
+				oos.writeObject(MartRunnerProtocol.SET_DEPENDENCIES);
+				oos.writeObject(jobId);
+				oos.writeObject(partition + "," + dataset + "," + table);
+				for (int i = 0; i < dependencies.length; i++)
+					oos.writeObject(dependencies[i]);
+				oos.writeObject(MartRunnerProtocol.END_MESSAGE);
+			} catch (final Throwable e) {
+				throw new ProtocolException(Resources.get("protocolIOProbs"), e);
+			}
+		}
+
 		/**
 		 * Retrieve job plan nodes for a given section.
 		 * 
@@ -0,0 +1,321 @@
+/*
+ Copyright (C) 2006 EBI
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.runner.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.biomart.common.resources.Log;
+import org.biomart.runner.model.JobPlan;
+import org.biomart.runner.model.JobStatus;
+import org.biomart.runner.model.JobPlan.JobPlanSection;
+
+/**
+ * Hands out the sections of a plan to job threads. Sections with actions
+ * form a graph. Where the builder has said which sibling sections depend
+ * on which (see {@link JobPlanSection#getDependencies()}), a section runs
+ * once those have completed. Otherwise siblings run one at a time in
+ * order, and sections at the top of the plan run only when nothing else
+ * is left. Sections whose predecessors are satisfied wait in a ready set,
+ * the one with the most actions left along its longest chain of
+ * dependents first, which is kept up to date as sections finish rather
+ * than by searching the plan each time.
+ * 
+ * @version $Revision$, $Date$, modified by
+ *          $Author$
+ * @since 0.6
+ */
+public class SectionScheduler {
+
+	private static final int PENDING = 0;
+
+	private static final int RUNNING = 1;
+
+	private static final int DONE = 2;
+
+	private static final int FAILED = 3;
+
+	private final JobPlan plan;
+
+	private final Map nodes = new HashMap();
+
+	private final SortedSet ready = new TreeSet(new Comparator() {
+		public int compare(final Object a, final Object b) {
+			final Node nodeA = (Node) a;
+			final Node nodeB = (Node) b;
+			if (nodeA.priority != nodeB.priority)
+				return nodeA.priority > nodeB.priority ? -1 : 1;
+			return nodeA.order - nodeB.order;
+		}
+	});
+
+	private int running = 0;
+
+	/**
+	 * Schedule the sections of a plan. Nothing is worked out until a section
+	 * is first asked for.
+	 * 
+	 * @param plan
+	 *            the plan.
+	 */
+	public SectionScheduler(final JobPlan plan) {
+		this.plan = plan;
+	}
+
+	/**
+	 * Wait for a section to be ready and claim it.
+	 * 
+	 * @param worker
+	 *            the worker that will run it.
+	 * @return the section, or <tt>null</tt> if there are none left or
+	 *         the worker should stop.
+	 */
+	public synchronized JobPlanSection next(final Worker worker) {
+		while (worker.continueRunning()) {
+			if (this.ready.isEmpty() && this.running == 0) {
+				// Pick up anything queued since we last looked.
+				this.build();
+				if (this.ready.isEmpty())
+					return null;
+			}
+			if (!this.ready.isEmpty()) {
+				final Node node = (Node) this.ready.first();
+				this.ready.remove(node);
+				final JobStatus status = node.section.getStatus();
+				if (status.equals(JobStatus.QUEUED)
+						|| status.equals(JobStatus.STOPPED)) {
+					node.state = SectionScheduler.RUNNING;
+					this.running++;
+					return node.section;
+				}
+				// Changed since it became ready.
+				this.complete(node);
+				continue;
+			}
+			try {
+				this.wait(1000);
+			} catch (final InterruptedException e) {
+				// Check again.
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Say that a thread has finished with a section, successfully or not.
+	 * 
+	 * @param section
+	 *            the section.
+	 */
+	public synchronized void finished(final JobPlanSection section) {
+		final Node node = (Node) this.nodes.get(section.getIdentifier());
+		if (node == null || node.state != SectionScheduler.RUNNING)
+			return;
+		this.running--;
+		this.complete(node);
+		this.notifyAll();
+	}
+
+	private void complete(final Node node) {
+		final JobStatus status = node.section.getStatus();
+		if (status.equals(JobStatus.QUEUED)
+				|| status.equals(JobStatus.STOPPED)) {
+			// Not all done, perhaps because its thread was stopped.
+			node.state = SectionScheduler.PENDING;
+			if (node.unmet == 0)
+				this.ready.add(node);
+			return;
+		}
+		node.state = status.equals(JobStatus.COMPLETED)
+				|| status.equals(JobStatus.NOT_QUEUED) ? SectionScheduler.DONE
+				: SectionScheduler.FAILED;
+		for (final Iterator i = node.successors.iterator(); i.hasNext();) {
+			final Edge edge = (Edge) i.next();
+			if (edge.isSatisfied() && --edge.to.unmet == 0
+					&& edge.to.state == SectionScheduler.PENDING)
+				this.ready.add(edge.to);
+		}
+	}
+
+	private void build() {
+		this.nodes.clear();
+		this.ready.clear();
+		// Make a node for every section with actions.
+		final List sections = new ArrayList();
+		final List topNodes = new ArrayList();
+		final List otherNodes = new ArrayList();
+		sections.add(this.plan.getRoot());
+		for (int i = 0; i < sections.size(); i++) {
+			final JobPlanSection section = (JobPlanSection) sections.get(i);
+			sections.addAll(section.getSubSections());
+			if (section.getActionCount() == 0)
+				continue;
+			final Node node = new Node(section, this.nodes.size());
+			final JobStatus status = section.getStatus();
+			if (status.equals(JobStatus.QUEUED)
+					|| status.equals(JobStatus.STOPPED))
+				node.state = SectionScheduler.PENDING;
+			else if (status.equals(JobStatus.COMPLETED)
+					|| status.equals(JobStatus.NOT_QUEUED))
+				node.state = SectionScheduler.DONE;
+			else
+				node.state = SectionScheduler.FAILED;
+			this.nodes.put(section.getIdentifier(), node);
+			if (section.getParent() == this.plan.getRoot())
+				topNodes.add(node);
+			else
+				otherNodes.add(node);
+		}
+		// Link siblings.
+		for (int i = 0; i < sections.size(); i++) {
+			final JobPlanSection parent = (JobPlanSection) sections.get(i);
+			final List children = new ArrayList();
+			final Map byLabel = new HashMap();
+			boolean declared = false;
+			for (final Iterator j = parent.getSubSections().iterator(); j
+					.hasNext();) {
+				final JobPlanSection child = (JobPlanSection) j.next();
+				final Node node = (Node) this.nodes.get(child
+						.getIdentifier());
+				if (node == null)
+					continue;
+				children.add(node);
+				byLabel.put(child.getLabel(), node);
+				declared |= child.getDependencies() != null;
+			}
+			if (declared && parent != this.plan.getRoot())
+				for (final Iterator j = children.iterator(); j.hasNext();) {
+					final Node node = (Node) j.next();
+					final Collection dependencies = node.section
+							.getDependencies();
+					if (dependencies != null)
+						for (final Iterator k = dependencies.iterator(); k
+								.hasNext();) {
+							final Node dependency = (Node) byLabel.get(k
+									.next());
+							if (dependency != null && dependency != node)
+								new Edge(dependency, node, true);
+						}
+				}
+			else
+				for (int j = 1; j < children.size(); j++)
+					new Edge((Node) children.get(j - 1), (Node) children
+							.get(j), false);
+		}
+		// Top level sections wait for everything else.
+		if (!topNodes.isEmpty())
+			for (final Iterator i = otherNodes.iterator(); i.hasNext();)
+				new Edge((Node) i.next(), (Node) topNodes.get(0), false);
+		// Count what each is waiting for, and work out priorities.
+		for (final Iterator i = this.nodes.values().iterator(); i
+				.hasNext();)
+			for (final Iterator j = ((Node) i.next()).successors
+					.iterator(); j.hasNext();) {
+				final Edge edge = (Edge) j.next();
+				if (!edge.isSatisfied())
+					edge.to.unmet++;
+			}
+		for (final Iterator i = this.nodes.values().iterator(); i
+				.hasNext();) {
+			final Node node = (Node) i.next();
+			node.getPriority();
+			if (node.state == SectionScheduler.PENDING && node.unmet == 0)
+				this.ready.add(node);
+		}
+		Log.debug("Scheduling " + this.nodes.size() + " sections, "
+				+ this.ready.size() + " ready");
+	}
+
+	private static class Node {
+		private final JobPlanSection section;
+
+		private final int order;
+
+		private final List successors = new ArrayList();
+
+		private int unmet = 0;
+
+		private int state;
+
+		private long priority = -1;
+
+		private boolean visiting = false;
+
+		private Node(final JobPlanSection section, final int order) {
+			this.section = section;
+			this.order = order;
+		}
+
+		private long getPriority() {
+			if (this.priority >= 0 || this.visiting)
+				// Known, or in a cycle, which will never be ready.
+				return Math.max(this.priority, 0);
+			this.visiting = true;
+			long longest = 0;
+			for (final Iterator i = this.successors.iterator(); i
+					.hasNext();)
+				longest = Math.max(longest, ((Edge) i.next()).to
+						.getPriority());
+			this.visiting = false;
+			this.priority = this.section.getActionCount() + longest;
+			return this.priority;
+		}
+	}
+
+	private static class Edge {
+		private final Node from;
+
+		private final Node to;
+
+		private final boolean needsSuccess;
+
+		private Edge(final Node from, final Node to,
+				final boolean needsSuccess) {
+			this.from = from;
+			this.to = to;
+			this.needsSuccess = needsSuccess;
+			from.successors.add(this);
+		}
+
+		private boolean isSatisfied() {
+			return this.from.state == SectionScheduler.DONE
+					|| !this.needsSuccess
+					&& this.from.state == SectionScheduler.FAILED;
+		}
+	}
+
+	/**
+	 * Something that runs the sections handed out by a scheduler.
+	 */
+	public interface Worker {
+		/**
+		 * Should this worker carry on taking sections?
+		 * 
+		 * @return <tt>true</tt> if it should.
+		 */
+		public boolean continueRunning();
+	}
+}
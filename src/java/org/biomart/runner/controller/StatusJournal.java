@@ -0,0 +1,234 @@
+/*
+ Copyright (C) 2006 EBI
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.runner.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.biomart.common.resources.Log;
+import org.biomart.runner.model.JobStatus;
+import org.biomart.runner.model.JobPlan.JobPlanAction;
+
+/**
+ * An append-only log of the changes to the status of the actions of one job.
+ * Changes are appended as they happen and only forced to disk when
+ * {@link #sync()} is called, so that many changes share one disk sync. Once
+ * the changed sections have been written out in full the journal can be
+ * truncated. After a crash, the entries left in the journal are read back
+ * with {@link #read(File)} and applied to the sections on disk.
+ *
+ * @version $Revision$, $Date$, modified by $Author$
+ * @since 0.6
+ */
+public class StatusJournal {
+
+	private final File file;
+
+	private FileOutputStream fos;
+
+	private DataOutputStream dos;
+
+	private int entries = 0;
+
+	private boolean synced = true;
+
+	/**
+	 * Open a journal, appending to anything already in the file.
+	 *
+	 * @param file
+	 *            the file to write the journal to.
+	 * @throws IOException
+	 *             if it could not be opened.
+	 */
+	public StatusJournal(final File file) throws IOException {
+		this.file = file;
+		this.open(true);
+	}
+
+	private void open(final boolean append) throws IOException {
+		this.fos = new FileOutputStream(this.file, append);
+		this.dos = new DataOutputStream(new BufferedOutputStream(this.fos));
+	}
+
+	/**
+	 * Record the current status, message and timings of an action.
+	 *
+	 * @param action
+	 *            the action.
+	 * @throws IOException
+	 *             if it could not be written.
+	 */
+	public synchronized void append(final JobPlanAction action) throws IOException {
+		this.dos.writeUTF(action.getIdentifier());
+		this.dos.writeUTF(action.getStatus().toString());
+		final String message = action.getMessage();
+		this.dos.writeBoolean(message != null);
+		if (message != null) {
+			// Messages are stack traces and may be too long for writeUTF.
+			final byte[] bytes = message.getBytes("UTF-8");
+			this.dos.writeInt(bytes.length);
+			this.dos.write(bytes);
+		}
+		this.dos.writeLong(action.getStarted() == null ? -1 : action
+				.getStarted().getTime());
+		this.dos.writeLong(action.getEnded() == null ? -1 : action.getEnded()
+				.getTime());
+		this.entries++;
+		this.synced = false;
+	}
+
+	/**
+	 * How many entries have been appended since the journal was last
+	 * truncated?
+	 *
+	 * @return the number of entries.
+	 */
+	public synchronized int getEntryCount() {
+		return this.entries;
+	}
+
+	/**
+	 * Force everything appended so far to disk.
+	 *
+	 * @throws IOException
+	 *             if it could not be.
+	 */
+	public synchronized void sync() throws IOException {
+		if (this.synced || this.dos == null)
+			return;
+		this.dos.flush();
+		this.fos.getFD().sync();
+		this.synced = true;
+	}
+
+	/**
+	 * Throw away everything in the journal. Only call this once all the
+	 * changes it records are safely on disk elsewhere.
+	 *
+	 * @throws IOException
+	 *             if it could not be.
+	 */
+	public synchronized void truncate() throws IOException {
+		this.close();
+		this.open(false);
+		this.entries = 0;
+		this.synced = true;
+	}
+
+	/**
+	 * Close the journal, syncing it first.
+	 *
+	 * @throws IOException
+	 *             if it could not be synced or closed.
+	 */
+	public synchronized void close() throws IOException {
+		if (this.dos == null)
+			return;
+		try {
+			this.sync();
+		} finally {
+			this.dos.close();
+			this.dos = null;
+			this.fos = null;
+		}
+	}
+
+	/**
+	 * Read back the entries in a journal file, oldest first. Reading stops at
+	 * the first incomplete entry, which will be one that was being written
+	 * when the server stopped.
+	 *
+	 * @param file
+	 *            the journal file.
+	 * @return the entries, in the order they were written. Each is an
+	 *         {@link Entry}.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static List read(final File file) throws IOException {
+		final List entries = new ArrayList();
+		if (!file.exists())
+			return entries;
+		final DataInputStream dis = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		try {
+			while (true) {
+				final String identifier = dis.readUTF();
+				final JobStatus status = JobStatus.valueOf(dis.readUTF());
+				String message = null;
+				if (dis.readBoolean()) {
+					final int length = dis.readInt();
+					if (length < 0 || length > file.length())
+						throw new EOFException();
+					final byte[] bytes = new byte[length];
+					dis.readFully(bytes);
+					message = new String(bytes, "UTF-8");
+				}
+				final long started = dis.readLong();
+				final long ended = dis.readLong();
+				if (status == null) {
+					Log.warn("Unreadable entry in " + file + ", ignoring rest");
+					break;
+				}
+				entries.add(new Entry(identifier, status, message,
+						started < 0 ? null : new Date(started), ended < 0 ? null
+								: new Date(ended)));
+			}
+		} catch (final EOFException e) {
+			// End of journal, or an entry cut short by a crash.
+		} finally {
+			dis.close();
+		}
+		return entries;
+	}
+
+	/**
+	 * One change read back from a journal.
+	 */
+	public static class Entry {
+		public final String identifier;
+
+		public final JobStatus status;
+
+		public final String message;
+
+		public final Date started;
+
+		public final Date ended;
+
+		private Entry(final String identifier, final JobStatus status,
+				final String message, final Date started, final Date ended) {
+			this.identifier = identifier;
+			this.status = status;
+			this.message = message;
+			this.started = started;
+			this.ended = ended;
+		}
+	}
+}
@@ -67,9 +67,11 @@ public class JobList implements Serializable {
 	 * @return the job plan.
 	 */
 	public JobPlan getJobPlan(final String jobId) {
-		if (!this.jobList.containsKey(jobId))
-			this.addJob(new JobPlan(jobId));
-		return (JobPlan) this.jobList.get(jobId);
+		synchronized (this.jobList) {
+			if (!this.jobList.containsKey(jobId))
+				this.addJob(new JobPlan(jobId));
+			return (JobPlan) this.jobList.get(jobId);
+		}
 	}
 
 	/**
@@ -209,6 +209,23 @@ public class JobPlan implements Serializable {
 		section.setActionCount(actionCount);
 	}
 
+	/**
+	 * Set the sibling sections which have to complete before the given section
+	 * can start. See {@link JobPlanSection#setDependencies(Collection)}.
+	 * 
+	 * @param sectionPath
+	 *            the path to the section.
+	 * @param dependencies
+	 *            the labels of the sibling sections it depends on.
+	 */
+	public void setDependencies(final String[] sectionPath,
+			final Collection dependencies) {
+		JobPlanSection section = this.getRoot();
+		for (int i = 0; i < sectionPath.length; i++)
+			section = section.getSubSection(sectionPath[i]);
+		section.setDependencies(dependencies);
+	}
+
 	/**
 	 * Get the id of the job this plan is for.
 	 * 
@@ -549,6 +566,8 @@ public class JobPlan implements Serializable {
 
 		private Date ended;
 
+		private Collection dependencies = null;
+
 		private static int NEXT_IDENTIFIER = 0;
 
 		private final int sequence = JobPlanSection.NEXT_IDENTIFIER++;
@@ -590,6 +609,38 @@ public class JobPlan implements Serializable {
 			return this.parent;
 		}
 
+		/**
+		 * Obtain the label.
+		 * 
+		 * @return the label.
+		 */
+		public String getLabel() {
+			return this.label;
+		}
+
+		/**
+		 * Say which sibling sections have to complete before this one can
+		 * start. Once any section in a group of siblings has them, all the
+		 * sections in the group may run at the same time as each other,
+		 * subject to them. Otherwise the siblings run one at a time, in order.
+		 * 
+		 * @param dependencies
+		 *            the labels of the sibling sections.
+		 */
+		public void setDependencies(final Collection dependencies) {
+			this.dependencies = new ArrayList(dependencies);
+		}
+
+		/**
+		 * Which sibling sections have to complete before this one can start?
+		 * 
+		 * @return the labels of the sibling sections, or <tt>null</tt> if
+		 *         this has not been said.
+		 */
+		public Collection getDependencies() {
+			return this.dependencies;
+		}
+
 		/**
 		 * Get a subsection. Creates it if it does not exist.
 		 * 
@@ -97,6 +97,18 @@ public class JobStatus implements Serializable, Comparable {
 		return (JobStatus) JobStatus.singletons.get(status);
 	}
 
+	/**
+	 * Find the status with the given name, as returned by
+	 * {@link #toString()}.
+	 * 
+	 * @param status
+	 *            the name of the status.
+	 * @return the status, or <tt>null</tt> if there is none by that name.
+	 */
+	public static JobStatus valueOf(final String status) {
+		return (JobStatus) JobStatus.singletons.get(status);
+	}
+
 	public int compareTo(final Object other) {
 		final JobStatus otherStatus = (JobStatus) other;
 		return this.rank - otherStatus.rank;
@@ -0,0 +1,261 @@
+/*
+ Copyright (C) 2006 EBI
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.runner.test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.biomart.common.utils.FileUtils;
+import org.biomart.runner.controller.JobHandler;
+import org.biomart.runner.controller.SectionScheduler;
+import org.biomart.runner.model.JobPlan;
+import org.biomart.runner.model.JobStatus;
+import org.biomart.runner.model.JobPlan.JobPlanSection;
+
+/**
+ * Tests the order in which a {@link SectionScheduler} hands out the sections
+ * of a job, following the dependencies between them. Sections are run by
+ * changing their status, so this does not need a database connection.
+ *
+ * @version $Revision$, $Date$, modified by $Author$
+ * @since 0.6
+ */
+public class SectionSchedulerTest extends TestCase {
+
+	private static final String DATASET = "dataset";
+
+	private File dir;
+
+	private String jobId;
+
+	private SectionScheduler scheduler;
+
+	private final Worker worker = new Worker();
+
+	/**
+	 * Run the tests.
+	 *
+	 * @param args
+	 *            ignored.
+	 */
+	public static void main(final String[] args) {
+		TestRunner.run(SectionSchedulerTest.suite());
+	}
+
+	/**
+	 * @return the tests.
+	 */
+	public static Test suite() {
+		return new TestSuite(SectionSchedulerTest.class);
+	}
+
+	/**
+	 * @param name
+	 *            the test to run.
+	 */
+	public SectionSchedulerTest(final String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		this.dir = File.createTempFile("schedulertest", "");
+		this.dir.delete();
+		JobHandler.setJobsDirectory(this.dir);
+		this.jobId = JobHandler.nextJobId();
+		JobHandler.beginJob(this.jobId, "target", "org.example.Driver",
+				"jdbc:example:target", "user", null);
+	}
+
+	protected void tearDown() throws Exception {
+		JobHandler.removeJob(this.jobId);
+		FileUtils.delete(this.dir);
+	}
+
+	/**
+	 * Sections run once the sections they depend on have completed, and
+	 * sections that depend on the same one can then run at the same time.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testDependencies() throws Exception {
+		this.addSection("main", 1, new String[0]);
+		this.addSection("dim1", 1, new String[] { "main" });
+		this.addSection("dim2", 1, new String[] { "main" });
+		this.addSection("sub", 1, new String[] { "main", "dim1", "dim2" });
+		this.start();
+
+		final JobPlanSection main = this.next();
+		assertEquals("main", main.getLabel());
+		assertNull("ran before its dependency completed", this.nextNow());
+		this.finish(main, JobStatus.COMPLETED);
+
+		// Both dimensions are ready at once.
+		final JobPlanSection dim1 = this.next();
+		final JobPlanSection dim2 = this.next();
+		assertEquals(new HashSet(Arrays.asList(new String[] { "dim1",
+				"dim2" })), new HashSet(Arrays.asList(new String[] {
+				dim1.getLabel(), dim2.getLabel() })));
+		this.finish(dim1, JobStatus.COMPLETED);
+		assertNull("ran before all its dependencies completed", this
+				.nextNow());
+		this.finish(dim2, JobStatus.COMPLETED);
+
+		assertEquals("sub", this.next().getLabel());
+	}
+
+	/**
+	 * Sections that depend on a section that failed are not run.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testFailedDependency() throws Exception {
+		this.addSection("main", 1, new String[0]);
+		this.addSection("dim", 1, new String[] { "main" });
+		this.addSection("other", 1, new String[0]);
+		this.start();
+
+		final Set labels = new HashSet();
+		JobPlanSection section;
+		while ((section = this.next()) != null) {
+			labels.add(section.getLabel());
+			this.finish(section, section.getLabel().equals("main") ? JobStatus.FAILED
+					: JobStatus.COMPLETED);
+		}
+		assertEquals(new HashSet(Arrays.asList(new String[] { "main",
+				"other" })), labels);
+		assertEquals(JobStatus.QUEUED, this.section("dim").getStatus());
+	}
+
+	/**
+	 * Sections without dependencies run one at a time in order, and the one
+	 * with the longest chain of dependents goes first.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testOrder() throws Exception {
+		this.addSection("first", 1, null);
+		this.addSection("second", 1, null);
+		this.start();
+		JobPlanSection section = this.next();
+		assertEquals("first", section.getLabel());
+		assertNull(this.nextNow());
+		this.finish(section, JobStatus.COMPLETED);
+		section = this.next();
+		assertEquals("second", section.getLabel());
+		this.finish(section, JobStatus.COMPLETED);
+		assertNull(this.next());
+	}
+
+	/**
+	 * Of the sections that are ready, the one with the most actions along
+	 * its longest chain of dependents goes first.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testPriority() throws Exception {
+		this.addSection("small", 2, new String[0]);
+		this.addSection("chain", 1, new String[0]);
+		this.addSection("end", 5, new String[] { "chain" });
+		this.start();
+		assertEquals("chain", this.next().getLabel());
+		assertEquals("small", this.next().getLabel());
+	}
+
+	/**
+	 * Sections queued again after the job has run are picked up.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testRequeue() throws Exception {
+		this.addSection("main", 1, new String[0]);
+		this.start();
+		JobPlanSection section = this.next();
+		this.finish(section, JobStatus.FAILED);
+		assertNull(this.next());
+
+		JobHandler.setStatus(this.jobId, section.getIdentifier(),
+				JobStatus.QUEUED, null);
+		section = this.next();
+		assertEquals("main", section.getLabel());
+		this.finish(section, JobStatus.COMPLETED);
+		assertNull(this.next());
+	}
+
+	private void addSection(final String label, final int actionCount,
+			final String[] dependencies) throws Exception {
+		final String[] path = new String[] { SectionSchedulerTest.DATASET,
+				label };
+		final String[] actions = new String[actionCount];
+		for (int i = 0; i < actionCount; i++)
+			actions[i] = "create table " + label + i + " as select 1";
+		JobHandler.setActions(this.jobId, path, Arrays.asList(actions));
+		if (dependencies != null)
+			JobHandler.setDependencies(this.jobId, path, Arrays
+					.asList(dependencies));
+	}
+
+	private JobPlanSection section(final String label) throws Exception {
+		return JobHandler.getJobPlan(this.jobId).getRoot().getSubSection(
+				SectionSchedulerTest.DATASET).getSubSection(label);
+	}
+
+	private void start() throws Exception {
+		final JobPlan plan = JobHandler.getJobPlan(this.jobId);
+		this.scheduler = new SectionScheduler(plan);
+	}
+
+	private JobPlanSection next() {
+		this.worker.checks = Integer.MAX_VALUE;
+		return this.scheduler.next(this.worker);
+	}
+
+	private JobPlanSection nextNow() {
+		// Lets the scheduler look once, then wait no longer.
+		this.worker.checks = 1;
+		return this.scheduler.next(this.worker);
+	}
+
+	private void finish(final JobPlanSection section, final JobStatus status)
+			throws Exception {
+		JobHandler.setStatus(this.jobId, Collections.singleton(section
+				.getIdentifier()), status, null);
+		this.scheduler.finished(section);
+	}
+
+	private static class Worker implements SectionScheduler.Worker {
+		private int checks;
+
+		public boolean continueRunning() {
+			return this.checks-- > 0;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ Copyright (C) 2006 EBI
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.runner.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.biomart.common.utils.FileUtils;
+import org.biomart.runner.controller.JobHandler;
+import org.biomart.runner.controller.StatusJournal;
+import org.biomart.runner.model.JobStatus;
+import org.biomart.runner.model.JobPlan.JobPlanAction;
+
+/**
+ * Tests that a {@link StatusJournal} reads back what was appended to it,
+ * ignores an entry cut short by a crash, and that {@link JobHandler} replays
+ * a journal left behind by a crash into the sections of its job. Does not
+ * need a database connection.
+ *
+ * @version $Revision$, $Date$, modified by $Author$
+ * @since 0.6
+ */
+public class StatusJournalTest extends TestCase {
+
+	private File dir;
+
+	/**
+	 * Run the tests.
+	 *
+	 * @param args
+	 *            ignored.
+	 */
+	public static void main(final String[] args) {
+		TestRunner.run(StatusJournalTest.suite());
+	}
+
+	/**
+	 * @return the tests.
+	 */
+	public static Test suite() {
+		return new TestSuite(StatusJournalTest.class);
+	}
+
+	/**
+	 * @param name
+	 *            the test to run.
+	 */
+	public StatusJournalTest(final String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		this.dir = File.createTempFile("journaltest", "");
+		this.dir.delete();
+		this.dir.mkdirs();
+	}
+
+	protected void tearDown() throws Exception {
+		FileUtils.delete(this.dir);
+	}
+
+	/**
+	 * Entries come back in order, including messages too long for
+	 * <tt>writeUTF</tt>.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testReadBack() throws Exception {
+		final StringBuffer longMessage = new StringBuffer();
+		while (longMessage.length() < 70000)
+			longMessage.append("at org.biomart.Stack.trace\n");
+		final File file = new File(this.dir, "journal");
+		final StatusJournal journal = new StatusJournal(file);
+		journal.append(this.action("1.1", null));
+		journal.append(this.action("1.2", "failed"));
+		journal.append(this.action("1.1", longMessage.toString()));
+		assertEquals(3, journal.getEntryCount());
+		journal.close();
+
+		final List entries = StatusJournal.read(file);
+		assertEquals(3, entries.size());
+		StatusJournal.Entry entry = (StatusJournal.Entry) entries.get(0);
+		assertTrue(entry.identifier.startsWith("1.1#"));
+		assertEquals(JobStatus.NOT_QUEUED, entry.status);
+		assertNull(entry.message);
+		assertNull(entry.started);
+		assertNull(entry.ended);
+		entry = (StatusJournal.Entry) entries.get(1);
+		assertTrue(entry.identifier.startsWith("1.2#"));
+		assertEquals("failed", entry.message);
+		entry = (StatusJournal.Entry) entries.get(2);
+		assertEquals(longMessage.toString(), entry.message);
+	}
+
+	/**
+	 * An entry cut short anywhere is dropped, and the entries before it are
+	 * kept.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testTornEntryIgnored() throws Exception {
+		final File file = new File(this.dir, "journal");
+		final StatusJournal journal = new StatusJournal(file);
+		journal.append(this.action("1.1", "first"));
+		journal.close();
+		final long firstLength = file.length();
+		final StatusJournal more = new StatusJournal(file);
+		more.append(this.action("1.2", "second"));
+		more.close();
+
+		for (long length = file.length() - 1; length > firstLength; length--) {
+			final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+			final List entries = StatusJournal.read(file);
+			assertEquals("cut to " + length, 1, entries.size());
+			assertEquals("first", ((StatusJournal.Entry) entries.get(0)).message);
+		}
+		assertEquals(0, StatusJournal.read(new File(this.dir, "missing"))
+				.size());
+	}
+
+	/**
+	 * Nothing appended before a truncate is read back.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testTruncate() throws Exception {
+		final File file = new File(this.dir, "journal");
+		final StatusJournal journal = new StatusJournal(file);
+		journal.append(this.action("1.1", "before"));
+		journal.sync();
+		journal.truncate();
+		assertEquals(0, journal.getEntryCount());
+		journal.append(this.action("1.1", "after"));
+		journal.close();
+
+		final List entries = StatusJournal.read(file);
+		assertEquals(1, entries.size());
+		assertEquals("after", ((StatusJournal.Entry) entries.get(0)).message);
+	}
+
+	/**
+	 * Status changes that were journalled but not checkpointed before a
+	 * crash are applied to the job when it is next loaded, and a change that
+	 * was being written when it crashed is not.
+	 *
+	 * @throws Exception
+	 *             if the test fails.
+	 */
+	public void testReplayAfterCrash() throws Exception {
+		final File jobsDir = new File(this.dir, "jobs");
+		JobHandler.setJobsDirectory(jobsDir);
+		final String jobId = JobHandler.nextJobId();
+		JobHandler.beginJob(jobId, "target", "org.example.Driver",
+				"jdbc:example:target", "user", null);
+		JobHandler.setActions(jobId, new String[] { "section" }, Arrays
+				.asList(new String[] { "create table a", "create table b" }));
+		JobHandler.endJob(jobId);
+		final String sectionId = JobHandler.getJobPlan(jobId).getRoot()
+				.getSubSection("section").getIdentifier();
+		final List identifiers = new ArrayList(JobHandler.getActions(jobId,
+				sectionId).keySet());
+		final String first = (String) identifiers.get(0);
+		final String second = (String) identifiers.get(1);
+
+		JobHandler.setStatus(jobId, first, JobStatus.COMPLETED, null);
+		JobHandler.setStatus(jobId, second, JobStatus.RUNNING, null);
+		final JobPlanAction running = this.find(JobHandler
+				.getActionsSnapshot(jobId, sectionId), second);
+		JobHandler.setStatus(jobId, second, JobStatus.FAILED, "broken");
+
+		// Crash, leaving the changes in the journal only.
+		JobHandler.setJobsDirectory(this.dir);
+		final File journalFile = new File(new File(jobsDir, jobId), "journal");
+		assertEquals(3, StatusJournal.read(journalFile).size());
+		// And a later change that was only partly written.
+		final File torn = new File(this.dir, "torn");
+		final StatusJournal tornJournal = new StatusJournal(torn);
+		tornJournal.append(running);
+		tornJournal.close();
+		this.appendBytes(torn, (int) torn.length() - 4, journalFile);
+
+		JobHandler.setJobsDirectory(jobsDir);
+		JobHandler.stopCrashedJobs();
+
+		final Map actions = JobHandler.getActions(jobId, sectionId);
+		assertEquals(JobStatus.COMPLETED, ((JobPlanAction) actions.get(first))
+				.getStatus());
+		final JobPlanAction failed = (JobPlanAction) actions.get(second);
+		assertEquals(JobStatus.FAILED, failed.getStatus());
+		assertEquals("broken", failed.getMessage());
+		assertNotNull(failed.getEnded());
+		assertEquals("journal not emptied by checkpoint", 0, journalFile
+				.length());
+		JobHandler.removeJob(jobId);
+	}
+
+	private JobPlanAction action(final String sectionId, final String message) {
+		final JobPlanAction action = new JobPlanAction("1", "select 1",
+				sectionId);
+		action.setMessage(message);
+		return action;
+	}
+
+	private JobPlanAction find(final Collection actions,
+			final String identifier) {
+		for (final Iterator i = actions.iterator(); i.hasNext();) {
+			final JobPlanAction action = (JobPlanAction) i.next();
+			if (action.getIdentifier().equals(identifier))
+				return action;
+		}
+		fail("no action " + identifier);
+		return null;
+	}
+
+	private void appendBytes(final File from, final int length, final File to)
+			throws IOException {
+		final byte[] bytes = new byte[length];
+		final FileInputStream fis = new FileInputStream(from);
+		try {
+			int read = 0;
+			while (read < length)
+				read += fis.read(bytes, read, length - read);
+		} finally {
+			fis.close();
+		}
+		final FileOutputStream fos = new FileOutputStream(to, true);
+		try {
+			fos.write(bytes);
+		} finally {
+			fos.close();
+		}
+	}
+}
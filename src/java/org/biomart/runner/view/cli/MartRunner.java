@@ -21,6 +21,7 @@ package org.biomart.runner.view.cli;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -46,6 +47,20 @@ import org.biomart.runner.exceptions.ProtocolException;
  * </pre>
  * 
  * where <tt>&lt;port&gt;</tt> is the port that this server should listen on.
+ * <p>
+ * Each client is served on its own thread, so that a client uploading a large
+ * job does not hold up the others. The following properties control this (see
+ * {@link Settings#getProperty(String)}):
+ * <ul>
+ * <li><tt>maxclients</tt> is the most clients served at once, default 10.
+ * Further clients wait to be accepted until one disconnects.
+ * <li><tt>clienttimeout</tt> is the number of seconds a client may stay idle
+ * before it is disconnected, default 900. 0 means never.
+ * <li><tt>maxuploadsize</tt> is the most characters of actions accepted in
+ * one upload, see {@link MartRunnerProtocol#setMaxUploadSize(long)}.
+ * <li><tt>shutdowntimeout</tt> is the number of seconds to wait for connected
+ * clients to finish when the server exits, default 30.
+ * </ul>
  * 
  * @author Richard Holland <holland@ebi.ac.uk>
  * @version $Revision$, $Date$, modified by 
@@ -59,6 +74,27 @@ public class MartRunner extends BioMartCLI {
 
 	private ServerSocket serverSocket = null;
 
+	private final int maxClients;
+
+	private final int clientTimeout;
+
+	private final int shutdownTimeout;
+
+	private boolean shuttingDown = false;
+
+	private static int getIntProperty(final String property,
+			final int defaultValue) throws ValidationException {
+		final String value = Settings.getProperty(property);
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value
+					.trim());
+		} catch (final NumberFormatException e) {
+			throw new ValidationException(Resources.get(
+					"serverPropertyInvalid", new String[] { property, value }),
+					e);
+		}
+	}
+
 	/**
 	 * Run this application and open the main window. The window stays open and
 	 * the application keeps running until the window is closed.
@@ -96,6 +132,15 @@ public class MartRunner extends BioMartCLI {
 		// Check port number argument was supplied.
 		if (args.length < 1)
 			throw new ValidationException(Resources.get("serverPortMissing"));
+		// Read the limits on clients.
+		this.maxClients = Math.max(1, MartRunner.getIntProperty("maxclients",
+				10));
+		this.clientTimeout = MartRunner.getIntProperty("clienttimeout", 900);
+		this.shutdownTimeout = MartRunner.getIntProperty("shutdowntimeout",
+				30);
+		if (Settings.getProperty("maxuploadsize") != null)
+			MartRunnerProtocol.setMaxUploadSize(MartRunner.getIntProperty(
+					"maxuploadsize", 0));
 		// Find and update all crashed jobs and mark them as stopped.
 		Log.debug("Finding crashed jobs");
 		final int crashedJobs = JobHandler.stopCrashedJobs();
@@ -104,7 +149,8 @@ public class MartRunner extends BioMartCLI {
 		// Establish the socket and start listening.
 		try {
 			final int port = Integer.parseInt(args[0]);
-			Log.info("Server listening on " + port);
+			Log.info("Server listening on " + port + " for up to "
+					+ this.maxClients + " clients");
 			this.serverSocket = new ServerSocket(port);
 		} catch (final IOException e) {
 			throw new ValidationException(Resources.get("serverPortBroken",
@@ -113,33 +159,67 @@ public class MartRunner extends BioMartCLI {
 			throw new ValidationException(Resources.get("serverPortInvalid",
 					args[0]), e);
 		}
+		// Let connected clients finish if we are killed.
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				MartRunner.this.shutdown();
+			}
+		});
 	}
 
+	/**
+	 * Accepts the next client and starts a thread to serve it. If the most
+	 * clients allowed are already connected, waits for one of them to
+	 * disconnect first, leaving new clients waiting to connect.
+	 * 
+	 * @return <tt>false</tt> once the server has been shut down.
+	 * @throws Throwable
+	 *             if a client could not be accepted.
+	 */
 	public boolean poll() throws Throwable {
-		final Socket clientSocket = this.serverSocket.accept();
-		final Runnable worker = new Runnable() {
+		synchronized (this.workers) {
+			while (this.workers.size() >= this.maxClients && !this.shuttingDown)
+				this.workers.wait();
+			if (this.shuttingDown)
+				return false;
+		}
+		final Socket clientSocket;
+		try {
+			clientSocket = this.serverSocket.accept();
+		} catch (final IOException e) {
+			synchronized (this.workers) {
+				if (this.shuttingDown)
+					return false;
+			}
+			throw e;
+		}
+		clientSocket.setSoTimeout(this.clientTimeout * 1000);
+		final ClientWorker worker = new ClientWorker(clientSocket);
+		synchronized (this.workers) {
+			if (this.shuttingDown) {
+				worker.close();
+				return false;
+			}
+			this.workers.add(worker);
+		}
+		final Thread thread = new Thread("MartRunnerClient-"
+				+ clientSocket.getInetAddress().getHostAddress() + ":"
+				+ clientSocket.getPort()) {
 			public void run() {
-				final ClientWorker worker = new ClientWorker(clientSocket);
-				synchronized (MartRunner.this.workers) {
-					MartRunner.this.workers.add(worker);
-				}
 				try {
 					worker.handleClient();
 				} catch (final ProtocolException e) {
-					throw new RuntimeException(e);
-				}
-				synchronized (MartRunner.this.workers) {
-					MartRunner.this.workers.remove(worker);
+					Log.error(e);
+				} finally {
+					synchronized (MartRunner.this.workers) {
+						MartRunner.this.workers.remove(worker);
+						MartRunner.this.workers.notifyAll();
+					}
 				}
-				worker.close();
 			}
 		};
-		try {
-			worker.run();
-		} catch (final RuntimeException e) {
-			throw e.getCause();
-		}
-		// We never have cause to exit.
+		worker.thread = thread;
+		thread.start();
 		return true;
 	}
 
@@ -149,21 +229,58 @@ public class MartRunner extends BioMartCLI {
 	}
 
 	public boolean confirmExitApp() {
-		try {
-			synchronized (MartRunner.this.workers) {
-				for (final Iterator i = this.workers.iterator(); i.hasNext();)
-					((ClientWorker) i.next()).close();
+		this.shutdown();
+		return true;
+	}
+
+	/**
+	 * Stop accepting clients, give the connected ones up to
+	 * <tt>shutdowntimeout</tt> seconds to finish, then disconnect any that
+	 * are left. Safe to call more than once.
+	 */
+	public void shutdown() {
+		final Collection remaining;
+		synchronized (this.workers) {
+			if (!this.shuttingDown) {
+				this.shuttingDown = true;
+				Log.info("Server shutting down");
+				try {
+					this.serverSocket.close();
+				} catch (final IOException e) {
+					// We don't really care. We're exiting anyway.
+				}
+				this.workers.notifyAll();
 			}
-			this.serverSocket.close();
-		} catch (final IOException e) {
-			// We don't really care. We're exiting anyway.
+			final long deadline = System.currentTimeMillis()
+					+ this.shutdownTimeout * 1000L;
+			long wait;
+			while (!this.workers.isEmpty()
+					&& (wait = deadline - System.currentTimeMillis()) > 0)
+				try {
+					this.workers.wait(wait);
+				} catch (final InterruptedException e) {
+					break;
+				}
+			remaining = new ArrayList(this.workers);
+		}
+		for (final Iterator i = remaining.iterator(); i.hasNext();)
+			((ClientWorker) i.next()).close();
+		for (final Iterator i = remaining.iterator(); i.hasNext();) {
+			final Thread thread = ((ClientWorker) i.next()).thread;
+			if (thread != null && thread != Thread.currentThread())
+				try {
+					thread.join(1000);
+				} catch (final InterruptedException e) {
+					break;
+				}
 		}
-		return true;
 	}
 
 	private static class ClientWorker {
 		private Socket clientSocket;
 
+		private Thread thread;
+
 		private ClientWorker(final Socket clientSocket) {
 			this.clientSocket = clientSocket;
 			Log.info("Client connected on "
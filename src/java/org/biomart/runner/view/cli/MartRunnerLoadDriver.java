@@ -0,0 +1,287 @@
+/*
+ Copyright (C) 2006 EBI
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the itmplied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.biomart.runner.view.cli;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.biomart.common.resources.Resources;
+import org.biomart.common.resources.Settings;
+import org.biomart.common.utils.FileUtils;
+import org.biomart.runner.controller.JobHandler;
+import org.biomart.runner.controller.MartRunnerProtocol;
+
+/**
+ * Drives many simulated MartBuilder and monitor sessions against a MartRunner
+ * server at once, and reports how long they took.
+ * <p>
+ * Each builder session does what MartBuilder does when it sends a job to
+ * MartRunner: asks for a job ID, begins the job, uploads the actions for a
+ * number of tables and ends the job. It then lists the jobs, to wait for the
+ * server to finish with them, and removes its job again. At the same time
+ * monitor sessions list the jobs over and over on short connections, as the
+ * monitor dialog does, to show how long a user watching the server waits
+ * while the uploads are going on.
+ * <p>
+ * The syntax is:
+ *
+ * <pre>
+ *             java org.biomart.runner.view.cli.MartRunnerLoadDriver &lt;builders&gt; &lt;sessions&gt; &lt;tables&gt; &lt;actions&gt; [&lt;host&gt; &lt;port&gt;]
+ * </pre>
+ *
+ * where <tt>&lt;builders&gt;</tt> is the number of builder threads, each
+ * running <tt>&lt;sessions&gt;</tt> sessions one after the other, each of
+ * which uploads <tt>&lt;actions&gt;</tt> actions for each of
+ * <tt>&lt;tables&gt;</tt> tables. Two monitor threads run alongside. If no
+ * host and port are given, a MartRunner server is started in this process on
+ * a free port, and shut down at the end. That server keeps its jobs in a
+ * temporary directory, removed at the end, so that it does not touch the jobs
+ * of a MartRunner using the storage directory. A server given by host and
+ * port writes the jobs where it normally does, and they are removed again by
+ * the sessions that made them.
+ *
+ * @version $Revision$, $Date$, modified by $Author$
+ * @since 0.6
+ */
+public class MartRunnerLoadDriver {
+
+	private static final int MONITORS = 2;
+
+	private final String host;
+
+	private final String port;
+
+	private final int tables;
+
+	private final String[] actions;
+
+	// Guarded by this.
+	private long sessions = 0;
+
+	private long sessionTime = 0;
+
+	private long maxSessionTime = 0;
+
+	private long listings = 0;
+
+	private long listingTime = 0;
+
+	private long maxListingTime = 0;
+
+	private int failures = 0;
+
+	private boolean finished = false;
+
+	private MartRunnerLoadDriver(final String host, final String port,
+			final int tables, final int actions) {
+		this.host = host;
+		this.port = port;
+		this.tables = tables;
+		this.actions = new String[actions];
+		for (int i = 0; i < actions; i++)
+			this.actions[i] = "create table load_test_" + i
+					+ " as select * from load_test_source where id > " + i;
+	}
+
+	/**
+	 * Run the load test.
+	 *
+	 * @param args
+	 *            the command line arguments, see above.
+	 * @throws Exception
+	 *             if the server could not be started or the test could not
+	 *             be run.
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length != 4 && args.length != 6) {
+			System.err
+					.println("Usage: MartRunnerLoadDriver <builders> <sessions> <tables> <actions> [<host> <port>]");
+			System.exit(1);
+		}
+		final int builders = Integer.parseInt(args[0]);
+		final int sessions = Integer.parseInt(args[1]);
+		final int tables = Integer.parseInt(args[2]);
+		final int actions = Integer.parseInt(args[3]);
+
+		Settings.setApplication(Settings.MARTRUNNER);
+		Resources.setResourceLocation("org/biomart/runner/resources");
+
+		MartRunner server = null;
+		Thread serverThread = null;
+		File jobsDir = null;
+		String host;
+		String port;
+		if (args.length == 6) {
+			host = args[4];
+			port = args[5];
+		} else {
+			// Find a free port and serve it from this process.
+			final ServerSocket probe = new ServerSocket(0);
+			port = "" + probe.getLocalPort();
+			probe.close();
+			host = "localhost";
+			// Keep clear of the jobs of any real server, which starting
+			// MartRunner would otherwise recover as crashed.
+			jobsDir = File.createTempFile("martrunner-load", "");
+			jobsDir.delete();
+			JobHandler.setJobsDirectory(jobsDir);
+			final MartRunner martRunner = new MartRunner(new String[] { port });
+			serverThread = new Thread("MartRunnerLoadDriver-server") {
+				public void run() {
+					try {
+						while (martRunner.poll())
+							;
+					} catch (final Throwable t) {
+						t.printStackTrace();
+					}
+				}
+			};
+			serverThread.start();
+			server = martRunner;
+		}
+
+		final MartRunnerLoadDriver driver = new MartRunnerLoadDriver(host,
+				port, tables, actions);
+		final long start = System.currentTimeMillis();
+		final Thread[] builderThreads = new Thread[builders];
+		for (int i = 0; i < builders; i++) {
+			builderThreads[i] = new Thread("MartRunnerLoadDriver-builder-" + i) {
+				public void run() {
+					for (int n = 0; n < sessions; n++)
+						driver.builderSession();
+				}
+			};
+			builderThreads[i].start();
+		}
+		final Thread[] monitorThreads = new Thread[MartRunnerLoadDriver.MONITORS];
+		for (int i = 0; i < monitorThreads.length; i++) {
+			monitorThreads[i] = new Thread("MartRunnerLoadDriver-monitor-" + i) {
+				public void run() {
+					while (!driver.isFinished())
+						driver.monitorSession();
+				}
+			};
+			monitorThreads[i].start();
+		}
+		for (int i = 0; i < builderThreads.length; i++)
+			builderThreads[i].join();
+		final long elapsed = System.currentTimeMillis() - start;
+		driver.finish();
+		for (int i = 0; i < monitorThreads.length; i++)
+			monitorThreads[i].join();
+
+		if (server != null) {
+			server.shutdown();
+			serverThread.join();
+			FileUtils.delete(jobsDir);
+		}
+		driver.report(builders, elapsed);
+		// The job handler's save timer would keep us alive otherwise.
+		System.exit(0);
+	}
+
+	private void builderSession() {
+		final long start = System.currentTimeMillis();
+		try {
+			final Socket socket = MartRunnerProtocol.Client.createClientSocket(
+					this.host, this.port);
+			try {
+				final String jobId = MartRunnerProtocol.Client.newJob(socket);
+				MartRunnerProtocol.Client.beginJob(socket, jobId, "load_test",
+						"org.gjt.mm.mysql.Driver",
+						"jdbc:mysql://localhost:3306/load_test", "load_test",
+						"");
+				for (int i = 0; i < this.tables; i++)
+					MartRunnerProtocol.Client.setActions(socket, jobId,
+							"default", "load_test", "table_" + i, this.actions);
+				MartRunnerProtocol.Client.endJob(socket, jobId);
+				// Wait for the server to catch up before removing the job.
+				MartRunnerProtocol.Client.listJobs(socket);
+				MartRunnerProtocol.Client.removeJob(socket, jobId);
+				MartRunnerProtocol.Client.listJobs(socket);
+			} finally {
+				socket.close();
+			}
+			this.sessionDone(System.currentTimeMillis() - start);
+		} catch (final Exception e) {
+			e.printStackTrace();
+			this.failed();
+		}
+	}
+
+	private void monitorSession() {
+		final long start = System.currentTimeMillis();
+		try {
+			final Socket socket = MartRunnerProtocol.Client.createClientSocket(
+					this.host, this.port);
+			try {
+				MartRunnerProtocol.Client.listJobs(socket);
+			} finally {
+				socket.close();
+			}
+			this.listingDone(System.currentTimeMillis() - start);
+		} catch (final Exception e) {
+			e.printStackTrace();
+			this.failed();
+		}
+	}
+
+	private synchronized void sessionDone(final long time) {
+		this.sessions++;
+		this.sessionTime += time;
+		this.maxSessionTime = Math.max(this.maxSessionTime, time);
+	}
+
+	private synchronized void listingDone(final long time) {
+		this.listings++;
+		this.listingTime += time;
+		this.maxListingTime = Math.max(this.maxListingTime, time);
+	}
+
+	private synchronized void failed() {
+		this.failures++;
+	}
+
+	private synchronized void finish() {
+		this.finished = true;
+	}
+
+	private synchronized boolean isFinished() {
+		return this.finished;
+	}
+
+	private synchronized void report(final int builders, final long elapsed) {
+		System.out.println("builder threads          : " + builders);
+		System.out.println("builder sessions         : " + this.sessions);
+		System.out.println("actions uploaded         : " + this.sessions
+				* this.tables * this.actions.length);
+		System.out.println("elapsed (ms)             : " + elapsed);
+		System.out.println("sessions per second      : "
+				+ (elapsed > 0 ? this.sessions * 1000 / elapsed : 0));
+		System.out.println("mean session (ms)        : "
+				+ (this.sessions > 0 ? this.sessionTime / this.sessions : 0));
+		System.out.println("max session (ms)         : " + this.maxSessionTime);
+		System.out.println("monitor listings         : " + this.listings);
+		System.out.println("mean listing (ms)        : "
+				+ (this.listings > 0 ? this.listingTime / this.listings : 0));
+		System.out.println("max listing (ms)         : " + this.maxListingTime);
+		System.out.println("failures                 : " + this.failures);
+	}
+}
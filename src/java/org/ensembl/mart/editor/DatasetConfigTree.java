@@ -51,7 +51,9 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -64,6 +66,7 @@ import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.JTree;
+import javax.swing.ProgressMonitor;
 import javax.swing.SwingUtilities;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
@@ -99,6 +102,7 @@ import org.ensembl.mart.lib.config.PushAction;
 import org.ensembl.mart.lib.config.SpecificAttributeContent;
 import org.ensembl.mart.lib.config.SpecificFilterContent;
 import org.ensembl.mart.lib.config.SpecificOptionContent;
+import org.ensembl.mart.lib.config.TemplateUpdateListener;
 import org.ensembl.mart.lib.config.URLDSConfigAdaptor;
 
 /**
@@ -114,6 +118,9 @@ import org.ensembl.mart.lib.config.URLDSConfigAdaptor;
 public class DatasetConfigTree extends JTree implements Autoscroll { //, ClipboardOwner {
 
 	public static final Insets defaultScrollInsets = new Insets(8, 8, 8, 8);
+
+	// worker threads used to update the datasets of a template
+	private static final int TEMPLATE_UPDATE_THREADS = 4;
 	protected Insets scrollInsets = defaultScrollInsets;
 	protected DatasetConfig dsConfig = null;
 	protected DatasetConfigTreeNode lastSelectedNode = null;
@@ -646,7 +653,8 @@ public class DatasetConfigTree extends JTree implements Autoscroll { //, Clipboa
 					"insert option",
 					"make drop down",
 					"add ontology",
-					"automate push action",					"insert specific filter content",
+					"automate push action",
+					"insert specific filter content",
 					"auto specific filters",
 					"auto specific dropdowns",
 					"auto specific push actions",};
@@ -1183,11 +1191,15 @@ public class DatasetConfigTree extends JTree implements Autoscroll { //, Clipboa
 						.getDetailedDataSource(), MartEditor.getUser(), MartEditor
 						.getMartUser(), true, false, true, true));
 			
-			Option[] options = MartEditor.getDatabaseDatasetConfigUtils().getOptions(field, tableName, joinKey, ourConf, ourConf.getDataset(), colForDisplay);
-
-			if (options.length>200) {
-				JOptionPane.showMessageDialog(null, "Many options have been found ("+options.length+" of them). This may affect the performance of MartEditor and MartView.");
+			// count first, so that a column with very many values is not read
+			int count = MartEditor.getDatabaseDatasetConfigUtils().getOptionCount(field, tableName, joinKey, ourConf, ourConf.getDataset());
+			if (count>200) {
+				int choice = JOptionPane.showConfirmDialog(null, "Many options have been found ("+count+" of them). This may affect the performance of MartEditor and MartView. Make the drop down anyway?", "Make Drop Down", JOptionPane.YES_NO_OPTION);
+				if (choice != JOptionPane.YES_OPTION)
+					return;
 			}
+
+			Option[] options = MartEditor.getDatabaseDatasetConfigUtils().getOptions(field, tableName, joinKey, ourConf, ourConf.getDataset(), colForDisplay);
 			
 			for (int k = options.length - 1; k > -1; k--) {
 
@@ -1573,16 +1585,80 @@ public class DatasetConfigTree extends JTree implements Autoscroll { //, Clipboa
 		return true;
 	}
 	
-	public void exportTemplate() throws ConfigurationException {
+	/**
+	 * Stores the template, and updates the datasets using it, on a
+	 * background thread, showing progress in a ProgressMonitor. Closing the
+	 * monitor only hides it: datasets are still updated, and any which fail
+	 * are listed once all are done.
+	 * 
+	 * @param whenDone -- run on the event dispatch thread once the export has
+	 *            finished, or straight away if it was not started
+	 */
+	public void exportTemplate(final Runnable whenDone) {
 		dsConfig = (DatasetConfig) ((DatasetConfigTreeNode) this.getModel().getRoot()).getUserObject();
 		if (dsConfig.getTemplateFlag() == null){
 			JOptionPane.showMessageDialog(null,"This is not a template config","",JOptionPane.ERROR_MESSAGE);
+			whenDone.run();
+			return;
+		}
+		if (!MartEditor.getDatabaseDatasetConfigUtils().uniqueCheckConfig(dsConfig)) {
+			whenDone.run();
 			return;
 		}
-		if (!MartEditor.getDatabaseDatasetConfigUtils().uniqueCheckConfig(dsConfig)) return;
 		//MartEditor.getDatabaseDatasetConfigUtils().storeTemplateXML(dsConfig,dsConfig.getTemplate());
 		// update config to template
-		MartEditor.getDatabaseDatasetConfigUtils().updateConfigsToTemplate(dsConfig.getTemplate(),dsConfig);
+		final DatasetConfig templateConfig = dsConfig;
+		final String template = templateConfig.getTemplate();
+		final ProgressMonitor monitor = new ProgressMonitor(this, "Updating datasets to template " + template,
+			"", 0, templateConfig.getDynamicDatasetNames().length);
+		final TemplateUpdateListener listener = new TemplateUpdateListener() {
+			public void datasetUpdated(final String dataset, final int done, int total, final ConfigurationException failure) {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						monitor.setNote(dataset + (failure == null ? " updated" : " failed"));
+						monitor.setProgress(done);
+					}
+				});
+			}
+		};
+
+		new Thread(new Runnable() {
+			public void run() {
+				Map failed = null;
+				ConfigurationException error = null;
+				try {
+					failed = MartEditor.getDatabaseDatasetConfigUtils().updateConfigsToTemplate(MartEditor.getUser(),
+						MartEditor.getMartUser(), template, templateConfig, TEMPLATE_UPDATE_THREADS, listener);
+				} catch (ConfigurationException e) {
+					error = e;
+				} catch (RuntimeException e) {
+					error = new ConfigurationException(e);
+				}
+
+				final Map finalFailed = failed;
+				final ConfigurationException finalError = error;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						monitor.close();
+						try {
+							if (finalError != null)
+								JOptionPane.showMessageDialog(null, "Problems with exporting template " + template + ": "
+									+ finalError.getMessage(), "ERROR", JOptionPane.ERROR_MESSAGE);
+							else if (!finalFailed.isEmpty()) {
+								StringBuffer message = new StringBuffer("The following datasets were not updated to the template:\n");
+								for (Iterator i = finalFailed.entrySet().iterator(); i.hasNext();) {
+									Map.Entry entry = (Map.Entry) i.next();
+									message.append(entry.getKey()+": "+((ConfigurationException) entry.getValue()).getMessage()+'\n');
+								}
+								JOptionPane.showMessageDialog(null, message.toString(), "ERROR", JOptionPane.ERROR_MESSAGE);
+							}
+						} finally {
+							whenDone.run();
+						}
+					}
+				});
+			}
+		}, "TemplateExport-" + template).start();
 	}
 	
 	public void validateTemplate() throws ConfigurationException {		
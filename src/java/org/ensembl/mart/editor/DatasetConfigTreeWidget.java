@@ -473,12 +473,21 @@ public class DatasetConfigTreeWidget extends JInternalFrame{
 		tree.export();
 	}
 	
-	public void exportTemplate() throws ConfigurationException{
+	/**
+	 * @param whenDone -- run on the event dispatch thread once the export has
+	 *            finished, or straight away if it was not started
+	 * @throws ConfigurationException if the naive config could not be stored
+	 * @see DatasetConfigTree#exportTemplate(Runnable)
+	 */
+	public void exportTemplate(Runnable whenDone) throws ConfigurationException{
 		if (naiveTree!=null) {
-			if (!naiveTree.export()) return;
+			if (!naiveTree.export()) {
+				whenDone.run();
+				return;
+			}
 			naiveTree = null;
 		}
-		tree.exportTemplate();
+		tree.exportTemplate(whenDone);
 	}
 	
 	public void validateTemplate() throws ConfigurationException{
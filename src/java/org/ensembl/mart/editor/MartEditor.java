@@ -28,6 +28,7 @@ import java.awt.datatransfer.Transferable;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
 import java.io.File;
 import java.net.URL;
 import java.sql.Connection;
@@ -106,6 +107,9 @@ public class MartEditor extends JFrame implements ClipboardOwner {
   static private String martUser;
   private String database;
   private String schema;
+  // true from the start of a template export until its datasets are updated,
+  // only used on the event dispatch thread
+  private boolean templateExportRunning = false;
   private static String connection;
   
 
@@ -1106,21 +1110,46 @@ System.out.println ("getting driver "+ driver);
 	  return;
 	}
 
+	if (templateExportRunning) {
+	  JOptionPane.showMessageDialog(this, "A template is still being exported", "ERROR", 0);
+	  return;
+	}
+
+	// the datasets are updated in the background, which ends the export
+	boolean started = false;
+	// keeps the mouse away from the editor until the datasets are updated,
+	// as other actions would make dbutils read only again
+	final MouseAdapter blocker = new MouseAdapter() {
+	};
 	try {
 	  disableCursor();
 	  DatasetConfigTreeWidget widget = (DatasetConfigTreeWidget) desktop.getSelectedFrame();
       if (widget==null) return;
       dbutils.setReadonly(false);
 	  //DatasetConfig dsConfig = ((DatasetConfigTreeWidget) desktop.getSelectedFrame()).getDatasetConfig();	
-	  widget.exportTemplate();
+	  getGlassPane().addMouseListener(blocker);
+	  templateExportRunning = true;
+	  widget.exportTemplate(new Runnable() {
+	    public void run() {
+	      getGlassPane().removeMouseListener(blocker);
+	      templateExportRunning = false;
+	      enableCursor();
+	      dbutils.setReadonly(true);
+	    }
+	  });
+	  started = true;
 	} catch (ConfigurationException e) {
 	  JOptionPane.showMessageDialog(this, "Problems with exporting requested dataset. " +
 			"Check that dataset id is unique, you have write permissions " +
 			"and the meta_configuration tables are in required format", "ERROR", 0);
 	  e.printStackTrace();
 	} finally {
-	  enableCursor();
-      dbutils.setReadonly(true);
+	  if (!started) {
+	    getGlassPane().removeMouseListener(blocker);
+	    templateExportRunning = false;
+	    enableCursor();
+	    dbutils.setReadonly(true);
+	  }
 	}
   }
   
@@ -52,7 +52,6 @@ public final class AttributeQueryRunner implements QueryRunner {
     Filter[] filters = query.getFilters();
 
     Filter bigListFilter = null;
-    String[] biglist = null;
     int numBigLists = 0;
     for (int i = 0, n = filters.length; i < n; i++) {
       Filter filter = filters[i];
@@ -62,33 +61,35 @@ public final class AttributeQueryRunner implements QueryRunner {
             throw new InvalidQueryException("Too many in list filters attached, only one per query supported.\n");
 
           bigListFilter = filter;
-          biglist = ((IDListFilter) filter).getIdentifiers();
           numBigLists++;
         }
       }
     }
 
-    if (numBigLists > 0) {
-      boolean moreRows = true;
-      String[] idBatch = new String[listSizeMax];
-      int batchIter = 0;
-
-      for (int i = 0, n = biglist.length; moreRows && i < n; i++) {
-        String element = biglist[i];
-
-        if ((i > 0) && ((i % listSizeMax) == 0)) {
-          Query newQuery = new Query(query);
-          newQuery.removeFilter(bigListFilter);
-
-          IDListFilter newFilter =
-            new IDListFilter(
-              bigListFilter.getField(),
-              bigListFilter.getTableConstraint(),
-              bigListFilter.getKey(),
-              idBatch);
-          newQuery.addFilter(newFilter);
-
-          executeQuery(newQuery, hardLimit);
+    if (numBigLists > 0 && tempTableThreshold > 0
+      && ((IDListFilter) bigListFilter).getIdentifiers().length > tempTableThreshold
+      && executeWithTempTable((IDListFilter) bigListFilter, hardLimit)) {
+      // done, the ids were joined from a temporary table
+    } else if (numBigLists > 0) {
+      Query[] batches = ParallelIDListExecutor.splitBatches(query, (IDListFilter) bigListFilter, listSizeMax);
+      int parallelism =
+        ParallelTasks.boundParallelism(idListParallelism, query.getDataSource(), 1);
+
+      if (parallelism > 1 && batches.length > 1) {
+        ParallelIDListExecutor executor =
+          new ParallelIDListExecutor(batches, new ParallelIDListExecutor.RunnerFactory() {
+            public QueryRunner createRunner(Query batchQuery, OutputStream out) {
+              AttributeQueryRunner runner = new AttributeQueryRunner(batchQuery, format, out);
+              runner.setExecutionMode(executionMode);
+              runner.setStreamingFetchSize(streamingFetchSize);
+              return runner;
+            }
+          }, parallelism, idListOrdered, isSubQuery);
+        totalRows += executor.execute(hardLimit, osr);
+      } else {
+        boolean moreRows = true;
+        for (int i = 0; moreRows && i < batches.length; i++) {
+          executeQuery(batches[i], hardLimit);
 
           if (isSubQuery) {
             //          get all ids for a subQuery
@@ -97,41 +98,90 @@ public final class AttributeQueryRunner implements QueryRunner {
             //only execute batches until all are completed, or totalRows == hardLimit
             moreRows = totalRows < hardLimit;
           }
-
-          idBatch = new String[listSizeMax];
-          batchIter = 0;
         }
-        idBatch[batchIter] = element;
-        batchIter++;
       }
+    } else {
+      executeQuery(query, hardLimit);
+    }
+  }
 
-      //last batch is either empty, or less than idBatch.length
-      if (moreRows && idBatch[0] != null) {
-
-        List lastBatch = new ArrayList();
-        for (int i = 0, n = idBatch.length; i < n; i++) {
-          String element = idBatch[i];
-          if (element != null)
-            lastBatch.add(element);
-        }
+  /**
+   * Loads the identifiers of bigListFilter into a temporary table and runs the
+   * query once, joined against it, instead of in batches of listSizeMax.
+   * The table only exists on the connection it was created on, so that connection
+   * is used for the query as well.
+   * 
+   * @return false if the database does not support, or the user cannot create,
+   * temporary tables, and the caller should fall back to batching
+   */
+  private boolean executeWithTempTable(IDListFilter bigListFilter, int hardLimit) throws SequenceException, InvalidQueryException {
+    DetailedDataSource ds = query.getDataSource();
+    if (ds == null)
+      throw new RuntimeException("query.DataSource is null");
 
-        String[] lbatch = new String[lastBatch.size()];
-        lastBatch.toArray(lbatch);
+    IDListTempTable idTable = IDListTempTable.getInstance(ds.getDatabaseType());
+    if (idTable == null)
+      return false;
 
-        Query newQuery = new Query(query);
-        newQuery.removeFilter(bigListFilter);
+    Connection conn = null;
+    try {
+      conn = ds.getConnection();
 
-        IDListFilter newFilter =
-          new IDListFilter(bigListFilter.getField(), bigListFilter.getTableConstraint(), bigListFilter.getKey(), lbatch);
-        newQuery.addFilter(newFilter);
+      try {
+        idTable.load(conn, bigListFilter.getIdentifiers());
+      } catch (SQLException e) {
+        if (logger.isLoggable(Level.WARNING))
+          logger.warning("Could not load identifiers into a temporary table, batching instead: " + e.getMessage());
+        idTable.drop(conn);
+        return false;
+      }
 
+      Query newQuery = new Query(query);
+      newQuery.removeFilter(bigListFilter);
+      newQuery.addFilter(
+        new IDListTableFilter(
+          bigListFilter.getField(),
+          bigListFilter.getTableConstraint(),
+          bigListFilter.getKey(),
+          idTable.getTableName(),
+          IDListTempTable.IDCOLUMN));
+
+      sessionConnection = conn;
+      try {
         executeQuery(newQuery, hardLimit);
+      } finally {
+        sessionConnection = null;
+        idTable.drop(conn);
       }
-    } else {
-      executeQuery(query, hardLimit);
+      return true;
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning(e.getMessage());
+      throw new InvalidQueryException(e);
+    } finally {
+      DetailedDataSource.close(conn);
     }
   }
 
+  /**
+   * @return the connection the current query is bound to, if any, otherwise a new one from ds
+   */
+  private Connection getConnection(DetailedDataSource ds) throws SQLException {
+    return (sessionConnection != null) ? sessionConnection : ds.getConnection();
+  }
+
+  /**
+   * closes conn, unless it is the connection the current query is bound to
+   */
+  private void releaseConnection(Connection conn) {
+    if (conn != sessionConnection)
+      DetailedDataSource.close(conn);
+  }
+
+  public int getTotalRows() {
+    return totalRows;
+  }
+
   protected void executeQuery(Query curQuery, int hardLimit) throws SequenceException, InvalidQueryException {
     //System.out.println("HARD LIMIT IS\t" + hardLimit);
 
@@ -139,12 +189,315 @@ public final class AttributeQueryRunner implements QueryRunner {
     if (ds == null)
       throw new RuntimeException("curQuery.DataSource is null");
 
-    if (ds.getDatabaseType().equals("mysql") || ds.getDatabaseType().equals("postgres")) {
+    if (executionMode == KEYSET && !curQuery.hasSort()) {
+      executeQueryKeyset(ds, curQuery, hardLimit);
+    } else if (executionMode == STREAMING || executionMode == KEYSET) {
+      // a user defined sort order cannot be paged on the key, so stream it instead
+      executeQueryStreaming(ds, curQuery, hardLimit);
+    } else if (ds.getDatabaseType().equals("mysql") || ds.getDatabaseType().equals("postgres")) {
       executeQueryPostgresMysql(ds, curQuery, hardLimit);
     } else {
       executeQueryGeneric(ds, curQuery, hardLimit);
     }
   }
+
+  /**
+   * Executes the Query once, reading the results through a single forward only
+   * cursor.  MySQL is asked to stream rows one at a time (fetchSize = Integer.MIN_VALUE),
+   * all other platforms use a fixed fetchSize with autocommit switched off, which
+   * postgres requires before it will use a server side cursor.
+   * The database therefore only evaluates the join once, however large the result.
+   */
+  protected void executeQueryStreaming(DetailedDataSource ds, Query curQuery, int hardLimit) throws SequenceException, InvalidQueryException {
+    attributes = curQuery.getAttributes();
+    filters = curQuery.getFilters();
+
+    int maxRows = 0;
+    if (hardLimit > 0) {
+      maxRows = hardLimit - totalRows;
+      if (maxRows < 1)
+        return;
+    }
+
+    String dbType = ds.getDatabaseType();
+    boolean isMysql = dbType.equals("mysql");
+
+    Connection conn = null;
+    PreparedStatement ps = null;
+    ResultSet rs = null;
+    boolean autoCommit = true;
+    String sql = null;
+
+    try {
+      csql = new QueryCompiler(curQuery, ds);
+      CompiledQuery plan = csql.getCompiledQuery();
+      sql = plan.getSQL();
+
+      if (maxRows > 0 && (isMysql || dbType.equals("postgres")))
+        sql += " LIMIT " + maxRows;
+
+      if (logger.isLoggable(Level.INFO))
+        logger.info("SQL (streaming) : " + sql);
+
+      conn = getConnection(ds);
+      autoCommit = conn.getAutoCommit();
+      if (!isMysql && autoCommit)
+        conn.setAutoCommit(false);
+
+      ps = conn.prepareStatement(sql);
+      ps.setFetchSize(isMysql ? Integer.MIN_VALUE : streamingFetchSize);
+      if (maxRows > 0)
+        ps.setMaxRows(maxRows);
+
+      plan.bind(ps, curQuery);
+
+      rs = ps.executeQuery();
+      resultSetRowsProcessed = 0;
+      totalRowsThisExecute = 0;
+      processResultSetMysql(conn, rs);
+    } catch (IOException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning("Couldnt write to OutputStream\n" + e.getMessage());
+      throw new InvalidQueryException(e);
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning(e.getMessage());
+      throw new InvalidQueryException(e);
+    } finally {
+      close(rs, ps);
+      if (conn != null && !isMysql && autoCommit) {
+        try {
+          // nothing was written, so just end the read only transaction
+          conn.rollback();
+          conn.setAutoCommit(true);
+        } catch (SQLException e) {
+          if (logger.isLoggable(Level.WARNING))
+            logger.warning("Could not reset autocommit on connection: " + e.getMessage());
+        }
+      }
+      releaseConnection(conn);
+    }
+  }
+
+  /**
+   * Pages through the results ordered by the lowest level key, restarting each page
+   * with key &gt; last completed key.  Rows belonging to the last key of a full page
+   * are held back and refetched with the next page, so no OFFSET is ever needed and
+   * each page only touches rows not yet returned.  If a single key has more rows
+   * than the page size, the page size grows until they fit.
+   * Used where a long lived streaming cursor is not wanted.
+   */
+  protected void executeQueryKeyset(DetailedDataSource ds, Query curQuery, int hardLimit) throws SequenceException, InvalidQueryException {
+    attributes = curQuery.getAttributes();
+    filters = curQuery.getFilters();
+
+    String dbType = ds.getDatabaseType();
+    boolean useLimit = dbType.equals("mysql") || dbType.equals("postgres");
+
+    Connection conn = null;
+    String sql = null;
+
+    try {
+      csql = new QueryCompiler(curQuery, ds);
+      CompiledQuery plan = csql.getCompiledQuery();
+      String sqlbase = plan.getSQLWithKey();
+      String primaryKey = plan.getQualifiedLowestLevelKey();
+
+      conn = getConnection(ds);
+
+      boolean moreRows = true;
+      boolean firstPage = true;
+      long lastKey = 0;
+      int pageSize = batchLimit;
+
+      while (moreRows) {
+        StringBuffer sqlBuf = new StringBuffer(sqlbase);
+
+        // the key is bound after the filter values, so each page reuses the same statement
+        if (!firstPage) {
+          int where = sqlbase.indexOf(" WHERE ");
+          if (where >= 0)
+            sqlBuf.insert(where + 7, "(").append(") AND ");
+          else
+            sqlBuf.append(" WHERE ");
+          sqlBuf.append(primaryKey).append(" > ?");
+        }
+
+        sqlBuf.append(" ORDER BY " + primaryKey);
+        if (useLimit)
+          sqlBuf.append(" LIMIT " + pageSize);
+
+        sql = sqlBuf.toString();
+
+        if (logger.isLoggable(Level.INFO))
+          logger.info("SQL (keyset) : " + sql);
+
+        // rows for the key currently being read, printed once the key is known to be complete
+        List pending = new ArrayList();
+        long pendingKey = 0;
+        boolean keyCompleted = false;
+        int pageRows = 0;
+
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+          ps = conn.prepareStatement(sql);
+          ps.setMaxRows(pageSize);
+          int nParameters = plan.bind(ps, curQuery);
+          if (!firstPage)
+            ps.setLong(nParameters + 1, lastKey);
+
+          rs = ps.executeQuery();
+          int nColumns = rs.getMetaData().getColumnCount();
+
+          while (moreRows && rs.next()) {
+            long currKey = rs.getLong(nColumns);
+
+            if (pageRows > 0 && currKey != pendingKey) {
+              moreRows = printRows(pending, hardLimit);
+              lastKey = pendingKey;
+              keyCompleted = true;
+              pending.clear();
+            }
+
+            String[] row = new String[nColumns - 1];
+            for (int i = 0; i < row.length; i++)
+              row[i] = rs.getString(i + 1);
+            pending.add(row);
+
+            pendingKey = currKey;
+            pageRows++;
+          }
+        } finally {
+          close(rs, ps);
+        }
+
+        if (!moreRows) {
+          // hardLimit reached
+        } else if (pageRows < pageSize) {
+          // last page, the pending key is complete
+          printRows(pending, hardLimit);
+          moreRows = false;
+        } else if (!keyCompleted) {
+          // a single key filled the whole page, refetch it with a bigger page
+          pageSize = (pageSize < MAXTOTALROWS / 2) ? pageSize * 2 : MAXTOTALROWS;
+        } else if (pageSize < maxBatchLimit) {
+          pageSize =
+            (pageSize * batchModifiers[modIter] < maxBatchLimit) ? pageSize * batchModifiers[modIter] : maxBatchLimit;
+          modIter = (modIter == 0) ? 1 : 0;
+        }
+
+        if (keyCompleted)
+          firstPage = false;
+      }
+    } catch (IOException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning("Couldnt write to OutputStream\n" + e.getMessage());
+      throw new InvalidQueryException(e);
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning(e.getMessage());
+      throw new InvalidQueryException(e);
+    } finally {
+      releaseConnection(conn);
+    }
+  }
+
+  /**
+   * Prints buffered rows, stopping once hardLimit rows have been written.
+   * @return false if the hardLimit has been reached
+   */
+  private boolean printRows(List rows, int hardLimit) throws IOException {
+    for (int r = 0, n = rows.size(); r < n; r++) {
+      if (hardLimit > 0 && totalRows >= hardLimit)
+        return false;
+
+      String[] row = (String[]) rows.get(r);
+      for (int i = 0; i < row.length; i++) {
+        if (i > 0)
+          osr.print(format.getSeparator());
+        if (row[i] != null)
+          osr.print(row[i]);
+      }
+      osr.print("\n");
+
+      if (osr.checkError())
+        throw new IOException();
+
+      totalRows++;
+    }
+    return hardLimit < 1 || totalRows < hardLimit;
+  }
+
+  private void close(ResultSet rs, PreparedStatement ps) {
+    try {
+      if (rs != null)
+        rs.close();
+      if (ps != null)
+        ps.close();
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning("Could not close statement: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Sets the strategy used to execute the SQL, one of BATCHED, STREAMING or KEYSET.
+   * Defaults to BATCHED.
+   * @param executionMode
+   */
+  public void setExecutionMode(int executionMode) {
+    if (executionMode != BATCHED && executionMode != STREAMING && executionMode != KEYSET)
+      throw new IllegalArgumentException("Unknown execution mode " + executionMode);
+    this.executionMode = executionMode;
+  }
+
+  public int getExecutionMode() {
+    return executionMode;
+  }
+
+  /**
+   * Sets the number of identifiers above which a big IDListFilter is loaded into a
+   * temporary table and joined against, rather than executed in batches of 1000
+   * identifiers.  Supported on mysql, postgres and oracle; where the temporary table
+   * cannot be created the batches are used instead.  0 disables the temporary table.
+   * Defaults to DEFAULTTEMPTABLETHRESHOLD.
+   * @param threshold
+   * @see IDListTempTable
+   */
+  public void setIDListTempTableThreshold(int threshold) {
+    this.tempTableThreshold = threshold;
+  }
+
+  /**
+   * Sets the number of ID list batches executed concurrently when an IDListFilter
+   * holds more identifiers than can be sent in one statement.  Each concurrent batch
+   * takes a connection from the pool of the Query DataSource, so the degree of
+   * parallelism is capped at its maxPoolSize.  Defaults to 1 (sequential).
+   * @param parallelism
+   */
+  public void setIDListParallelism(int parallelism) {
+    this.idListParallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * If true (the default) the output of parallel ID list batches is written in batch
+   * order, otherwise each batch is written as soon as it completes.
+   * @param ordered
+   */
+  public void setIDListOrdered(boolean ordered) {
+    this.idListOrdered = ordered;
+  }
+
+  /**
+   * Sets the number of rows fetched per round trip by a streaming cursor on
+   * platforms other than mysql (which always streams row by row).
+   * @param fetchSize
+   */
+  public void setStreamingFetchSize(int fetchSize) {
+    if (fetchSize > 0)
+      this.streamingFetchSize = fetchSize;
+  }
   
   protected void executeQueryGeneric(DetailedDataSource ds, Query curQuery, int hardLimit) throws SequenceException, InvalidQueryException {
     lastID = -1; // so nothing is skipped
@@ -163,7 +516,7 @@ public final class AttributeQueryRunner implements QueryRunner {
       //queryID = csql.getPrimaryKey();
       queryID = csql.getLowestLevelKey();
 
-      conn = ds.getConnection();
+      conn = getConnection(ds);
 
       while (moreRows) {
         StringBuffer sqlBuf = new StringBuffer(sqlbase);
@@ -233,7 +586,7 @@ public final class AttributeQueryRunner implements QueryRunner {
         logger.warning(e.getMessage());
       throw new InvalidQueryException(e);
     } finally {
-      DetailedDataSource.close(conn);
+      releaseConnection(conn);
     }
   }
   
@@ -251,7 +604,7 @@ public final class AttributeQueryRunner implements QueryRunner {
       csql = new QueryCompiler(curQuery,ds);
       String sqlbase = csql.toSQL();
 
-      conn = ds.getConnection();
+      conn = getConnection(ds);
 
       while (moreRows) {
         sql = sqlbase;
@@ -313,7 +666,7 @@ public final class AttributeQueryRunner implements QueryRunner {
         logger.warning(e.getMessage());
       throw new InvalidQueryException(e);
     } finally {
-      DetailedDataSource.close(conn);
+      releaseConnection(conn);
     }
   }
 
@@ -406,6 +759,25 @@ public final class AttributeQueryRunner implements QueryRunner {
     }
   }
 
+  /** Legacy execution, re-executing the SQL with LIMIT/OFFSET (or key) batches */
+  public static final int BATCHED = 0;
+  /** Execute the SQL once, streaming results through a forward only cursor */
+  public static final int STREAMING = 1;
+  /** Page on the lowest level key, without OFFSET */
+  public static final int KEYSET = 2;
+
+  public static final int DEFAULTSTREAMINGFETCHSIZE = 5000;
+
+  private int executionMode = BATCHED;
+  private int streamingFetchSize = DEFAULTSTREAMINGFETCHSIZE;
+  public static final int DEFAULTTEMPTABLETHRESHOLD = 10000;
+
+  private int tempTableThreshold = DEFAULTTEMPTABLETHRESHOLD;
+  private int idListParallelism = 1;
+  // connection holding a temporary table the current query joins against
+  private Connection sessionConnection = null;
+  private boolean idListOrdered = true;
+
   //batching 
   private final int[] batchModifiers = { 2, 2 };
   private int modIter = 0; //start at 0 
@@ -18,7 +18,9 @@
 
 package org.ensembl.mart.lib;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -51,6 +53,13 @@ public abstract class BaseSeqQueryRunner implements QueryRunner {
   //big list batching
   private final int listSizeMax = 1000;
   private final int maxBigListCount = 1;
+  private int idListParallelism = 1;
+  private boolean idListOrdered = true;
+
+  //sequence pipeline, null when sequences are written by the reading thread
+  private int pipelineWorkers = 0;
+  private SequencePipeline pipeline = null;
+  private List pipelineFields = null;
     
   protected String separator;
   private Logger logger = Logger.getLogger(BaseSeqQueryRunner.class.getName());
@@ -89,7 +98,7 @@ public abstract class BaseSeqQueryRunner implements QueryRunner {
   protected int chromIndex = -1;
   protected int strandIndex = -1;
   protected List otherIndices = new ArrayList();
-  protected DNAAdaptor dna;
+  protected SequenceSource dna;
 
   public BaseSeqQueryRunner(Query query) {
     this.query = new Query(query);
@@ -143,7 +152,59 @@ public abstract class BaseSeqQueryRunner implements QueryRunner {
   protected void writeLastEntry(Connection conn) throws SequenceException {
     // write the last transcripts data, if present
     if (lastID > -1)
-      seqWriter.writeSequences(new Integer(lastID), conn);
+      writeRecord(new Integer(lastID), conn);
+  }
+
+  /**
+   * Writes the sequences of the record that has just been collected by processResultSet.
+   * Without a SequencePipeline the SeqWriter is called directly.  Otherwise the record
+   * is handed to the pipeline as the description fields seen so far plus the state
+   * returned by saveRecordState, and written by a worker while this thread carries on
+   * reading the ResultSet.  Implementations must therefore replace, rather than clear,
+   * the objects holding a record once it has been written.
+   * 
+   * @param id identifier passed to the SeqWriter
+   * @param conn Connection passed to the SeqWriter
+   * @throws SequenceException
+   */
+  protected void writeRecord(Integer id, Connection conn) throws SequenceException {
+    if (pipeline == null) {
+      seqWriter.writeSequences(id, conn);
+      return;
+    }
+
+    // fields is only ever appended to, so an equal size means an equal list
+    if (pipelineFields == null || pipelineFields.size() != fields.size())
+      pipelineFields = new ArrayList(fields);
+    pipeline.submit(id, pipelineFields, saveRecordState(id));
+  }
+
+  /**
+   * Returns the objects the SeqWriter reads to write the current record, other than
+   * fields.  The default covers implementations which collect records in iDs.
+   * @param id identifier of the record
+   * @return Object passed back to restoreRecordState on a pipeline worker
+   */
+  protected Object saveRecordState(Integer id) {
+    return iDs;
+  }
+
+  /**
+   * Reinstates the state of a record saved by saveRecordState, before it is written.
+   * @param state
+   */
+  protected void restoreRecordState(Object state) {
+    iDs = (TreeMap) state;
+  }
+
+  /**
+   * Called on a pipeline worker runner to write a single record to its buffer.
+   */
+  void writePipelinedRecord(Integer id, List recordFields, Object state) throws SequenceException {
+    fields = recordFields;
+    restoreRecordState(state);
+    seqWriter.writeSequences(id, null);
+    osr.flush();
   }
 
   protected abstract class SeqWriter {
@@ -157,17 +218,14 @@ public abstract class BaseSeqQueryRunner implements QueryRunner {
     if (isSubQuery)
       throw new SequenceException("SubQuerys cannot return sequences\n");
 
-    //Some implementations do not need DNA adaptors, so they will have null SeqInfo
-    if (query.getSequenceDescription().getSeqInfo() != null 
-     && query.getSequenceDescription().getSeqInfo().length() > 0)
-      dna = new DNAAdaptor(query.getSequenceDescription());
-    
+    // batch runners repeat updateQuery themselves, so they are built from the query as supplied
+    Query batchBase = new Query(query);
+
     updateQuery();
         
     Filter[] filters = query.getFilters();
 
     Filter bigListFilter = null;
-    String[] biglist = null;
     int numBigLists = 0;
     for (int i = 0, n = filters.length; i < n; i++) {
       Filter filter = filters[i];
@@ -177,67 +235,160 @@ public abstract class BaseSeqQueryRunner implements QueryRunner {
             throw new InvalidQueryException("Too many in list filters attached, only one per query supported.\n");
 
           bigListFilter = filter;
-          biglist = ((IDListFilter) filter).getIdentifiers();
           numBigLists++;
         }
       }
     }
 
-    if (numBigLists > 0) {      
-      boolean moreRows = true;
-      String[] idBatch = new String[listSizeMax];
-      int batchIter = 0;
+    Query[] batches = null;
+    int parallelism = 1;
+    if (numBigLists > 0) {
+      batches = ParallelIDListExecutor.splitBatches(query, (IDListFilter) bigListFilter, listSizeMax);
+      // each batch holds a query connection and a DNAAdaptor connection
+      parallelism = ParallelTasks.boundParallelism(idListParallelism, query.getDataSource(), 2);
+    }
 
-      for (int i = 0, n = biglist.length; moreRows && i < n; i++) {
-        String element = biglist[i];
+    if (batches != null && batches.length > 1 && parallelism > 1) {
+      Query[] batchQueries = ParallelIDListExecutor.splitBatches(batchBase, (IDListFilter) bigListFilter, listSizeMax);
+      ParallelIDListExecutor executor =
+        new ParallelIDListExecutor(batchQueries, new ParallelIDListExecutor.RunnerFactory() {
+          public QueryRunner createRunner(Query batchQuery, OutputStream out) throws InvalidQueryException {
+            try {
+              return QueryRunnerFactory.getInstance(batchQuery, format, out);
+            } catch (FormatException e) {
+              throw new InvalidQueryException(e);
+            }
+          }
+        }, parallelism, idListOrdered, isSubQuery);
+      totalRows += executor.execute(hardLimit, osr);
+      return;
+    }
 
-        if ((i > 0) && ((i % listSizeMax) == 0)) {
-          Query newQuery = new Query(query);
-          newQuery.removeFilter(bigListFilter);
+    //Some implementations do not need DNA sources, so they will have null SeqInfo
+    boolean needsDNA = query.getSequenceDescription().getSeqInfo() != null 
+     && query.getSequenceDescription().getSeqInfo().length() > 0;
 
-          IDListFilter newFilter =
-            new IDListFilter(bigListFilter.getField(), bigListFilter.getTableConstraint(), bigListFilter.getKey(), idBatch);
-          newQuery.addFilter(newFilter);
+    int workers = needsDNA ? boundPipelineWorkers(pipelineWorkers) : 0;
+    try {
+      if (workers > 0)
+        pipeline = createPipeline(batchBase, workers);
+      else if (needsDNA)
+        dna = SequenceSourceFactory.getInstance(query.getSequenceDescription());
 
-          executeQuery(newQuery, hardLimit);
+      if (batches != null) {      
+        boolean moreRows = true;
+        for (int i = 0; moreRows && i < batches.length; i++) {
+          executeQuery(batches[i], hardLimit);
 
           if (hardLimit > 0)
             moreRows = totalRows < hardLimit;
-              
-          idBatch = new String[listSizeMax];
-          batchIter = 0;
         }
-        idBatch[batchIter] = element;
-        batchIter++;
+      } else {
+        executeQuery(query, hardLimit);
       }
 
-      //last batch is either empty, or less than idBatch.length
-      if (moreRows && idBatch[0] != null) {
-        
-        List lastBatch = new ArrayList();
-        for (int i = 0, n = idBatch.length; i < n; i++) {
-          String element = idBatch[i];
-          if (element != null)
-            lastBatch.add(element);
-        }
+      if (pipeline != null)
+        pipeline.finish();
+    } finally {
+      if (pipeline != null) {
+        pipeline.close();
+        pipeline = null;
+      }
 
-        String[] lbatch = new String[lastBatch.size()];
-        lastBatch.toArray(lbatch);
-                  
-        Query newQuery = new Query(query);
-        newQuery.removeFilter(bigListFilter);
+      if (dna != null)
+        dna.close();
+    }
+  }
 
-        IDListFilter newFilter = new IDListFilter(bigListFilter.getField(), bigListFilter.getTableConstraint(), bigListFilter.getKey(),lbatch);
-        newQuery.addFilter(newFilter);
+  /**
+   * Each pipeline worker holds a DNA connection from the pool of the reference
+   * DataSource, which the reading thread may share.
+   */
+  private int boundPipelineWorkers(int requested) {
+    if (requested < 1)
+      return 0;
+
+    DetailedDataSource refds = query.getSequenceDescription().getRefDataSource();
+    int max = requested;
+    if (refds != null && refds.getMaxPoolSize() > 0) {
+      int available = refds.getMaxPoolSize();
+      if (refds == query.getDataSource())
+        available--;
+      max = Math.min(max, available);
+    }
+    return Math.max(0, max);
+  }
 
-        executeQuery(newQuery, hardLimit);
+  /**
+   * Creates a worker runner for each pipeline thread from the query as supplied to this
+   * runner, each with its own SequenceSource, writing into its own buffer.
+   */
+  private SequencePipeline createPipeline(Query base, int workers) throws SequenceException, InvalidQueryException {
+    BaseSeqQueryRunner[] runners = new BaseSeqQueryRunner[workers];
+    ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[workers];
+    try {
+      for (int i = 0; i < workers; i++) {
+        buffers[i] = new ByteArrayOutputStream();
+        runners[i] = (BaseSeqQueryRunner) QueryRunnerFactory.getInstance(base, format, buffers[i]);
+        runners[i].updateQuery();
+        runners[i].dna = SequenceSourceFactory.getInstance(runners[i].query.getSequenceDescription());
       }
-    } else {
-      executeQuery(query, hardLimit);
+    } catch (FormatException e) {
+      closeRunners(runners);
+      throw new InvalidQueryException(e);
+    } catch (SequenceException e) {
+      closeRunners(runners);
+      throw e;
     }
-    
-    if (dna != null)
-      dna.close();
+
+    if (logger.isLoggable(Level.FINE))
+      logger.fine("Writing sequences with " + workers + " pipeline workers");
+
+    return new SequencePipeline(runners, buffers, osr, workers * 4);
+  }
+
+  private void closeRunners(BaseSeqQueryRunner[] runners) {
+    for (int i = 0; i < runners.length; i++)
+      if (runners[i] != null && runners[i].dna != null)
+        runners[i].dna.close();
+  }
+
+  public int getTotalRows() {
+    return totalRows;
+  }
+
+  /**
+   * Sets the number of ID list batches executed concurrently when an IDListFilter
+   * holds more identifiers than can be sent in one statement.  Each concurrent batch
+   * holds two connections from the pool of the Query DataSource, so the degree of
+   * parallelism is capped at half its maxPoolSize.  Defaults to 1 (sequential).
+   * @param parallelism
+   * @see ParallelIDListExecutor
+   */
+  public void setIDListParallelism(int parallelism) {
+    this.idListParallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * If true (the default) the output of parallel ID list batches is written in batch
+   * order, otherwise each batch is written as soon as it completes.
+   * @param ordered
+   */
+  public void setIDListOrdered(boolean ordered) {
+    this.idListOrdered = ordered;
+  }
+
+  /**
+   * Sets the number of worker threads fetching and formatting sequences while the
+   * ResultSet is read.  Each worker holds its own connection to the reference DNA, so
+   * the number of workers is capped by the maxPoolSize of its DataSource.  Output is
+   * identical to that written without workers.  Defaults to 0, which fetches each
+   * sequence on the thread reading the ResultSet.
+   * @param workers
+   * @see SequencePipeline
+   */
+  public void setSequencePipelineWorkers(int workers) {
+    this.pipelineWorkers = Math.max(0, workers);
   }
 
   protected void executeQuery(Query curQuery, int hardLimit) throws SequenceException, InvalidQueryException {
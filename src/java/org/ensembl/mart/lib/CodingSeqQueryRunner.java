@@ -117,7 +117,7 @@ public final class CodingSeqQueryRunner extends BaseSeqQueryRunner {
       if ( tranID.intValue() != lastID  ) {
         if ( lastID > -1  ) {
           //This is not the first ID in a batch, process the previous ID sequences
-          seqWriter.writeSequences(new Integer(lastID), conn);
+          writeRecord(new Integer(lastID), conn);
         }
        
         //refresh the iDs TreeMap  
@@ -200,13 +200,15 @@ public final class CodingSeqQueryRunner extends BaseSeqQueryRunner {
 
         TreeMap locations = (TreeMap) tranatts.get(LOCATIONS);
 
-        for (Iterator lociter = locations.keySet().iterator(); lociter.hasNext();) {
-          SequenceLocation loc = (SequenceLocation) locations.get((Integer) lociter.next());
+        byte[][] sequences = dna.getSequences(locations.values());
+        Iterator lociter = locations.values().iterator();
+        for (int locIndex = 0; lociter.hasNext(); locIndex++) {
+          SequenceLocation loc = (SequenceLocation) lociter.next();
           if (loc.getStrand() < 0)
             osr.write(
-              SequenceUtil.reverseComplement(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd())));
+              SequenceUtil.reverseComplement(sequences[locIndex]));
           else
-            osr.write(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd()));
+            osr.write(sequences[locIndex]);
 
         }
         osr.print("\n");
@@ -257,14 +259,16 @@ public final class CodingSeqQueryRunner extends BaseSeqQueryRunner {
 	
         TreeMap locations = (TreeMap) tranatts.get(LOCATIONS);
 
-        for (Iterator lociter = locations.keySet().iterator(); lociter.hasNext();) {
-          SequenceLocation loc = (SequenceLocation) locations.get((Integer) lociter.next());
+        byte[][] sequences = dna.getSequences(locations.values());
+        Iterator lociter = locations.values().iterator();
+        for (int locIndex = 0; lociter.hasNext(); locIndex++) {
+          SequenceLocation loc = (SequenceLocation) lociter.next();
 
           if (loc.getStrand() < 0)
             osr.writeSequence(
-              SequenceUtil.reverseComplement(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd())));
+              SequenceUtil.reverseComplement(sequences[locIndex]));
           else
-            osr.writeSequence(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd()));
+            osr.writeSequence(sequences[locIndex]);
 
         }
         osr.print("\n");
@@ -0,0 +1,124 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The SQL compiled by a QueryCompiler for one query shape, together with the
+ * layout of its PreparedStatement parameters.  Queries which differ only in their
+ * filter values share a CompiledQuery through the QueryPlanCache.  Instances are
+ * immutable.
+ * 
+ * @see QueryPlanCache
+ */
+public class CompiledQuery {
+
+  private final String sql;
+  private final String pksql;
+  private final String mainTable;
+  private final String lowestLevelKey;
+  private final String qualifiedLowestLevelKey;
+  private final int[] parameterFilters;
+
+  /**
+   * @param sql compiled SQL, or the focus count SQL
+   * @param pksql compiled SQL with the lowest level key selected last, may be null
+   * @param mainTable main table the query is joined to
+   * @param lowestLevelKey lowest level key used in join clauses
+   * @param qualifiedLowestLevelKey lowest level key qualified with its table alias
+   * @param parameterFilters index into Query.getFilters() of the filter bound to each
+   * PreparedStatement parameter, in parameter order
+   */
+  public CompiledQuery(
+    String sql,
+    String pksql,
+    String mainTable,
+    String lowestLevelKey,
+    String qualifiedLowestLevelKey,
+    int[] parameterFilters) {
+    this.sql = sql;
+    this.pksql = pksql;
+    this.mainTable = mainTable;
+    this.lowestLevelKey = lowestLevelKey;
+    this.qualifiedLowestLevelKey = qualifiedLowestLevelKey;
+    this.parameterFilters = parameterFilters;
+  }
+
+  /**
+   * Returns the index into Query.getFilters() of each filter with a value, which are
+   * bound to the PreparedStatement parameters in this order.
+   * @param query
+   * @return int[] filter indexes
+   */
+  public static int[] parameterLayout(Query query) {
+    Filter[] filters = query.getFilters();
+    int n = 0;
+    for (int i = 0; i < filters.length; i++)
+      if (filters[i].getValue() != null)
+        n++;
+
+    int[] layout = new int[n];
+    for (int i = 0, p = 0; i < filters.length; i++)
+      if (filters[i].getValue() != null)
+        layout[p++] = i;
+    return layout;
+  }
+
+  /**
+   * Binds the filter values of query, which must have the shape this plan was
+   * compiled for, to ps.
+   * @param ps PreparedStatement prepared from getSQL or getSQLWithKey
+   * @param query
+   * @return int number of parameters bound
+   * @throws SQLException
+   */
+  public int bind(PreparedStatement ps, Query query) throws SQLException {
+    Filter[] filters = query.getFilters();
+    for (int p = 0; p < parameterFilters.length; p++)
+      ps.setString(p + 1, filters[parameterFilters[p]].getValue());
+    return parameterFilters.length;
+  }
+
+  public String getSQL() {
+    return sql;
+  }
+
+  public String getSQLWithKey() {
+    return pksql;
+  }
+
+  public String getMainTable() {
+    return mainTable;
+  }
+
+  public String getLowestLevelKey() {
+    return lowestLevelKey;
+  }
+
+  public String getQualifiedLowestLevelKey() {
+    return qualifiedLowestLevelKey;
+  }
+
+  public int getParameterCount() {
+    return parameterFilters.length;
+  }
+}
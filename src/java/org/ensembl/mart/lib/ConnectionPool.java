@@ -0,0 +1,724 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of JDBC Connections used by DetailedDataSource.
+ * 
+ * <ul>
+ * <li> between minSize and maxSize connections are held, connections being opened on demand.
+ * <li> callers which find the pool exhausted wait in a first come, first served queue,
+ *   failing with an SQLException after maxWaitMillis.
+ * <li> a connection idle for longer than validationIntervalMillis is checked with a
+ *   cheap query before it is handed out, and replaced if it is dead.
+ * <li> idle connections are closed after maxIdleMillis, and every connection after
+ *   maxLifetimeMillis, by a background evictor.
+ * <li> PreparedStatements of each connection are kept open in the StatementCache, and
+ *   handed out again when the same SQL is prepared on the connection.
+ * <li> counters for active and idle connections, waits and borrow latency are kept.
+ * </ul>
+ * 
+ * Connections handed out are proxies: closing them returns the underlying connection
+ * to the pool.
+ * 
+ * @see DetailedDataSource
+ */
+public class ConnectionPool {
+
+  public static final long DEFAULTMAXWAITMILLIS = 30000;
+  public static final long DEFAULTVALIDATIONINTERVALMILLIS = 5000;
+  public static final long DEFAULTMAXIDLEMILLIS = 10 * 60 * 1000;
+  public static final long DEFAULTMAXLIFETIMEMILLIS = 60 * 60 * 1000;
+  public static final long DEFAULTEVICTIONINTERVALMILLIS = 30000;
+
+  /** Upper bounds, in milliseconds, of the borrow latency histogram buckets, the last bucket is unbounded */
+  public static final long[] LATENCYBUCKETS = { 1, 5, 10, 50, 100, 500, 1000 };
+
+  private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+  // shared by every pool, runs the evictors
+  private static Timer evictionTimer = null;
+
+  private final String jdbcDriverClassName;
+  private final String connectionString;
+  private final String user;
+  private final String password;
+  private final String validationQuery;
+
+  // all below guarded by this
+  private int minSize = 0;
+  private int maxSize;
+  private long maxWaitMillis = DEFAULTMAXWAITMILLIS;
+  private long validationIntervalMillis = DEFAULTVALIDATIONINTERVALMILLIS;
+  private long maxIdleMillis = DEFAULTMAXIDLEMILLIS;
+  private long maxLifetimeMillis = DEFAULTMAXLIFETIMEMILLIS;
+
+  private final LinkedList idle = new LinkedList(); // most recently used first
+  private final LinkedList waiters = new LinkedList();
+  private int total = 0; // open and opening connections
+  private boolean closed = false;
+  private TimerTask evictor = null;
+
+  private long borrowed = 0;
+  private long created = 0;
+  private long destroyed = 0;
+  private long waits = 0;
+  private long waitMillis = 0;
+  private long timeouts = 0;
+  private long validationFailures = 0;
+  private final long[] latencyHistogram = new long[LATENCYBUCKETS.length + 1];
+
+  /**
+   * @param jdbcDriverClassName JDBC driver, loaded when the first connection is opened
+   * @param connectionString JDBC URL
+   * @param user
+   * @param password
+   * @param databaseType one of the DetailedDataSource database types, chooses the validation query
+   * @param maxSize maximum number of connections, 0 for no limit
+   */
+  public ConnectionPool(
+    String jdbcDriverClassName,
+    String connectionString,
+    String user,
+    String password,
+    String databaseType,
+    int maxSize) {
+    this.jdbcDriverClassName = jdbcDriverClassName;
+    this.connectionString = connectionString;
+    this.user = user;
+    this.password = password;
+    this.maxSize = maxSize;
+    this.validationQuery = DetailedDataSource.ORACLE.equals(databaseType) ? "select 1 from dual" : "select 1";
+  }
+
+  /**
+   * Returns a connection from the pool, opening one if none is idle and there is room,
+   * otherwise waiting for one to be returned.
+   * 
+   * @return Connection to be returned to the pool with close()
+   * @throws SQLException if a connection could not be opened, or none became available
+   * within maxWaitMillis
+   */
+  public Connection getConnection() throws SQLException {
+    long start = System.currentTimeMillis();
+    PooledConnection pc = null;
+
+    while (pc == null) {
+      boolean open = false;
+      synchronized (this) {
+        if (closed)
+          throw new SQLException("Connection pool for " + connectionString + " has been closed");
+
+        if (waiters.isEmpty() && !idle.isEmpty())
+          pc = (PooledConnection) idle.removeFirst();
+        else if (waiters.isEmpty() && (maxSize < 1 || total < maxSize)) {
+          total++;
+          open = true;
+        } else {
+          pc = await(start);
+          open = (pc == null);
+        }
+      }
+
+      if (open)
+        pc = open();
+      else if (!validate(pc))
+        pc = null;
+    }
+
+    long latency = System.currentTimeMillis() - start;
+    synchronized (this) {
+      borrowed++;
+      int b = 0;
+      while (b < LATENCYBUCKETS.length && latency >= LATENCYBUCKETS[b])
+        b++;
+      latencyHistogram[b]++;
+    }
+
+    return pc.lease();
+  }
+
+  /**
+   * Joins the back of the wait queue.
+   * @return a connection handed over by a returning caller, or null if the caller
+   * has been given a free slot to open a new connection in
+   */
+  private PooledConnection await(long start) throws SQLException {
+    Waiter waiter = new Waiter();
+    waiters.addLast(waiter);
+    waits++;
+
+    try {
+      long remaining = maxWaitMillis;
+      while (!waiter.served) {
+        if (closed)
+          throw new SQLException("Connection pool for " + connectionString + " has been closed");
+        if (remaining <= 0) {
+          timeouts++;
+          throw new SQLException(
+            "Timed out after " + maxWaitMillis + "ms waiting for a connection to " + connectionString + " " + this);
+        }
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          throw new SQLException("Interrupted waiting for a connection to " + connectionString);
+        }
+        remaining = maxWaitMillis - (System.currentTimeMillis() - start);
+      }
+      return waiter.connection;
+    } finally {
+      waiters.remove(waiter);
+      waitMillis += System.currentTimeMillis() - start;
+    }
+  }
+
+  /**
+   * Opens a new physical connection in a slot already counted in total.
+   */
+  private PooledConnection open() throws SQLException {
+    try {
+      try {
+        Class.forName(jdbcDriverClassName).newInstance();
+      } catch (Exception e) {
+        throw new SQLException("Failed to load JDBC driver " + jdbcDriverClassName + ": " + e.getMessage());
+      } catch (NoClassDefFoundError e) {
+        throw new SQLException("Failed to load JDBC driver " + jdbcDriverClassName + ": " + e.getMessage());
+      }
+
+      Connection conn = DriverManager.getConnection(connectionString, user, password);
+      synchronized (this) {
+        created++;
+        startEvictor();
+      }
+      return new PooledConnection(conn);
+    } catch (SQLException e) {
+      slotFreed();
+      throw e;
+    }
+  }
+
+  /**
+   * Checks a connection which has been idle for longer than validationIntervalMillis,
+   * destroying it if it is dead.
+   * @return true if the connection can be used
+   */
+  private boolean validate(PooledConnection pc) {
+    long interval;
+    synchronized (this) {
+      interval = validationIntervalMillis;
+    }
+    if (System.currentTimeMillis() - pc.lastUsed < interval)
+      return true;
+
+    Statement stmt = null;
+    try {
+      stmt = pc.conn.createStatement();
+      ResultSet rs = stmt.executeQuery(validationQuery);
+      rs.close();
+      return true;
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.INFO))
+        logger.info("Discarding dead connection to " + connectionString + ": " + e.getMessage());
+      synchronized (this) {
+        validationFailures++;
+      }
+      destroy(pc);
+      return false;
+    } finally {
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException e) {
+          // connection is being discarded
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes a connection back from a caller, handing it to the first waiter if there is one.
+   */
+  private void release(PooledConnection pc) {
+    boolean reset = true;
+    try {
+      if (!pc.conn.getAutoCommit()) {
+        pc.conn.rollback();
+        pc.conn.setAutoCommit(true);
+      }
+      pc.conn.clearWarnings();
+    } catch (SQLException e) {
+      reset = false;
+    }
+
+    long now = System.currentTimeMillis();
+    pc.lastUsed = now;
+
+    synchronized (this) {
+      if (reset && !closed && now - pc.created < maxLifetimeMillis) {
+        if (!waiters.isEmpty()) {
+          Waiter waiter = (Waiter) waiters.removeFirst();
+          waiter.connection = pc;
+          waiter.served = true;
+          notifyAll();
+        } else
+          idle.addFirst(pc);
+        return;
+      }
+    }
+
+    destroy(pc);
+  }
+
+  private void destroy(PooledConnection pc) {
+    StatementCache.closeAll(pc.conn);
+    try {
+      pc.conn.close();
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.FINE))
+        logger.fine("Could not close connection: " + e.getMessage());
+    }
+
+    synchronized (this) {
+      destroyed++;
+    }
+    slotFreed();
+  }
+
+  /**
+   * A connection has gone, let the first waiter open a new one in its place.
+   */
+  private synchronized void slotFreed() {
+    total--;
+    if (!waiters.isEmpty() && !closed) {
+      Waiter waiter = (Waiter) waiters.removeFirst();
+      total++;
+      waiter.served = true;
+      notifyAll();
+    }
+  }
+
+  private void startEvictor() {
+    if (evictor != null)
+      return;
+
+    evictor = new TimerTask() {
+      public void run() {
+        evict();
+      }
+    };
+    synchronized (ConnectionPool.class) {
+      if (evictionTimer == null)
+        evictionTimer = new Timer(true);
+      evictionTimer.schedule(evictor, DEFAULTEVICTIONINTERVALMILLIS, DEFAULTEVICTIONINTERVALMILLIS);
+    }
+  }
+
+  /**
+   * Closes idle connections past maxIdleMillis, keeping minSize connections, and idle
+   * connections past maxLifetimeMillis.
+   */
+  void evict() {
+    List expired = new LinkedList();
+    long now = System.currentTimeMillis();
+
+    synchronized (this) {
+      // oldest idle connections are at the end
+      for (Iterator iter = idle.iterator(); iter.hasNext();) {
+        PooledConnection pc = (PooledConnection) iter.next();
+        boolean tooOld = now - pc.created >= maxLifetimeMillis;
+        boolean tooIdle = now - pc.lastUsed >= maxIdleMillis && total - expired.size() > minSize;
+        if (tooOld || tooIdle) {
+          iter.remove();
+          expired.add(pc);
+        }
+      }
+    }
+
+    for (Iterator iter = expired.iterator(); iter.hasNext();)
+      destroy((PooledConnection) iter.next());
+
+    if (expired.size() > 0 && logger.isLoggable(Level.FINE))
+      logger.fine("Evicted " + expired.size() + " connections to " + connectionString);
+  }
+
+  /**
+   * Closes all idle connections and stops the evictor.  Connections in use are closed
+   * when they are returned.
+   */
+  public void close() {
+    List toClose;
+    synchronized (this) {
+      closed = true;
+      toClose = new LinkedList(idle);
+      idle.clear();
+      if (evictor != null)
+        evictor.cancel();
+      notifyAll();
+    }
+
+    for (Iterator iter = toClose.iterator(); iter.hasNext();)
+      destroy((PooledConnection) iter.next());
+  }
+
+  public synchronized void setMinSize(int minSize) {
+    this.minSize = Math.max(0, minSize);
+  }
+
+  public synchronized int getMinSize() {
+    return minSize;
+  }
+
+  /**
+   * @param maxSize maximum number of connections, 0 for no limit
+   */
+  public synchronized void setMaxSize(int maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+  }
+
+  public synchronized int getMaxSize() {
+    return maxSize;
+  }
+
+  public synchronized void setMaxWaitMillis(long maxWaitMillis) {
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  public synchronized long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  /**
+   * @param validationIntervalMillis connections idle for at least this long are validated
+   * before use, 0 validates every borrow
+   */
+  public synchronized void setValidationIntervalMillis(long validationIntervalMillis) {
+    this.validationIntervalMillis = validationIntervalMillis;
+  }
+
+  public synchronized void setMaxIdleMillis(long maxIdleMillis) {
+    this.maxIdleMillis = maxIdleMillis;
+  }
+
+  public synchronized void setMaxLifetimeMillis(long maxLifetimeMillis) {
+    this.maxLifetimeMillis = maxLifetimeMillis;
+  }
+
+  /**
+   * @return number of connections handed out and not yet returned
+   */
+  public synchronized int getActiveCount() {
+    return total - idle.size();
+  }
+
+  public synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  public synchronized int getWaitingCount() {
+    return waiters.size();
+  }
+
+  public synchronized long getBorrowCount() {
+    return borrowed;
+  }
+
+  public synchronized long getCreatedCount() {
+    return created;
+  }
+
+  public synchronized long getDestroyedCount() {
+    return destroyed;
+  }
+
+  public synchronized long getWaitCount() {
+    return waits;
+  }
+
+  /**
+   * @return total milliseconds callers have spent waiting in the queue
+   */
+  public synchronized long getWaitMillis() {
+    return waitMillis;
+  }
+
+  public synchronized long getTimeoutCount() {
+    return timeouts;
+  }
+
+  public synchronized long getValidationFailureCount() {
+    return validationFailures;
+  }
+
+  /**
+   * @return number of borrows whose latency fell in each of the LATENCYBUCKETS
+   */
+  public synchronized long[] getBorrowLatencyHistogram() {
+    return (long[]) latencyHistogram.clone();
+  }
+
+  public synchronized String toString() {
+    StringBuffer buf = new StringBuffer();
+
+    buf.append("[");
+    buf.append("active=").append(total - idle.size());
+    buf.append(", idle=").append(idle.size());
+    buf.append(", waiting=").append(waiters.size());
+    buf.append(", maxSize=").append(maxSize);
+    buf.append(", borrowed=").append(borrowed);
+    buf.append(", created=").append(created);
+    buf.append(", destroyed=").append(destroyed);
+    buf.append(", waits=").append(waits);
+    buf.append(", waitMillis=").append(waitMillis);
+    buf.append(", timeouts=").append(timeouts);
+    buf.append(", validationFailures=").append(validationFailures);
+    buf.append(", borrowLatency={");
+    for (int i = 0; i < latencyHistogram.length; i++) {
+      if (i > 0)
+        buf.append(", ");
+      buf.append((i < LATENCYBUCKETS.length) ? "<" + LATENCYBUCKETS[i] : ">=" + LATENCYBUCKETS[i - 1]);
+      buf.append("ms=").append(latencyHistogram[i]);
+    }
+    buf.append("}]");
+
+    return buf.toString();
+  }
+
+  private static class Waiter {
+    private boolean served = false;
+    private PooledConnection connection = null;
+  }
+
+  /**
+   * Physical connection held by the pool.
+   */
+  private class PooledConnection {
+    private final Connection conn;
+    private final long created = System.currentTimeMillis();
+    private long lastUsed = created;
+
+    private PooledConnection(Connection conn) {
+      this.conn = conn;
+    }
+
+    private Connection lease() {
+      return (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class[] { Connection.class },
+        new ConnectionHandler(this));
+    }
+  }
+
+  /**
+   * Connection handed to a caller, returning the physical connection to the pool when
+   * closed, and preparing statements through the StatementCache.  Statements the caller
+   * left open are closed when the connection is, as they would be by the driver.
+   */
+  private class ConnectionHandler implements InvocationHandler {
+    private PooledConnection pc;
+    private final List statements = new LinkedList();
+
+    private ConnectionHandler(PooledConnection pc) {
+      this.pc = pc;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+
+      if (name.equals("equals"))
+        return Boolean.valueOf(proxy == args[0]);
+      if (name.equals("hashCode"))
+        return new Integer(System.identityHashCode(proxy));
+      if (name.equals("toString"))
+        return "PooledConnection[" + ((pc != null) ? pc.conn.toString() : "closed") + "]";
+      if (name.equals("isClosed"))
+        return Boolean.valueOf(pc == null || pc.conn.isClosed());
+
+      if (name.equals("close")) {
+        PooledConnection returning;
+        List open;
+        synchronized (this) {
+          returning = pc;
+          pc = null;
+          open = new LinkedList(statements);
+          statements.clear();
+        }
+        if (returning != null) {
+          closeStatements(open);
+          release(returning);
+        }
+        return null;
+      }
+
+      PooledConnection current = pc;
+      if (current == null)
+        throw new SQLException("Connection has been returned to the pool");
+
+      Object result;
+      if (name.equals("prepareStatement") && args.length == 1) {
+        String sql = (String) args[0];
+        PreparedStatement ps = StatementCache.prepare(current.conn, sql);
+        result = Proxy.newProxyInstance(
+          PreparedStatement.class.getClassLoader(),
+          new Class[] { PreparedStatement.class },
+          new StatementHandler(this, current.conn, (Connection) proxy, sql, ps));
+      } else {
+        try {
+          result = method.invoke(current.conn, args);
+        } catch (InvocationTargetException e) {
+          throw e.getTargetException();
+        }
+      }
+
+      if (result instanceof Statement) {
+        synchronized (this) {
+          statements.add(result);
+        }
+      }
+      return result;
+    }
+
+    private synchronized void statementClosed(Statement statement) {
+      statements.remove(statement);
+    }
+
+    private void closeStatements(List open) {
+      for (Iterator iter = open.iterator(); iter.hasNext();) {
+        try {
+          ((Statement) iter.next()).close();
+        } catch (SQLException e) {
+          if (logger.isLoggable(Level.FINE))
+            logger.fine("Could not close statement left open: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * PreparedStatement handed to a caller, returned to the StatementCache when closed.
+   * A result set still open is closed first, so that an unread streaming result does
+   * not stay active on the physical connection.
+   */
+  private static class StatementHandler implements InvocationHandler {
+    private final ConnectionHandler owner;
+    private final Connection conn;
+    private final Connection proxy;
+    private final String sql;
+    private PreparedStatement ps;
+    private ResultSet results = null;
+
+    private StatementHandler(ConnectionHandler owner, Connection conn, Connection proxy, String sql, PreparedStatement ps) {
+      this.owner = owner;
+      this.conn = conn;
+      this.proxy = proxy;
+      this.sql = sql;
+      this.ps = ps;
+    }
+
+    public Object invoke(Object statementProxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+
+      if (name.equals("equals"))
+        return Boolean.valueOf(statementProxy == args[0]);
+      if (name.equals("hashCode"))
+        return new Integer(System.identityHashCode(statementProxy));
+      if (name.equals("getConnection"))
+        return proxy;
+
+      if (name.equals("close")) {
+        PreparedStatement returning;
+        ResultSet open;
+        synchronized (this) {
+          returning = ps;
+          open = results;
+          ps = null;
+          results = null;
+        }
+        if (returning != null) {
+          owner.statementClosed((Statement) statementProxy);
+          close(returning, open);
+        }
+        return null;
+      }
+
+      PreparedStatement current = ps;
+      if (current == null)
+        throw new SQLException("Statement has been closed");
+
+      Object result;
+      try {
+        result = method.invoke(current, args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+
+      if (result instanceof ResultSet) {
+        synchronized (this) {
+          results = (ResultSet) result;
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Closes the last result set handed out and returns the statement to the cache,
+     * or closes the statement if the result set could not be closed.
+     */
+    private void close(PreparedStatement returning, ResultSet open) {
+      try {
+        if (open != null)
+          open.close();
+      } catch (SQLException e) {
+        if (logger.isLoggable(Level.FINE))
+          logger.fine("Could not close result set, closing statement: " + e.getMessage());
+        try {
+          returning.close();
+        } catch (SQLException e2) {
+          // the connection is reset or discarded when it is returned
+        }
+        return;
+      }
+
+      try {
+        returning.setFetchSize(0);
+      } catch (SQLException e) {
+        // StatementCache.release resets what it can
+      }
+      StatementCache.release(conn, sql, returning);
+    }
+  }
+}
@@ -23,7 +23,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,20 +38,29 @@ import java.util.logging.Logger;
  * Object for getting DNA Seqeuence Strings
  * from the Mart sgp_chunks table.
  * 
+ * @see SequenceSourceFactory
+ * 
  * @author <a href="mailto:dlondon@ebi.ac.uk">Darin London</a>
  * @author <a href="mailto:craig@ebi.ac.uk">Craig Melsopp</a>
  */
-public class DNAAdaptor {
+public class DNAAdaptor implements SequenceSource {
 
 	private Logger logger = Logger.getLogger(DNAAdaptor.class.getName());
 	private Connection conn;
 
 	private int chunkSize = 100000; // Size of dna chunks in sgp_chunks table
+	private String dnaTable, startField, chrField, seqField;
+	private String tableID; // identifies the dna table in the shared chunk cache
+	private DNAChunkCache cache = DNAChunkCache.getInstance();
 
 	//some prepared statements for later use
 	private PreparedStatement specStmt;
 	private PreparedStatement specSQLFull;
 	private PreparedStatement specSQLSub;
+	private Map specSQLChunks = new HashMap(); // Integer number of chunks -> PreparedStatement
+
+	// maximum number of chunks fetched by one statement in getSequences
+	private static final int MAXCHUNKSPERSTATEMENT = 50;
 	
 	/**
 	 * DNAAdaptors require a database connection to get sequence from the mart database.
@@ -52,7 +68,7 @@ public class DNAAdaptor {
 	 * @param Connection
 	 */
 	public DNAAdaptor(SequenceDescription seqd) throws SequenceException {
-	    String schema, dnaTable, startField, chrField, seqField;	    
+	    String schema;
 	    schema = seqd.getRefDataSource().getSchema();
 	    
 		String[] seqInfo = seqd.getSeqInfo().split("\\,");
@@ -62,6 +78,7 @@ public class DNAAdaptor {
         startField = seqInfo[2];
         seqField = seqInfo[3];
         chunkSize = Integer.parseInt( seqInfo[4] );
+        tableID = seqd.getRefDataSource().getConnectionString() + "/" + dnaTable;
         
 		try {
 		    conn = seqd.getRefDataSource().getConnection();
@@ -82,11 +99,12 @@ public class DNAAdaptor {
       ps.setString(2, chr);
 
       ResultSet rs = ps.executeQuery();
-      rs.next();
-
-      byte[] ret = rs.getBytes(1);
+      byte[] ret = null;
+      if (rs.next())
+        ret = rs.getBytes(1);
       rs.close();
-      return ret;
+
+      return (ret != null) ? ret : new byte[0];
     } catch (SQLException e) {
       throw new SequenceException("Could not fetch full sequence chunk " + e.getMessage(), e);
     }          
@@ -155,24 +173,40 @@ public class DNAAdaptor {
   
 	/**
 	 * Gets the Sequence for a given species, chr, start and end.
-	 * Checks to see if there is cached sequence applicable for
-	 * this query, and slices that sequence for its results.
+	 * When the DNAChunkCache is enabled, whole chunks are fetched once and
+	 * cached, and the sequence is sliced from them.  Otherwise a substring is
+	 * fetched from the database for a request within one chunk, and the chunks
+	 * of a longer request are fetched together, as by getSequences.
 	 * 
 	 * @return String sequence
 	 */
 	public byte[] getSequence(String chr, int start, int end) throws SequenceException {
+    if (cache.isEnabled())
+      return completeSequence(chr, start, end, sliceChunks(chr, start, (end - start) + 1, null));
+
+    if (chunkStart(start) != chunkStart(end))
+      return getSequences(Arrays.asList(new SequenceLocation[] { new SequenceLocation(chr, start, end, 1) }))[0];
+
 		int len = (end - start) + 1;
   	byte[] retBytes = fetchSequence(chr, start, len);
-    
+    if (retBytes.length > 0 && retBytes.length < len)
+      retBytes = fetchResidualSequence(chr, start, len, retBytes);
+
+    return completeSequence(chr, start, end, retBytes);
+  }
+
+  /**
+   * Pads the bases fetched for a request with Ns if there are none at all.
+   */
+  private byte[] completeSequence(String chr, int start, int end, byte[] retBytes) {
+		int len = (end - start) + 1;
+
     if (retBytes.length < 1) {
       if (logger.isLoggable(Level.INFO))
         logger.info("No Sequence Returned for request: chromosome = " + chr + ", start = " + start + " end = " + end + "\n");
-      return Npad(len);
+      return Npad(Math.max(len, 0));
     }
     
-    if (retBytes.length < len)
-      retBytes = fetchResidualSequence(chr, start, len, retBytes);
-    
 		//user may ask for more sequence than is available, return as much as possible
 		if (retBytes.length < len && logger.isLoggable(Level.INFO))
 			logger.info("Warning, not enough sequence to satisfy request: requested " + len + " returning " + retBytes.length + "\n");
@@ -180,10 +214,211 @@ public class DNAAdaptor {
 		return retBytes;
 	}
 
+  /**
+   * Returns the full chunk starting at chunkStart, from the cache if present,
+   * otherwise from the database, adding it to the cache.
+   */
+  private byte[] getChunk(String chr, int chunkStart) throws SequenceException {
+    byte[] chunk = cache.get(tableID, chr, chunkStart);
+    if (chunk == null) {
+      chunk = fetchFullChunk(chr, chunkStart);
+      if (chunk.length > 0)
+        cache.put(tableID, chr, chunkStart, chunk);
+    }
+    return chunk;
+  }
+
+  /**
+   * Gets the sequence of each SequenceLocation, ignoring strand.  The locations are
+   * merged into overlapping or adjacent ranges on each chromosome, and every chunk
+   * covering them which is not already in the DNAChunkCache is fetched once, with one
+   * statement per chromosome for up to MAXCHUNKSPERSTATEMENT chunks.  Each sequence is
+   * then sliced from the fetched chunks.
+   * 
+   * @param locations Collection of SequenceLocation objects
+   * @return byte[][] sequence of each location, in iteration order
+   */
+  public byte[][] getSequences(Collection locations) throws SequenceException {
+    SequenceLocation[] locs = (SequenceLocation[]) locations.toArray(new SequenceLocation[locations.size()]);
+    Map chunksByChr = fetchChunks(locs);
+
+    byte[][] sequences = new byte[locs.length][];
+    for (int i = 0; i < locs.length; i++) {
+      SequenceLocation loc = locs[i];
+      int len = (loc.getEnd() - loc.getStart()) + 1;
+      Map chunks = (Map) chunksByChr.get(loc.getChr());
+      sequences[i] = completeSequence(loc.getChr(), loc.getStart(), loc.getEnd(), sliceChunks(loc.getChr(), loc.getStart(), len, chunks));
+    }
+    return sequences;
+  }
+
+  private int chunkStart(int pos) {
+    return pos - ( ( pos - 1 ) % chunkSize );
+  }
+
+  /**
+   * Fetches the chunks covering the merged ranges of locs.
+   * @return Map of chr to a Map of Integer chunkStart to chunk
+   */
+  private Map fetchChunks(SequenceLocation[] locs) throws SequenceException {
+    SequenceLocation[] sorted = (SequenceLocation[]) locs.clone();
+    Arrays.sort(sorted, new Comparator() {
+      public int compare(Object o1, Object o2) {
+        SequenceLocation l1 = (SequenceLocation) o1;
+        SequenceLocation l2 = (SequenceLocation) o2;
+        int c = l1.getChr().compareTo(l2.getChr());
+        return (c != 0) ? c : l1.getStart() - l2.getStart();
+      }
+    });
+
+    // chunk starts needed on each chromosome, from the merged ranges
+    Map needed = new HashMap();
+    for (int i = 0; i < sorted.length;) {
+      String chr = sorted[i].getChr();
+      int start = sorted[i].getStart();
+      int end = sorted[i].getEnd();
+      for (i++; i < sorted.length && sorted[i].getChr().equals(chr) && sorted[i].getStart() <= end + 1; i++)
+        end = Math.max(end, sorted[i].getEnd());
+
+      if (end < start)
+        continue;
+
+      TreeSet starts = (TreeSet) needed.get(chr);
+      if (starts == null) {
+        starts = new TreeSet();
+        needed.put(chr, starts);
+      }
+      for (int cs = chunkStart(Math.max(start, 1)); cs <= end; cs += chunkSize)
+        starts.add(new Integer(cs));
+    }
+
+    Map chunksByChr = new HashMap();
+    for (Iterator iter = needed.keySet().iterator(); iter.hasNext();) {
+      String chr = (String) iter.next();
+      Map chunks = new HashMap();
+      List missing = new ArrayList();
+
+      for (Iterator siter = ((TreeSet) needed.get(chr)).iterator(); siter.hasNext();) {
+        Integer cs = (Integer) siter.next();
+        byte[] chunk = (cache.isEnabled()) ? cache.get(tableID, chr, cs.intValue()) : null;
+        if (chunk != null)
+          chunks.put(cs, chunk);
+        else
+          missing.add(cs);
+      }
+
+      for (int from = 0; from < missing.size(); from += MAXCHUNKSPERSTATEMENT)
+        fetchChunkList(chr, missing.subList(from, Math.min(missing.size(), from + MAXCHUNKSPERSTATEMENT)), chunks);
+
+      chunksByChr.put(chr, chunks);
+    }
+
+    return chunksByChr;
+  }
+
+  /**
+   * Fetches the chunks of chr starting at each of chunkStarts with a single statement,
+   * adding them to chunks, and to the DNAChunkCache when it is enabled.
+   */
+  private void fetchChunkList(String chr, List chunkStarts, Map chunks) throws SequenceException {
+    try {
+      PreparedStatement ps = getChunkListStatement(chunkStarts.size());
+      ps.setString(1, chr);
+      for (int i = 0, n = chunkStarts.size(); i < n; i++)
+        ps.setInt(i + 2, ((Integer) chunkStarts.get(i)).intValue());
+
+      ResultSet rs = ps.executeQuery();
+      while (rs.next()) {
+        int cs = rs.getInt(1);
+        byte[] chunk = rs.getBytes(2);
+        if (chunk == null || chunk.length < 1)
+          continue;
+
+        chunks.put(new Integer(cs), chunk);
+        if (cache.isEnabled())
+          cache.put(tableID, chr, cs, chunk);
+      }
+      rs.close();
+    } catch (SQLException e) {
+      throw new SequenceException("Could not fetch sequence chunks " + e.getMessage(), e);
+    }
+  }
+
+  private PreparedStatement getChunkListStatement(int nChunks) throws SQLException {
+    Integer key = new Integer(nChunks);
+    PreparedStatement ps = (PreparedStatement) specSQLChunks.get(key);
+    if (ps == null) {
+      StringBuffer sql = new StringBuffer("select " + startField + ", " + seqField + " from " + dnaTable + " where " + chrField + " = ? and " + startField + " in (");
+      for (int i = 0; i < nChunks; i++)
+        sql.append((i > 0) ? ", ?" : "?");
+      sql.append(")");
+
+      if (logger.isLoggable(Level.FINE))
+        logger.fine("SQL : " + sql);
+
+      ps = conn.prepareStatement(sql.toString());
+      specSQLChunks.put(key, ps);
+    }
+    return ps;
+  }
+
+  /**
+   * Assembles len bases from start out of the whole chunks covering them, taken from
+   * chunks if it is not null, otherwise from the DNAChunkCache or the database.
+   * Returns fewer than len bases if the chromosome ends first.
+   */
+  private byte[] sliceChunks(String chr, int start, int len, Map chunks) throws SequenceException {
+    if (len < 1)
+      return new byte[0];
+
+    byte[] sequence = new byte[len];
+    int filled = 0;
+
+    while (filled < len) {
+      int pos = start + filled;
+      int chunkStart = chunkStart(pos);
+      byte[] chunk;
+      if (chunks != null) {
+        chunk = (byte[]) chunks.get(new Integer(chunkStart));
+        if (chunk == null)
+          chunk = new byte[0];
+      } else
+        chunk = getChunk(chr, chunkStart);
+
+      int offset = pos - chunkStart;
+      if (offset < 0 || offset >= chunk.length)
+        break;
+
+      int n = Math.min(len - filled, chunk.length - offset);
+      System.arraycopy(chunk, offset, sequence, filled, n);
+      filled += n;
+
+      // a short chunk is the end of the chromosome
+      if (chunk.length < chunkSize)
+        break;
+    }
+
+    if (filled == len)
+      return sequence;
+
+    byte[] partial = new byte[filled];
+    System.arraycopy(sequence, 0, partial, 0, filled);
+    return partial;
+  }
+
+  /**
+   * @return DNAChunkCache used by this adaptor, for statistics and tuning
+   */
+  public DNAChunkCache getChunkCache() {
+    return cache;
+  }
+
     public void close() {
         try {
             specSQLFull.close();
             specSQLSub.close();
+            for (Iterator iter = specSQLChunks.values().iterator(); iter.hasNext();)
+              ((PreparedStatement) iter.next()).close();
         } catch (SQLException e) {
            //ignore
         }
@@ -0,0 +1,213 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of whole DNA chunks, keyed by the table they
+ * were read from, chromosome and chunk start.  The cache is bounded by the
+ * number of sequence bytes it holds rather than the number of chunks, and
+ * never by more than a fraction of the maximum heap.  A single instance is
+ * shared by all DNAAdaptors, so chunks fetched by one query are available
+ * to the next, and to concurrent ID list batches.
+ * 
+ * @see DNAAdaptor
+ */
+public class DNAChunkCache {
+
+  /** Default byte budget, 64MB */
+  public static final long DEFAULTMAXBYTES = 64L * 1024 * 1024;
+
+  // never use more than this fraction of the maximum heap
+  private static final int HEAPFRACTION = 8;
+
+  private static final DNAChunkCache instance = new DNAChunkCache(DEFAULTMAXBYTES);
+
+  /**
+   * @return DNAChunkCache shared by all DNAAdaptors
+   */
+  public static DNAChunkCache getInstance() {
+    return instance;
+  }
+
+  private final LinkedHashMap chunks = new LinkedHashMap(256, 0.75f, true);
+  private long maxBytes;
+  private long bytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * @param maxBytes maximum number of sequence bytes to hold, 0 disables the cache
+   */
+  public DNAChunkCache(long maxBytes) {
+    setMaxBytes(maxBytes);
+  }
+
+  /**
+   * Sets the byte budget, evicting chunks if it has shrunk.  The effective budget
+   * is limited to 1/8 of Runtime.maxMemory().
+   * 
+   * @param maxBytes maximum number of sequence bytes to hold, 0 disables the cache
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = Math.max(0, Math.min(maxBytes, Runtime.getRuntime().maxMemory() / HEAPFRACTION));
+    evict();
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * @return true if the cache may hold any chunks
+   */
+  public synchronized boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Returns a cached chunk, counting a hit or a miss.  The returned array
+   * is shared, and must not be modified.
+   * 
+   * @param table identifies the dna table the chunk belongs to
+   * @param chr chromosome
+   * @param chunkStart start coordinate of the chunk
+   * @return byte[] chunk sequence, or null if not cached
+   */
+  public synchronized byte[] get(String table, String chr, int chunkStart) {
+    byte[] chunk = (byte[]) chunks.get(new ChunkKey(table, chr, chunkStart));
+    if (chunk == null)
+      misses++;
+    else
+      hits++;
+    return chunk;
+  }
+
+  /**
+   * Adds a chunk, evicting least recently used chunks to stay within the byte budget.
+   * Chunks larger than the whole budget are not cached.
+   * 
+   * @param table identifies the dna table the chunk belongs to
+   * @param chr chromosome
+   * @param chunkStart start coordinate of the chunk
+   * @param chunk sequence, must not be modified after it is added
+   */
+  public synchronized void put(String table, String chr, int chunkStart, byte[] chunk) {
+    if (chunk.length > maxBytes)
+      return;
+
+    byte[] old = (byte[]) chunks.put(new ChunkKey(table, chr, chunkStart), chunk);
+    if (old != null)
+      bytes -= old.length;
+    bytes += chunk.length;
+
+    evict();
+  }
+
+  private void evict() {
+    Iterator iter = chunks.entrySet().iterator();
+    while (bytes > maxBytes && iter.hasNext()) {
+      Map.Entry eldest = (Map.Entry) iter.next();
+      bytes -= ((byte[]) eldest.getValue()).length;
+      iter.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Removes all chunks, and resets the statistics.
+   */
+  public synchronized void clear() {
+    chunks.clear();
+    bytes = 0;
+    hits = 0;
+    misses = 0;
+    evictions = 0;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return number of sequence bytes currently held
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int getChunkCount() {
+    return chunks.size();
+  }
+
+  public synchronized String toString() {
+    StringBuffer buf = new StringBuffer();
+
+    buf.append("[");
+    buf.append("chunks=").append(chunks.size());
+    buf.append(", bytes=").append(bytes);
+    buf.append(", maxBytes=").append(maxBytes);
+    buf.append(", hits=").append(hits);
+    buf.append(", misses=").append(misses);
+    buf.append(", evictions=").append(evictions);
+    buf.append("]");
+
+    return buf.toString();
+  }
+
+  private static final class ChunkKey {
+    private final String table;
+    private final String chr;
+    private final int chunkStart;
+    private final int hashcode;
+
+    private ChunkKey(String table, String chr, int chunkStart) {
+      this.table = table;
+      this.chr = chr;
+      this.chunkStart = chunkStart;
+
+      int h = table.hashCode();
+      h = (31 * h) + chr.hashCode();
+      hashcode = (31 * h) + chunkStart;
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof ChunkKey))
+        return false;
+      ChunkKey k = (ChunkKey) o;
+      return chunkStart == k.chunkStart && chr.equals(k.chr) && table.equals(k.table);
+    }
+
+    public int hashCode() {
+      return hashcode;
+    }
+  }
+}
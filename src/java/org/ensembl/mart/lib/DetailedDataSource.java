@@ -18,15 +18,13 @@
 
 package org.ensembl.mart.lib;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -34,18 +32,13 @@ import java.util.logging.Logger;
 import javax.sql.DataSource;
 import javax.swing.JOptionPane;
 
-import org.ewin.common.util.Log;
-import org.ewin.javax.sql.DefaultPoolingAlgorithm;
-import org.ewin.javax.sql.DriverManagerDataSource;
-import org.ewin.javax.sql.PoolingAlgorithmDataSource;
-
 /**
  * Datasource with extra functionality:
  * 
  * <ul>
  * <li> parameters are available via getters.
  * <li> lazy loads connection (useful when used offline and connection not needed)
- * <li> offers connection pooling
+ * <li> offers connection pooling, see ConnectionPool
  * <li> implements toString() which prints something user friendly. 
  * </ul>
  * 
@@ -57,26 +50,6 @@ import org.ewin.javax.sql.PoolingAlgorithmDataSource;
  */
 public class DetailedDataSource implements DataSource {
 
-  // Disable logging from ewin connection pool package
-  static {
-
-    //temporarily disable stdout
-    PrintStream n = new PrintStream(new ByteArrayOutputStream());
-    PrintStream o = new PrintStream(System.out);
-
-    System.setOut(n);
-
-    // Configure Ewin logging - remove all defined loggers
-    Iterator ewinLoggers = Log.loggers();
-    while (ewinLoggers.hasNext()) {
-      Log.removeLogger((Log.Logger) ewinLoggers.next());
-    }
-
-    //reset stdout
-    System.setOut(o);
-
-  }
-
   private final static Logger logger =
     Logger.getLogger(DetailedDataSource.class.getName());
 
@@ -106,7 +79,7 @@ public class DetailedDataSource implements DataSource {
   private String martUser;
   private String jdbcDriverClassName;
   private String name;
-  private DataSource dataSource;
+  private ConnectionPool pool;
   private String connectionString;
 
   /**
@@ -424,56 +397,7 @@ public class DetailedDataSource implements DataSource {
    * @throws java.sql.SQLException if any problem occurs making the connection.
    */
   public Connection getConnectionNoVersionCheck() throws SQLException {
-
-    if (dataSource == null) {
-      try {
-        // load driver
-        
-        //System.out.println ("lodading ..."+jdbcDriverClassName);
-        Class.forName(jdbcDriverClassName).newInstance();
-        dataSource =
-          new DriverManagerDataSource(
-            jdbcDriverClassName,
-            connectionString,
-            user,
-            password);
-
-        // Wrap data source in connection pool
-        PoolingAlgorithmDataSource tmp =
-          new PoolingAlgorithmDataSource(dataSource);
-        DefaultPoolingAlgorithm poolAlgorithm = new DefaultPoolingAlgorithm();
-        poolAlgorithm.setPoolMax(maxPoolSize);
-        tmp.setPoolingAlgorithm(poolAlgorithm);
-
-        dataSource = tmp;
-
-      } catch (InstantiationException e) {
-        e.printStackTrace();
-        throw new SQLException(
-          "Failed to initialise database connection pool "
-            + "(is the connection pool jar available?) : ");
-      } catch (ClassNotFoundException e) {
-        e.printStackTrace();
-        throw new SQLException(
-          "Failed to initialise database connection pool for "
-            + jdbcDriverClassName
-            + " (is the connection pool jar available?) : ");
-      } catch (IllegalAccessException e) {
-        e.printStackTrace();
-        throw new SQLException(
-          "Failed to initialise database connection pool "
-            + "(is the connection pool jar available?) : ");
-      } catch (NoClassDefFoundError e) {
-        e.printStackTrace();
-        throw new SQLException(
-          "Failed to initialise database connection pool "
-            + "(is the connection pool jar available?) : ");
-      }
-
-    }
-    
-
-    	return dataSource.getConnection();	
+    return getPool().getConnection();
   }
   
   /**
@@ -485,88 +409,7 @@ public class DetailedDataSource implements DataSource {
    */
   public Connection getConnection() throws SQLException {
 	  try {
-	  try {
-		// load driver
-		if (dataSource != null) {
-				return dataSource.getConnection();
-		}        
-		//System.out.println ("lodading ..."+jdbcDriverClassName);
-		Class.forName(jdbcDriverClassName).newInstance();
-		dataSource =
-		  new DriverManagerDataSource(
-			jdbcDriverClassName,
-			connectionString,
-			user,
-			password);
-
-		// Wrap data source in connection pool
-		PoolingAlgorithmDataSource tmp =
-		  new PoolingAlgorithmDataSource(dataSource);
-		DefaultPoolingAlgorithm poolAlgorithm = new DefaultPoolingAlgorithm();
-		poolAlgorithm.setPoolMax(maxPoolSize);
-		tmp.setPoolingAlgorithm(poolAlgorithm);
-
-		dataSource = tmp;
-
-		Connection conn;
-		String version = null;
-			//try {
- 	    conn = dataSource.getConnection();
-		
-		// remove version check 
-        /*  
-		ResultSet vr = conn.getMetaData().getTables(conn.getCatalog(), this.schema, "meta_version__version__main", null);
-		//expect at most one result, if no results, tcheck will remain null
-		String tcheck = null;
-		if (vr.next())
-			tcheck = vr.getString(3);
-
-		vr.close();
-
-		if (tcheck == null) {// don't check databases with no version table yet
-			return conn;
-		}
-		
-		String[] schemas = null;
-		if(getDatabaseType().equals("oracle")) schemas = getSchema().toUpperCase().split(";");
-		else schemas = getSchema().split(";");
-		
-		// remove version check 
- 
-		PreparedStatement ps = conn.prepareStatement("select version from "+schemas[0]+".meta_version__version__main");
-		ResultSet rs = ps.executeQuery();
-		rs.next();
-		version = rs.getString(1);
-		rs.close();
-		if (!version.equals(VERSION)){
-			throw new SQLException("Database version "+version+" and software version "+VERSION+" do not match");	
-		 }
-		 */
-		 return conn;
-
-
-	  } catch (InstantiationException e) {
-		e.printStackTrace();
-		throw new SQLException(
-		  "Failed to initialise database connection pool "
-			+ "(is the connection pool jar available?) : ");
-	  } catch (ClassNotFoundException e) {
-		e.printStackTrace();
-		throw new SQLException(
-		  "Failed to initialise database connection pool for "
-			+ jdbcDriverClassName
-			+ " (is the connection pool jar available?) : ");
-	  } catch (IllegalAccessException e) {
-		e.printStackTrace();
-		throw new SQLException(
-		  "Failed to initialise database connection pool "
-			+ "(is the connection pool jar available?) : ");
-	  } catch (NoClassDefFoundError e) {
-		e.printStackTrace();
-		throw new SQLException(
-		  "Failed to initialise database connection pool "
-			+ "(is the connection pool jar available?) : ");
-	  }
+		return getPool().getConnection();
 	  }
 	  catch (SQLException e) {
 		  String message = e.getMessage();
@@ -624,7 +467,7 @@ public class DetailedDataSource implements DataSource {
    */
   public Connection getConnection(String username, String password)
     throws SQLException {
-    return dataSource.getConnection(username, password);
+    return DriverManager.getConnection(connectionString, username, password);
   }
 
   /**
@@ -632,7 +475,7 @@ public class DetailedDataSource implements DataSource {
    * @throws java.sql.SQLException
    */
   public int getLoginTimeout() throws SQLException {
-    return dataSource.getLoginTimeout();
+    return DriverManager.getLoginTimeout();
   }
 
   /**
@@ -640,7 +483,7 @@ public class DetailedDataSource implements DataSource {
    * @throws java.sql.SQLException
    */
   public PrintWriter getLogWriter() throws SQLException {
-    return dataSource.getLogWriter();
+    return DriverManager.getLogWriter();
   }
 
   /**
@@ -648,7 +491,7 @@ public class DetailedDataSource implements DataSource {
    * @throws java.sql.SQLException
    */
   public void setLoginTimeout(int seconds) throws SQLException {
-    dataSource.setLoginTimeout(seconds);
+    DriverManager.setLoginTimeout(seconds);
   }
 
   /**
@@ -656,7 +499,7 @@ public class DetailedDataSource implements DataSource {
    * @throws java.sql.SQLException
    */
   public void setLogWriter(PrintWriter out) throws SQLException {
-    dataSource.setLogWriter(out);
+    DriverManager.setLogWriter(out);
   }
 
   /**
@@ -677,7 +520,19 @@ public class DetailedDataSource implements DataSource {
    * @return DataSource dataSource
    */
   public DataSource getDatasource() {
-    return dataSource;
+    return this;
+  }
+
+  /**
+   * The connection pool is created when it, or a connection, is first requested.
+   * 
+   * @return ConnectionPool pool backing this datasource, for tuning and statistics.
+   */
+  public synchronized ConnectionPool getPool() {
+    if (pool == null)
+      pool =
+        new ConnectionPool(jdbcDriverClassName, connectionString, user, password, databaseType, maxPoolSize);
+    return pool;
   }
 
   /**
@@ -767,7 +622,7 @@ public class DetailedDataSource implements DataSource {
     buf.append(", user=").append(user);
     buf.append(", jdbcDriverClassName=").append(jdbcDriverClassName);
     buf.append(", displayName=").append(name);
-    buf.append(", dataSource=").append(dataSource);
+    buf.append(", pool=").append(pool);
     buf.append(", connectionString=").append(connectionString);
     buf.append("]");
 
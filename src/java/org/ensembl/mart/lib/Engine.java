@@ -69,9 +69,95 @@ public class Engine {
     loadFallbackDatabaseDrivers();
   }
 
+  private int attributeExecutionMode = AttributeQueryRunner.BATCHED;
+  private int idListParallelism = 1;
+  private boolean idListOrdered = true;
+  private int idListTempTableThreshold = AttributeQueryRunner.DEFAULTTEMPTABLETHRESHOLD;
+  private int sequencePipelineWorkers = 0;
+  private ResultCache resultCache = null;
+
   public Engine() {
   }
 
+  /**
+   * Sets the strategy AttributeQueryRunners use to execute their SQL.
+   * Defaults to AttributeQueryRunner.BATCHED.
+   * @param mode one of AttributeQueryRunner.BATCHED, STREAMING or KEYSET
+   * @see AttributeQueryRunner#setExecutionMode(int)
+   */
+  public void setAttributeExecutionMode(int mode) {
+    attributeExecutionMode = mode;
+  }
+
+  public int getAttributeExecutionMode() {
+    return attributeExecutionMode;
+  }
+
+  /**
+   * Sets the number of batches of a big IDListFilter executed concurrently.
+   * @param parallelism 1 (the default) executes batches one after another
+   * @see ParallelIDListExecutor
+   */
+  public void setIDListParallelism(int parallelism) {
+    idListParallelism = Math.max(1, parallelism);
+  }
+
+  public int getIDListParallelism() {
+    return idListParallelism;
+  }
+
+  /**
+   * @param ordered if false, parallel ID list batches are written as they complete
+   * rather than in the order of the identifiers
+   */
+  public void setIDListOrdered(boolean ordered) {
+    idListOrdered = ordered;
+  }
+
+  public boolean isIDListOrdered() {
+    return idListOrdered;
+  }
+
+  /**
+   * @param threshold number of identifiers above which a big IDListFilter is joined
+   * from a temporary table instead of batched, 0 to always batch
+   * @see AttributeQueryRunner#setIDListTempTableThreshold(int)
+   */
+  public void setIDListTempTableThreshold(int threshold) {
+    idListTempTableThreshold = threshold;
+  }
+
+  public int getIDListTempTableThreshold() {
+    return idListTempTableThreshold;
+  }
+
+  /**
+   * @param workers number of threads fetching sequences while sequence queries read
+   * their results, 0 (the default) to fetch them on the reading thread
+   * @see BaseSeqQueryRunner#setSequencePipelineWorkers(int)
+   */
+  public void setSequencePipelineWorkers(int workers) {
+    sequencePipelineWorkers = Math.max(0, workers);
+  }
+
+  public int getSequencePipelineWorkers() {
+    return sequencePipelineWorkers;
+  }
+
+  /**
+   * Sets the cache the output of queries is served from, and stored in.  Sub queries
+   * are not cached.
+   * @param resultCache cache to use, null (the default) to disable result caching
+   * @see ResultCache
+   */
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
+
   public void countFocus(OutputStream os, Query oquery) throws InvalidQueryException, SQLException {
     PrintStream pstream = new PrintStream(os, true); //autoflush true
     //ensure that we are using a copy of the Query
@@ -269,9 +355,39 @@ public class Engine {
     }
 
     logger.fine(query.toString());
+
+    ResultCache.Recorder recorder = null;
+    if (resultCache != null && !isSubQuery) {
+      if (resultCache.write(query, formatspec, limit, os))
+        return;
+
+      recorder = resultCache.record(query, formatspec, limit, os);
+      if (recorder != null)
+        os = recorder;
+    }
     
     QueryRunner qr = QueryRunnerFactory.getInstance(query, formatspec, os);
-    qr.execute(limit, isSubQuery);
+    if (qr instanceof AttributeQueryRunner) {
+      AttributeQueryRunner aqr = (AttributeQueryRunner) qr;
+      aqr.setExecutionMode(attributeExecutionMode);
+      aqr.setIDListParallelism(idListParallelism);
+      aqr.setIDListOrdered(idListOrdered);
+      aqr.setIDListTempTableThreshold(idListTempTableThreshold);
+    } else if (qr instanceof BaseSeqQueryRunner) {
+      BaseSeqQueryRunner sqr = (BaseSeqQueryRunner) qr;
+      sqr.setIDListParallelism(idListParallelism);
+      sqr.setIDListOrdered(idListOrdered);
+      sqr.setSequencePipelineWorkers(sequencePipelineWorkers);
+    }
+
+    try {
+      qr.execute(limit, isSubQuery);
+      if (recorder != null)
+        recorder.commit();
+    } finally {
+      if (recorder != null)
+        recorder.abort();
+    }
   }
 
   public String sql(Query query) {
@@ -143,7 +143,7 @@ public final class GeneExonSeqQueryRunner extends BaseSeqQueryRunner {
           }
           
           //will only do each exon once
-          seqWriter.writeSequences(keyID, conn);
+          writeRecord(keyID, conn);
           idsSeen.add(keyID);
           exonatts = new Hashtable();
       }
@@ -155,6 +155,20 @@ public final class GeneExonSeqQueryRunner extends BaseSeqQueryRunner {
     }
   }
 
+  protected Object saveRecordState(Integer id) {
+    // the writers skip exons already seen, the worker only needs to know about this one
+    List seen = new ArrayList();
+    if (idsSeen.contains(id))
+      seen.add(id);
+    return new Object[] { exonatts, seen };
+  }
+
+  protected void restoreRecordState(Object state) {
+    Object[] saved = (Object[]) state;
+    exonatts = (Hashtable) saved[0];
+    idsSeen = (List) saved[1];
+  }
+
   private final SeqWriter tabulatedWriter = new SeqWriter() {
     void writeSequences(Integer geneID, Connection conn) throws SequenceException {
       if (!idsSeen.contains(geneID)) {
@@ -0,0 +1,123 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+/**
+ * Implimentation of a Filter object restricting a field to the identifiers
+ * held in a session temporary table, eg 'where x = mart_idlist_1.id'.
+ * QueryCompiler adds the table to the from clause, so the ids are joined
+ * against rather than listed in the SQL.
+ * 
+ * @see IDListTempTable
+ * @see IDListFilter
+ */
+public class IDListTableFilter implements Filter {
+
+  /**
+   * @param field - String, field of filter
+   * @param tableConstraint - String, table constraint for field
+   * @param key - String, join key for tableConstraint
+   * @param idTable - String, name of the temporary table holding the identifiers
+   * @param idColumn - String, column of idTable holding the identifiers
+   */
+  public IDListTableFilter(String field, String tableConstraint, String key, String idTable, String idColumn) {
+    this.field = field;
+    this.tableConstraint = tableConstraint;
+    this.key = key;
+    this.idTable = idTable;
+    this.idColumn = idColumn;
+
+    hashcode = (this.field == null) ? 0 : this.field.hashCode();
+    hashcode = (this.tableConstraint != null) ? (31 * hashcode) + this.tableConstraint.hashCode() : hashcode;
+    hashcode = (this.key != null) ? (31 * hashcode) + this.key.hashCode() : hashcode;
+    hashcode = (31 * hashcode) + idTable.hashCode();
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  public String getTableConstraint() {
+    return tableConstraint;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * @return String name of the temporary table joined against
+   */
+  public String getIDTable() {
+    return idTable;
+  }
+
+  /**
+   * @return null, no qualifier is needed
+   */
+  public String getQualifier() {
+    return null;
+  }
+
+  /**
+   * @return null, there is nothing to add to the prepared statement
+   */
+  public String getValue() {
+    return null;
+  }
+
+  public String getWhereClause() {
+    return field + getRightHandClause();
+  }
+
+  /**
+   * returns the right side of an SQL where clause, joining to the id table
+   */
+  public String getRightHandClause() {
+    return " = " + idTable + "." + idColumn;
+  }
+
+  public String toString() {
+    StringBuffer buf = new StringBuffer();
+
+    buf.append("[");
+    buf.append("field=").append(field);
+    buf.append(", tableConstraint=").append(tableConstraint);
+    buf.append(", key=").append(key);
+    buf.append(", idTable=").append(idTable);
+    buf.append("]");
+
+    return buf.toString();
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof IDListTableFilter && hashCode() == o.hashCode();
+  }
+
+  public int hashCode() {
+    return hashcode;
+  }
+
+  private final String field;
+  private final String tableConstraint;
+  private final String key;
+  private final String idTable;
+  private final String idColumn;
+  private int hashcode = 0; //hashcode for immutable object
+}
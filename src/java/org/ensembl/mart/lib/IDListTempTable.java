@@ -0,0 +1,227 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the identifiers of a big IDListFilter into a session temporary table
+ * with JDBC batch inserts, so that the query can join against it instead of
+ * listing every identifier in an IN clause.  The table is private to the
+ * Connection it is created on, so the same Connection must be used to run
+ * the query.  Use getInstance to get the implementation for a database type.
+ * 
+ * @see IDListTableFilter
+ * @see AttributeQueryRunner
+ */
+public abstract class IDListTempTable {
+
+  private static final Logger logger = Logger.getLogger(IDListTempTable.class.getName());
+
+  public static final String IDCOLUMN = "id";
+
+  // number of rows sent per executeBatch call
+  private static final int INSERTBATCHSIZE = 1000;
+
+  private static int tableCount = 0;
+
+  protected final String tableName;
+
+  protected IDListTempTable(String tableName) {
+    this.tableName = tableName;
+  }
+
+  /**
+   * Returns the IDListTempTable implementation for the given database type,
+   * or null if temporary tables are not supported for that type.
+   * 
+   * @param databaseType as returned by DetailedDataSource.getDatabaseType()
+   * @return IDListTempTable or null
+   */
+  public static IDListTempTable getInstance(String databaseType) {
+    if (databaseType.equals(DetailedDataSource.DEFAULTDATABASETYPE))
+      return new MySQLIDListTempTable(nextTableName());
+    else if (databaseType.equals(DetailedDataSource.POSTGRES))
+      return new PostgresIDListTempTable(nextTableName());
+    else if (databaseType.equals(DetailedDataSource.ORACLE))
+      return new OracleIDListTempTable();
+    else
+      return null;
+  }
+
+  private static synchronized String nextTableName() {
+    return "mart_idlist_" + (++tableCount);
+  }
+
+  /**
+   * @return String name of the table, for use in SQL on the Connection it was created on
+   */
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * Creates the table on conn, and fills it with identifiers.  An identifier
+   * listed more than once is only loaded once, as the id column is the key of the table.
+   * 
+   * @param conn Connection which will also be used to run the query
+   * @param identifiers identifiers to load
+   * @throws SQLException if the table could not be created or filled
+   */
+  public void load(Connection conn, String[] identifiers) throws SQLException {
+    Set distinct = new LinkedHashSet();
+    int width = 1;
+    for (int i = 0; i < identifiers.length; i++) {
+      distinct.add(identifiers[i]);
+      width = Math.max(width, identifiers[i].length());
+    }
+
+    create(conn, width);
+
+    PreparedStatement ps = conn.prepareStatement("insert into " + tableName + " (" + IDCOLUMN + ") values (?)");
+    try {
+      int n = 0;
+      for (Iterator i = distinct.iterator(); i.hasNext();) {
+        ps.setString(1, (String) i.next());
+        ps.addBatch();
+
+        if (++n % INSERTBATCHSIZE == 0)
+          ps.executeBatch();
+      }
+      if (n % INSERTBATCHSIZE != 0)
+        ps.executeBatch();
+    } finally {
+      ps.close();
+    }
+
+    analyze(conn);
+
+    if (logger.isLoggable(Level.INFO))
+      logger.info("Loaded " + distinct.size() + " identifiers into " + tableName);
+  }
+
+  /**
+   * Removes the table, or its rows, from conn.  Failures are logged, not thrown,
+   * so that this can be called from a finally block.
+   * 
+   * @param conn Connection the table was loaded on
+   */
+  public void drop(Connection conn) {
+    try {
+      execute(conn, dropSQL());
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning("Could not remove temporary table " + tableName + ": " + e.getMessage());
+    }
+  }
+
+  protected abstract void create(Connection conn, int width) throws SQLException;
+
+  protected abstract String dropSQL();
+
+  /**
+   * Gives the planner statistics for the new table, does nothing by default.
+   */
+  protected void analyze(Connection conn) throws SQLException {
+  }
+
+  protected static void execute(Connection conn, String sql) throws SQLException {
+    if (logger.isLoggable(Level.FINE))
+      logger.fine("SQL : " + sql);
+
+    Statement st = conn.createStatement();
+    try {
+      st.execute(sql);
+    } finally {
+      st.close();
+    }
+  }
+
+  private static class MySQLIDListTempTable extends IDListTempTable {
+    private MySQLIDListTempTable(String tableName) {
+      super(tableName);
+    }
+
+    protected void create(Connection conn, int width) throws SQLException {
+      execute(conn, "create temporary table " + tableName + " (" + IDCOLUMN + " varchar(" + width + ") not null, primary key (" + IDCOLUMN + "))");
+    }
+
+    protected String dropSQL() {
+      return "drop temporary table if exists " + tableName;
+    }
+  }
+
+  private static class PostgresIDListTempTable extends IDListTempTable {
+    private PostgresIDListTempTable(String tableName) {
+      super(tableName);
+    }
+
+    protected void create(Connection conn, int width) throws SQLException {
+      execute(conn, "create temporary table " + tableName + " (" + IDCOLUMN + " varchar(" + width + ") primary key)");
+    }
+
+    protected void analyze(Connection conn) throws SQLException {
+      execute(conn, "analyze " + tableName);
+    }
+
+    protected String dropSQL() {
+      return "drop table " + tableName;
+    }
+  }
+
+  /**
+   * Oracle temporary tables are permanent definitions with session private rows,
+   * so a single global temporary table is created the first time it is needed,
+   * and emptied after each use.
+   */
+  private static class OracleIDListTempTable extends IDListTempTable {
+    private static final int WIDTH = 4000;
+
+    private OracleIDListTempTable() {
+      super("mart_idlist_gtt");
+    }
+
+    protected void create(Connection conn, int width) throws SQLException {
+      if (width > WIDTH)
+        throw new SQLException("Identifiers longer than " + WIDTH + " characters cannot be loaded into " + tableName);
+
+      try {
+        execute(conn, "create global temporary table " + tableName + " (" + IDCOLUMN + " varchar2(" + WIDTH + ") primary key) on commit preserve rows");
+      } catch (SQLException e) {
+        // ORA-00955: name is already used by an existing object
+        if (e.getErrorCode() != 955)
+          throw e;
+      }
+      // rows left by an earlier failure on this session
+      execute(conn, "delete from " + tableName);
+    }
+
+    protected String dropSQL() {
+      return "delete from " + tableName;
+    }
+  }
+}
@@ -0,0 +1,404 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SequenceSource reading from a local FASTA file with a samtools style .fai index
+ * (name, length, offset, bases per line, bytes per line), memory mapped with
+ * FileChannel.map so that sequence is served from the operating system page cache
+ * rather than the database.  Each chromosome is mapped separately the first time it
+ * is requested.  Use export to write the file for a SequenceDescription from its
+ * dna chunks table.
+ * 
+ * @see SequenceSourceFactory
+ */
+public class MappedSequenceSource implements SequenceSource {
+
+  private static final Logger logger = Logger.getLogger(MappedSequenceSource.class.getName());
+
+  public static final String INDEXSUFFIX = ".fai";
+
+  // bases per line written by export
+  private static final int LINEBASES = 60;
+
+  private final File fasta;
+  private final Map index = new HashMap();
+  private final Map mapped = new HashMap();
+  private RandomAccessFile file;
+
+  /**
+   * @param fasta FASTA file, with its index alongside as fasta + ".fai"
+   * @throws IOException if either file cannot be read
+   */
+  public MappedSequenceSource(File fasta) throws IOException {
+    this.fasta = fasta;
+    readIndex(new File(fasta.getPath() + INDEXSUFFIX));
+    file = new RandomAccessFile(fasta, "r");
+  }
+
+  private void readIndex(File fai) throws IOException {
+    BufferedReader in = new BufferedReader(new FileReader(fai));
+    try {
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        if (line.length() == 0)
+          continue;
+
+        String[] cols = line.split("\t");
+        if (cols.length < 5)
+          throw new IOException("Invalid index line in " + fai + ": " + line);
+
+        IndexEntry entry =
+          new IndexEntry(
+            Integer.parseInt(cols[1]),
+            Long.parseLong(cols[2]),
+            Integer.parseInt(cols[3]),
+            Integer.parseInt(cols[4]));
+        index.put(cols[0], entry);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @return File FASTA file this source reads
+   */
+  public File getFile() {
+    return fasta;
+  }
+
+  /**
+   * @param chr chromosome name
+   * @return true if the file holds sequence for chr
+   */
+  public boolean hasChromosome(String chr) {
+    return index.containsKey(chr);
+  }
+
+  private synchronized ByteBuffer getBuffer(String chr, IndexEntry entry) throws IOException {
+    MappedByteBuffer buf = (MappedByteBuffer) mapped.get(chr);
+    if (buf == null) {
+      if (file == null)
+        throw new IOException(fasta + " has been closed");
+
+      long fullLines = entry.length / entry.lineBases;
+      long span = fullLines * entry.lineWidth + (entry.length % entry.lineBases);
+      buf = file.getChannel().map(FileChannel.MapMode.READ_ONLY, entry.offset, span);
+      mapped.put(chr, buf);
+    }
+    // absolute positions are shared, so give each caller its own position
+    return buf.duplicate();
+  }
+
+  public byte[] getSequence(String chr, int start, int end) throws SequenceException {
+    int len = (end - start) + 1;
+
+    IndexEntry entry = (IndexEntry) index.get(chr);
+    if (entry == null || start > entry.length || len < 1) {
+      if (logger.isLoggable(Level.INFO))
+        logger.info("No Sequence Returned for request: chromosome = " + chr + ", start = " + start + " end = " + end + "\n");
+      return Npad(Math.max(len, 0));
+    }
+
+    int available = Math.min(end, entry.length) - start + 1;
+    if (available < len && logger.isLoggable(Level.INFO))
+      logger.info("Warning, not enough sequence to satisfy request: requested " + len + " returning " + available + "\n");
+
+    byte[] sequence = new byte[available];
+    try {
+      ByteBuffer buf = getBuffer(chr, entry);
+
+      int filled = 0;
+      int pos = start - 1; // 0 based
+      while (filled < available) {
+        int column = pos % entry.lineBases;
+        int n = Math.min(available - filled, entry.lineBases - column);
+
+        buf.position((int) ((long) (pos / entry.lineBases) * entry.lineWidth + column));
+        buf.get(sequence, filled, n);
+
+        filled += n;
+        pos += n;
+      }
+    } catch (IOException e) {
+      throw new SequenceException("Could not read sequence from " + fasta + ": " + e.getMessage(), e);
+    }
+
+    return sequence;
+  }
+
+  /**
+   * The file is already in memory, so each location is read in turn.
+   */
+  public byte[][] getSequences(Collection locations) throws SequenceException {
+    byte[][] sequences = new byte[locations.size()][];
+    int i = 0;
+    for (Iterator iter = locations.iterator(); iter.hasNext(); i++) {
+      SequenceLocation loc = (SequenceLocation) iter.next();
+      sequences[i] = getSequence(loc.getChr(), loc.getStart(), loc.getEnd());
+    }
+    return sequences;
+  }
+
+  /**
+   * Closes the file.  Mapped regions are released by the garbage collector.
+   */
+  public synchronized void close() {
+    mapped.clear();
+    if (file != null) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        //ignore
+      }
+      file = null;
+    }
+  }
+
+  private byte[] Npad(int length) {
+    byte[] nseq = new byte[length];
+    for (int i = 0; i < length; i++)
+      nseq[i] = 'N';
+
+    return nseq;
+  }
+
+  /**
+   * Dumps the dna chunks table of a SequenceDescription into a FASTA file, with one
+   * record per chromosome, and writes its index.  Gaps between chunks are filled with
+   * Ns.  The files are written under temporary names and renamed once complete.
+   * 
+   * @param seqd SequenceDescription whose seqInfo names the dna chunks table
+   * @param fasta FASTA file to write, the index is written to fasta + ".fai"
+   * @throws SequenceException if the chunks cannot be read or the files written
+   */
+  public static void export(SequenceDescription seqd, File fasta) throws SequenceException {
+    DetailedDataSource ds = seqd.getRefDataSource();
+
+    //table,chr,start,sequence,chunkSize
+    String[] seqInfo = seqd.getSeqInfo().split("\\,");
+    String dnaTable = ds.getSchema() + "." + seqInfo[0];
+    String chrField = seqInfo[1];
+    String startField = seqInfo[2];
+    String seqField = seqInfo[3];
+
+    String sql =
+      "select " + chrField + ", " + startField + ", " + seqField + " from " + dnaTable
+        + " order by " + chrField + ", " + startField;
+
+    File tmpFasta = new File(fasta.getPath() + ".tmp");
+    File tmpIndex = new File(fasta.getPath() + INDEXSUFFIX + ".tmp");
+
+    Connection conn = null;
+    PreparedStatement ps = null;
+    ResultSet rs = null;
+    FastaWriter out = null;
+    try {
+      conn = ds.getConnection();
+      boolean isMysql = ds.getDatabaseType().equals(DetailedDataSource.DEFAULTDATABASETYPE);
+      boolean autoCommit = conn.getAutoCommit();
+      if (!isMysql && autoCommit)
+        conn.setAutoCommit(false);
+
+      if (logger.isLoggable(Level.INFO))
+        logger.info("SQL : " + sql);
+
+      ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      ps.setFetchSize(isMysql ? Integer.MIN_VALUE : 10);
+      rs = ps.executeQuery();
+
+      out = new FastaWriter(new BufferedOutputStream(new FileOutputStream(tmpFasta), 1 << 16));
+      while (rs.next()) {
+        byte[] chunk = rs.getBytes(3);
+        if (chunk != null)
+          out.write(rs.getString(1), rs.getInt(2), chunk);
+      }
+      out.close();
+
+      rs.close();
+      rs = null;
+      ps.close();
+      ps = null;
+      if (!isMysql && autoCommit) {
+        conn.rollback();
+        conn.setAutoCommit(true);
+      }
+
+      out.writeIndex(tmpIndex);
+
+      File index = new File(fasta.getPath() + INDEXSUFFIX);
+      fasta.delete();
+      index.delete();
+      if (!tmpFasta.renameTo(fasta) || !tmpIndex.renameTo(index))
+        throw new IOException("Could not rename " + tmpFasta + " to " + fasta);
+
+      if (logger.isLoggable(Level.INFO))
+        logger.info("Exported " + dnaTable + " to " + fasta);
+    } catch (SQLException e) {
+      throw new SequenceException("Could not read dna chunks from " + dnaTable + ": " + e.getMessage(), e);
+    } catch (IOException e) {
+      throw new SequenceException("Could not write " + fasta + ": " + e.getMessage(), e);
+    } finally {
+      if (out != null)
+        out.closeQuietly();
+      closeQuietly(rs, ps);
+      tmpFasta.delete();
+      tmpIndex.delete();
+      DetailedDataSource.close(conn);
+    }
+  }
+
+  private static void closeQuietly(ResultSet rs, PreparedStatement ps) {
+    try {
+      if (rs != null)
+        rs.close();
+    } catch (SQLException e) {
+      //ignore
+    }
+    try {
+      if (ps != null)
+        ps.close();
+    } catch (SQLException e) {
+      //ignore
+    }
+  }
+
+  private static class IndexEntry {
+    private final int length;
+    private final long offset;
+    private final int lineBases;
+    private final int lineWidth;
+
+    private IndexEntry(int length, long offset, int lineBases, int lineWidth) {
+      this.length = length;
+      this.offset = offset;
+      this.lineBases = lineBases;
+      this.lineWidth = lineWidth;
+    }
+  }
+
+  /**
+   * Writes chunks, in chromosome and start order, as line wrapped FASTA records,
+   * and records the index lines for them.
+   */
+  private static class FastaWriter {
+    private final OutputStream out;
+    private final List indexLines = new ArrayList();
+    private long written = 0;
+    private String chr = null;
+    private long chrOffset;
+    private int chrLength;
+    private int column;
+
+    private FastaWriter(OutputStream out) {
+      this.out = out;
+    }
+
+    private void write(String chunkChr, int chunkStart, byte[] chunk) throws IOException {
+      if (!chunkChr.equals(chr)) {
+        endRecord();
+        chr = chunkChr;
+        writeBytes((">" + chr + "\n").getBytes());
+        chrOffset = written;
+        chrLength = 0;
+        column = 0;
+      }
+
+      // pad gaps between chunks, and skip any overlap
+      while (chrLength < chunkStart - 1)
+        writeBase((byte) 'N');
+
+      for (int i = chrLength - (chunkStart - 1); i < chunk.length; i++)
+        writeBase(chunk[i]);
+    }
+
+    private void writeBase(byte base) throws IOException {
+      out.write(base);
+      written++;
+      chrLength++;
+      if (++column == LINEBASES) {
+        out.write('\n');
+        written++;
+        column = 0;
+      }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+      out.write(bytes);
+      written += bytes.length;
+    }
+
+    private void endRecord() throws IOException {
+      if (chr == null)
+        return;
+
+      if (column > 0)
+        writeBytes("\n".getBytes());
+      indexLines.add(chr + "\t" + chrLength + "\t" + chrOffset + "\t" + LINEBASES + "\t" + (LINEBASES + 1));
+    }
+
+    private void close() throws IOException {
+      endRecord();
+      chr = null;
+      out.close();
+    }
+
+    private void closeQuietly() {
+      try {
+        out.close();
+      } catch (IOException e) {
+        //ignore
+      }
+    }
+
+    private void writeIndex(File index) throws IOException {
+      PrintWriter w = new PrintWriter(new FileOutputStream(index));
+      for (int i = 0, n = indexLines.size(); i < n; i++)
+        w.print(indexLines.get(i) + "\n");
+      w.close();
+      if (w.checkError())
+        throw new IOException("Could not write " + index);
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes the batches of a big IDListFilter concurrently.  Each batch is run by its own
+ * QueryRunner, on its own Connection from the DetailedDataSource pool, into a buffer.
+ * Buffers are copied to the OutputStream either in batch order, or in the order the
+ * batches complete.  The hardLimit is applied across all batches: a batch which would
+ * take the output over the limit is re-run with the remaining number of rows.
+ *
+ * @see AttributeQueryRunner
+ * @see BaseSeqQueryRunner
+ */
+public class ParallelIDListExecutor {
+
+  /**
+   * Creates the QueryRunner used to execute a single batch.
+   */
+  public interface RunnerFactory {
+    public QueryRunner createRunner(Query batchQuery, OutputStream out) throws InvalidQueryException;
+  }
+
+  private static final Logger logger = Logger.getLogger(ParallelIDListExecutor.class.getName());
+
+  private final Query[] batches;
+  private final RunnerFactory factory;
+  private final int parallelism;
+  private final boolean ordered;
+  private final boolean isSubQuery;
+  private final int window;
+
+  // all below guarded by this
+  private int nextToDispatch = 0;
+  private int nextToWrite = 0;
+  private final BatchResult[] results;
+  private final LinkedList completed = new LinkedList();
+  private int nWritten = 0;
+  private int rowsWritten = 0;
+  private int runningWorkers = 0;
+  private boolean stopped = false;
+  private Exception failure = null;
+
+  /**
+   * Splits bigListFilter into IDListFilters of at most batchSize identifiers, and returns
+   * a copy of query for each, with bigListFilter replaced by the batch filter.
+   *
+   * @param query query containing bigListFilter
+   * @param bigListFilter filter to split
+   * @param batchSize maximum identifiers per batch
+   * @return Query[] one query per batch, in list order
+   */
+  public static Query[] splitBatches(Query query, IDListFilter bigListFilter, int batchSize) {
+    String[] biglist = bigListFilter.getIdentifiers();
+    int nBatches = (biglist.length + batchSize - 1) / batchSize;
+    Query[] batchQueries = new Query[nBatches];
+
+    for (int b = 0; b < nBatches; b++) {
+      int start = b * batchSize;
+      String[] idBatch = new String[Math.min(batchSize, biglist.length - start)];
+      System.arraycopy(biglist, start, idBatch, 0, idBatch.length);
+
+      Query newQuery = new Query(query);
+      newQuery.removeFilter(bigListFilter);
+      newQuery.addFilter(
+        new IDListFilter(bigListFilter.getField(), bigListFilter.getTableConstraint(), bigListFilter.getKey(), idBatch));
+      batchQueries[b] = newQuery;
+    }
+
+    return batchQueries;
+  }
+
+  /**
+   * @param batches queries to execute, one per batch
+   * @param factory creates a QueryRunner for each batch
+   * @param parallelism number of batches to run at once
+   * @param ordered if true output is written in batch order, otherwise as batches complete
+   * @param isSubQuery passed through to QueryRunner.execute
+   */
+  public ParallelIDListExecutor(Query[] batches, RunnerFactory factory, int parallelism, boolean ordered, boolean isSubQuery) {
+    this.batches = batches;
+    this.factory = factory;
+    this.parallelism = Math.max(1, Math.min(parallelism, batches.length));
+    this.ordered = ordered;
+    this.isSubQuery = isSubQuery;
+    // bounds the number of completed batches held in memory waiting to be written
+    this.window = this.parallelism * 2;
+    this.results = new BatchResult[batches.length];
+  }
+
+  /**
+   * Executes all batches, writing their output to out.
+   *
+   * @param hardLimit maximum rows to write across all batches, 0 for no limit
+   * @param out OutputStream receiving the merged output
+   * @return int number of rows written
+   * @throws SequenceException if a batch threw a SequenceException
+   * @throws InvalidQueryException if a batch failed, or out could not be written
+   */
+  public int execute(int hardLimit, OutputStream out) throws SequenceException, InvalidQueryException {
+    Thread[] workers = new Thread[parallelism];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Thread(new Worker(hardLimit), "IDListBatch-" + i);
+      workers[i].setDaemon(true);
+    }
+
+    synchronized (this) {
+      runningWorkers = workers.length;
+    }
+    for (int i = 0; i < workers.length; i++)
+      workers[i].start();
+
+    try {
+      BatchResult result;
+      while ((result = nextResult()) != null) {
+        if (hardLimit > 0 && rowsWritten + result.rows > hardLimit) {
+          // too many rows to fit under the limit, redo this batch with the remainder
+          int remainder = hardLimit - rowsWritten;
+          stop();
+          if (logger.isLoggable(Level.FINE))
+            logger.fine("Rerunning batch " + result.index + " limited to " + remainder + " rows");
+          QueryRunner runner = factory.createRunner(batches[result.index], out);
+          runner.execute(remainder, isSubQuery);
+          written(runner.getTotalRows());
+          break;
+        }
+
+        result.bytes.writeTo(out);
+        out.flush();
+        written(result.rows);
+
+        if (hardLimit > 0 && rowsWritten >= hardLimit)
+          break;
+      }
+    } catch (IOException e) {
+      throw new InvalidQueryException("Could not write batch results to OutputStream: " + e.getMessage(), e);
+    } finally {
+      stop();
+      waitForWorkers();
+    }
+
+    synchronized (this) {
+      if (failure instanceof SequenceException)
+        throw (SequenceException) failure;
+      if (failure instanceof InvalidQueryException)
+        throw (InvalidQueryException) failure;
+      if (failure != null)
+        throw new InvalidQueryException("ID list batch failed: " + failure.getMessage(), failure);
+      return rowsWritten;
+    }
+  }
+
+  private synchronized BatchResult nextResult() {
+    while (true) {
+      if (failure != null || nWritten == batches.length)
+        return null;
+
+      BatchResult result = null;
+      if (ordered) {
+        result = results[nextToWrite];
+        if (result != null)
+          results[nextToWrite++] = null;
+      } else if (completed.size() > 0)
+        result = (BatchResult) completed.removeFirst();
+
+      if (result != null)
+        return result;
+
+      if (stopped && runningWorkers == 0)
+        return null;
+
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        failure = e;
+        return null;
+      }
+    }
+  }
+
+  private synchronized void written(int rows) {
+    nWritten++;
+    rowsWritten += rows;
+    notifyAll();
+  }
+
+  private synchronized void stop() {
+    stopped = true;
+    notifyAll();
+  }
+
+  private synchronized void waitForWorkers() {
+    while (runningWorkers > 0) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return index of the next batch to run, or -1 when there are no more
+   */
+  private synchronized int nextBatch() {
+    while (!stopped && failure == null && nextToDispatch < batches.length) {
+      int buffered = ordered ? nextToDispatch - nextToWrite : completed.size();
+      if (buffered < window)
+        return nextToDispatch++;
+
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private synchronized void completed(BatchResult result) {
+    if (ordered)
+      results[result.index] = result;
+    else
+      completed.addLast(result);
+    notifyAll();
+  }
+
+  private synchronized void failed(Exception e) {
+    if (failure == null)
+      failure = e;
+    stopped = true;
+    notifyAll();
+  }
+
+  private synchronized void workerFinished() {
+    runningWorkers--;
+    notifyAll();
+  }
+
+  private synchronized int remainingLimit(int hardLimit) {
+    return (hardLimit > 0) ? Math.max(1, hardLimit - rowsWritten) : hardLimit;
+  }
+
+  private static class BatchResult {
+    private final int index;
+    private final ByteArrayOutputStream bytes;
+    private final int rows;
+
+    private BatchResult(int index, ByteArrayOutputStream bytes, int rows) {
+      this.index = index;
+      this.bytes = bytes;
+      this.rows = rows;
+    }
+  }
+
+  private class Worker implements Runnable {
+    private final int hardLimit;
+
+    private Worker(int hardLimit) {
+      this.hardLimit = hardLimit;
+    }
+
+    public void run() {
+      try {
+        int index;
+        while ((index = nextBatch()) >= 0) {
+          ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+          QueryRunner runner = factory.createRunner(batches[index], buffer);
+          runner.execute(remainingLimit(hardLimit), isSubQuery);
+          completed(new BatchResult(index, buffer, runner.getTotalRows()));
+        }
+      } catch (Exception e) {
+        if (logger.isLoggable(Level.WARNING))
+          logger.warning("ID list batch failed: " + e.getMessage());
+        failed(e);
+      } finally {
+        workerFinished();
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+/**
+ * Runs independent tasks on a bounded number of threads, and bounds the number
+ * of threads worth using against a DetailedDataSource connection pool.
+ *
+ * @see ParallelIDListExecutor
+ */
+public class ParallelTasks {
+
+  private ParallelTasks() {
+  }
+
+  /**
+   * Maximum number of tasks worth running at once against dataSource, given that each
+   * task holds connectionsPerTask connections from its pool.
+   *
+   * @param requested requested degree of parallelism
+   * @param dataSource DetailedDataSource the tasks run against, may be null
+   * @param connectionsPerTask connections held by each running task
+   * @return int degree of parallelism, at least 1
+   */
+  public static int boundParallelism(int requested, DetailedDataSource dataSource, int connectionsPerTask) {
+    int max = requested;
+    if (dataSource != null && dataSource.getMaxPoolSize() > 0)
+      max = Math.min(max, dataSource.getMaxPoolSize() / connectionsPerTask);
+    return Math.max(1, max);
+  }
+
+  /**
+   * Runs tasks on up to parallelism daemon threads, each thread taking the next task in
+   * order, and returns once every task has run.  With a parallelism of 1 the tasks run
+   * in the calling thread.  A task which throws does not stop the others; the first
+   * RuntimeException thrown is rethrown once all tasks have run.
+   *
+   * @param tasks tasks to run
+   * @param parallelism maximum number of tasks to run at once, see boundParallelism
+   * @param threadName prefix of the names of the threads
+   * @throws InterruptedException if interrupted waiting for the threads
+   */
+  public static void runAll(final Runnable[] tasks, int parallelism, String threadName) throws InterruptedException {
+    final int[] next = new int[] { 0 };
+    final RuntimeException[] failure = new RuntimeException[1];
+    Runnable worker = new Runnable() {
+      public void run() {
+        while (true) {
+          Runnable task;
+          synchronized (next) {
+            if (next[0] == tasks.length)
+              return;
+            task = tasks[next[0]++];
+          }
+          try {
+            task.run();
+          } catch (RuntimeException e) {
+            synchronized (next) {
+              if (failure[0] == null)
+                failure[0] = e;
+            }
+          }
+        }
+      }
+    };
+
+    parallelism = Math.min(parallelism, tasks.length);
+    if (parallelism < 2)
+      worker.run();
+    else {
+      Thread[] workers = new Thread[parallelism];
+      for (int i = 0; i < workers.length; i++) {
+        workers[i] = new Thread(worker, threadName + "-" + i);
+        workers[i].setDaemon(true);
+        workers[i].start();
+      }
+      for (int i = 0; i < workers.length; i++)
+        workers[i].join();
+    }
+
+    synchronized (next) {
+      if (failure[0] != null)
+        throw failure[0];
+    }
+  }
+}
@@ -118,7 +118,7 @@ public final class PeptideSeqQueryRunner extends BaseSeqQueryRunner {
 			if ( keyID.intValue() != lastID  ) {
 				if ( lastID > -1  ) {
 					//This is not the first ID in a batch, process the previous ID sequences
-					seqWriter.writeSequences(new Integer(lastID), conn);
+					writeRecord(new Integer(lastID), conn);
 				}
        
 				//refresh the iDs TreeMap  
@@ -205,13 +205,15 @@ public final class PeptideSeqQueryRunner extends BaseSeqQueryRunner {
 				int seqLen = 0;
 
 				// to collect all sequence before translation
-				for (Iterator lociter = locations.keySet().iterator(); lociter.hasNext();) {
-					SequenceLocation loc = (SequenceLocation) locations.get((Integer) lociter.next());
+				byte[][] sequences = dna.getSequences(locations.values());
+				Iterator lociter = locations.values().iterator();
+				for (int locIndex = 0; lociter.hasNext(); locIndex++) {
+					SequenceLocation loc = (SequenceLocation) lociter.next();
 					byte[] theseBytes = null;
 					if (loc.getStrand() < 0)
-						theseBytes = SequenceUtil.reverseComplement(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd()));
+						theseBytes = SequenceUtil.reverseComplement(sequences[locIndex]);
 					else
-						theseBytes = dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd());
+						theseBytes = sequences[locIndex];
 
 					locbytes.add(theseBytes);
 					seqLen += theseBytes.length;
@@ -282,13 +284,15 @@ public final class PeptideSeqQueryRunner extends BaseSeqQueryRunner {
 				int seqLen = 0;
 
 				// to collect all sequence before translation
-				for (Iterator lociter = locations.keySet().iterator(); lociter.hasNext();) {
-					SequenceLocation loc = (SequenceLocation) locations.get((Integer) lociter.next());
+				byte[][] sequences = dna.getSequences(locations.values());
+				Iterator lociter = locations.values().iterator();
+				for (int locIndex = 0; lociter.hasNext(); locIndex++) {
+					SequenceLocation loc = (SequenceLocation) lociter.next();
 					byte[] theseBytes = null;
 					if (loc.getStrand() < 0)
-						theseBytes = SequenceUtil.reverseComplement(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd()));
+						theseBytes = SequenceUtil.reverseComplement(sequences[locIndex]);
 					else
-						theseBytes = dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd());
+						theseBytes = sequences[locIndex];
 
 					locbytes.add(theseBytes);
 					seqLen += theseBytes.length;
@@ -31,7 +31,8 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 /**
- * Compiles a Query object into SQL.
+ * Compiles a Query object into SQL.  Compiled SQL is shared between
+ * queries of the same shape through the QueryPlanCache.
  * 
  * @author <a href="mailto:craig@ebi.ac.uk">Craig Melsopp</a>
  * @author <a href="mailto:dlondon@ebi.ac.uk">Darin London</a>
@@ -137,7 +138,29 @@ public class QueryCompiler {
     return qualifiedLowestLevelKey;
   }
 
+  /**
+   * Returns the plan for this query, holding its SQL and the layout of its
+   * PreparedStatement parameters.
+   * @return CompiledQuery
+   * @throws InvalidQueryException if the query cannot be compiled
+   */
+  public CompiledQuery getCompiledQuery() throws InvalidQueryException {
+    if (sql == null)
+      compileSQL();
+    return plan;
+  }
+
   private void compileSQL() throws InvalidQueryException {
+    String shape = QueryPlanCache.shapeKey("select", query, ds);
+    plan = QueryPlanCache.getInstance().get(shape);
+    if (plan != null) {
+      sql = plan.getSQL();
+      pksql = plan.getSQLWithKey();
+      mainTable = plan.getMainTable();
+      lowestLevelKey = plan.getLowestLevelKey();
+      qualifiedLowestLevelKey = plan.getQualifiedLowestLevelKey();
+      return;
+    }
 
     boolean success = false;
     StringBuffer buf = new StringBuffer();
@@ -180,6 +203,9 @@ public class QueryCompiler {
     pkbuf.insert(sql.indexOf(FROM), ", " + qualifiedLowestLevelKey);
     pksql = pkbuf.toString();
 
+    plan = new CompiledQuery(sql, pksql, mainTable, lowestLevelKey, qualifiedLowestLevelKey, CompiledQuery.parameterLayout(query));
+    QueryPlanCache.getInstance().put(shape, plan);
+
     if (logger.isLoggable(Level.FINE)) {
       logger.fine("SQL: " + sql + "\n");
       logger.fine("PKSQL: " + pksql + "\n");
@@ -189,6 +215,13 @@ public class QueryCompiler {
   }
 
   private void compileFocusCountSQL() throws InvalidQueryException {
+    String shape = QueryPlanCache.shapeKey("count", query, ds);
+    CompiledQuery countPlan = QueryPlanCache.getInstance().get(shape);
+    if (countPlan != null) {
+      fcountSQL = countPlan.getSQL();
+      return;
+    }
+
     StringBuffer buf = new StringBuffer();
     
     if (query.getFilters().length < 1) {
@@ -220,6 +253,10 @@ public class QueryCompiler {
 
     if (logger.isLoggable(Level.INFO))
       logger.info("fcountSQL: " + fcountSQL + "\n");
+
+    QueryPlanCache.getInstance().put(
+      shape,
+      new CompiledQuery(fcountSQL, null, mainTable, lowestLevelKey, qualifiedLowestLevelKey, CompiledQuery.parameterLayout(query)));
   }
 
   /**
@@ -334,6 +371,10 @@ public class QueryCompiler {
         //relevantTables.add(bf.append(filter.getTableConstraint()));
         joinTables.put(filter.getTableConstraint(), filter.getKey());
       }
+
+      // session temporary tables are not qualified with the schema
+      if (filter instanceof IDListTableFilter)
+        relevantTables.add(((IDListTableFilter) filter).getIDTable());
     }
 
     fromTables = new String[relevantTables.size()];
@@ -448,6 +489,7 @@ public class QueryCompiler {
   private String sql = null;
   private String pksql = null;
   private String fcountSQL = null;
+  private CompiledQuery plan = null;
   private Query query = null;
   private Logger logger = Logger.getLogger(QueryCompiler.class.getName());
   private String mainTable = null; // either the _main table, or the single dimension table when that is chosen
@@ -0,0 +1,191 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used cache of CompiledQuery plans, keyed on the shape of a Query:
+ * its DataSource, dataset, main tables, primary keys, attributes, filter fields,
+ * conditions and types, and sort attributes, but not the values of its filters.
+ * A single instance is shared by every QueryCompiler, so structurally identical
+ * queries are only compiled once.
+ * 
+ * @see QueryCompiler
+ */
+public class QueryPlanCache {
+
+  /** Default maximum number of plans held */
+  public static final int DEFAULTMAXPLANS = 256;
+
+  // shapes longer than this (eg, large literal ID lists) are not worth caching
+  private static final int MAXKEYLENGTH = 4096;
+
+  private static final QueryPlanCache instance = new QueryPlanCache(DEFAULTMAXPLANS);
+
+  /**
+   * @return QueryPlanCache shared by all QueryCompilers
+   */
+  public static QueryPlanCache getInstance() {
+    return instance;
+  }
+
+  private final LinkedHashMap plans = new LinkedHashMap(64, 0.75f, true);
+  private int maxPlans;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * @param maxPlans maximum number of plans to hold, 0 disables the cache
+   */
+  public QueryPlanCache(int maxPlans) {
+    setMaxPlans(maxPlans);
+  }
+
+  /**
+   * Sets the maximum number of plans, evicting plans if it has shrunk.
+   * @param maxPlans maximum number of plans to hold, 0 disables the cache
+   */
+  public synchronized void setMaxPlans(int maxPlans) {
+    this.maxPlans = Math.max(0, maxPlans);
+    evict();
+  }
+
+  public synchronized int getMaxPlans() {
+    return maxPlans;
+  }
+
+  /**
+   * Returns the plan compiled for a shape, counting a hit or a miss.
+   * @param shape key returned by shapeKey
+   * @return CompiledQuery or null if not cached
+   */
+  public synchronized CompiledQuery get(String shape) {
+    CompiledQuery plan = (shape != null) ? (CompiledQuery) plans.get(shape) : null;
+    if (plan == null)
+      misses++;
+    else
+      hits++;
+    return plan;
+  }
+
+  /**
+   * Adds a plan, evicting the least recently used plans to stay within maxPlans.
+   * @param shape key returned by shapeKey, plans with a null key are not cached
+   * @param plan
+   */
+  public synchronized void put(String shape, CompiledQuery plan) {
+    if (shape == null || maxPlans < 1)
+      return;
+    plans.put(shape, plan);
+    evict();
+  }
+
+  private void evict() {
+    Iterator iter = plans.keySet().iterator();
+    while (plans.size() > maxPlans && iter.hasNext()) {
+      iter.next();
+      iter.remove();
+    }
+  }
+
+  /**
+   * Removes all plans, and resets the statistics.
+   */
+  public synchronized void clear() {
+    plans.clear();
+    hits = 0;
+    misses = 0;
+  }
+
+  public synchronized int getPlanCount() {
+    return plans.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Builds the key identifying the SQL compiled for query against ds.
+   * @param kind distinguishes the kinds of SQL compiled for the same query
+   * @param query
+   * @param ds DetailedDataSource the SQL is compiled for
+   * @return String key, or null if the query should not be cached
+   */
+  public static String shapeKey(String kind, Query query, DetailedDataSource ds) {
+    StringBuffer buf = new StringBuffer(kind);
+    buf.append('|').append(ds.getDatabaseType()).append('|').append(ds.getConnectionString());
+    buf.append('|').append(ds.getSchema()).append('|').append(query.getDataset());
+    if (query.getDataSource() != null && query.getDataSource() != ds)
+      buf.append('|').append(query.getDataSource().getDatabaseType());
+
+    append(buf, "m", query.getMainTables());
+    append(buf, "k", query.getPrimaryKeys());
+
+    Attribute[] attributes = query.getAttributes();
+    for (int i = 0; i < attributes.length; i++)
+      buf.append("|a:").append(attributes[i].getTableConstraint()).append('.').append(attributes[i].getField()).append(
+        ':').append(attributes[i].getKey());
+
+    Filter[] filters = query.getFilters();
+    for (int i = 0; i < filters.length; i++) {
+      Filter f = filters[i];
+      // joined to a temporary table private to one execution
+      if (f instanceof IDListTableFilter)
+        return null;
+
+      buf.append("|f:").append(f.getClass().getName()).append(':').append(f.getTableConstraint()).append('.').append(
+        f.getField()).append(':').append(f.getKey()).append(':').append(f.getRightHandClause()).append(':').append(
+        f.getValue() != null);
+    }
+
+    if (query.hasSort()) {
+      Attribute[] sort = query.getSortByAttributes();
+      for (int i = 0; i < sort.length; i++)
+        buf.append("|s:").append(sort[i].getTableConstraint()).append('.').append(sort[i].getField());
+    }
+
+    return (buf.length() > MAXKEYLENGTH) ? null : buf.toString();
+  }
+
+  private static void append(StringBuffer buf, String tag, String[] values) {
+    buf.append('|').append(tag).append(':');
+    if (values != null)
+      for (int i = 0; i < values.length; i++)
+        buf.append(values[i]).append(',');
+  }
+
+  public synchronized String toString() {
+    StringBuffer buf = new StringBuffer();
+    buf.append("[");
+    buf.append("plans=").append(plans.size());
+    buf.append(", maxPlans=").append(maxPlans);
+    buf.append(", hits=").append(hits);
+    buf.append(", misses=").append(misses);
+    buf.append("]");
+    return buf.toString();
+  }
+}
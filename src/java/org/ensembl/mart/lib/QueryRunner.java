@@ -40,4 +40,9 @@ public interface QueryRunner {
 	 * @throws InvalidQueryException
 	 */
   public void execute(int limit, boolean isSubQuery) throws SequenceException , InvalidQueryException;
+
+  /**
+   * @return number of result rows processed by execute so far
+   */
+  public int getTotalRows();
 }
@@ -0,0 +1,614 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.ensembl.mart.lib.config.DatasetConfig;
+
+/**
+ * Least recently used cache, on disk, of the output of executed queries.
+ * Entries are keyed on a canonical form of the Query, its FormatSpec and limit,
+ * and the message digest of the DatasetConfig of the Query, and stored as gzipped
+ * files in a directory, within a budget of compressed bytes.  Results larger than
+ * the maximum entry size are not stored.
+ * 
+ * <p>When a DatasetConfig is seen with a different digest from the one its entries
+ * were stored under, ie the meta_configuration of the dataset has changed, those
+ * entries are removed.  Queries whose DatasetConfig has no digest are not cached.</p>
+ * 
+ * <p>The cache is opt in, see Engine.setResultCache.</p>
+ * 
+ * @see Engine#setResultCache(ResultCache)
+ */
+public class ResultCache {
+
+  /** Default budget of compressed bytes held on disk */
+  public static final long DEFAULTMAXBYTES = 256 * 1024 * 1024;
+
+  /** Default largest compressed entry stored */
+  public static final long DEFAULTMAXENTRYBYTES = 16 * 1024 * 1024;
+
+  private static final String SUFFIX = ".gz";
+  private static final String TMPSUFFIX = ".tmp";
+  private static final int BUFFERSIZE = 8192;
+
+  private static final Logger logger = Logger.getLogger(ResultCache.class.getName());
+
+  private final File directory;
+
+  // all below guarded by this
+  private final LinkedHashMap entries = new LinkedHashMap(64, 0.75f, true); // key -> Entry
+  private final Map digests = new HashMap(); // dataset key -> hex digest its entries were stored under
+  private long maxBytes;
+  private long maxEntryBytes = DEFAULTMAXENTRYBYTES;
+  private long bytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long stores = 0;
+  private long evictions = 0;
+  private long invalidations = 0;
+
+  /**
+   * Opens a cache in directory, creating the directory if necessary. Entries left
+   * by an earlier cache in the directory are adopted, oldest first out.
+   * 
+   * @param directory directory holding the cached results
+   * @param maxBytes budget of compressed bytes held in directory
+   * @throws IOException if directory can not be created
+   */
+  public ResultCache(File directory, long maxBytes) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs())
+      throw new IOException("Could not create result cache directory " + directory);
+
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+
+    File[] files = directory.listFiles();
+    Arrays.sort(files, new Comparator() {
+      public int compare(Object o1, Object o2) {
+        long d = ((File) o1).lastModified() - ((File) o2).lastModified();
+        return (d < 0) ? -1 : (d > 0) ? 1 : 0;
+      }
+    });
+
+    for (int i = 0; i < files.length; i++) {
+      String name = files[i].getName();
+      if (name.endsWith(TMPSUFFIX))
+        files[i].delete();
+      else if (name.endsWith(SUFFIX)) {
+        Entry entry = new Entry(files[i], null, files[i].length());
+        entries.put(name.substring(0, name.length() - SUFFIX.length()), entry);
+        bytes += entry.size;
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Builds the key identifying the output of query in formatspec.
+   * 
+   * @param query query, after any IDListFilters have been handled
+   * @param formatspec
+   * @param limit row limit applied to the query
+   * @return String key, or null if the results of query can not be cached
+   */
+  public static String key(Query query, FormatSpec formatspec, int limit) {
+    String digest = digest(query);
+    if (digest == null)
+      return null;
+
+    StringBuffer buf = new StringBuffer();
+    buf.append(datasetKey(query)).append('|').append(digest);
+    buf.append("|t:").append(query.getType());
+    buf.append("|l:").append(limit);
+    buf.append("|F:").append(formatspec.getFormat()).append(':').append(formatspec.getSeparator());
+
+    append(buf, "m", query.getMainTables());
+    append(buf, "k", query.getPrimaryKeys());
+
+    Attribute[] attributes = query.getAttributes();
+    for (int i = 0; i < attributes.length; i++)
+      buf.append("|a:").append(attributes[i].getTableConstraint()).append('.').append(attributes[i].getField()).append(
+        ':').append(attributes[i].getKey());
+
+    Filter[] filters = query.getFilters();
+    for (int i = 0; i < filters.length; i++)
+      buf.append("|f:").append(filters[i].getClass().getName()).append(filters[i]);
+
+    if (query.hasSort()) {
+      Attribute[] sort = query.getSortByAttributes();
+      for (int i = 0; i < sort.length; i++)
+        buf.append("|s:").append(sort[i].getTableConstraint()).append('.').append(sort[i].getField());
+    }
+
+    SequenceDescription seq = query.getSequenceDescription();
+    if (query.getType() == Query.SEQUENCE && seq != null) {
+      buf.append("|q:").append(seq.getSeqDescription()).append(':').append(seq.getSeqInfo());
+      buf.append(':').append(seq.getLeftFlank()).append(':').append(seq.getRightFlank());
+      buf.append(':').append(seq.getRefDatasetName());
+    }
+
+    return buf.toString();
+  }
+
+  /**
+   * @return String identifying the dataset query runs against
+   */
+  private static String datasetKey(Query query) {
+    StringBuffer buf = new StringBuffer();
+    DetailedDataSource ds = query.getDataSource();
+    if (ds != null)
+      buf.append(ds.getConnectionString()).append('|').append(ds.getSchema()).append('|').append(ds.getUser());
+    buf.append('|').append(query.getDataset());
+    buf.append('|').append(query.getDatasetConfig().getInternalName());
+    return buf.toString();
+  }
+
+  /**
+   * @return hex message digest of the DatasetConfig of query, or null if it has none
+   */
+  private static String digest(Query query) {
+    DatasetConfig config = query.getDatasetConfig();
+    byte[] digest = (config != null) ? config.getMessageDigest() : null;
+    return (digest != null && digest.length > 0) ? toHex(digest) : null;
+  }
+
+  private static void append(StringBuffer buf, String tag, String[] values) {
+    buf.append('|').append(tag).append(':');
+    if (values != null)
+      for (int i = 0; i < values.length; i++)
+        buf.append(values[i]).append(',');
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuffer buf = new StringBuffer(bytes.length * 2);
+    for (int i = 0; i < bytes.length; i++) {
+      int b = bytes[i] & 0xff;
+      if (b < 16)
+        buf.append('0');
+      buf.append(Integer.toHexString(b));
+    }
+    return buf.toString();
+  }
+
+  /**
+   * @return hex MD5 of key, used as the entry and file name
+   */
+  private static String hash(String key) {
+    try {
+      MessageDigest md5 = MessageDigest.getInstance("MD5");
+      return toHex(md5.digest(key.getBytes("UTF-8")));
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("MD5 not available: " + e.getMessage(), e);
+    } catch (IOException e) {
+      throw new RuntimeException("UTF-8 not available: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Copies the cached output of query to out.
+   * 
+   * @param query
+   * @param formatspec
+   * @param limit
+   * @param out
+   * @return true if the output was cached and has been written to out, false on a miss
+   * @throws InvalidQueryException if the cached output could not be copied to out
+   */
+  public boolean write(Query query, FormatSpec formatspec, int limit, OutputStream out) throws InvalidQueryException {
+    String key = key(query, formatspec, limit);
+    if (key == null)
+      return false;
+
+    validate(query);
+    String name = hash(key);
+
+    Entry entry;
+    InputStream in = null;
+    synchronized (this) {
+      entry = (Entry) entries.get(name);
+      if (entry != null) {
+        try {
+          // open while holding the lock, so the file can not be evicted first
+          in = new FileInputStream(entry.file);
+        } catch (FileNotFoundException e) {
+          remove(name);
+          entry = null;
+        }
+      }
+
+      if (entry == null) {
+        misses++;
+        return false;
+      }
+      hits++;
+    }
+
+    try {
+      in = new GZIPInputStream(in, BUFFERSIZE);
+      byte[] buf = new byte[BUFFERSIZE];
+      int n;
+      while ((n = in.read(buf)) > 0)
+        out.write(buf, 0, n);
+      out.flush();
+      return true;
+    } catch (IOException e) {
+      synchronized (this) {
+        remove(name);
+      }
+      throw new InvalidQueryException("Could not write cached results to OutputStream: " + e.getMessage(), e);
+    } finally {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // already read
+      }
+    }
+  }
+
+  /**
+   * Returns an OutputStream which passes everything written to it to out, and
+   * records it for the cache.  The recording is added to the cache by commit,
+   * and discarded by abort.
+   * 
+   * @param query
+   * @param formatspec
+   * @param limit
+   * @param out OutputStream receiving the results of query
+   * @return Recorder, or null if the results of query can not be cached
+   */
+  public Recorder record(Query query, FormatSpec formatspec, int limit, OutputStream out) {
+    String key = key(query, formatspec, limit);
+    if (key == null)
+      return null;
+
+    String name = hash(key);
+    try {
+      File tmp = File.createTempFile(name, TMPSUFFIX, directory);
+      return new Recorder(out, name, datasetKey(query), digest(query), tmp);
+    } catch (IOException e) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning("Could not create result cache file in " + directory + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Removes the entries of the dataset of query if its digest has changed since
+   * they were stored.
+   */
+  private synchronized void validate(Query query) {
+    String datasetKey = datasetKey(query);
+    String digest = digest(query);
+    String old = (String) digests.get(datasetKey);
+    if (old == null || old.equals(digest))
+      return;
+
+    if (logger.isLoggable(Level.INFO))
+      logger.info("DatasetConfig " + query.getDatasetConfig().getInternalName() + " has changed, invalidating cached results");
+
+    List stale = new ArrayList();
+    for (Iterator iter = entries.entrySet().iterator(); iter.hasNext();) {
+      Map.Entry e = (Map.Entry) iter.next();
+      if (datasetKey.equals(((Entry) e.getValue()).datasetKey))
+        stale.add(e.getKey());
+    }
+    for (int i = 0, n = stale.size(); i < n; i++)
+      remove((String) stale.get(i));
+
+    invalidations += stale.size();
+    digests.put(datasetKey, digest);
+  }
+
+  private synchronized void store(String name, String datasetKey, String digest, File tmp) {
+    File file = new File(directory, name + SUFFIX);
+    remove(name);
+    if (!tmp.renameTo(file)) {
+      tmp.delete();
+      return;
+    }
+
+    Entry entry = new Entry(file, datasetKey, file.length());
+    entries.put(name, entry);
+    bytes += entry.size;
+    stores++;
+
+    if (!digests.containsKey(datasetKey))
+      digests.put(datasetKey, digest);
+    evict();
+  }
+
+  private void remove(String name) {
+    Entry entry = (Entry) entries.remove(name);
+    if (entry != null) {
+      bytes -= entry.size;
+      entry.file.delete();
+    }
+  }
+
+  private void evict() {
+    Iterator iter = entries.values().iterator();
+    while (bytes > maxBytes && iter.hasNext()) {
+      Entry entry = (Entry) iter.next();
+      iter.remove();
+      bytes -= entry.size;
+      entry.file.delete();
+      evictions++;
+    }
+  }
+
+  /**
+   * Removes all entries, and resets the statistics.
+   */
+  public synchronized void clear() {
+    for (Iterator iter = entries.values().iterator(); iter.hasNext();)
+      ((Entry) iter.next()).file.delete();
+    entries.clear();
+    digests.clear();
+    bytes = 0;
+    hits = 0;
+    misses = 0;
+    stores = 0;
+    evictions = 0;
+    invalidations = 0;
+  }
+
+  /**
+   * Sets the budget of compressed bytes, evicting entries if it has shrunk.
+   * @param maxBytes
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * @param maxEntryBytes results compressing to more than this are not stored
+   */
+  public synchronized void setMaxEntryBytes(long maxEntryBytes) {
+    this.maxEntryBytes = maxEntryBytes;
+  }
+
+  public synchronized long getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * @return compressed bytes held on disk
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getStores() {
+    return stores;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  public synchronized String toString() {
+    StringBuffer buf = new StringBuffer();
+    buf.append("[");
+    buf.append("directory=").append(directory);
+    buf.append(", entries=").append(entries.size());
+    buf.append(", bytes=").append(bytes);
+    buf.append(", maxBytes=").append(maxBytes);
+    buf.append(", hits=").append(hits);
+    buf.append(", misses=").append(misses);
+    buf.append(", stores=").append(stores);
+    buf.append(", evictions=").append(evictions);
+    buf.append(", invalidations=").append(invalidations);
+    buf.append("]");
+    return buf.toString();
+  }
+
+  private static class Entry {
+    private final File file;
+    private final String datasetKey;
+    private final long size;
+
+    private Entry(File file, String datasetKey, long size) {
+      this.file = file;
+      this.datasetKey = datasetKey;
+      this.size = size;
+    }
+  }
+
+  /**
+   * Passes the results of a query through to its OutputStream, gzipping a copy
+   * into a temporary file.  If the copy grows larger than the maximum entry size,
+   * or can not be written, recording stops and the results are only passed through.
+   */
+  public class Recorder extends OutputStream {
+    private final OutputStream out;
+    private final String name;
+    private final String datasetKey;
+    private final String digest;
+    private final File tmp;
+    private final long limit;
+    private CountingOutputStream counter;
+    private GZIPOutputStream copy;
+
+    private Recorder(OutputStream out, String name, String datasetKey, String digest, File tmp) throws IOException {
+      this.out = out;
+      this.name = name;
+      this.datasetKey = datasetKey;
+      this.digest = digest;
+      this.tmp = tmp;
+      this.limit = getMaxEntryBytes();
+      this.counter = new CountingOutputStream(new FileOutputStream(tmp));
+      this.copy = new GZIPOutputStream(counter, BUFFERSIZE);
+    }
+
+    public void write(int b) throws IOException {
+      out.write(b);
+      if (copy != null) {
+        try {
+          copy.write(b);
+          checkSize();
+        } catch (IOException e) {
+          discard(e);
+        }
+      }
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      if (copy != null) {
+        try {
+          copy.write(b, off, len);
+          checkSize();
+        } catch (IOException e) {
+          discard(e);
+        }
+      }
+    }
+
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    /**
+     * Does not close the underlying OutputStream, which belongs to the caller.
+     */
+    public void close() throws IOException {
+      flush();
+    }
+
+    private void checkSize() {
+      if (counter.count > limit)
+        discard(null);
+    }
+
+    private void discard(IOException e) {
+      if (e != null && logger.isLoggable(Level.WARNING))
+        logger.warning("Could not write result cache file " + tmp + ": " + e.getMessage());
+
+      try {
+        copy.close();
+      } catch (IOException e2) {
+        // being discarded
+      }
+      copy = null;
+      tmp.delete();
+    }
+
+    /**
+     * Adds the recorded results to the cache, once the query has completed.
+     */
+    public void commit() {
+      if (copy == null)
+        return;
+
+      try {
+        copy.close();
+        copy = null;
+        if (counter.count > limit)
+          tmp.delete();
+        else
+          store(name, datasetKey, digest, tmp);
+      } catch (IOException e) {
+        discard(e);
+      }
+    }
+
+    /**
+     * Discards the recorded results, if the query failed.
+     */
+    public void abort() {
+      if (copy != null)
+        discard(null);
+    }
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+    private final OutputStream out;
+    private long count = 0;
+
+    private CountingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
@@ -131,7 +131,7 @@ public class SNPSeqQueryRunner extends BaseSeqQueryRunner {
               }
               
               //will only do each exon once
-              seqWriter.writeSequences(new Integer(0), conn);
+              writeRecord(new Integer(0), conn);
               headerinfo = new Hashtable();
               curLocation = null;
               curAllele = null;
@@ -143,6 +143,17 @@ public class SNPSeqQueryRunner extends BaseSeqQueryRunner {
         }
     }
 
+    protected Object saveRecordState(Integer id) {
+      return new Object[] { curLocation, curAllele, headerinfo };
+    }
+
+    protected void restoreRecordState(Object state) {
+      Object[] saved = (Object[]) state;
+      curLocation = (SequenceLocation) saved[0];
+      curAllele = (String) saved[1];
+      headerinfo = (Hashtable) saved[2];
+    }
+
     private final SeqWriter tabulatedWriter = new SeqWriter() {
         void writeSequences(Integer geneID, Connection conn) throws SequenceException {
             if (curLocation != null) {
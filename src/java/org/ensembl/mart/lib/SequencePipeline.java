@@ -0,0 +1,285 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Overlaps reading a sequence ResultSet with fetching and formatting the sequences.
+ * The BaseSeqQueryRunner reading the ResultSet submits a snapshot of each completed
+ * record.  A pool of worker runners, each with its own SequenceSource, restores each
+ * snapshot, fetches and formats its sequence into a buffer, and a single writer thread
+ * copies the buffers to the output in the order the records were submitted.  At most
+ * depth records are in flight at once, so the reader blocks rather than buffering
+ * the whole ResultSet when the workers fall behind.
+ *
+ * @see BaseSeqQueryRunner#setSequencePipelineWorkers(int)
+ */
+class SequencePipeline {
+
+  private static final Logger logger = Logger.getLogger(SequencePipeline.class.getName());
+
+  private final BaseSeqQueryRunner[] runners;
+  private final ByteArrayOutputStream[] buffers;
+  private final PrintStream out;
+  private final int depth;
+  private final Thread[] threads;
+
+  // all below guarded by this
+  private final LinkedList pending = new LinkedList();
+  private final byte[][] written;
+  private int nextSubmit = 0;
+  private int nextWrite = 0;
+  private int runningThreads = 0;
+  private boolean finished = false;
+  private boolean stopped = false;
+  private boolean closed = false;
+  private Exception failure = null;
+
+  /**
+   * @param runners worker runners, one per worker thread, each writing to the
+   * corresponding buffer
+   * @param buffers buffers the runners write their records into
+   * @param out stream receiving the records, in submission order
+   * @param depth maximum number of records submitted but not yet written
+   */
+  SequencePipeline(BaseSeqQueryRunner[] runners, ByteArrayOutputStream[] buffers, PrintStream out, int depth) {
+    this.runners = runners;
+    this.buffers = buffers;
+    this.out = out;
+    this.depth = Math.max(depth, runners.length);
+    this.written = new byte[this.depth][];
+
+    threads = new Thread[runners.length + 1];
+    for (int i = 0; i < runners.length; i++)
+      threads[i] = new Thread(new Worker(i), "SequencePipelineWorker-" + i);
+    threads[runners.length] = new Thread(new Writer(), "SequencePipelineWriter");
+
+    runningThreads = threads.length;
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+  }
+
+  /**
+   * Queues a record for writing, blocking while depth records are already in flight.
+   *
+   * @param id identifier passed to the SeqWriter
+   * @param fields description fields of the record
+   * @param state record state returned by BaseSeqQueryRunner.saveRecordState
+   * @throws SequenceException if a worker or the writer has failed
+   */
+  synchronized void submit(Integer id, List fields, Object state) throws SequenceException {
+    while (failure == null && nextSubmit - nextWrite >= depth) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        failed(e);
+      }
+    }
+    checkFailure();
+
+    pending.addLast(new Record(nextSubmit++, id, fields, state));
+    notifyAll();
+  }
+
+  /**
+   * Waits until every submitted record has been written, then closes the
+   * SequenceSource of each worker.
+   *
+   * @throws SequenceException if a record could not be fetched or written
+   */
+  void finish() throws SequenceException {
+    synchronized (this) {
+      finished = true;
+      notifyAll();
+    }
+    close();
+
+    synchronized (this) {
+      checkFailure();
+    }
+  }
+
+  /**
+   * Stops the pipeline, discarding any records not yet written, waits for its threads
+   * to exit, and closes the SequenceSource of each worker.  Safe to call after finish.
+   */
+  void close() {
+    synchronized (this) {
+      if (!finished) {
+        finished = true;
+        stopped = true;
+        notifyAll();
+      }
+
+      while (runningThreads > 0) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          break;
+        }
+      }
+
+      if (closed)
+        return;
+      closed = true;
+    }
+
+    for (int i = 0; i < runners.length; i++)
+      if (runners[i].dna != null)
+        runners[i].dna.close();
+  }
+
+  private boolean allWritten() {
+    return nextWrite == nextSubmit;
+  }
+
+  private void checkFailure() throws SequenceException {
+    if (failure instanceof SequenceException)
+      throw (SequenceException) failure;
+    if (failure != null)
+      throw new SequenceException("Sequence pipeline failed: " + failure.getMessage(), failure);
+  }
+
+  private synchronized void failed(Exception e) {
+    if (failure == null)
+      failure = e;
+    notifyAll();
+  }
+
+  private synchronized Record nextRecord() {
+    while (failure == null && !stopped) {
+      if (pending.size() > 0)
+        return (Record) pending.removeFirst();
+      if (finished)
+        return null;
+
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        failed(e);
+      }
+    }
+    return null;
+  }
+
+  private synchronized void completed(Record record, byte[] bytes) {
+    written[record.index % depth] = bytes;
+    notifyAll();
+  }
+
+  /**
+   * @return bytes of the next record in submission order, or null when there are no more
+   */
+  private synchronized byte[] nextWritable() {
+    while (failure == null && !stopped) {
+      byte[] bytes = written[nextWrite % depth];
+      if (bytes != null)
+        return bytes;
+      if (finished && allWritten())
+        return null;
+
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        failed(e);
+      }
+    }
+    return null;
+  }
+
+  private synchronized void advance() {
+    written[nextWrite % depth] = null;
+    nextWrite++;
+    notifyAll();
+  }
+
+  private synchronized void threadFinished() {
+    runningThreads--;
+    notifyAll();
+  }
+
+  private static class Record {
+    private final int index;
+    private final Integer id;
+    private final List fields;
+    private final Object state;
+
+    private Record(int index, Integer id, List fields, Object state) {
+      this.index = index;
+      this.id = id;
+      this.fields = fields;
+      this.state = state;
+    }
+  }
+
+  private class Worker implements Runnable {
+    private final int n;
+
+    private Worker(int n) {
+      this.n = n;
+    }
+
+    public void run() {
+      try {
+        Record record;
+        while ((record = nextRecord()) != null) {
+          runners[n].writePipelinedRecord(record.id, record.fields, record.state);
+          completed(record, buffers[n].toByteArray());
+          buffers[n].reset();
+        }
+      } catch (Exception e) {
+        if (logger.isLoggable(Level.WARNING))
+          logger.warning("Sequence pipeline worker failed: " + e.getMessage());
+        failed(e);
+      } finally {
+        threadFinished();
+      }
+    }
+  }
+
+  private class Writer implements Runnable {
+    public void run() {
+      try {
+        byte[] bytes;
+        while ((bytes = nextWritable()) != null) {
+          out.write(bytes, 0, bytes.length);
+          if (out.checkError())
+            throw new SequenceException("Couldnt write to OutputStream");
+          advance();
+        }
+        out.flush();
+      } catch (Exception e) {
+        if (logger.isLoggable(Level.WARNING))
+          logger.warning("Sequence pipeline writer failed: " + e.getMessage());
+        failed(e);
+      } finally {
+        threadFinished();
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+import java.util.Collection;
+
+/**
+ * Source of genomic DNA used by the sequence QueryRunners.  Implementations
+ * read from the mart database (DNAAdaptor), or from a local indexed sequence
+ * file (MappedSequenceSource).
+ * 
+ * @see SequenceSourceFactory
+ */
+public interface SequenceSource {
+
+  /**
+   * Gets the sequence for a chromosome, start and end (1 based, inclusive).
+   * Returns as much sequence as is available if the request runs off the end
+   * of the chromosome, and a string of Ns if there is none at all.
+   * 
+   * @param chr chromosome name
+   * @param start start coordinate
+   * @param end end coordinate
+   * @return byte[] sequence
+   * @throws SequenceException if the sequence could not be read
+   */
+  public byte[] getSequence(String chr, int start, int end) throws SequenceException;
+
+  /**
+   * Gets the sequence of each of a Collection of SequenceLocations, as getSequence
+   * would return it, so strand is ignored.  Lets implementations read the sequence
+   * for a whole transcript at once.
+   * 
+   * @param locations Collection of SequenceLocation objects
+   * @return byte[][] sequence of each location, in iteration order
+   * @throws SequenceException if the sequence could not be read
+   */
+  public byte[][] getSequences(Collection locations) throws SequenceException;
+
+  /**
+   * Releases any resources held by this source.
+   */
+  public void close();
+}
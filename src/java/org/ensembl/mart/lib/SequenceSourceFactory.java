@@ -0,0 +1,162 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Factory class choosing the SequenceSource for a SequenceDescription.  If a local
+ * sequence file has been registered for its dna chunks table, or one exists in the
+ * local sequence directory, a MappedSequenceSource is returned, otherwise a
+ * DNAAdaptor reading from the database.
+ * Local files are named schema.table.fa, where table is the first element of the
+ * seqInfo, eg. hsapiens_genomic_sequence.dna_chunks.fa, with the index alongside.
+ * 
+ * @see MappedSequenceSource#export(SequenceDescription, File)
+ */
+public class SequenceSourceFactory {
+
+  private static final Logger logger = Logger.getLogger(SequenceSourceFactory.class.getName());
+
+  public static final String FASTASUFFIX = ".fa";
+
+  private static File directory = null;
+  private static final Map files = new HashMap();
+  // open MappedSequenceSources, shared between queries, keyed by File
+  private static final Map sources = new HashMap();
+
+  /**
+   * Sets a directory searched for local sequence files, null to only use registered files.
+   * 
+   * @param dir directory holding exported sequence files
+   */
+  public static synchronized void setLocalSequenceDirectory(File dir) {
+    directory = dir;
+  }
+
+  public static synchronized File getLocalSequenceDirectory() {
+    return directory;
+  }
+
+  /**
+   * Registers a local FASTA file to serve the sequence of a dna chunks table.
+   * 
+   * @param schema schema of the table, as returned by DetailedDataSource.getSchema()
+   * @param table dna chunks table, the first element of the SequenceDescription seqInfo
+   * @param fasta indexed FASTA file, null removes the registration
+   */
+  public static synchronized void register(String schema, String table, File fasta) {
+    if (fasta == null)
+      files.remove(fileName(schema, table));
+    else
+      files.put(fileName(schema, table), fasta);
+  }
+
+  /**
+   * @param schema schema of the dna chunks table
+   * @param table dna chunks table
+   * @return String file name used for the table in the local sequence directory
+   */
+  public static String fileName(String schema, String table) {
+    return schema + "." + table + FASTASUFFIX;
+  }
+
+  /**
+   * Returns the SequenceSource for seqd.  A local file which cannot be opened is
+   * logged, and the database is used instead.
+   * 
+   * @param seqd SequenceDescription with seqInfo set
+   * @return SequenceSource which must be closed after use
+   * @throws SequenceException if the DNAAdaptor could not be created
+   */
+  public static SequenceSource getInstance(SequenceDescription seqd) throws SequenceException {
+    String table = seqd.getSeqInfo().split("\\,")[0];
+    File fasta = findFile(seqd.getRefDataSource().getSchema(), table);
+
+    if (fasta != null) {
+      try {
+        return getMappedSource(fasta);
+      } catch (IOException e) {
+        if (logger.isLoggable(Level.WARNING))
+          logger.warning("Could not open local sequence " + fasta + ", using database: " + e.getMessage());
+      }
+    }
+
+    return new DNAAdaptor(seqd);
+  }
+
+  private static synchronized File findFile(String schema, String table) {
+    String name = fileName(schema, table);
+
+    File fasta = (File) files.get(name);
+    if (fasta == null && directory != null) {
+      File candidate = new File(directory, name);
+      if (candidate.exists() && new File(candidate.getPath() + MappedSequenceSource.INDEXSUFFIX).exists())
+        fasta = candidate;
+    }
+    return fasta;
+  }
+
+  private static synchronized SequenceSource getMappedSource(File fasta) throws IOException {
+    MappedSequenceSource source = (MappedSequenceSource) sources.get(fasta);
+    if (source == null) {
+      source = new MappedSequenceSource(fasta);
+      sources.put(fasta, source);
+    }
+    return new SharedSource(source);
+  }
+
+  /**
+   * Closes all open local sequence files, eg. after they have been re-exported.
+   */
+  public static synchronized void closeAll() {
+    for (Iterator iter = sources.values().iterator(); iter.hasNext();)
+      ((MappedSequenceSource) iter.next()).close();
+    sources.clear();
+  }
+
+  /**
+   * Hands out a shared MappedSequenceSource, whose close does not close the shared file.
+   */
+  private static class SharedSource implements SequenceSource {
+    private final MappedSequenceSource source;
+
+    private SharedSource(MappedSequenceSource source) {
+      this.source = source;
+    }
+
+    public byte[] getSequence(String chr, int start, int end) throws SequenceException {
+      return source.getSequence(chr, start, end);
+    }
+
+    public byte[][] getSequences(Collection locations) throws SequenceException {
+      return source.getSequences(locations);
+    }
+
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the PreparedStatements of each Connection open between uses, so that
+ * SQL executed repeatedly on a Connection is only prepared, and parsed by drivers
+ * which prepare on the server, once.  A statement is taken out of the cache by
+ * prepare, and returned to it by release, so it is never shared.  Each Connection
+ * holds at most getMaxStatements() statements, least recently used first out.
+ * ConnectionPool prepares statements through this cache, and closes the statements
+ * of a connection when it closes the connection.
+ * 
+ * @see QueryPlanCache
+ */
+public class StatementCache {
+
+  /** Default maximum number of statements held per Connection */
+  public static final int DEFAULTMAXSTATEMENTS = 32;
+
+  private static final Logger logger = Logger.getLogger(StatementCache.class.getName());
+
+  // Connection -> access ordered LinkedHashMap of sql -> PreparedStatement
+  private static final Map connections = new WeakHashMap();
+  private static int maxStatements = DEFAULTMAXSTATEMENTS;
+  private static long hits = 0;
+  private static long misses = 0;
+
+  private StatementCache() {
+  }
+
+  /**
+   * Returns a cached PreparedStatement for sql on conn, or prepares a new one.
+   * @param conn
+   * @param sql
+   * @return PreparedStatement to be handed back with release
+   * @throws SQLException if a new statement could not be prepared
+   */
+  public static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+    synchronized (connections) {
+      Map statements = (Map) connections.get(conn);
+      PreparedStatement ps = (statements != null) ? (PreparedStatement) statements.remove(sql) : null;
+      if (ps != null) {
+        hits++;
+        return ps;
+      }
+      misses++;
+    }
+    return conn.prepareStatement(sql);
+  }
+
+  /**
+   * Returns a statement obtained from prepare to the cache of conn, clearing its
+   * parameters and row limit.  The statement is closed instead if it can not be reset.
+   * @param conn Connection ps was prepared on
+   * @param sql SQL ps was prepared from
+   * @param ps
+   */
+  public static void release(Connection conn, String sql, PreparedStatement ps) {
+    if (ps == null)
+      return;
+
+    try {
+      ps.clearParameters();
+      ps.setMaxRows(0);
+    } catch (SQLException e) {
+      close(ps);
+      return;
+    }
+
+    synchronized (connections) {
+      if (maxStatements < 1) {
+        close(ps);
+        return;
+      }
+
+      Map statements = (Map) connections.get(conn);
+      if (statements == null) {
+        statements = new LinkedHashMap(16, 0.75f, true);
+        connections.put(conn, statements);
+      }
+
+      PreparedStatement old = (PreparedStatement) statements.put(sql, ps);
+      if (old != null && old != ps)
+        close(old);
+
+      Iterator iter = statements.values().iterator();
+      while (statements.size() > maxStatements && iter.hasNext()) {
+        close((PreparedStatement) iter.next());
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Closes and forgets every cached statement of conn.
+   * @param conn
+   */
+  public static void closeAll(Connection conn) {
+    Map statements;
+    synchronized (connections) {
+      statements = (Map) connections.remove(conn);
+    }
+
+    if (statements != null)
+      for (Iterator iter = statements.values().iterator(); iter.hasNext();)
+        close((PreparedStatement) iter.next());
+  }
+
+  private static void close(PreparedStatement ps) {
+    try {
+      ps.close();
+    } catch (SQLException e) {
+      if (logger.isLoggable(Level.FINE))
+        logger.fine("Could not close cached statement: " + e.getMessage());
+    }
+  }
+
+  /**
+   * @param max maximum number of statements held per Connection, 0 disables caching
+   */
+  public static void setMaxStatements(int max) {
+    synchronized (connections) {
+      maxStatements = Math.max(0, max);
+    }
+  }
+
+  public static int getMaxStatements() {
+    synchronized (connections) {
+      return maxStatements;
+    }
+  }
+
+  public static long getHits() {
+    synchronized (connections) {
+      return hits;
+    }
+  }
+
+  public static long getMisses() {
+    synchronized (connections) {
+      return misses;
+    }
+  }
+}
@@ -111,7 +111,7 @@ public final class TranscriptEISeqQueryRunner extends BaseSeqQueryRunner {
       if (keyID.intValue() != lastID) {
         if (lastID > -1) {
           //This is not the first ID in a batch, process the previous ID sequences
-          seqWriter.writeSequences(new Integer(lastID), conn);
+          writeRecord(new Integer(lastID), conn);
         }
 
         //refresh the iDs TreeMap  
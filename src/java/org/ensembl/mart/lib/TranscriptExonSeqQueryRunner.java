@@ -142,7 +142,7 @@ public final class TranscriptExonSeqQueryRunner extends BaseSeqQueryRunner {
           }
           
           //will only do each exon once
-          seqWriter.writeSequences(new Integer(0), conn);
+          writeRecord(new Integer(0), conn);
           exonatts = new Hashtable();
       }
       
@@ -152,6 +152,14 @@ public final class TranscriptExonSeqQueryRunner extends BaseSeqQueryRunner {
     }
   }
 
+  protected Object saveRecordState(Integer id) {
+    return exonatts;
+  }
+
+  protected void restoreRecordState(Object state) {
+    exonatts = (Hashtable) state;
+  }
+
   private final SeqWriter tabulatedWriter = new SeqWriter() {
       void writeSequences(Integer geneID, Connection conn) throws SequenceException {
         if (exonatts.containsKey(LOCATION)) {
@@ -110,7 +110,7 @@ public final class TranscriptFlankSeqQueryRunner extends BaseSeqQueryRunner {
             if ( keyID.intValue() != lastID  ) {
                 if ( lastID > -1  ) {
                     //This is not the first ID in a batch, process the previous ID sequences
-                    seqWriter.writeSequences(new Integer(lastID), conn);
+                    writeRecord(new Integer(lastID), conn);
                 }
                 
                 //refresh the calcLocation
@@ -165,6 +165,16 @@ public final class TranscriptFlankSeqQueryRunner extends BaseSeqQueryRunner {
         }
     }
     
+    protected Object saveRecordState(Integer id) {
+      return new Object[] { calcLocation, headerinfo };
+    }
+
+    protected void restoreRecordState(Object state) {
+      Object[] saved = (Object[]) state;
+      calcLocation = (SequenceLocation) saved[0];
+      headerinfo = (Hashtable) saved[1];
+    }
+
     private final SeqWriter tabulatedWriter = new SeqWriter() {
         void writeSequences(Integer geneID, Connection conn) throws SequenceException {
             try {
@@ -119,7 +119,7 @@ public class UniprotSeqQueryRunner extends BaseSeqQueryRunner {
               }
               
               //will only do each exon once
-              seqWriter.writeSequences(new Integer(0), conn);
+              writeRecord(new Integer(0), conn);
               headerinfo = new Hashtable();
               curSequence = null;
           }
@@ -130,6 +130,16 @@ public class UniprotSeqQueryRunner extends BaseSeqQueryRunner {
         }
     }
 
+    protected Object saveRecordState(Integer id) {
+      return new Object[] { curSequence, headerinfo };
+    }
+
+    protected void restoreRecordState(Object state) {
+      Object[] saved = (Object[]) state;
+      curSequence = (String) saved[0];
+      headerinfo = (Hashtable) saved[1];
+    }
+
     private final SeqWriter tabulatedWriter = new SeqWriter() {
         void writeSequences(Integer geneID, Connection conn) throws SequenceException {
             if (curSequence != null) {
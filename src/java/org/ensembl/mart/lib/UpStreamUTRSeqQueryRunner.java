@@ -121,7 +121,7 @@ public final class UpStreamUTRSeqQueryRunner extends BaseSeqQueryRunner {
             if ( keyID.intValue() != lastID ) {
                 if ( lastID > -1  ) {
                     //This is not the first ID in a batch, process the previous ID sequences
-                    seqWriter.writeSequences(new Integer(lastID), conn);
+                    writeRecord(new Integer(lastID), conn);
                 }
                 lastIDRowsProcessed = 0; // refresh for the new ID
                 
@@ -181,6 +181,17 @@ public final class UpStreamUTRSeqQueryRunner extends BaseSeqQueryRunner {
         }
     }
     
+    protected Object saveRecordState(Integer id) {
+      return new Object[] { locations, calcLocation, headerinfo };
+    }
+
+    protected void restoreRecordState(Object state) {
+      Object[] saved = (Object[]) state;
+      locations = (TreeMap) saved[0];
+      calcLocation = (SequenceLocation) saved[1];
+      headerinfo = (Hashtable) saved[2];
+    }
+
     private final SeqWriter tabulatedWriter = new SeqWriter() {
         void writeSequences(Integer geneID, Connection conn) throws SequenceException {
             
@@ -275,13 +286,15 @@ public final class UpStreamUTRSeqQueryRunner extends BaseSeqQueryRunner {
                         locations.put(newHigh, calcLocation);
                     }
                     
-                    for (Iterator lociter = locations.keySet().iterator(); lociter.hasNext();) {
-                        SequenceLocation loc = (SequenceLocation) locations.get((Integer) lociter.next());
+                    byte[][] sequences = dna.getSequences(locations.values());
+                    Iterator lociter = locations.values().iterator();
+                    for (int locIndex = 0; lociter.hasNext(); locIndex++) {
+                        SequenceLocation loc = (SequenceLocation) lociter.next();
                         
                         if (loc.getStrand() < 0)
-                            osr.write(SequenceUtil.reverseComplement(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd())));
+                            osr.write(SequenceUtil.reverseComplement(sequences[locIndex]));
                         else
-                            osr.write(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd()));
+                            osr.write(sequences[locIndex]);
                     }
                     
                     osr.print("\n");
@@ -396,13 +409,15 @@ public final class UpStreamUTRSeqQueryRunner extends BaseSeqQueryRunner {
                         locations.put(newHigh, calcLocation);
                     }
                     
-                    for (Iterator lociter = locations.keySet().iterator(); lociter.hasNext();) {
-                        SequenceLocation loc = (SequenceLocation) locations.get((Integer) lociter.next());
+                    byte[][] sequences = dna.getSequences(locations.values());
+                    Iterator lociter = locations.values().iterator();
+                    for (int locIndex = 0; lociter.hasNext(); locIndex++) {
+                        SequenceLocation loc = (SequenceLocation) lociter.next();
                         
                         if (loc.getStrand() < 0)
-                            osr.write(SequenceUtil.reverseComplement(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd())));
+                            osr.write(SequenceUtil.reverseComplement(sequences[locIndex]));
                         else
-                            osr.write(dna.getSequence(loc.getChr(), loc.getStart(), loc.getEnd()));
+                            osr.write(sequences[locIndex]);
                     }
                     
                     osr.print("\n");
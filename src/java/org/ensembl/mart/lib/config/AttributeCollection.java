@@ -153,6 +153,7 @@ private final String[] titles = new String[] {
 	 * @param a a AttributeDescription object.
 	 */
 	public void addAttributeDescription(AttributeDescription a) {
+		modified();
 		AttributeDescriptions.add(a);
 		attributeDescriptionNameMap.put(a.getInternalName(), a);
 	}
@@ -162,6 +163,7 @@ private final String[] titles = new String[] {
    * @param a -- AttributeDescription to be removed.
    */
   public void removeAttributeDescription(AttributeDescription a) {
+    modified();
     attributeDescriptionNameMap.remove(a.getInternalName());
     AttributeDescriptions.remove(a);
   }
@@ -173,6 +175,7 @@ private final String[] titles = new String[] {
    * @param a -- AttributeDescription to insert
    */
   public void insertAttributeDescription(int position, AttributeDescription a) {
+    modified();
     AttributeDescriptions.add(position, a);
     attributeDescriptionNameMap.put(a.getInternalName(), a);
   }
@@ -184,6 +187,7 @@ private final String[] titles = new String[] {
    * @throws ConfigurationException when the AttributeCollection does not contain an AttributeDescription named by internalName.
    */
   public void insertAttributeDescriptionBeforeAttributeDescription(String internalName, AttributeDescription a) throws ConfigurationException {
+    modified();
     if (!attributeDescriptionNameMap.containsKey(internalName))
       throw new ConfigurationException("AttributeCollection does not contain AttributeDescription " + internalName + "\n");
     insertAttributeDescription( AttributeDescriptions.indexOf( attributeDescriptionNameMap.get(internalName) ), a );
@@ -196,6 +200,7 @@ private final String[] titles = new String[] {
    * @throws ConfigurationException when the AttributeCollection does not contain an AttributeDescription named by internalName.
    */
   public void insertAttributeDescriptionAfterAttributeDescription(String internalName, AttributeDescription a) throws ConfigurationException {
+    modified();
     if (!attributeDescriptionNameMap.containsKey(internalName))
       throw new ConfigurationException("AttributeCollection does not contain AttributeDescription " + internalName + "\n");
     insertAttributeDescription( AttributeDescriptions.indexOf( attributeDescriptionNameMap.get(internalName) ) + 1, a );
@@ -208,6 +213,7 @@ private final String[] titles = new String[] {
 	 * @param a an Array of AttributeDescription objects.
 	 */
 	public void addAttributeDescriptions(AttributeDescription[] a) {
+		modified();
 		for (int i = 0, n = a.length; i < n; i++) {
 			AttributeDescriptions.add(a[i]);
 			attributeDescriptionNameMap.put(a[i].getInternalName(), a[i]);
@@ -290,6 +296,7 @@ private final String[] titles = new String[] {
 	 * @param a a AttributeList object.
 	 */
 	public void addAttributeList(AttributeList a) {
+		modified();
 		AttributeLists.add(a);
 		attributeListNameMap.put(a.getInternalName(), a);
 	}
@@ -299,6 +306,7 @@ private final String[] titles = new String[] {
  * @param a -- AttributeList to be removed.
  */
 public void removeAttributeList(AttributeList a) {
+  modified();
   attributeListNameMap.remove(a.getInternalName());
   AttributeLists.remove(a);
 }
@@ -310,6 +318,7 @@ public void removeAttributeList(AttributeList a) {
  * @param a -- AttributeList to insert
  */
 public void insertAttributeList(int position, AttributeList a) {
+  modified();
   AttributeLists.add(position, a);
   attributeListNameMap.put(a.getInternalName(), a);
 }
@@ -321,6 +330,7 @@ public void insertAttributeList(int position, AttributeList a) {
  * @throws ConfigurationException when the AttributeCollection does not contain an AttributeList named by internalName.
  */
 public void insertAttributeListBeforeAttributeList(String internalName, AttributeList a) throws ConfigurationException {
+  modified();
   if (!attributeListNameMap.containsKey(internalName))
     throw new ConfigurationException("AttributeCollection does not contain AttributeList " + internalName + "\n");
   insertAttributeList( AttributeLists.indexOf( attributeListNameMap.get(internalName) ), a );
@@ -333,6 +343,7 @@ public void insertAttributeListBeforeAttributeList(String internalName, Attribut
  * @throws ConfigurationException when the AttributeCollection does not contain an AttributeList named by internalName.
  */
 public void insertAttributeListAfterAttributeList(String internalName, AttributeList a) throws ConfigurationException {
+  modified();
   if (!attributeListNameMap.containsKey(internalName))
     throw new ConfigurationException("AttributeCollection does not contain AttributeList " + internalName + "\n");
   insertAttributeList( AttributeLists.indexOf( attributeListNameMap.get(internalName) ) + 1, a );
@@ -345,6 +356,7 @@ public void insertAttributeListAfterAttributeList(String internalName, Attribute
 	 * @param a an Array of AttributeList objects.
 	 */
 	public void addAttributeLists(AttributeList[] a) {
+		modified();
 		for (int i = 0, n = a.length; i < n; i++) {
 			AttributeLists.add(a[i]);
 			attributeListNameMap.put(a[i].getInternalName(), a[i]);
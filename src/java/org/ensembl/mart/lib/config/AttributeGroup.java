@@ -128,6 +128,7 @@ public final class AttributeGroup extends BaseNamedConfigurationObject {
 	 * @param c an AttributeCollection object.
 	 */
 	public void addAttributeCollection(AttributeCollection c) {
+		modified();
 		attributeCollections.add(c);
 		attributeCollectionNameMap.put(c.getInternalName(), c);
 	}
@@ -137,6 +138,7 @@ public final class AttributeGroup extends BaseNamedConfigurationObject {
    * @param c -- AttributeCollection to be removed.
    */
   public void removeAttributeCollection(AttributeCollection c) {
+    modified();
     attributeCollectionNameMap.remove(c.getInternalName());
     attributeCollections.remove(c);
   }
@@ -148,6 +150,7 @@ public final class AttributeGroup extends BaseNamedConfigurationObject {
    * @param c -- AttributeCollection to insert
    */
   public void insertAttributeCollection(int position, AttributeCollection c) {
+    modified();
     attributeCollections.add(position, c);
     attributeCollectionNameMap.put(c.getInternalName(), c);
   }
@@ -159,6 +162,7 @@ public final class AttributeGroup extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the AttributeGroup does not contain an AttributeCollection named by internalName
    */
   public void insertAttributeCollectionBeforeAttributeCollection(String internalName, AttributeCollection c) throws ConfigurationException {
+    modified();
     if (!attributeCollectionNameMap.containsKey(internalName))
       throw new ConfigurationException("AttributeGroup does not contain AttributeCollection " + internalName + "\n");
     insertAttributeCollection( attributeCollections.indexOf( attributeCollectionNameMap.get(internalName) ) , c);
@@ -171,6 +175,7 @@ public final class AttributeGroup extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the AttributeGroup does not contain an AttributeCollection named by internalName
    */
   public void insertAttributeCollectionAfterAttributeCollection(String internalName, AttributeCollection c) throws ConfigurationException {
+    modified();
     if (!attributeCollectionNameMap.containsKey(internalName))
       throw new ConfigurationException("AttributeGroup does not contain AttributeCollection " + internalName + "\n");
     insertAttributeCollection( attributeCollections.indexOf( attributeCollectionNameMap.get(internalName) ) + 1, c);
@@ -182,6 +187,7 @@ public final class AttributeGroup extends BaseNamedConfigurationObject {
 	 * @param c an Array of AttributeCollection objects.
 	 */
 	public void addAttributeCollections(AttributeCollection[] c) {
+		modified();
 		for (int i = 0; i < c.length; i++) {
 			attributeCollections.add(c[i]);
 			attributeCollectionNameMap.put(c[i].getInternalName(), c[i]);
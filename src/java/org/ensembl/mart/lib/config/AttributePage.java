@@ -106,6 +106,7 @@ public class AttributePage extends BaseNamedConfigurationObject {
 	 * @param a An AttributeGroup object
 	 */
 	public void addAttributeGroup(AttributeGroup a) {
+		modified();
 		attributeGroups.add(a);
 		attGroupNameMap.put(a.getInternalName(), a);
 	}
@@ -115,6 +116,7 @@ public class AttributePage extends BaseNamedConfigurationObject {
    * @param a -- AttributeGroup to be removed.
    */
   public void removeAttributeGroup(AttributeGroup a) {
+    modified();
     attGroupNameMap.remove(a.getInternalName());
     attributeGroups.remove(a); 
   }
@@ -126,6 +128,7 @@ public class AttributePage extends BaseNamedConfigurationObject {
    * @param a -- AttributeGroup to insert.
    */
   public void insertAttributeGroup(int position, AttributeGroup a) {
+    modified();
     attributeGroups.add(position, a);
     attGroupNameMap.put(a.getInternalName(), a);
   }
@@ -137,6 +140,7 @@ public class AttributePage extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the AttributePage does not contain an AttributeGroup/DSAttributeGroup named by internalName.
    */
   public void insertAttributeGroupBeforeAttributeGroup(String internalName, AttributeGroup a) throws ConfigurationException {
+    modified();
     if (!attGroupNameMap.containsKey(internalName))
       throw new ConfigurationException("AttributePage does not contain AttributeGroup " + internalName + "\n");
     
@@ -150,6 +154,7 @@ public class AttributePage extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the AttributePage does not contain an AttributeGroup/DSAttributeGroup named by internalName.
    */
   public void insertAttributeGroupAfterAttributeGroup(String internalName, AttributeGroup a) throws ConfigurationException {
+    modified();
     if (!attGroupNameMap.containsKey(internalName))
       throw new ConfigurationException("AttributePage does not contain AttributeGroup " + internalName + "\n");
     
@@ -163,6 +168,7 @@ public class AttributePage extends BaseNamedConfigurationObject {
 	 * @param a an array of AttributeGroup objects
 	 */
 	public void addAttributeGroups(AttributeGroup[] a) {
+		modified();
 		for (int i = 0, n = a.length; i < n; i++) {
 			attributeGroups.add(a[i]);
 			attGroupNameMap.put(a[i].getInternalName(), a[i]);
@@ -0,0 +1,192 @@
+/*
+	Copyright (C) 2003 EBI, GRL
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License as published by the Free Software Foundation; either
+	version 2.1 of the License, or (at your option) any later version.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+	Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, write to the Free Software
+	Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package org.ensembl.mart.lib.config;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shared layout of the XML attributes of one BaseConfigurationObject class.  Every
+ * attribute title seen for the class is given a slot number, and each distinct order
+ * in which titles have been added to objects of the class is held once, as a node
+ * of a tree rooted at getRoot().  An object then only needs a reference to its
+ * Order, and a String[] of values in title order.
+ * <p>
+ * Values are interned, so that the field names, table names and flags repeated
+ * across the elements of a DatasetConfig, and across copies of it, are held once.
+ */
+final class AttributeSchema {
+
+  // values longer than this are descriptions and the like, which rarely repeat
+  private static final int MAXINTERNLENGTH = 40;
+
+  private static final Map schemas = new HashMap();
+
+  // String -> WeakReference(String), so that interned values do not outlive their objects
+  private static final Map values = new WeakHashMap();
+
+  /**
+   * @param c BaseConfigurationObject class
+   * @return AttributeSchema shared by all objects of c
+   */
+  static AttributeSchema forClass(Class c) {
+    synchronized (schemas) {
+      AttributeSchema schema = (AttributeSchema) schemas.get(c);
+      if (schema == null) {
+        schema = new AttributeSchema();
+        schemas.put(c, schema);
+      }
+      return schema;
+    }
+  }
+
+  /**
+   * @param value attribute value
+   * @return canonical copy of value
+   */
+  static String intern(String value) {
+    if (value.length() == 0)
+      return "";
+    if (value.length() > MAXINTERNLENGTH)
+      return value;
+
+    synchronized (values) {
+      WeakReference ref = (WeakReference) values.get(value);
+      String canonical = (ref != null) ? (String) ref.get() : null;
+      if (canonical == null) {
+        canonical = value;
+        values.put(canonical, new WeakReference(canonical));
+      }
+      return canonical;
+    }
+  }
+
+  // copied on write, so that slot() can be read without locking
+  private volatile Map slots = new HashMap();
+  private volatile String[] titles = new String[0];
+  private final Order root = new Order(this, new int[0]);
+
+  private AttributeSchema() {
+  }
+
+  Order getRoot() {
+    return root;
+  }
+
+  /**
+   * @param title attribute title
+   * @return slot of title, or -1 if no object of this class has had it set
+   */
+  int slot(String title) {
+    Integer slot = (Integer) slots.get(title);
+    return (slot != null) ? slot.intValue() : -1;
+  }
+
+  /**
+   * @param title attribute title
+   * @return slot of title, which is allocated if needed
+   */
+  synchronized int addSlot(String title) {
+    Integer slot = (Integer) slots.get(title);
+    if (slot != null)
+      return slot.intValue();
+
+    int n = titles.length;
+    String[] newTitles = new String[n + 1];
+    System.arraycopy(titles, 0, newTitles, 0, n);
+    newTitles[n] = intern(title);
+    titles = newTitles;
+
+    Map newSlots = new HashMap(slots);
+    newSlots.put(newTitles[n], new Integer(n));
+    slots = newSlots;
+    return n;
+  }
+
+  String title(int slot) {
+    return titles[slot];
+  }
+
+  /**
+   * An order of attribute titles, shared by all objects which had their titles added
+   * in that order.
+   */
+  static final class Order {
+    private final AttributeSchema schema;
+    private final int[] order;
+    // slot -> position in order, -1 if absent
+    private final int[] positions;
+    private Map children = null;
+
+    private Order(AttributeSchema schema, int[] order) {
+      this.schema = schema;
+      this.order = order;
+
+      int max = -1;
+      for (int i = 0; i < order.length; i++)
+        max = Math.max(max, order[i]);
+      positions = new int[max + 1];
+      for (int i = 0; i < positions.length; i++)
+        positions[i] = -1;
+      for (int i = 0; i < order.length; i++)
+        positions[order[i]] = i;
+    }
+
+    AttributeSchema schema() {
+      return schema;
+    }
+
+    int size() {
+      return order.length;
+    }
+
+    /**
+     * @param slot slot of a title
+     * @return position of the title in this order, or -1 if it is not present
+     */
+    int position(int slot) {
+      return (slot >= 0 && slot < positions.length) ? positions[slot] : -1;
+    }
+
+    String title(int position) {
+      return schema.title(order[position]);
+    }
+
+    /**
+     * @param slot slot of a title not in this order
+     * @return Order with slot appended to this one
+     */
+    synchronized Order append(int slot) {
+      Integer key = new Integer(slot);
+      if (children == null)
+        children = new HashMap();
+
+      Order child = (Order) children.get(key);
+      if (child == null) {
+        int[] childOrder = new int[order.length + 1];
+        System.arraycopy(order, 0, childOrder, 0, order.length);
+        childOrder[order.length] = slot;
+        child = new Order(schema, childOrder);
+        children.put(key, child);
+      }
+      return child;
+    }
+  }
+}
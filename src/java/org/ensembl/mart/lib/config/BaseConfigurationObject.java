@@ -17,24 +17,23 @@
  */
 package org.ensembl.mart.lib.config;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Collection;
-import java.util.Properties;
-
 /**
- * Base Object from which all Configuration objects inherit. Provides a properties object
- * to hold attribute keys and values, and setAttribute/getAttribute methods.  
+ * Base Object from which all Configuration objects inherit. Holds the attribute keys and values,
+ * and provides setAttribute/getAttribute methods.  The keys are held once per class, in an
+ * AttributeSchema, so each object only holds its values.
  * @author <a href="mailto:dlondon@ebi.ac.uk">Darin London</a>
  * @author <a href="mailto:craig@ebi.ac.uk">Craig Melsopp</a>
  */
 public abstract class BaseConfigurationObject implements Comparable {
-  //Properties Object holds values from XML attributes keyed to AttributeTitle returned by getXMLAttributeTitles.
-  protected Properties attributes = new Properties();
-  protected List xmlTitles = new ArrayList();
-  protected int[] requiredFields;
   //want to preserve the order of the titles for multiple calls to getXMLAttributeTitles
+  private AttributeSchema.Order titles = AttributeSchema.forClass(getClass()).getRoot();
+  //values from XML attributes, in the order of titles
+  private String[] values = NOVALUES;
+  protected int[] requiredFields;
+  // DatasetConfig whose lookup index covers this object, see DatasetConfig.indexChanged
+  private DatasetConfig indexOwner = null;
+
+  private static final String[] NOVALUES = new String[0];
 
   /**
    * Copy constructor for all Configuration objects. Propogates all keys from the objects
@@ -45,10 +44,7 @@ public abstract class BaseConfigurationObject implements Comparable {
 	String[] boXMLTitles = bo.getXmlAttributeTitles();
 	for (int i = 0; i < boXMLTitles.length; i++) {
 		String key = boXMLTitles[i];
-		if (bo.getAttribute(key) == null)
-		  setAttribute(new String(key), null);
-		else
-		  setAttribute(new String(key), new String(bo.getAttribute(key)));		
+		setAttribute(key, bo.getAttribute(key));
 	}
   }
 
@@ -65,11 +61,45 @@ public abstract class BaseConfigurationObject implements Comparable {
    * @param key - String key for this attribute
    * @param value - String value for this attribute
    */
-  public void setAttribute(String key, String value) {
-    if (!xmlTitles.contains(key))
-      xmlTitles.add(key);
+  public synchronized void setAttribute(String key, String value) {
+    modified();
+    int slot = titles.schema().addSlot(key);
+    int position = titles.position(slot);
+    if (position < 0) {
+      position = values.length;
+      String[] newValues = new String[position + 1];
+      System.arraycopy(values, 0, newValues, 0, position);
+      // values before titles, so that getAttribute never sees a position beyond values
+      values = newValues;
+      titles = titles.append(slot);
+    }
     if (value != null)
-      attributes.setProperty(key, value);
+      values[position] = AttributeSchema.intern(value);
+  }
+
+  /**
+   * Removes the value of an attribute, leaving its title in getXmlAttributeTitles.
+   * @param key - String key for this attribute
+   */
+  protected synchronized void removeAttributeValue(String key) {
+    modified();
+    int position = titles.position(titles.schema().slot(key));
+    if (position >= 0)
+      values[position] = null;
+  }
+
+  /**
+   * Called before this object changes, so that the lookup index of the DatasetConfig
+   * containing it is rebuilt.
+   */
+  protected void modified() {
+    DatasetConfig owner = indexOwner;
+    if (owner != null)
+      owner.indexChanged();
+  }
+
+  void setIndexOwner(DatasetConfig owner) {
+    indexOwner = owner;
   }
 
   /**
@@ -79,7 +109,10 @@ public abstract class BaseConfigurationObject implements Comparable {
    * @return String attribute for key
    */
   public String getAttribute(String key) {
-    return attributes.getProperty(key);
+    AttributeSchema.Order order = titles;
+    String[] vals = values;
+    int position = order.position(order.schema().slot(key));
+    return (position >= 0 && position < vals.length) ? vals[position] : null;
   }
 
   /**
@@ -88,8 +121,12 @@ public abstract class BaseConfigurationObject implements Comparable {
    * @param key- 
    * @return String attribute for key
    */
-  public String getKey(int index) {
-    return (String)attributes.keySet().toArray(new String[0])[index];
+  public synchronized String getKey(int index) {
+    for (int i = 0, n = 0; i < values.length; i++) {
+      if (values[i] != null && n++ == index)
+        return titles.title(i);
+    }
+    throw new ArrayIndexOutOfBoundsException(index);
   }
 
   /**
@@ -100,9 +137,11 @@ public abstract class BaseConfigurationObject implements Comparable {
    * @return String[] List of XMLAttribute Titles.
    */
   public String[] getXmlAttributeTitles() {
+    AttributeSchema.Order order = titles;
 
-    String[] newTitles = new String[xmlTitles.size()];
-    xmlTitles.toArray(newTitles);
+    String[] newTitles = new String[order.size()];
+    for (int i = 0; i < newTitles.length; i++)
+      newTitles[i] = order.title(i);
 
     return newTitles;
   }
@@ -131,14 +170,12 @@ public abstract class BaseConfigurationObject implements Comparable {
   public String toString() {
     StringBuffer buf = new StringBuffer();
 
-    int i = 0;
-    for (Iterator iter = xmlTitles.iterator(); iter.hasNext();) {
+    String[] keys = getXmlAttributeTitles();
+    for (int i = 0; i < keys.length; i++) {
       if (i > 0)
         buf.append(",");
 
-      String key = (String) iter.next();
-      buf.append(" ").append(key).append("=").append(attributes.getProperty(key));
-      i++;
+      buf.append(" ").append(keys[i]).append("=").append(getAttribute(keys[i]));
     }
 
     return buf.toString();
@@ -157,8 +194,9 @@ public abstract class BaseConfigurationObject implements Comparable {
   public int hashCode() {
     int tmp = 17;
 
-    for (Iterator iter = attributes.values().iterator(); iter.hasNext();) {
-      String value = (String) iter.next();
+    String[] vals = values;
+    for (int i = 0; i < vals.length; i++) {
+      String value = vals[i];
 
       tmp += (value != null) ? value.hashCode() : 0;
     }
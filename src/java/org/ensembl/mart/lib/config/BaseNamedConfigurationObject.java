@@ -111,7 +111,7 @@ public abstract class BaseNamedConfigurationObject extends BaseConfigurationObje
 	 * @return String description
 	 */
 	public String getDescription() {
-		return attributes.getProperty(descriptionKey);
+		return getAttribute(descriptionKey);
 	}
 
 	/**
@@ -119,7 +119,7 @@ public abstract class BaseNamedConfigurationObject extends BaseConfigurationObje
 	 * @return String displayName
 	 */
 	public String getDisplayName() {
-		return attributes.getProperty(displayNameKey);
+		return getAttribute(displayNameKey);
 	}
 
 	/**
@@ -127,7 +127,7 @@ public abstract class BaseNamedConfigurationObject extends BaseConfigurationObje
 	 * @return String internalName
 	 */
 	public String getInternalName() {
-		return attributes.getProperty(internalNameKey);
+		return getAttribute(internalNameKey);
 	}
 
 	/**
@@ -135,7 +135,7 @@ public abstract class BaseNamedConfigurationObject extends BaseConfigurationObje
 	 * @return String hidden
 	 */
 	public String getHidden() {
-		return attributes.getProperty(hiddenKey);
+		return getAttribute(hiddenKey);
 	}
 
 	/**
@@ -143,7 +143,7 @@ public abstract class BaseNamedConfigurationObject extends BaseConfigurationObje
 	 * @return String display
 	 */
 	public String getDisplay() {
-		return attributes.getProperty(displayKey);
+		return getAttribute(displayKey);
 	}
 	
 	/**
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -38,7 +39,8 @@ public class CompositeDSConfigAdaptor implements MultiDSConfigAdaptor, Comparabl
 
   private final String DEFAULT_ADAPTOR_NAME = "Composite";
 
-  protected Set adaptors = new HashSet();
+  // in the order added, so that lookups across adaptors are resolved the same way every time
+  protected Set adaptors = new LinkedHashSet();
   protected Set adaptorNameMap = new HashSet();
   protected String adaptorName = null;
 
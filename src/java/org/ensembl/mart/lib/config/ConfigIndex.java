@@ -0,0 +1,300 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable lookup tables over the Attribute and Filter pages of a DatasetConfig,
+ * built in one pass over Page -> Group -> Collection -> Description.
+ * Names map to the first element, in page order, carrying that name, and fields map
+ * to every element which may support that field, so that the lookup methods of
+ * DatasetConfig need not search its pages.  Every object indexed is told its
+ * DatasetConfig, and discards the index when it is changed.
+ * 
+ * @see DatasetConfig
+ */
+class ConfigIndex {
+
+  /**
+   * Where a named element sits in the Page -> Group -> Collection hierarchy.
+   */
+  static class Location {
+    final BaseNamedConfigurationObject element;
+    final BaseNamedConfigurationObject page;
+    final BaseNamedConfigurationObject group;
+    final BaseNamedConfigurationObject collection;
+
+    private Location(
+      BaseNamedConfigurationObject element,
+      BaseNamedConfigurationObject page,
+      BaseNamedConfigurationObject group,
+      BaseNamedConfigurationObject collection) {
+      this.element = element;
+      this.page = page;
+      this.group = group;
+      this.collection = collection;
+    }
+  }
+
+  private final Map attributes = new HashMap(); // internalName -> Location of AttributeDescription
+  private final Map attributeLists = new HashMap(); // internalName -> Location of AttributeList
+  private final Map attributeFields = new HashMap(); // field -> List of AttributeDescription
+  private final Map filters = new HashMap(); // internalName -> Location of FilterDescription
+  private final Map filterOptions = new HashMap(); // Option internalName -> Location of FilterDescription
+  private final Map pushedFilters = new HashMap(); // option.pushedOption -> Location of FilterDescription
+  private final Map filterFields = new HashMap(); // field -> List of FilterSupport
+
+  ConfigIndex(DatasetConfig config, AttributePage[] attributePages, FilterPage[] filterPages) {
+    for (int p = 0; p < attributePages.length; p++) {
+      AttributePage page = attributePages[p];
+      track(page, config);
+
+      for (Iterator groups = page.getAttributeGroups().iterator(); groups.hasNext();) {
+        Object group = groups.next();
+        if (!(group instanceof AttributeGroup))
+          continue;
+
+        AttributeGroup attGroup = (AttributeGroup) group;
+        track(attGroup, config);
+        AttributeCollection[] collections = attGroup.getAttributeCollections();
+        for (int c = 0; c < collections.length; c++) {
+          AttributeCollection collection = collections[c];
+          track(collection, config);
+
+          for (Iterator iter = collection.getAttributeDescriptions().iterator(); iter.hasNext();) {
+            AttributeDescription desc = (AttributeDescription) iter.next();
+            track(desc, config);
+            first(attributes, desc.getInternalName(), new Location(desc, page, attGroup, collection));
+            list(attributeFields, desc.getField()).add(desc);
+          }
+
+          for (Iterator iter = collection.getAttributeLists().iterator(); iter.hasNext();) {
+            AttributeList attList = (AttributeList) iter.next();
+            track(attList, config);
+            first(attributeLists, attList.getInternalName(), new Location(attList, page, attGroup, collection));
+          }
+        }
+      }
+    }
+
+    for (int p = 0; p < filterPages.length; p++) {
+      FilterPage page = filterPages[p];
+      track(page, config);
+
+      for (Iterator groups = page.getFilterGroups().iterator(); groups.hasNext();) {
+        Object group = groups.next();
+        if (!(group instanceof FilterGroup))
+          continue;
+
+        FilterGroup filtGroup = (FilterGroup) group;
+        track(filtGroup, config);
+        FilterCollection[] collections = filtGroup.getFilterCollections();
+        for (int c = 0; c < collections.length; c++) {
+          FilterCollection collection = collections[c];
+          track(collection, config);
+
+          for (Iterator iter = collection.getFilterDescriptions().iterator(); iter.hasNext();) {
+            FilterDescription desc = (FilterDescription) iter.next();
+            track(desc, config);
+            Location location = new Location(desc, page, filtGroup, collection);
+            first(filters, desc.getInternalName(), location);
+            list(filterFields, desc.getField()).add(new FilterSupport(desc, desc));
+
+            Option[] options = desc.getOptions();
+            for (int o = 0; o < options.length; o++) {
+              first(filterOptions, options[o].getInternalName(), location);
+
+              // x.y where y is an Option pushed by Option x of this FilterDescription
+              PushAction[] pushActions = options[o].getPushActions();
+              for (int a = 0; a < pushActions.length; a++) {
+                Option[] pushed = pushActions[a].getOptions();
+                for (int q = 0; q < pushed.length; q++)
+                  first(pushedFilters, options[o].getInternalName() + "." + pushed[q].getInternalName(), location);
+              }
+            }
+            addOptions(config, desc, options);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Indexes the fields of options, their sub options, and the options of their push
+   * actions, against the FilterDescription at the top of the tree.
+   */
+  private void addOptions(DatasetConfig config, FilterDescription desc, Option[] options) {
+    for (int i = 0; i < options.length; i++) {
+      Option option = options[i];
+      track(option, config);
+      if (option.getField() != null)
+        list(filterFields, option.getField()).add(new FilterSupport(desc, option));
+
+      addOptions(config, desc, option.getOptions());
+
+      PushAction[] pushActions = option.getPushActions();
+      for (int j = 0; j < pushActions.length; j++) {
+        track(pushActions[j], config);
+        addOptions(config, desc, pushActions[j].getOptions());
+      }
+    }
+  }
+
+  private static void track(BaseConfigurationObject element, DatasetConfig config) {
+    element.setIndexOwner(config);
+  }
+
+  private static void first(Map map, String key, Object value) {
+    if (key != null && !map.containsKey(key))
+      map.put(key, value);
+  }
+
+  private static List list(Map map, String key) {
+    List list = (List) map.get(key);
+    if (list == null) {
+      list = new ArrayList(1);
+      map.put(key, list);
+    }
+    return list;
+  }
+
+  Location getAttribute(String internalName) {
+    return (Location) attributes.get(internalName);
+  }
+
+  Location getAttributeList(String internalName) {
+    return (Location) attributeLists.get(internalName);
+  }
+
+  /**
+   * Resolves a filter name as used in queries and MQL:
+   * <ul>
+   * <li> the internalName of a FilterDescription, or of one of its Options.
+   * <li> x.y, where y is such a name.
+   * <li> x.y, where y is an Option pushed by Option x of a FilterDescription.
+   * </ul>
+   * @return Location of the FilterDescription, or null
+   */
+  Location getFilter(String internalName) {
+    Location location = null;
+    if ((internalName.indexOf(".") > 0) && !(internalName.endsWith("."))) {
+      String[] refs = internalName.split("\\.");
+      if (refs.length > 1)
+        location = getNamedFilter(refs[1]);
+    }
+    if (location == null)
+      location = getNamedFilter(internalName);
+    if (location == null)
+      location = (Location) pushedFilters.get(internalName);
+    return location;
+  }
+
+  private Location getNamedFilter(String internalName) {
+    Location location = (Location) filters.get(internalName);
+    return (location != null) ? location : (Location) filterOptions.get(internalName);
+  }
+
+  /**
+   * @param field
+   * @param tableConstraint
+   * @param internalName preferred internalName, or null
+   * @return the AttributeDescription supporting field and tableConstraint named internalName,
+   * else the first supporting AttributeDescription, or null
+   */
+  AttributeDescription supportingAttribute(String field, String tableConstraint, String internalName) {
+    List candidates = (List) attributeFields.get(field);
+    if (candidates == null)
+      return null;
+
+    AttributeDescription found = null;
+    for (int i = 0, n = candidates.size(); i < n; i++) {
+      AttributeDescription desc = (AttributeDescription) candidates.get(i);
+      if (desc.supports(field, tableConstraint)) {
+        if (internalName == null || internalName.equals(desc.getInternalName()))
+          return desc;
+        if (found == null)
+          found = desc;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @param field
+   * @param tableConstraint
+   * @param qualifier
+   * @param internalName preferred internalName, or null
+   * @return the FilterDescription supporting field, tableConstraint and qualifier, itself or
+   * through one of its Options, named internalName, else the first such FilterDescription, or null
+   */
+  FilterDescription supportingFilter(String field, String tableConstraint, String qualifier, String internalName) {
+    List candidates = (List) filterFields.get(field);
+    if (candidates == null)
+      return null;
+
+    FilterDescription found = null;
+    for (int i = 0, n = candidates.size(); i < n; i++) {
+      FilterSupport support = (FilterSupport) candidates.get(i);
+      if (support.supports(field, tableConstraint, qualifier)) {
+        if (internalName == null || internalName.equals(support.desc.getInternalName()))
+          return support.desc;
+        if (found == null)
+          found = support.desc;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * A FilterDescription, and one of the objects in its tree whose field may
+   * make it support a Filter.
+   */
+  private static class FilterSupport {
+    private final FilterDescription desc;
+    private final QueryFilterSettings settings;
+
+    private FilterSupport(FilterDescription desc, QueryFilterSettings settings) {
+      this.desc = desc;
+      this.settings = settings;
+    }
+
+    /**
+     * Same test as QueryFilterSettings.supports, without the search of sub Options
+     * and its cache.
+     */
+    private boolean supports(String field, String tableConstraint, String qualifier) {
+      if (settings.getField() == null || !settings.getField().equals(field))
+        return false;
+
+      String tableConstraintK = settings.getTableConstraint();
+      if (tableConstraint == null && tableConstraintK == null)
+        return true;
+      if (tableConstraint == null || tableConstraintK == null || !tableConstraintK.equals(tableConstraint))
+        return false;
+
+      return qualifier == null || qualifier.equals(settings.getQualifier());
+    }
+  }
+}
@@ -28,6 +28,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.ensembl.mart.lib.DetailedDataSource;
+import org.ensembl.mart.lib.ParallelTasks;
 import org.ensembl.util.StringUtil;
 
 /**
@@ -40,6 +41,8 @@ public class DatabaseDSConfigAdaptor extends LeafDSConfigAdaptor implements Mult
 
   //each dataset will have 2 name maps, and a Set of DatasetConfig objects associated with it in an ArrayList
   private final int INAME_INDEX = 0;
+  // DatasetConfigs fully loaded from the database at once, bounded by the DataSource pool size
+  private static final int LOADPARALLELISM = 4;
 
   private DatasetConfigCache cache = null;
 
@@ -220,61 +223,12 @@ public class DatabaseDSConfigAdaptor extends LeafDSConfigAdaptor implements Mult
       return false;
   }
 
-  private void checkMemoryForUpdate(String dataset, HashMap inameMap, String datasetID) throws ConfigurationException {
-    if (logger.isLoggable(Level.FINE))
-      logger.fine(" Already loaded, check for update\n");
-
-    byte[] nDigest = dbutils.getDSConfigMessageDigestByDatasetID(user, dataset, datasetID);
-    byte[] oDigest = ((DatasetConfig) inameMap.get(datasetID)).getMessageDigest();
-
-    if (!MessageDigest.isEqual(oDigest, nDigest)) {
-
-      if (logger.isLoggable(Level.FINE))
-        logger.fine("Needs update\n");
-
-      removeDatasetConfig((DatasetConfig) inameMap.get(datasetID));
-      loadFromDatabase(dataset, datasetID);
-    }
-  }
-
   private boolean cacheUpToDate(String dataset, String datasetID) throws ConfigurationException {
     byte[] sourceDigest = dbutils.getDSConfigMessageDigestByDatasetID(user, dataset, datasetID);
 
     return cache.cacheUpToDate(sourceDigest, dataset, datasetID);
   }
 
-  private void loadCacheOrUpdate(String dataset, String datasetID) throws ConfigurationException {
-    if (cacheUpToDate(dataset, datasetID)) {
-      if (logger.isLoggable(Level.FINE))
-        logger.fine("Attempting to load from cache\n");
-
-      DatasetConfig newDSV = null;
-      try {
-        newDSV = cache.getDatasetConfig(dataset, datasetID, this);
-      } catch (ConfigurationException e) {
-        if (logger.isLoggable(Level.FINE))
-          logger.fine(
-            "Could not load " + dataset + " " + datasetID + " from cache: " + e.getMessage() + "\nloading from database!\n");
-        loadFromDatabase(dataset, datasetID);
-      }
-      addDatasetConfig(newDSV);
-    } else if (logger.isLoggable(Level.FINE))
-      logger.fine("Cache is not up to date for " + dataset + " " + datasetID + "\n loading from Database!\n");
-    loadFromDatabase(dataset, datasetID);
-  }
-
-  private void loadFromDatabase(String dataset, String datasetID) throws ConfigurationException {
-    if (logger.isLoggable(Level.FINE))
-      logger.fine("Dataset " + dataset + " datasetID " + datasetID + " Not in cache, loading from database\n");
-	
-    DatasetConfig newDSV = dbutils.getDatasetConfigByDatasetID(user, dataset, datasetID,dbutils.getSchema()[0]);
-    
-    if (loadFully)
-        dscutils.loadDatasetConfigWithDocument(newDSV, dbutils.getDatasetConfigDocumentByDatasetID(user, dataset, datasetID,dbutils.getSchema()[0]));
-    
-    addDatasetConfig(newDSV);
-  }
-
   /* (non-Javadoc)
    * @see org.ensembl.mart.lib.config.DSConfigAdaptor#update()
    */
@@ -288,9 +242,9 @@ public class DatabaseDSConfigAdaptor extends LeafDSConfigAdaptor implements Mult
     if (logger.isLoggable(Level.FINE))
       logger.fine("lazy loading from database\n");
 
-    dscutils.loadDatasetConfigWithDocument(
-      dsv,
-      dbutils.getDatasetConfigDocumentByDatasetID(user, dsv.getDataset(), dsv.getDatasetID(),dbutils.getSchema()[0]));
+    if (!dbutils.loadDatasetConfigByDatasetID(user, dsv, dbutils.getSchema()[0], DatasetConfigXMLUtils.LOAD_ALL))
+      throw new ConfigurationException(
+        "DatasetConfig for dataset " + dsv.getDataset() + " datasetID " + dsv.getDatasetID() + " is no longer in the database\n");
 
     if (!ignoreCache) {
       //cache this DatasetConfig, as, for some reason, it is needing to be cached
@@ -662,6 +616,12 @@ public class DatabaseDSConfigAdaptor extends LeafDSConfigAdaptor implements Mult
    */
   public void run() {
     try {
+      // one query for the digests of all DatasetConfigs, rather than one per DatasetConfig
+      HashMap sourceDigests = dbutils.getDSConfigMessageDigests(user, martUser);
+
+      List loads = new ArrayList();
+      List cacheChecks = new ArrayList();
+
       String[] datasets = dbutils.getAllDatasetNames(user,martUser);
       for (int i = 0, n = datasets.length; i < n; i++) {
         String dataset = datasets[i];
@@ -669,57 +629,152 @@ public class DatabaseDSConfigAdaptor extends LeafDSConfigAdaptor implements Mult
         // note all keying is on datasetID rather than internalName now
         String[] inms = dbutils.getAllDatasetIDsForDataset(user, dataset);
 
-        if (datasetNameMap.containsKey(dataset)) {
-          //dataset is loaded, check for update of its datasetview
-          Vector maps = (Vector) datasetNameMap.get(dataset);
-          HashMap inameMap = (HashMap) maps.get(INAME_INDEX);
+        HashMap inameMap = null;
+        if (datasetNameMap.containsKey(dataset))
+          inameMap = (HashMap) ((Vector) datasetNameMap.get(dataset)).get(INAME_INDEX);
 
-          for (int k = 0, m = inms.length; k < m; k++) {
-            String iname = inms[k];
+        HashMap dsetDigests = (HashMap) sourceDigests.get(dataset);
+
+        for (int k = 0, m = inms.length; k < m; k++) {
+          String iname = inms[k];
+          byte[] digest = (dsetDigests != null) ? (byte[]) dsetDigests.get(iname) : null;
 
-            if (logger.isLoggable(Level.FINE))
-              logger.fine("Checking for dataset " + dataset + " internamName " + iname + "\n");
-
-            if (inameMap.containsKey(iname))
-              checkMemoryForUpdate(dataset, inameMap, iname);
-            else if (!ignoreCache && cache.cacheExists(dataset, iname))
-              loadCacheOrUpdate(dataset, iname);
-            else
-              loadFromDatabase(dataset, iname);
-          }
-        } else if ( !ignoreCache ) {
-            //not already loaded, check for its datasetviews in cache
-            for (int k = 0, m = inms.length; k < m; k++) {
-              String iname = inms[k];
-
-              if (logger.isLoggable(Level.FINE))
-                logger.fine("Checking for dataset " + dataset + " internamName " + iname + "\n");
-
-              if (!ignoreCache && cache.cacheExists(dataset, iname))
-                loadCacheOrUpdate(dataset, iname);
-              else {
-                //load datasetview from database
-                if (logger.isLoggable(Level.FINE))
-                  logger.fine("Dataset " + dataset + " internalName " + iname + " not in cache, loading from database\n");
-
-                loadFromDatabase(dataset, iname);
-              }
-            }
-        } else {
-          //load dataset from database
           if (logger.isLoggable(Level.FINE))
-            logger.fine("Dataset " + dataset + " not in cache, loading from database\n");
+            logger.fine("Checking for dataset " + dataset + " internamName " + iname + "\n");
+
+          if (inameMap != null && inameMap.containsKey(iname)) {
+            //already loaded, reload it only if it has changed
+            DatasetConfig dsv = (DatasetConfig) inameMap.get(iname);
+            if (MessageDigest.isEqual(dsv.getMessageDigest(), digest))
+              continue;
 
-          for (int k = 0, m = inms.length; k < m; k++) {
-            String iname = inms[k];
-            loadFromDatabase(dataset, iname);
+            if (logger.isLoggable(Level.FINE))
+              logger.fine("Needs update\n");
+
+            removeDatasetConfig(dsv);
+            loads.add(new ConfigLoad(dataset, iname, digest));
+          } else {
+            ConfigLoad load = new ConfigLoad(dataset, iname, digest);
+            loads.add(load);
+            if (!ignoreCache)
+              cacheChecks.add(load);
           }
         }
       }
+
+      if (cacheChecks.size() > 0) {
+        //decide which are loaded from the cache in one pass over it
+        int n = cacheChecks.size();
+        byte[][] digests = new byte[n][];
+        String[] dsets = new String[n];
+        String[] inames = new String[n];
+        for (int i = 0; i < n; i++) {
+          ConfigLoad load = (ConfigLoad) cacheChecks.get(i);
+          digests[i] = load.digest;
+          dsets[i] = load.dataset;
+          inames[i] = load.datasetID;
+        }
+
+        boolean[] upToDate = cache.cacheUpToDate(digests, dsets, inames);
+        for (int i = 0; i < n; i++)
+          ((ConfigLoad) cacheChecks.get(i)).fromCache = upToDate[i];
+      }
+
+      loadConfigs(loads);
     } catch (ConfigurationException e) {
       updateException = e;
     }
   }
+
+  /**
+   * Loads the given DatasetConfigs, from the cache or the database, and adds them in order.
+   * When DatasetConfigs are fully loaded from the database, up to LOADPARALLELISM are loaded at once.
+   */
+  private void loadConfigs(List loads) throws ConfigurationException {
+    if (loads.size() == 0)
+      return;
+
+    final ConfigLoad[] pending = new ConfigLoad[loads.size()];
+    loads.toArray(pending);
+
+    // header DatasetConfigs are held by dbutils, so are looked up here rather than by the workers
+    for (int i = 0; i < pending.length; i++)
+      pending[i].header = dbutils.getDatasetConfigByDatasetID(user, pending[i].dataset, pending[i].datasetID, dbutils.getSchema()[0]);
+
+    int parallelism = (loadFully) ? ParallelTasks.boundParallelism(LOADPARALLELISM, dataSource, 1) : 1;
+    try {
+      ParallelTasks.runAll(pending, parallelism, "DatabaseDSConfigAdaptorLoadThread");
+    } catch (InterruptedException e) {
+      throw new ConfigurationException("Interrupted while loading DatasetConfigs: " + e.getMessage(), e);
+    }
+
+    ConfigurationException failure = null;
+    for (int i = 0; i < pending.length; i++) {
+      if (pending[i].loaded != null)
+        addDatasetConfig(pending[i].loaded);
+      else if (failure == null)
+        failure = pending[i].failure;
+    }
+
+    if (failure != null)
+      throw failure;
+  }
+
+  /**
+   * Loads one DatasetConfig, from the cache if it is up to date, otherwise from the database.
+   */
+  private class ConfigLoad implements Runnable {
+    private final String dataset;
+    private final String datasetID;
+    private final byte[] digest;
+    private boolean fromCache = false;
+    private DatasetConfig header = null;
+    private DatasetConfig loaded = null;
+    private ConfigurationException failure = null;
+
+    private ConfigLoad(String dataset, String datasetID, byte[] digest) {
+      this.dataset = dataset;
+      this.datasetID = datasetID;
+      this.digest = digest;
+    }
+
+    public void run() {
+      try {
+        if (fromCache) {
+          if (logger.isLoggable(Level.FINE))
+            logger.fine("Attempting to load from cache\n");
+          try {
+            loaded = cache.getDatasetConfig(dataset, datasetID, DatabaseDSConfigAdaptor.this);
+          } catch (ConfigurationException e) {
+            if (logger.isLoggable(Level.FINE))
+              logger.fine(
+                "Could not load " + dataset + " " + datasetID + " from cache: " + e.getMessage() + "\nloading from database!\n");
+          }
+          if (loaded != null)
+            return;
+        }
+
+        if (logger.isLoggable(Level.FINE))
+          logger.fine("Dataset " + dataset + " datasetID " + datasetID + " Not in cache, loading from database\n");
+
+        if (header != null
+          && loadFully
+          && !dbutils.loadDatasetConfigByDatasetID(user, header, dbutils.getSchema()[0], DatasetConfigXMLUtils.LOAD_ALL))
+          header = null;
+
+        loaded = header;
+        if (loaded == null)
+          failure = new ConfigurationException("No DatasetConfig found for dataset " + dataset + " datasetID " + datasetID + "\n");
+      } catch (ConfigurationException e) {
+        failure = e;
+      } catch (RuntimeException e) {
+        failure =
+          new ConfigurationException(
+            "Could not load DatasetConfig for dataset " + dataset + " datasetID " + datasetID + ": " + e.getMessage(),
+            e);
+      }
+    }
+  }
   
   /**
    * Removes cached config files from filesystem.
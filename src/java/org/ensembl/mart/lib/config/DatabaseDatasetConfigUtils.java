@@ -31,6 +31,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,7 +41,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -59,6 +62,7 @@ import oracle.sql.CLOB;
 
 import org.ensembl.mart.editor.MartEditor;
 import org.ensembl.mart.lib.DetailedDataSource;
+import org.ensembl.mart.lib.ParallelTasks;
 import org.ensembl.mart.util.ColumnDescription;
 import org.ensembl.mart.util.TableDescription;
 import org.jdom.Document;
@@ -114,12 +118,32 @@ public class DatabaseDatasetConfigUtils {
 
 	private HashMap configInfo = new HashMap();
 
+	// schema name -> SchemaMetadata, shared by validation and naive
+	// generation
+	private final HashMap schemaMetadata = new HashMap();
+
+	private static long schemaMetadataTTL = 10 * 60 * 1000;
+
+	// distinct values read to make filter options, kept with the version of
+	// their table
+	private final DistinctValueCache distinctValues;
+
+	private static final int DISTINCTVALUECACHESIZE = 500;
+
+	private static int maxOptions = 10000;
+
 	private DatasetConfigXMLUtils dscutils = null;
 
 	private DetailedDataSource dsource = null;
 
 	private boolean readonly;
 
+	// highest dataset_id_key handed out by allocateDatasetID, which may not
+	// be committed yet, guarded by datasetIDLock
+	private int lastDatasetID = 0;
+
+	private final Object datasetIDLock = new Object();
+
 	/**
 	 * Constructor for a DatabaseDatasetConfigUtils object to obtain
 	 * DatasetConfig related information from a Mart Database host.
@@ -139,12 +163,80 @@ public class DatabaseDatasetConfigUtils {
 		this.dsource = dsource;
 		// this.connection = dsource.getConnection();
 		this.readonly = readonly;
+		this.distinctValues = new DistinctValueCache(dsource,
+				DISTINCTVALUECACHESIZE);
 	}
 
 	public void setReadonly(final boolean readonly) {
 		this.readonly = readonly;
 	}
 
+	/**
+	 * Sets the time for which the tables, columns and null only columns read
+	 * from a schema are used by validation and naive generation, before being
+	 * read again. Defaults to ten minutes.
+	 * 
+	 * @param ttl -
+	 *            time to live, in milliseconds
+	 */
+	public static void setSchemaMetadataTTL(final long ttl) {
+		DatabaseDatasetConfigUtils.schemaMetadataTTL = ttl;
+	}
+
+	/**
+	 * @return time, in milliseconds, for which schema metadata is used
+	 * @see #setSchemaMetadataTTL(long)
+	 */
+	public static long getSchemaMetadataTTL() {
+		return DatabaseDatasetConfigUtils.schemaMetadataTTL;
+	}
+
+	/**
+	 * Sets the largest number of distinct values a filter column may have for
+	 * validation to regenerate the filter as a drop down list of options.
+	 * Filters on columns with more values are made ID list filters instead.
+	 * Defaults to 10000.
+	 * 
+	 * @param max -
+	 *            largest number of options, 0 for no limit
+	 */
+	public static void setMaxOptions(final int max) {
+		DatabaseDatasetConfigUtils.maxOptions = max;
+	}
+
+	/**
+	 * @return largest number of options validation makes for a filter
+	 * @see #setMaxOptions(int)
+	 */
+	public static int getMaxOptions() {
+		return DatabaseDatasetConfigUtils.maxOptions;
+	}
+
+	/**
+	 * Discards the tables, columns and null only columns read from all
+	 * schemas, and the values read for filter options, so that they are read
+	 * again on next use. Call after changing the tables of a Mart.
+	 */
+	public void clearSchemaMetadata() {
+		synchronized (this.schemaMetadata) {
+			this.schemaMetadata.clear();
+		}
+		this.distinctValues.clear();
+	}
+
+	private SchemaMetadata getSchemaMetadata(final String schema) {
+		synchronized (this.schemaMetadata) {
+			SchemaMetadata metadata = (SchemaMetadata) this.schemaMetadata
+					.get(schema);
+			if (metadata == null
+					|| metadata.isExpired(DatabaseDatasetConfigUtils.schemaMetadataTTL)) {
+				metadata = new SchemaMetadata(this.dsource, schema);
+				this.schemaMetadata.put(schema, metadata);
+			}
+			return metadata;
+		}
+	}
+
 	public String getSoftwareVersion() {
 		return SOFTWAREVERSION;
 	}
@@ -395,6 +487,24 @@ public class DatabaseDatasetConfigUtils {
 			final String version, final String datasetID, String martUsers,
 			String interfaces, final DatasetConfig dsConfig)
 			throws ConfigurationException {
+		this.storeDatasetConfiguration(user, internalName, displayName,
+				dataset, description, doc, compress, type, visible, version,
+				datasetID, martUsers, interfaces, dsConfig, false);
+	}
+
+	/**
+	 * As storeDatasetConfiguration above. When batch is true the config is
+	 * one of several being stored from a worker thread: problems which would
+	 * otherwise be put to the user in a dialog are thrown instead, and the
+	 * caller refreshes the stored config information once all are stored.
+	 */
+	private void storeDatasetConfiguration(final String user,
+			final String internalName, final String displayName,
+			final String dataset, final String description, Document doc,
+			final boolean compress, final String type, final String visible,
+			final String version, final String datasetID, String martUsers,
+			String interfaces, final DatasetConfig dsConfig,
+			final boolean batch) throws ConfigurationException {
 
 		if (martUsers == null || martUsers.equals(""))
 			martUsers = "default";
@@ -721,6 +831,10 @@ public class DatabaseDatasetConfigUtils {
 						+ dsConfig.getDataset() + "\n";
 		}
 
+		if (spaceErrors != "" && batch)
+			throw new ConfigurationException(
+					"The following internal names contain spaces:\n"
+							+ spaceErrors);
 		if (spaceErrors != "") {
 			JOptionPane.showMessageDialog(null,
 					"The following internal names contain spaces:\n"
@@ -728,6 +842,11 @@ public class DatabaseDatasetConfigUtils {
 			return;// no export performed
 		}
 
+		if (brokenString != "" && dsConfig.getType().equals("TableSet")
+				&& batch)
+			throw new ConfigurationException(
+					"The following may not contain the required fields:\n"
+							+ brokenString);
 		if (brokenString != "" && dsConfig.getType().equals("TableSet")) {
 			final int choice = JOptionPane.showConfirmDialog(null,
 					"The following may not contain the required fields:\n"
@@ -737,6 +856,10 @@ public class DatabaseDatasetConfigUtils {
 				return;// no export performed
 		}
 
+		if (linkErrors != "" && batch)
+			throw new ConfigurationException(
+					"The following internal names are incorrect in links:\n"
+							+ linkErrors);
 		if (linkErrors != "") {
 			JOptionPane.showMessageDialog(null,
 					"The following internal names are incorrect in links:\n"
@@ -798,6 +921,8 @@ public class DatabaseDatasetConfigUtils {
 		 * "ERROR", 0); return;//no export performed } }
 		 */
 
+		if (duplicationString != "" && batch)
+			throw new ConfigurationException(duplicationString);
 		if (duplicationString != "") {
 			final int choice = JOptionPane.showConfirmDialog(null,
 					duplicationString, "Make Unique?",
@@ -952,7 +1077,8 @@ public class DatabaseDatasetConfigUtils {
 		// rowsupdated = storeUncompressedXML(user, internalName, displayName,
 		// dataset, description, datasetID, doc);
 
-		this.updateMartConfigForUser(user, this.getSchema()[0]);
+		if (!batch)
+			this.updateMartConfigForUser(user, this.getSchema()[0]);
 		if (rowsupdated < 1)
 			if (this.logger.isLoggable(Level.WARNING))
 				this.logger.warning("Warning, xml for " + internalName + ", "
@@ -1734,6 +1860,162 @@ public class DatabaseDatasetConfigUtils {
 					.getInterfaces(), dsConfig);
 		}
 
+		this.dropConfigsNotInTemplate(MartEditor.getUser(), template, goodIds);
+
+		// Repeat.
+		this.storeTemplateXML(templateConfig, template);
+
+	}
+
+	/**
+	 * Parallel version of updateConfigsToTemplate, for templates with many
+	 * dynamic datasets. The config of each dataset is updated to the
+	 * template, validated and stored by a pool of worker threads, each
+	 * storing through its own pooled connection with one transaction per
+	 * dataset. A dataset which cannot be updated does not stop the others:
+	 * its stored config is left as it was, and the problem is returned.
+	 * Problems which updateConfigsToTemplate would put to the user in a
+	 * dialog are returned as failures too.
+	 * 
+	 * @param user --
+	 *            user for the meta tables, as for storeDatasetConfiguration
+	 * @param martUser --
+	 *            mart user whose configs are updated
+	 * @param template --
+	 *            name of the template
+	 * @param templateConfig --
+	 *            template DatasetConfig
+	 * @param threads --
+	 *            number of worker threads, at most half the connection pool
+	 *            size are used
+	 * @param listener --
+	 *            told as each dataset is finished, may be null
+	 * @return Map of dataset name to the ConfigurationException it failed
+	 *         with, in the order of the template's dynamic datasets, empty if
+	 *         all were stored
+	 * @throws ConfigurationException
+	 *             if the template could not be stored, or datasets no longer
+	 *             using it could not be removed
+	 */
+	public Map updateConfigsToTemplate(final String user,
+			final String martUser, final String template,
+			final DatasetConfig templateConfig, int threads,
+			final TemplateUpdateListener listener)
+			throws ConfigurationException {
+		final long start = System.currentTimeMillis();
+
+		this.storeTemplateXML(templateConfig, template);
+
+		final DSConfigAdaptor adaptor = new DatabaseDSConfigAdaptor(
+				this.dsource, user, martUser, true, false, true, true);
+
+		final String[] dsNames = templateConfig.getDynamicDatasetNames();
+		final DatasetConfig[] dsConfigs = new DatasetConfig[dsNames.length];
+		for (int i = 0; i < dsNames.length; i++) {
+			final DatasetConfigIterator configs = adaptor
+					.getDatasetConfigsByDataset(dsNames[i]);
+			if (configs.hasNext())
+				dsConfigs[i] = (DatasetConfig) configs.next();
+		}
+
+		// the workers only read the template, make sure it is fully loaded
+		// before they share it
+		templateConfig.getAttributePages();
+
+		final ConfigurationException[] failures = new ConfigurationException[dsNames.length];
+		// number of datasets finished, guarded by failures
+		final int[] done = new int[1];
+		final Runnable[] tasks = new Runnable[dsNames.length];
+		for (int i = 0; i < tasks.length; i++) {
+			final int index = i;
+			tasks[i] = new Runnable() {
+				public void run() {
+					ConfigurationException failure = null;
+					if (dsConfigs[index] != null)
+						try {
+							DatabaseDatasetConfigUtils.this.storeConfigForTemplate(
+									user, dsConfigs[index], templateConfig);
+						} catch (final ConfigurationException e) {
+							failure = e;
+						} catch (final RuntimeException e) {
+							failure = new ConfigurationException(e);
+						}
+
+					synchronized (failures) {
+						failures[index] = failure;
+						done[0]++;
+						if (listener != null)
+							listener.datasetUpdated(dsNames[index], done[0],
+									dsNames.length, failure);
+					}
+				}
+			};
+		}
+
+		// each worker may hold two connections at once, one for validation
+		// and one for reading metadata
+		threads = ParallelTasks.boundParallelism(threads, this.dsource, 2);
+		try {
+			ParallelTasks.runAll(tasks, threads, "TemplateUpdate-" + template);
+		} catch (final InterruptedException e) {
+			throw new ConfigurationException(
+					"Interrupted updating configs to template " + template, e);
+		}
+
+		final List goodIds = new ArrayList();
+		final Map failed = new LinkedHashMap();
+		for (int i = 0; i < dsNames.length; i++) {
+			if (dsConfigs[i] == null) {
+				templateConfig.removeDynamicDataset(templateConfig
+						.getDynamicDataset(dsNames[i]));
+				continue;
+			}
+			// a dataset which failed still uses the template
+			goodIds.add(dsConfigs[i].getDatasetID());
+			if (failures[i] != null)
+				failed.put(dsNames[i], failures[i]);
+		}
+
+		this.updateMartConfigForUser(user, this.getSchema()[0]);
+		this.dropConfigsNotInTemplate(user, template, goodIds);
+		this.storeTemplateXML(templateConfig, template);
+
+		if (this.logger.isLoggable(Level.INFO))
+			this.logger.info("Updated " + (goodIds.size() - failed.size())
+					+ " of " + dsNames.length + " datasets to template "
+					+ template + " with up to " + threads + " threads in "
+					+ (System.currentTimeMillis() - start) + " ms, "
+					+ failed.size() + " failed\n");
+
+		return failed;
+	}
+
+	/**
+	 * Updates one dataset's config to its template, and stores it, from a
+	 * worker thread of updateConfigsToTemplate.
+	 */
+	private void storeConfigForTemplate(final String user,
+			DatasetConfig dsConfig, final DatasetConfig templateConfig)
+			throws ConfigurationException {
+		dsConfig = this.updateConfigToTemplate(dsConfig, templateConfig);
+
+		this.storeDatasetConfiguration(user, dsConfig
+				.getInternalName(), dsConfig.getDisplayName(), dsConfig
+				.getDataset(), dsConfig.getDescription(), MartEditor
+				.getDatasetConfigXMLUtils()
+				.getDocumentForDatasetConfig(dsConfig), true, dsConfig
+				.getType(), dsConfig.getVisible(), dsConfig.getVersion(),
+				dsConfig.getDatasetID(), dsConfig.getMartUsers(), dsConfig
+						.getInterfaces(), dsConfig, true);
+	}
+
+	/**
+	 * Deletes the configs of all datasets recorded as using template, other
+	 * than those with the given dataset ids.
+	 */
+	private void dropConfigsNotInTemplate(final String user,
+			final String template, final List goodIds)
+			throws ConfigurationException {
 		// Dump all datasets referring to this template that don't do so
 		// anymore.
 		String sql = "SELECT b.dataset, a.dataset_id_key FROM "
@@ -1753,8 +2035,9 @@ public class DatabaseDatasetConfigUtils {
 			sql += ")";
 		}
 		final List dropIds = new ArrayList();
+		Connection conn = null;
 		try {
-			Connection conn = this.dsource.getConnection();
+			conn = this.dsource.getConnection();
 			PreparedStatement ps = conn.prepareStatement(sql);
 			ResultSet rs = ps.executeQuery();
 			while (rs.next()) {
@@ -1762,20 +2045,19 @@ public class DatabaseDatasetConfigUtils {
 				final String dsId = rs.getString(2);
 				dropIds.add(new String[] { dsName, dsId });
 			}
+			rs.close();
+			ps.close();
 		} catch (final SQLException e) {
 			throw new ConfigurationException(e);
+		} finally {
+			DetailedDataSource.close(conn);
 		}
 
 		// Drop bad things.
 		for (final Iterator i = dropIds.iterator(); i.hasNext();) {
 			final String[] bits = (String[]) i.next();
-			this.deleteDatasetConfigsForDatasetID(bits[0], bits[1], MartEditor
-					.getUser(), null);
+			this.deleteDatasetConfigsForDatasetID(bits[0], bits[1], user, null);
 		}
-
-		// Repeat.
-		this.storeTemplateXML(templateConfig, template);
-
 	}
 
 	/*
@@ -2777,6 +3059,31 @@ public class DatabaseDatasetConfigUtils {
 		}
 	}
 
+	/**
+	 * Returns a new dataset_id_key, one more than the highest stored or
+	 * already handed out. Keys are handed out under a lock, so configs being
+	 * stored at the same time, whose keys are not committed yet, never get
+	 * the same one.
+	 */
+	private String allocateDatasetID(final Connection conn)
+			throws SQLException {
+		synchronized (this.datasetIDLock) {
+			final String sql = "SELECT MAX(dataset_id_key) FROM "
+					+ this.getSchema()[0] + "." + this.BASEMETATABLE;
+			final PreparedStatement ps = conn.prepareStatement(sql);
+			try {
+				final ResultSet rs = ps.executeQuery();
+				rs.next();
+				this.lastDatasetID = Math.max(this.lastDatasetID, rs
+						.getInt(1)) + 1;
+				rs.close();
+			} finally {
+				ps.close();
+			}
+			return "" + this.lastDatasetID;
+		}
+	}
+
 	private int storeCompressedXML(final String user,
 			final String internalName, String displayName,
 			final String dataset, final String description, final Document doc,
@@ -2796,8 +3103,13 @@ public class DatabaseDatasetConfigUtils {
 
 		Connection conn = null;
 		try {
-			conn = this.dsource.getConnection();
 			final String metatable = this.createMetaTables(user);
+
+			// All writes for the config go in one transaction on one
+			// connection. Anything not committed is rolled back when the
+			// connection goes back to the pool.
+			conn = this.dsource.getConnection();
+			conn.setAutoCommit(false);
 			// Name/version/type already exists? Reuse it.
 			if (datasetID == null || datasetID.equals("")) {
 				final String sql = "SELECT dataset_id_key FROM "
@@ -2818,19 +3130,8 @@ public class DatabaseDatasetConfigUtils {
 			}
 
 			// Doesn't already exist? Create a new one.
-			if (datasetID == null || datasetID.equals("")) {
-				final String sql = "SELECT MAX(dataset_id_key) FROM "
-						+ this.getSchema()[0] + "." + this.BASEMETATABLE;
-				final PreparedStatement ps = conn.prepareStatement(sql);
-				final ResultSet rs = ps.executeQuery();
-				rs.next();
-				int result = rs.getInt(1);
-				result++;
-				final Integer datasetNo = new Integer(result);
-				datasetID = datasetNo.toString();
-				rs.close();
-				ps.close();
-			}
+			if (datasetID == null || datasetID.equals(""))
+				datasetID = this.allocateDatasetID(conn);
 
 			// sort out meta_users and meta_interfaces tables first
 			String sql = "DELETE FROM " + this.getSchema()[0] + "."
@@ -2838,16 +3139,18 @@ public class DatabaseDatasetConfigUtils {
 			// System.out.println(sql);
 			PreparedStatement ps = conn.prepareStatement(sql);
 			ps.executeUpdate();
+			ps.close();
 			if (martUsers != "") {
 				final String[] martUserEntries = martUsers.split(",");
+				ps = conn.prepareStatement("INSERT INTO " + this.getSchema()[0]
+						+ "." + this.MARTUSERTABLE + " VALUES (" + datasetID
+						+ ",?)");
 				for (int i = 0; i < martUserEntries.length; i++) {
-					sql = "INSERT INTO " + this.getSchema()[0] + "."
-							+ this.MARTUSERTABLE + " VALUES (" + datasetID
-							+ ",'" + martUserEntries[i] + "')";
-					// System.out.println(sql);
-					ps = conn.prepareStatement(sql);
-					ps.executeUpdate();
+					ps.setString(1, martUserEntries[i]);
+					ps.addBatch();
 				}
+				ps.executeBatch();
+				ps.close();
 			}
 			sql = "DELETE FROM " + this.getSchema()[0] + "."
 					+ this.MARTINTERFACETABLE + " WHERE dataset_id_key="
@@ -2855,16 +3158,18 @@ public class DatabaseDatasetConfigUtils {
 			// System.out.println(sql);
 			ps = conn.prepareStatement(sql);
 			ps.executeUpdate();
+			ps.close();
 			if (interfaces != "") {
 				final String[] interfaceEntries = interfaces.split(",");
+				ps = conn.prepareStatement("INSERT INTO " + this.getSchema()[0]
+						+ "." + this.MARTINTERFACETABLE + " VALUES ("
+						+ datasetID + ",?)");
 				for (int i = 0; i < interfaceEntries.length; i++) {
-					// System.out.println(sql);
-					ps = conn.prepareStatement("INSERT INTO "
-							+ this.getSchema()[0] + "."
-							+ this.MARTINTERFACETABLE + " VALUES (" + datasetID
-							+ ",'" + interfaceEntries[i] + "')");
-					ps.executeUpdate();
+					ps.setString(1, interfaceEntries[i]);
+					ps.addBatch();
 				}
+				ps.executeBatch();
+				ps.close();
 			}
 
 			// add new template setting
@@ -2910,11 +3215,13 @@ public class DatabaseDatasetConfigUtils {
 					+ datasetID;
 			ps = conn.prepareStatement(sql);
 			ps.executeUpdate();
+			ps.close();
 
 			ps = conn.prepareStatement("INSERT INTO " + this.getSchema()[0]
 					+ "." + this.MARTTEMPLATEMAINTABLE + " VALUES ("
 					+ datasetID + ",'" + template + "')");
 			ps.executeUpdate();
+			ps.close();
 
 			final Timestamp tstamp = new Timestamp(System.currentTimeMillis());
 			String[] mytimeStamp = new String[2];
@@ -2969,13 +3276,16 @@ public class DatabaseDatasetConfigUtils {
 			bout.close();
 			gout.close();
 			out.close();
-			// System.out.println("ABOUT TO DEL");
-			final int rowstodelete = this.getDSConfigEntryCountFor(metatable,
-					datasetID, internalName);
-			// System.out.println("ROWS "+rowstodelete);
-			if (rowstodelete > 0)
-				this.deleteOldDSConfigEntriesFor(metatable, datasetID,
-						internalName);
+			// delete any old entries in the same transaction
+			ps = conn.prepareStatement("DELETE FROM " + this.getSchema()[0]
+					+ "." + metatable + " WHERE dataset_id_key=?");
+			ps.setString(1, datasetID);
+			ps.executeUpdate();
+			ps.close();
+			ps = conn.prepareStatement("DELETE FROM " + this.getSchema()[0]
+					+ "." + this.MARTXMLTABLE + " WHERE dataset_id_key=?");
+			ps.setString(1, datasetID);
+			ps.executeUpdate();
 
 			final PreparedStatement ps1 = conn.prepareStatement(insertSQL1);
 			final PreparedStatement ps2 = conn.prepareStatement(insertSQL2);
@@ -3007,6 +3317,7 @@ public class DatabaseDatasetConfigUtils {
 			int ret = ps1.executeUpdate();
 			ret = ps2.executeUpdate();
 			// ret = ps3.executeUpdate();
+			conn.commit();
 
 			ps.close();
 			ps1.close();
@@ -3072,19 +3383,8 @@ public class DatabaseDatasetConfigUtils {
 			}
 
 			// Doesn't already exist? Create a new one.
-			if (datasetID == null || datasetID.equals("")) {
-				final String sql = "SELECT MAX(dataset_id_key) FROM "
-						+ this.getSchema()[0] + "." + this.BASEMETATABLE;
-				final PreparedStatement ps = conn.prepareStatement(sql);
-				final ResultSet rs = ps.executeQuery();
-				rs.next();
-				int result = rs.getInt(1);
-				result++;
-				final Integer datasetNo = new Integer(result);
-				datasetID = datasetNo.toString();
-				rs.close();
-				ps.close();
-			}
+			if (datasetID == null || datasetID.equals(""))
+				datasetID = this.allocateDatasetID(conn);
 
 			// sort out meta_users and meta_interfaces tables first
 			String sql = "DELETE FROM " + this.getSchema()[0] + "."
@@ -3823,6 +4123,97 @@ public class DatabaseDatasetConfigUtils {
 		}
 	}
 
+	/**
+	 * Loads the given parts of the DatasetConfig XML stored in the Mart
+	 * Database for the dataset and datasetID of dsv into dsv, straight from
+	 * the stored XML, without building a JDOM Document. Compressed XML is
+	 * decompressed as it is parsed, rather than held in memory.
+	 * 
+	 * @param user --
+	 *            Specific User to look for meta_configuration_[user] table, if
+	 *            null, or non-existent, uses meta_configuration
+	 * @param dsv --
+	 *            DatasetConfig to load, giving the dataset and datasetID
+	 * @param schema --
+	 *            schema holding the meta tables
+	 * @param parts --
+	 *            mask of the DatasetConfigXMLUtils LOAD constants of the parts
+	 *            to load
+	 * @return true if the DatasetConfig XML was found and loaded, false if it
+	 *         is not stored
+	 * @throws ConfigurationException
+	 *             when valid meta_configuration tables are absent, and for all
+	 *             underlying Exceptions
+	 * @see DatasetConfigXMLUtils#loadDatasetConfigWithXMLStream(DatasetConfig,
+	 *      InputStream, int)
+	 */
+	public boolean loadDatasetConfigByDatasetID(final String user,
+			final DatasetConfig dsv, final String schema, final int parts)
+			throws ConfigurationException {
+		if (this.dsource.getJdbcDriverClassName().indexOf("oracle") >= 0) {
+			final Document doc = this.getDatasetConfigDocumentByDatasetIDOracle(
+					user, dsv.getDataset(), dsv.getDatasetID());
+			if (doc == null)
+				return false;
+			this.dscutils.loadDatasetConfigWithDocument(dsv, doc);
+			return true;
+		}
+
+		Connection conn = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			final String metatable = this.createMetaTables(user);
+			final String sql = "select xml, compressed_xml from "
+					+ schema
+					+ "."
+					+ this.MARTXMLTABLE
+					+ " mx, "
+					+ schema
+					+ "."
+					+ metatable
+					+ " md where md.dataset_id_key=mx.dataset_id_key and md.dataset_id_key = ? and md.dataset = ?";
+
+			if (this.logger.isLoggable(Level.FINE))
+				this.logger.fine("Using " + sql
+						+ " to stream DatasetConfig for datasetID "
+						+ dsv.getDatasetID() + "and dataset "
+						+ dsv.getDataset() + "\n");
+
+			conn = this.dsource.getConnection();
+			ps = conn.prepareStatement(sql);
+			ps.setString(1, dsv.getDatasetID());
+			ps.setString(2, dsv.getDataset());
+
+			rs = ps.executeQuery();
+			if (!rs.next())
+				return false;
+
+			final byte[] cstream = rs.getBytes(2);
+			final InputStream rstream = (cstream != null) ? new GZIPInputStream(
+					new ByteArrayInputStream(cstream))
+					: rs.getBinaryStream(1);
+			try {
+				this.dscutils.loadDatasetConfigWithXMLStream(dsv, rstream,
+						parts);
+			} finally {
+				rstream.close();
+			}
+			return true;
+		} catch (final SQLException e) {
+			throw new ConfigurationException(
+					"Caught SQL Exception during fetch of requested DatasetConfig: "
+							+ e.getMessage(), e);
+		} catch (final IOException e) {
+			throw new ConfigurationException(
+					"Caught IOException during fetch of requested DatasetConfig: "
+							+ e.getMessage(), e);
+		} finally {
+			DatabaseDatasetConfigUtils.close(rs, ps);
+			DetailedDataSource.close(conn);
+		}
+	}
+
 	/**
 	 * ...
 	 * 
@@ -4232,6 +4623,131 @@ public class DatabaseDatasetConfigUtils {
 		return dsv.getMessageDigest();
 	}
 
+	/**
+	 * Get the message digests of all DatasetConfigs available to user and
+	 * martUser with a single query, so that many DatasetConfigs can be checked
+	 * for changes at once. If any digest differs from the one held for user in
+	 * memory, or any DatasetConfig has been added or removed, the DatasetConfig
+	 * information for user is reloaded, so that subsequent
+	 * getDatasetConfigByDatasetID calls return the current DatasetConfigs.
+	 * 
+	 * @param user --
+	 *            user for meta_configuration_[user] table, if null,
+	 *            meta_configuration is attempted
+	 * @param martUser --
+	 *            mart user whose DatasetConfigs are wanted, or null for all
+	 * @return HashMap of dataset to a HashMap of datasetID to byte[] digest
+	 * @throws ConfigurationException
+	 *             for all underlying Exceptions
+	 */
+	public HashMap getDSConfigMessageDigests(final String user,
+			final String martUser) throws ConfigurationException {
+		final String schema = this.getSchema()[0];
+		final boolean forMartUser = martUser != null && !martUser.equals("");
+
+		// same joins as initMartConfigForUser, so the same DatasetConfigs are seen
+		String sql = "SELECT md.dataset, md.dataset_id_key, message_digest, modified FROM "
+				+ schema + "." + this.MARTINTERFACETABLE + " mi, "
+				+ schema + "." + this.BASEMETATABLE + " md, "
+				+ schema + "." + this.MARTXMLTABLE + " mx";
+		if (forMartUser)
+			sql += ", " + schema + "." + this.MARTUSERTABLE + " mu";
+		sql += " WHERE md.dataset_id_key=mi.dataset_id_key AND md.dataset_id_key=mx.dataset_id_key";
+		if (forMartUser)
+			sql += " AND mu.dataset_id_key=md.dataset_id_key AND mart_user = '"
+					+ martUser + "'";
+		if (!this.dscutils.includeHiddenMembers)
+			sql += " AND visible = 1";
+
+		if (this.logger.isLoggable(Level.FINE))
+			this.logger.fine("Using " + sql + " to get DatasetConfig digests for user "
+					+ user + "\n");
+
+		final HashMap digests = new HashMap();
+		final HashMap userMap = (HashMap) this.configInfo.get(user);
+		boolean changed = userMap == null;
+		int nDigests = 0;
+
+		Connection conn = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			conn = this.dsource.getConnection();
+			ps = conn.prepareStatement(sql);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				final String dataset = rs.getString(1);
+				final String datasetID = rs.getString(2);
+				final byte[] digest = rs.getBytes(3);
+
+				HashMap dsetDigests = (HashMap) digests.get(dataset);
+				if (dsetDigests == null) {
+					dsetDigests = new HashMap();
+					digests.put(dataset, dsetDigests);
+				}
+				if (dsetDigests.put(datasetID, digest) != null)
+					continue; // one row per interface
+
+				nDigests++;
+				if (!changed) {
+					final HashMap dsetMap = (HashMap) userMap.get(dataset);
+					final DatasetConfig dsv = (dsetMap != null) ? (DatasetConfig) dsetMap
+							.get(datasetID)
+							: null;
+					if (dsv == null
+							|| !MessageDigest.isEqual(dsv.getMessageDigest(), digest)) {
+						if (this.logger.isLoggable(Level.FINE))
+							this.logger.fine("DatasetConfig " + dataset + " "
+									+ datasetID + " changed, modified "
+									+ rs.getString(4) + "\n");
+						changed = true;
+					}
+				}
+			}
+		} catch (final SQLException e) {
+			throw new ConfigurationException(
+					"Caught SQL Exception during fetch of DatasetConfig digests: "
+							+ e.getMessage(), e);
+		} finally {
+			DatabaseDatasetConfigUtils.close(rs, ps);
+			DetailedDataSource.close(conn);
+		}
+
+		if (!changed) {
+			// any held in memory but not returned have been removed
+			int nHeld = 0;
+			for (final Iterator iter = userMap.values().iterator(); iter.hasNext();)
+				nHeld += ((HashMap) iter.next()).size();
+			changed = nHeld != nDigests;
+		}
+
+		if (changed) {
+			this.configInfo.put(user, new HashMap());
+			this.initMartConfigForUser(user, schema, martUser);
+		}
+
+		return digests;
+	}
+
+	/**
+	 * Closes a result set and its statement, either of which may be null,
+	 * ignoring any SQLException so that the caller's own is not masked.
+	 */
+	private static void close(final ResultSet rs, final Statement ps) {
+		try {
+			if (rs != null)
+				rs.close();
+		} catch (final SQLException e) {
+			// closing the connection releases it
+		}
+		try {
+			if (ps != null)
+				ps.close();
+		} catch (final SQLException e) {
+			// closing the connection releases it
+		}
+	}
+
 	/**
 	 * Determine if a DatasetConfig in memory is different from the one in the
 	 * database by comparing the MD5SUMs
@@ -5159,10 +5675,10 @@ public class DatabaseDatasetConfigUtils {
 
 		try {
 			// conn = dsource.getConnection();
-			final ResultSet rs = conn.getMetaData().getTables(catalog, schema,
-					table, null);
-			while (rs.next()) {
-				final String thisTable = rs.getString(3);
+			final String[] tables = this.getSchemaMetadata(schema).getTables(
+					table);
+			for (int i = 0; i < tables.length; i++) {
+				final String thisTable = tables[i];
 				if (thisTable.toLowerCase().startsWith(starbase.toLowerCase())) {
 					isBroken = false;
 					break;
@@ -5196,10 +5712,10 @@ public class DatabaseDatasetConfigUtils {
 
 		try {
 			// conn = dsource.getConnection();
-			final ResultSet columns = conn.getMetaData().getColumns(catalog,
-					schema, tablePattern, primaryKey);
-			while (columns.next()) {
-				final String thisColumn = columns.getString(4);
+			final SchemaMetadata.Column[] columns = this.getSchemaMetadata(
+					schema).getColumns(tablePattern, primaryKey);
+			for (int i = 0; i < columns.length; i++) {
+				final String thisColumn = columns[i].name;
 				if (thisColumn.equalsIgnoreCase(primaryKey)) {
 					isBroken = false;
 					break;
@@ -5408,11 +5924,11 @@ public class DatabaseDatasetConfigUtils {
 			// Connection conn = dsource.getConnection();
 			// System.out.println("GOT CONNECTION");
 
-			final ResultSet rs = conn.getMetaData().getColumns(catalog, schema,
-					table, field);
-			while (rs.next()) {
-				final String columnName = rs.getString(4);
-				final String tableName = rs.getString(3);
+			final SchemaMetadata.Column[] columns = this.getSchemaMetadata(
+					schema).getColumns(table, field);
+			for (int c = 0; c < columns.length; c++) {
+				final String columnName = columns[c].name;
+				final String tableName = columns[c].table;
 				final boolean[] valid = this.isValidDescription(columnName,
 						field, tableName, tableConstraint);
 				fieldValid = valid[0];
@@ -5423,7 +5939,6 @@ public class DatabaseDatasetConfigUtils {
 					// field);
 					break;
 			}
-			rs.close();
 			// conn.close();
 			// DetailedDataSource.close(conn);
 
@@ -5507,20 +6022,39 @@ public class DatabaseDatasetConfigUtils {
 			}
 
 			final String joinKey = validatedFilter.getKey();
+			final String colForDisplay = validatedFilter.getColForDisplay();
+			final DatasetConfig optionConfig = (otherDataset != null) ? otherDataset
+					: dsv;
+			final String optionTable = this.getOptionTableName(tableName,
+					joinKey, optionConfig, optionConfig.getDataset());
+			final DistinctValueCache.Values values = this.getOptionValues(
+					field, optionTable, colForDisplay,
+					DatabaseDatasetConfigUtils.maxOptions);
+			if (values == null) {
+				// too many values for a drop down, make it an ID list filter
+				validatedFilter.setType("list");
+				validatedFilter.setDisplayType("text");
+				validatedFilter.setStyle("");
+				validatedFilter.setMultipleValues("1");
+				validatedFilter.setQualifier("=");
+				validatedFilter.setLegalQualifiers("=,in");
+				validatedFilter.setOptionsBroken();
+				if (this.logger.isLoggable(Level.INFO))
+					this.logger.info("Made " + validatedFilter.getInternalName()
+							+ " an ID list filter, " + optionTable + "."
+							+ field + " has more than "
+							+ DatabaseDatasetConfigUtils.maxOptions
+							+ " values\n");
+				return validatedFilter;
+			}
 			validatedFilter.setType("list");
 			validatedFilter.setDisplayType("list");
 			validatedFilter.setStyle("menu");
 			validatedFilter.setGraph(filter.getGraph());
 			validatedFilter.setQualifier("=");
 			validatedFilter.setLegalQualifiers("=");
-			final String colForDisplay = validatedFilter.getColForDisplay();
-			Option[] ops;
-			if (otherDataset != null)
-				ops = this.getOptions(field, tableName, joinKey, otherDataset,
-						otherDataset.getDataset(), colForDisplay);
-			else
-				ops = this.getOptions(field, tableName, joinKey, dsv, dsv
-						.getDataset(), colForDisplay);
+			final Option[] ops = this.getOptionsFor(values, field, optionTable,
+					colForDisplay);
 			// add back any options
 			final HashMap valMap = new HashMap();// use to keep options in
 			// existing order if
@@ -5922,11 +6456,11 @@ public class DatabaseDatasetConfigUtils {
 			// System.out.println("databaseType() "+dsource.getDatabaseType());
 
 			// Connection conn = dsource.getConnection();
-			final ResultSet rs = conn.getMetaData().getColumns(catalog, schema,
-					table, field);
-			while (rs.next()) {
-				final String columnName = rs.getString(4);
-				final String tableName = rs.getString(3);
+			final SchemaMetadata.Column[] columns = this.getSchemaMetadata(
+					schema).getColumns(table, field);
+			for (int c = 0; c < columns.length; c++) {
+				final String columnName = columns[c].name;
+				final String tableName = columns[c].table;
 
 				final boolean[] valid = this.isValidDescription(columnName,
 						field, tableName, tableConstraint);
@@ -5935,7 +6469,6 @@ public class DatabaseDatasetConfigUtils {
 				if (valid[0] && valid[1])
 					break;
 			}
-			rs.close();
 			// conn.close();
 			// DetailedDataSource.close(conn);
 
@@ -6327,11 +6860,11 @@ public class DatabaseDatasetConfigUtils {
 		if (this.dsource.getDatabaseType().equals("oracle"))
 			table = table.toUpperCase();
 
-		final ResultSet rs = conn.getMetaData().getColumns(catalog, schema,
-				table, field);
-		while (rs.next()) {
-			final String columnName = rs.getString(4);
-			final String tableName = rs.getString(3);
+		final SchemaMetadata.Column[] columns = this.getSchemaMetadata(schema)
+				.getColumns(table, field);
+		for (int c = 0; c < columns.length; c++) {
+			final String columnName = columns[c].name;
+			final String tableName = columns[c].table;
 			final boolean[] valid = this.isValidDescription(columnName, field,
 					tableName, tableConstraint);
 			fieldValid = valid[0];
@@ -6339,7 +6872,6 @@ public class DatabaseDatasetConfigUtils {
 			if (valid[0] && valid[1])
 				break;
 		}
-		rs.close();
 		// conn.close();
 		// DetailedDataSource.close(conn);
 		// test for all nulls as well if flagged and set fieldValid and
@@ -6456,10 +6988,6 @@ public class DatabaseDatasetConfigUtils {
 		// want sorted entries, dont need to worry about duplicates
 		final Set potentials = new TreeSet();
 
-		final Connection conn = this.dsource.getConnection();
-
-		final DatabaseMetaData dmd = conn.getMetaData();
-
 		// This is crap DMD seems to be ignoring "__" in the search pattern
 		// and it is imposible to have two datasets with overlapping names
 		String tablePattern = datasetName != null ? datasetName + "%" : "%";
@@ -6475,25 +7003,25 @@ public class DatabaseDatasetConfigUtils {
 			// String databaseName2 = getSchema();
 
 			// first search for tablePattern
-			ResultSet rsTab = dmd.getTables(null, schema, tablePattern, null);
+			String[] rsTab = this.getSchemaMetadata(schema).getTables(
+					tablePattern);
 
-			while (rsTab.next()) {
-				final String tableName = rsTab.getString(3);
+			for (int t = 0; t < rsTab.length; t++) {
+				final String tableName = rsTab[t];
 				potentials.add(tableName);
 			}
-			rsTab.close();
 
 			// now try capitals, should NOT get mixed results
-			rsTab = dmd.getTables(null, schema, capTablePattern, null);
-			while (rsTab.next()) {
-				final String tableName = rsTab.getString(3);
+			rsTab = this.getSchemaMetadata(schema).getTables(
+					capTablePattern);
+			for (int t = 0; t < rsTab.length; t++) {
+				final String tableName = rsTab[t];
 				// NN
 				// System.out.println(tableName);
 
 				if (!potentials.contains(tableName))
 					potentials.add(tableName);
 			}
-			rsTab.close();
 
 		}
 		if (this.dsource.getDatabaseType().equals("mysql")) {
@@ -6503,21 +7031,22 @@ public class DatabaseDatasetConfigUtils {
 
 			// ====
 			// first search for tablePattern
-			ResultSet rsTab = dmd.getTables(null, schema, tablePattern, null);
+			String[] rsTab = this.getSchemaMetadata(schema).getTables(
+					tablePattern);
 
-			while (rsTab.next()) {
+			for (int t = 0; t < rsTab.length; t++) {
 
-				final String tableName = rsTab.getString(3);
+				final String tableName = rsTab[t];
 				final String tableDataset = tableName.split("__")[0];
 				if (datasetName == null || tableDataset.equals(datasetName))
 					potentials.add(tableName);
 			}
-			rsTab.close();
 
 			// now try capitals, should NOT get mixed results
-			rsTab = dmd.getTables(null, schema, capTablePattern, null);
-			while (rsTab.next()) {
-				final String tableName = rsTab.getString(3);
+			rsTab = this.getSchemaMetadata(schema).getTables(
+					capTablePattern);
+			for (int t = 0; t < rsTab.length; t++) {
+				final String tableName = rsTab[t];
 
 				if (!potentials.contains(tableName)) {
 					final String tableDataset = tableName.split("__")[0];
@@ -6525,7 +7054,6 @@ public class DatabaseDatasetConfigUtils {
 						potentials.add(tableName);
 				}
 			}
-			rsTab.close();
 
 		}
 		if (this.dsource.getDatabaseType().equals("postgres")) {
@@ -6537,33 +7065,31 @@ public class DatabaseDatasetConfigUtils {
 			// System.out.println("Schema "+databaseName2);
 
 			// first search for tablePattern
-			ResultSet rsTab = dmd.getTables(null, schema, tablePattern, null);
+			String[] rsTab = this.getSchemaMetadata(schema).getTables(
+					tablePattern);
 
-			while (rsTab.next()) {
-				final String tableName = rsTab.getString(3);
+			for (int t = 0; t < rsTab.length; t++) {
+				final String tableName = rsTab[t];
 
 				// System.out.println("tableName "+tableName);
 
 				potentials.add(tableName);
 			}
-			rsTab.close();
 
 			// now try capitals, should NOT get mixed results
-			rsTab = dmd.getTables(null, schema, capTablePattern, null);
-			while (rsTab.next()) {
-				final String tableName = rsTab.getString(3);
+			rsTab = this.getSchemaMetadata(schema).getTables(
+					capTablePattern);
+			for (int t = 0; t < rsTab.length; t++) {
+				final String tableName = rsTab[t];
 				// NN
 				// System.out.println(tableName);
 
 				if (!potentials.contains(tableName))
 					potentials.add(tableName);
 			}
-			rsTab.close();
 
 		}
 
-		conn.close();
-
 		final String[] retList = new String[potentials.size()];
 		potentials.toArray(retList);
 
@@ -6651,10 +7177,6 @@ public class DatabaseDatasetConfigUtils {
 		// want sorted entries, dont need to worry about duplicates
 		final Set potentials = new TreeSet();
 
-		final Connection conn = this.dsource.getConnection();
-
-		final DatabaseMetaData dmd = conn.getMetaData();
-
 		// Note: currently this isnt cross platform,
 		// as some RDBMS capitalize all names of tables
 		// Either need to find a capitalization scheme general
@@ -6671,24 +7193,23 @@ public class DatabaseDatasetConfigUtils {
 
 		// get all dimension tables
 		// first search for tablePattern
-		ResultSet rsTab = dmd.getTables(null, databaseName, tablePattern, null);
+		String[] rsTab = this.getSchemaMetadata(databaseName).getTables(
+				tablePattern);
 
-		while (rsTab.next()) {
-			final String tableName = rsTab.getString(3);
+		for (int t = 0; t < rsTab.length; t++) {
+			final String tableName = rsTab[t];
 			potentials.add(tableName);
 		}
-		rsTab.close();
 
 		// now try capitals, should NOT get mixed results
-		rsTab = dmd.getTables(null, databaseName, capTablePattern, null);
-		while (rsTab.next()) {
-			final String tableName = rsTab.getString(3);
+		rsTab = this.getSchemaMetadata(databaseName).getTables(
+				capTablePattern);
+		for (int t = 0; t < rsTab.length; t++) {
+			final String tableName = rsTab[t];
 
 			if (!potentials.contains(tableName))
 				potentials.add(tableName);
 		}
-		rsTab.close();
-		conn.close();
 
 		final String[] retList = new String[potentials.size()];
 		potentials.toArray(retList);
@@ -6709,26 +7230,18 @@ public class DatabaseDatasetConfigUtils {
 	 */
 	public TableDescription getTableDescriptionFor(final String schema,
 			final String tableName) throws SQLException {
-		final Connection conn = this.dsource.getConnection();
-		final DatabaseMetaData dmd = conn.getMetaData();
-
 		final List columns = new ArrayList();
-		final ResultSet rset = dmd.getColumns(null, schema, tableName, null);
+		final SchemaMetadata.Column[] rset = this.getSchemaMetadata(schema)
+				.getColumns(tableName, null);
 		// System.out.println("columns schema"+schema+" table name "+tableName);
 
-		while (rset.next())
-			if (rset.getString(3).toLowerCase().equals(tableName.toLowerCase())) {
-				final String cname = rset.getString(4);
-				final int javaType = rset.getInt(5);
-				final String dbType = rset.getString(6);
-				final int maxLength = rset.getInt(7);
-
-				final ColumnDescription column = new ColumnDescription(cname,
-						dbType, javaType, maxLength);
+		for (int i = 0; i < rset.length; i++)
+			if (rset[i].table.toLowerCase().equals(tableName.toLowerCase())) {
+				final ColumnDescription column = new ColumnDescription(
+						rset[i].name, rset[i].dbType, rset[i].javaType,
+						rset[i].maxLength);
 				columns.add(column);
 			}
-		rset.close();
-		DetailedDataSource.close(conn);
 
 		final ColumnDescription[] cols = new ColumnDescription[columns.size()];
 		columns.toArray(cols);
@@ -7694,9 +8207,30 @@ public class DatabaseDatasetConfigUtils {
 			final String joinKey, final DatasetConfig dsConfig,
 			final String dataset, final String colForDisplay)
 			throws SQLException, ConfigurationException {
+		tableName = this.getOptionTableName(tableName, joinKey, dsConfig,
+				dataset);
+		return this.getOptionsFor(this.getOptionValues(columnName, tableName,
+				colForDisplay, 0), columnName, tableName, colForDisplay);
+	}
 
-		final List options = new ArrayList();
-		
+	/**
+	 * Counts the options getOptions would return, without making them.
+	 * 
+	 * @return number of distinct non null values of the filter column
+	 * @see #getOptions(String, String, String, DatasetConfig, String, String)
+	 */
+	public int getOptionCount(final String columnName, String tableName,
+			final String joinKey, final DatasetConfig dsConfig,
+			final String dataset) throws SQLException, ConfigurationException {
+		tableName = this.getOptionTableName(tableName, joinKey, dsConfig,
+				dataset);
+		final String schema = this.getSchema()[0];
+		return this.distinctValues.getCount(this.getSchemaMetadata(schema)
+				.getTableVersion(tableName), schema, tableName, columnName);
+	}
+
+	private String getOptionTableName(String tableName, final String joinKey,
+			final DatasetConfig dsConfig, final String dataset) {
 		if (tableName.equalsIgnoreCase("main")) {
 			final String[] starNames = dsConfig.getStarBases();
 			final String[] primaryKeys = dsConfig.getPrimaryKeys();
@@ -7716,24 +8250,30 @@ public class DatabaseDatasetConfigUtils {
 				tableName = dataset + "__" + tableName.split("__")[0] + "__"
 						+ tableName.split("__")[1];
 
-		final Connection conn = this.dsource.getConnection();
-		String sql;
-		if (colForDisplay != null && !colForDisplay.equals(""))
-			sql = "SELECT DISTINCT " + columnName + "," + colForDisplay
-					+ " FROM " + this.getSchema()[0] + "." + tableName
-					+ " WHERE " + columnName + " IS NOT NULL ORDER BY "
-					+ colForDisplay;
-		else
-			sql = "SELECT DISTINCT " + columnName + " FROM "
-					+ this.getSchema()[0] + "." + tableName + " WHERE "
-					+ columnName + " IS NOT NULL ORDER BY " + columnName;
-		// System.out.println(sql);
-		final PreparedStatement ps = conn.prepareStatement(sql);
-		final ResultSet rs = ps.executeQuery();
+		return tableName;
+	}
+
+	/**
+	 * @return distinct values of columnName in tableName, from the cache if
+	 *         the table has not changed, or null if there are more than limit
+	 */
+	private DistinctValueCache.Values getOptionValues(final String columnName,
+			final String tableName, final String colForDisplay, final int limit)
+			throws SQLException {
+		final String schema = this.getSchema()[0];
+		return this.distinctValues.getValues(this.getSchemaMetadata(schema)
+				.getTableVersion(tableName), schema, tableName, columnName,
+				colForDisplay, limit);
+	}
+
+	private Option[] getOptionsFor(final DistinctValueCache.Values values,
+			final String columnName, final String tableName,
+			final String colForDisplay) {
+		final List options = new ArrayList();
 		String value;
 		Option op;
-		while (rs.next()) {
-			value = rs.getString(1);
+		for (int i = 0; i < values.values.length; i++) {
+			value = values.values[i];
 
 			// fix for an empty string
 			if (value.length() == 0) {
@@ -7747,7 +8287,7 @@ public class DatabaseDatasetConfigUtils {
 
 			// if (!colForDisplay.equals("")){
 			if (colForDisplay != null && !colForDisplay.equals(""))
-				op.setDisplayName(rs.getString(2));
+				op.setDisplayName(values.displays[i]);
 			else
 				op.setDisplayName(value);
 			final String intName = value.replaceAll(" ", "_");
@@ -7765,7 +8305,6 @@ public class DatabaseDatasetConfigUtils {
 
 		final Option[] retOptions = new Option[options.size()];
 		options.toArray(retOptions);
-		DetailedDataSource.close(conn);
 		return retOptions;
 	}
 
@@ -7788,54 +8327,71 @@ public class DatabaseDatasetConfigUtils {
 	 * DetailedDataSource.close(conn); return retOptions; }
 	 */
 
+	/**
+	 * Makes a tree of Options from an ontology table, reading the whole table
+	 * in one scan rather than querying it for the children of each term.
+	 */
 	public Option[] getOntologyOptions(final String childTermCol,
 			final String childIdCol, final String childTable,
 			final String parentIdCol) throws SQLException,
 			ConfigurationException {
 
 		final Connection conn = this.dsource.getConnection();
-		final String sql = "SELECT min(" + parentIdCol + ") FROM " + childTable;
-		final PreparedStatement ps = conn.prepareStatement(sql);
-		final ResultSet rs = ps.executeQuery();
-		rs.next();
-		final String rootId = rs.getString(1);
-
-		final Option[] retOptions = this.recurseOntology(childTermCol,
-				childIdCol, childTable, parentIdCol, rootId, conn);
-		DetailedDataSource.close(conn);
-		return retOptions;
+		final String rootId;
+		// parent id -> List of {term, id}
+		final Map children = new HashMap();
+		try {
+			String sql = "SELECT min(" + parentIdCol + ") FROM " + childTable;
+			PreparedStatement ps = conn.prepareStatement(sql);
+			ResultSet rs = ps.executeQuery();
+			rs.next();
+			rootId = rs.getString(1);
+			rs.close();
+			ps.close();
+
+			sql = "SELECT " + parentIdCol + "," + childTermCol + ","
+					+ childIdCol + " FROM " + childTable;
+			ps = conn.prepareStatement(sql);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				final String parentId = rs.getString(1);
+				if (parentId == null)
+					continue;
+				List terms = (List) children.get(parentId);
+				if (terms == null) {
+					terms = new ArrayList();
+					children.put(parentId, terms);
+				}
+				terms.add(new String[] { rs.getString(2), rs.getString(3) });
+			}
+			rs.close();
+			ps.close();
+		} finally {
+			DetailedDataSource.close(conn);
+		}
+
+		return this.recurseOntology(children, rootId);
 	}
 
-	private Option[] recurseOntology(final String childTermCol,
-			final String childIdCol, final String childTable,
-			final String parentIdCol, final String parentId,
-			final Connection conn) throws SQLException {
-		// Connection conn = dsource.getConnection();
-		final List options = new ArrayList();
+	private Option[] recurseOntology(final Map children, final String parentId) {
+		final List terms = (List) children.get(parentId);
+		if (terms == null)
+			return new Option[0];
 
-		final String sql = "SELECT " + childTermCol + "," + childIdCol
-				+ " FROM " + childTable + " WHERE " + parentIdCol + " = "
-				+ parentId;
-		final PreparedStatement ps = conn.prepareStatement(sql);
-		final ResultSet rs = ps.executeQuery();
-		String value;
-		Option op;
-		while (rs.next()) {
-			value = rs.getString(1);
-			op = new Option();
+		final Option[] retOptions = new Option[terms.size()];
+		for (int i = 0; i < retOptions.length; i++) {
+			final String[] term = (String[]) terms.get(i);
+			final String value = term[0];
+			final Option op = new Option();
 			op.setDisplayName(value);
 			final String intName = value.replaceAll(" ", "_");
 			op.setInternalName(intName.toLowerCase());
 			op.setValue(value);
 			op.setSelectable("true");
 			// recurse here to add in suboptions
-			final Option[] subOps = this.recurseOntology(childTermCol,
-					childIdCol, childTable, parentIdCol, rs.getString(2), conn);
-			op.addOptions(subOps);
-			options.add(op);
+			op.addOptions(this.recurseOntology(children, term[1]));
+			retOptions[i] = op;
 		}
-		final Option[] retOptions = new Option[options.size()];
-		options.toArray(retOptions);
 		return retOptions;
 	}
 
@@ -7860,6 +8416,13 @@ public class DatabaseDatasetConfigUtils {
 	 * Option[options.size()]; options.toArray(retOptions); return retOptions; }
 	 */
 
+	/**
+	 * Makes the Options of a push action: the distinct values of columnName
+	 * in the rows of tableName where whereName is whereValue. The values for
+	 * every whereValue are read in one scan, and kept until the table
+	 * changes, so that making the push actions of each option of a filter
+	 * does not query the table once per option.
+	 */
 	public Option[] getLookupOptions(final String columnName, String tableName,
 			final DatasetConfig dsConfig, final String joinKey,
 			final String dataset, final String whereName,
@@ -7867,78 +8430,61 @@ public class DatabaseDatasetConfigUtils {
 			final String colForDisplay) throws SQLException,
 			ConfigurationException {
 
-		if (tableName.equalsIgnoreCase("main")) {
-			final String[] starNames = dsConfig.getStarBases();
-			final String[] primaryKeys = dsConfig.getPrimaryKeys();
-			tableName = starNames[0];// in case no keys for a lookup type
-			// dataset
-			for (int k = 0; k < primaryKeys.length; k++)
-				// System.out.println(joinKey+":"+primaryKeys[k]);
-				if (primaryKeys[k].equalsIgnoreCase(joinKey))
-					tableName = starNames[k];
-		}
-
-		if (!tableName.startsWith(dataset + "__"))
-			if (tableName.matches(".*__.*__.*"))
-				tableName = dataset + "__" + tableName.split("__")[1] + "__"
-						+ tableName.split("__")[2];
-			else
-				tableName = dataset + "__" + tableName.split("__")[0] + "__"
-						+ tableName.split("__")[1];
+		tableName = this.getOptionTableName(tableName, joinKey, dsConfig,
+				dataset);
 
-		final List options = new ArrayList();
-		final Connection conn = this.dsource.getConnection();
 		if (orderSQL == null || orderSQL.equals("")) {
-			if (!"".equals(colForDisplay))
-				orderSQL = "ORDER BY " + colForDisplay;
+			if (colForDisplay != null && !"".equals(colForDisplay))
+				orderSQL = colForDisplay;
 			else
-				orderSQL = "ORDER BY " + columnName;
-		} else
-			orderSQL = " ORDER BY " + orderSQL;
-
-		String sql;
-		if (colForDisplay != null && !colForDisplay.equals(""))
-			sql = "SELECT DISTINCT " + columnName + "," + colForDisplay
-					+ " FROM " + schema + "." + tableName + " WHERE "
-					+ whereName + "=\'" + whereValue + "\' AND " + columnName
-					+ " IS NOT NULL " + orderSQL;
-		else
-			sql = "SELECT DISTINCT " + columnName + " FROM " + schema + "."
-					+ tableName + " WHERE " + whereName + "=\'" + whereValue
-					+ "\' AND " + columnName + " IS NOT NULL " + orderSQL;
-		// System.out.println(sql);
-		final PreparedStatement ps = conn.prepareStatement(sql);
-		ResultSet rs = null;
+				orderSQL = columnName;
+		}
+
+		DistinctValueCache.Values values = null;
 		try {
-			rs = ps.executeQuery();
-		} catch (final Exception e) {
-			JOptionPane.showMessageDialog(null, "Problem with SQL: " + sql);
+			values = this.distinctValues.getGroupedValues(this
+					.getSchemaMetadata(schema).getTableVersion(tableName),
+					schema, tableName, columnName, colForDisplay, whereName,
+					whereValue, orderSQL);
+		} catch (final SQLException e) {
+			JOptionPane.showMessageDialog(null, "Problem with SQL: "
+					+ e.getMessage());
+			return new Option[0];
 		}
-		String value;
-		Option op;
 
-		while (rs != null && rs.next()) {
-			value = rs.getString(1);
-			op = new Option();
-			// System.out.println(value);
+		final Option[] retOptions = new Option[values.values.length];
+		for (int i = 0; i < retOptions.length; i++) {
+			final String value = values.values[i];
+			final Option op = new Option();
 			if (colForDisplay != null && !colForDisplay.equals(""))
-				op.setDisplayName(rs.getString(2));
+				op.setDisplayName(values.displays[i]);
 			else
 				op.setDisplayName(value);
 			op.setInternalName(value);
 			op.setValue(value);
 			op.setSelectable("true");
-			options.add(op);
+			retOptions[i] = op;
 		}
-		// conn.close();
-		DetailedDataSource.close(conn);
-		final Option[] retOptions = new Option[options.size()];
-		options.toArray(retOptions);
 		return retOptions;
 	}
 
 	private boolean isAllNull(final String cname, final String tableName)
 			throws SQLException, ConfigurationException {
+		// remembered, as validation and naive generation check the same
+		// columns many times
+		final SchemaMetadata metadata = this.getSchemaMetadata(this
+				.getSchema()[0]);
+		final Boolean known = metadata.getAllNull(tableName, cname);
+		if (known != null)
+			return known.booleanValue();
+
+		final boolean allNull = this.queryAllNull(cname, tableName);
+		metadata.setAllNull(tableName, cname, allNull);
+		return allNull;
+	}
+
+	private boolean queryAllNull(final String cname, final String tableName)
+			throws SQLException, ConfigurationException {
 
 		Connection conn = null;
 		try {
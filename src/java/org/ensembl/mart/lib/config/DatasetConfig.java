@@ -105,30 +105,8 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   private List dynamicDatasets = new ArrayList();
   private Hashtable dynamicDatasetNameMap = new Hashtable();
 
-  // cache one AttributeDescription for call to containsAttributeDescription or getAttributeDescriptionByInternalName
-  private AttributeDescription lastAtt = null;
-  private AttributeList lastAttList = null;
-  
-  //cache one AttributeDescription for call to supportsAttributeDescription/getAttributeDescriptionByFieldNameTableConstraint
-  private AttributeDescription lastSupportingAttribute = null;
-
-  //cache one FilterDescription Object for call to containsFilterDescription or getFiterDescriptionByInternalName
-  private FilterDescription lastFilt = null;
-
-  //cache one FilterGroup for call to getGroupForFilter
-  private FilterGroup lastFiltGroup = null;
-
-  //cache one FilterCollection for call to getCollectionForFilter
-  private FilterCollection lastFiltColl = null;
-
-  //cache one AttributeGroup for call to getGroupForAttribute
-  private AttributeGroup lastAttGroup = null;
-
-  //cache one AttributeCollection for call to getCollectionForAttribute
-  private AttributeCollection lastAttColl = null;
-
-  //cache one FilterDescription for call to supports/getFilterDescriptionByFieldNameTableConstraint
-  private FilterDescription lastSupportingFilter = null;
+  // lookup tables over the pages, built on first use and discarded when anything in the pages changes
+  private ConfigIndex index = null;
 
   private Logger logger = Logger.getLogger(DatasetConfig.class.getName());
 
@@ -416,7 +394,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   
   
   public String getDatasetID (){
-    return attributes.getProperty(datasetIDKey);
+    return getAttribute(datasetIDKey);
   }
   
   public void setModified(String modified) {
@@ -424,7 +402,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getModified (){
-	return attributes.getProperty(modifiedKey);
+	return getAttribute(modifiedKey);
   }
   
   public void setMartUsers(String martUsers) {
@@ -432,7 +410,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getMartUsers (){
-	return attributes.getProperty(martUsersKey);
+	return getAttribute(martUsersKey);
   }
   
   public void setInterfaces(String interfaces) {
@@ -440,7 +418,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getInterfaces (){
-	return attributes.getProperty(interfacesKey);
+	return getAttribute(interfacesKey);
   }
   
   public void setPrimaryKeyRestriction(String primaryKeyRestriction) {
@@ -448,7 +426,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getprimaryKeyRestriction (){
-	return attributes.getProperty(primaryKeyRestrictionKey);
+	return getAttribute(primaryKeyRestrictionKey);
   }
   
   public void setTemplate(String template) {
@@ -456,7 +434,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getTemplate (){
-	return attributes.getProperty(templateKey);
+	return getAttribute(templateKey);
   }
   
   public void setSoftwareVersion(String version) {
@@ -464,7 +442,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getSoftWareVersion (){
-	return attributes.getProperty(softwareVersionKey);
+	return getAttribute(softwareVersionKey);
   }
   
   public void setNoCount(String version) {
@@ -472,7 +450,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getNoCount (){
-	return attributes.getProperty(noCountKey);
+	return getAttribute(noCountKey);
   }  
   
   public void setEntryLabel(String entryLabel) {
@@ -480,7 +458,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getEntryLabel(){
-	return attributes.getProperty(entryLabelKey);
+	return getAttribute(entryLabelKey);
   }  
   
   public void setSplitNameUsing(String splitNameUsing) {
@@ -488,41 +466,41 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
   }
   
   public String getSplitNameUsing(){
-	return attributes.getProperty(splitNameUsingKey);
+	return getAttribute(splitNameUsingKey);
   }    
   
   /**
    * @return the prefix for the mart database tables in this Dataset
    */
   public String getDataset() {
-    return attributes.getProperty(datasetKey);
+    return getAttribute(datasetKey);
   }
   
   /**
    * @return the prefix for the mart database tables in this Dataset
    */
   public String getType() {
-	return attributes.getProperty(typeKey);
+	return getAttribute(typeKey);
   }
   
   /**
    * @return the prefix for the mart database tables in this Dataset
    */
   public String getVisible() {
-	return attributes.getProperty(visibleKey);
+	return getAttribute(visibleKey);
   }
   
   /**
    * @return the prefix for the mart database tables in this Dataset
    */
   public String getVisibleFilterPage() {
-	return attributes.getProperty(visibleFilterPageKey);
+	return getAttribute(visibleFilterPageKey);
   }
   /**
    * @return the prefix for the mart database tables in this Dataset
    */
   public String getVersion() {
-	return attributes.getProperty(versionKey);
+	return getAttribute(versionKey);
   }
   
   /**
@@ -541,7 +519,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @return String optional parameters string
    */
   public String getOptionalParameter() {
-    return attributes.getProperty(optParameterKey);
+    return getAttribute(optParameterKey);
   }
   
   public void setDefaultDataset(String optParam) {
@@ -553,7 +531,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @return String optional parameters string
    */
   public String getDefaultDataset() {
-	return attributes.getProperty(defaultKey);
+	return getAttribute(defaultKey);
   }
   
   /**
@@ -707,6 +685,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param a -- AttributePage to be added.
    */
   public void addAttributePage(AttributePage a) {
+    indexChanged();
     attributePages.add(a);
     attributePageNameMap.put(a.getInternalName(), a);
   }
@@ -716,6 +695,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param a -- AttributePage to be removed.
    */
   public void removeAttributePage(AttributePage a) {
+    indexChanged();
     lazyLoad();
     attributePageNameMap.remove(a.getInternalName());
     attributePages.remove(a);
@@ -750,6 +730,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param a -- AttributePage to be inserted.
    */
   public void insertAttributePage(int position, AttributePage a) {
+    indexChanged();
     lazyLoad();
     //System.out.println("PAGES\t" + attributePages.size());
     if (position>attributePages.size()) 
@@ -767,6 +748,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    */
   public void insertAttributePageBeforeAttributePage(String internalName, AttributePage a)
     throws ConfigurationException {
+    indexChanged();
     lazyLoad();
     if (!attributePageNameMap.containsKey(internalName))
       throw new ConfigurationException("This DatasetConfig does not contain AttributePage " + internalName + "\n");
@@ -781,6 +763,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the DatasetConfig does not contain an AttributePage named by the given internalName.
    */
   public void insertAttributePageAfterAttributePage(String internalName, AttributePage a) throws ConfigurationException {
+    indexChanged();
     lazyLoad();
     if (!attributePageNameMap.containsKey(internalName))
       throw new ConfigurationException("This DatasetConfig does not contain AttributePage " + internalName + "\n");
@@ -796,6 +779,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param a AttributePage[] array of AttributePages.
    */
   public void addAttributePages(AttributePage[] a) {
+    indexChanged();
     for (int i = 0; i < a.length; i++) {
       attributePages.add(a[i]);
       attributePageNameMap.put(a[i].getInternalName(), a[i]);
@@ -863,6 +847,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param f FiterPage object.
    */
   public void addFilterPage(FilterPage f) {
+    indexChanged();
     filterPages.add(f);
     filterPageNameMap.put(f.getInternalName(), f);
   }
@@ -872,6 +857,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param f -- FilterPage to be removed.
    */
   public void removeFilterPage(FilterPage f) {
+    indexChanged();
     lazyLoad();
     filterPageNameMap.remove(f.getInternalName());
     filterPages.remove(f);
@@ -884,6 +870,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param f -- FilterPage to insert.
    */
   public void insertFilterPage(int position, FilterPage f) {
+    indexChanged();
     lazyLoad();
     if (position>filterPages.size()) 
     	filterPages.add(f);
@@ -899,6 +886,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the DatasetConfig does not contain a FilterPage named by internalName.
    */
   public void insertFilterPageBeforeFilterPage(String internalName, FilterPage f) throws ConfigurationException {
+    indexChanged();
     lazyLoad();
     if (!filterPageNameMap.containsKey(internalName))
       throw new ConfigurationException("DatasetConfig does not contain FilterPage " + internalName + "\n");
@@ -912,6 +900,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the DatasetConfig does not contain a FilterPage named by internalName.
    */
   public void insertFilterPageAfterFilterPage(String internalName, FilterPage f) throws ConfigurationException {
+    indexChanged();
     lazyLoad();
     if (!filterPageNameMap.containsKey(internalName))
       throw new ConfigurationException("DatasetConfig does not contain FilterPage " + internalName + "\n");
@@ -926,6 +915,7 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
    * @param f FilterPage[] array of FilterPage objects.
    */
   public void addFilterPages(FilterPage[] f) {
+    indexChanged();
     for (int i = 0, n = f.length; i < n; i++) {
       filterPages.add(f[i]);
       filterPageNameMap.put(f[i].getInternalName(), f);
@@ -1098,113 +1088,56 @@ public class DatasetConfig extends BaseNamedConfigurationObject {
 
   /**
   	* Convenience method for non graphical UI.  Allows a call against the DatasetConfig for a particular AttributeDescription.
-  	* Note, it is best to first call containsAttributeDescription,
-  	* as there is a caching system to cache a AttributeDescription during a call to containsAttributeDescription.
   	* 
   	* @param internalName name of the requested AttributeDescription
-  	* @return AttributeDescription
+  	* @return AttributeDescription, or null
   	*/
   public AttributeDescription getAttributeDescriptionByInternalName(String internalName) {
-    lazyLoad();
-    if (containsAttributeDescription(internalName))
-      return lastAtt;
-    else
-      return null;
+    ConfigIndex.Location location = index().getAttribute(internalName);
+    return (location != null) ? (AttributeDescription) location.element : null;
   }
 
   /**
   	* Convenience method for non graphical UI.  Can determine if the DatasetConfig contains a specific AttributeDescription.
-  	*  As an optimization for initial calls to containsAttributeDescription with an immediate call to getAttributeDescriptionByName if
-  	*  found, this method caches the AttributeDescription it has found.
   	* 
   	* @param internalName name of the requested AttributeDescription
   	* @return boolean, true if found, false if not.
   	*/
   public boolean containsAttributeDescription(String internalName) {
-    lazyLoad();
-    boolean found = false;
-
-    if (lastAtt == null) {
-      for (Iterator iter = (Iterator) attributePages.iterator(); iter.hasNext();) {
-        AttributePage page = (AttributePage) iter.next();
-        if (page.containsAttributeDescription(internalName)) {
-          lastAtt = page.getAttributeDescriptionByInternalName(internalName);
-          found = true;
-          break;
-        }
-      }
-    } else {
-      if (lastAtt.getInternalName().equals(internalName))
-        found = true;
-      else {
-        lastAtt = null;
-        found = containsAttributeDescription(internalName);
-      }
-    }
-    return found;
+    return index().getAttribute(internalName) != null;
   }
   /**
 	* Convenience method for non graphical UI.  Allows a call against the DatasetConfig for a particular AttributeList.
-	* Note, it is best to first call containsAttributeList,
-	* as there is a caching system to cache a AttributeList during a call to containsAttributeList.
 	* 
 	* @param internalName name of the requested AttributeList
-	* @return AttributeList
+	* @return AttributeList, or null
 	*/
-public AttributeList getAttributeListByInternalName(String internalName) {
-  lazyLoad();
-  if (containsAttributeList(internalName))
-    return lastAttList;
-  else
-    return null;
-}
+  public AttributeList getAttributeListByInternalName(String internalName) {
+    ConfigIndex.Location location = index().getAttributeList(internalName);
+    return (location != null) ? (AttributeList) location.element : null;
+  }
 
-/**
+  /**
 	* Convenience method for non graphical UI.  Can determine if the DatasetConfig contains a specific AttributeList.
-	*  As an optimization for initial calls to containsAttributeList with an immediate call to getAttributeListByName if
-	*  found, this method caches the AttributeList it has found.
 	* 
 	* @param internalName name of the requested AttributeList
 	* @return boolean, true if found, false if not.
 	*/
-public boolean containsAttributeList(String internalName) {
-  lazyLoad();
-  boolean found = false;
-
-  if (lastAttList == null) {
-    for (Iterator iter = (Iterator) attributePages.iterator(); iter.hasNext();) {
-      AttributePage page = (AttributePage) iter.next();
-      if (page.containsAttributeList(internalName)) {
-        lastAttList = page.getAttributeListByInternalName(internalName);
-        found = true;
-        break;
-      }
-    }
-  } else {
-    if (lastAttList.getInternalName().equals(internalName))
-      found = true;
-    else {
-      lastAttList = null;
-      found = containsAttributeList(internalName);
-    }
+  public boolean containsAttributeList(String internalName) {
+    return index().getAttributeList(internalName) != null;
   }
-  return found;
-}
 
   /**
   	* Convenience method for non graphical UI.  Allows a call against the DatasetConfig for a particular 
-  	* FilterDescription Object. Note, it is best to first call containsFilterDescription, as there is a 
-  	* caching system to cache a FilterDescription Object during a call to containsFilterDescription.
+  	* FilterDescription Object. internalName may also name one of its Options, or be of the form x.y
+  	* as described for containsFilterDescription.
   	* 
-  	* @param displayName name of the requested FilterDescription
+  	* @param internalName name of the requested FilterDescription
   	* @return FilterDescription found, or null
   	*/
   public FilterDescription getFilterDescriptionByInternalName(String internalName) {
-    lazyLoad();
-    if (containsFilterDescription(internalName))
-      return lastFilt;
-    else
-      return null;
+    ConfigIndex.Location location = index().getFilter(internalName);
+    return (location != null) ? (FilterDescription) location.element : null;
   }
 
   /**
@@ -1216,38 +1149,18 @@ public boolean containsAttributeList(String internalName) {
    * @return AttributeDescription supporting the field and tableConstraint and optionally internalName, or null
    */
   public AttributeDescription getAttributeDescriptionByFieldNameTableConstraintInternalName(String field, String tableConstraint, String internalName) {
-	lazyLoad();
-	if (supportsAttributeDescription(field, tableConstraint, internalName))
-	  return lastSupportingAttribute;
-	else
-	  return null;
+    return index().supportingAttribute(field, tableConstraint, internalName);
   }
 
   /**
    * Determine if this DatasetConfig supports a given field and tableConstraint for an Attribute.  
-   * Caches the first supporting AttributeDescription that it finds that matches internalName as well,
-   *  for subsequent call to getAttributeDescriptionByFieldNameTableConstraint.
    * @param field
    * @param tableConstraint
-   * @return boolean, true if an AttributeDescription contained in this AttributePage supports the field and tableConstraint, false otherwise
+   * @param internalName ignored, see getAttributeDescriptionByFieldNameTableConstraintInternalName
+   * @return boolean, true if an AttributeDescription contained in this DatasetConfig supports the field and tableConstraint, false otherwise
    */
   public boolean supportsAttributeDescription(String field, String tableConstraint, String internalName) {
-	lazyLoad();
-	boolean supports = false;
-
-	for (Iterator iter = attributePages.iterator(); iter.hasNext();) {
-	  AttributePage element = (AttributePage) iter.next();
-
-	  if (element.supports(field, tableConstraint)) {
-		lastSupportingAttribute = element.getAttributeDescriptionByFieldNameTableConstraint(field, tableConstraint);
-		supports = true;
-		if (lastSupportingAttribute.getInternalName().equals(internalName)){
-			break;	
-		}
-		//break;
-	  }
-	}
-	return supports;
+    return index().supportingAttribute(field, tableConstraint, internalName) != null;
   }
 
 
@@ -1255,89 +1168,32 @@ public boolean containsAttributeList(String internalName) {
    * Retrieve a specific AttributeDescription that supports a given field and tableConstraint.
    * @param field
    * @param tableConstraint
-   * @return AttributeDescription supporting the field and tableConstraint, or null
+   * @return the first AttributeDescription supporting the field and tableConstraint, or null
    */
   public AttributeDescription getAttributeDescriptionByFieldNameTableConstraint(String field, String tableConstraint) {
-    lazyLoad();
-    if (supportsAttributeDescription(field, tableConstraint))
-      return lastSupportingAttribute;
-    else
-      return null;
+    return index().supportingAttribute(field, tableConstraint, null);
   }
 
   /**
    * Determine if this DatasetConfig supports a given field and tableConstraint for an Attribute.  
-   * Caches the first supporting AttributeDescription that it finds, for subsequent call to 
-   * getAttributeDescriptionByFieldNameTableConstraint.
    * @param field
    * @param tableConstraint
-   * @return boolean, true if an AttributeDescription contained in this AttributePage supports the field and tableConstraint, false otherwise
+   * @return boolean, true if an AttributeDescription contained in this DatasetConfig supports the field and tableConstraint, false otherwise
    */
   public boolean supportsAttributeDescription(String field, String tableConstraint) {
-    lazyLoad();
-    boolean supports = false;
-
-    for (Iterator iter = attributePages.iterator(); iter.hasNext();) {
-      AttributePage element = (AttributePage) iter.next();
-
-      if (element.supports(field, tableConstraint)) {
-        lastSupportingAttribute = element.getAttributeDescriptionByFieldNameTableConstraint(field, tableConstraint);
-        supports = true;
-        break;
-      }
-    }
-    return supports;
+    return index().supportingAttribute(field, tableConstraint, null) != null;
   }
 
   /**
   	* Convenience method for non graphical UI.  Can determine if the DatasetConfig contains a specific FilterDescription/MapFilterDescription object.
-  	*  As an optimization for initial calls to containsFilterDescription with an immediate call to getFilterDescriptionByInternalName if
-  	*  found, this method caches the FilterDescription Object it has found.
+  	* internalName may name the FilterDescription, or one of its Options, or be of the form x.y, where y is
+  	* such a name, or y is an Option pushed by Option x of a FilterDescription.
   	* 
-  	* @param displayName name of the requested FilterDescription object
+  	* @param internalName name of the requested FilterDescription object
   	* @return boolean, true if found, false if not.
   	*/
   public boolean containsFilterDescription(String internalName) {
-    lazyLoad();
-    boolean contains = false;
-    if (lastFilt == null) {
-      if ((internalName.indexOf(".") > 0) && !(internalName.endsWith("."))) {
-        String[] refs = internalName.split("\\.");
-
-        if (refs.length > 1 && containsFilterDescription(refs[1]))
-          contains = true;
-      }
-
-      if (!contains) {
-        for (Iterator iter = (Iterator) filterPages.iterator(); iter.hasNext();) {
-          FilterPage page = (FilterPage) iter.next();
-          if (page.containsFilterDescription(internalName)) {
-            lastFilt = page.getFilterDescriptionByInternalName(internalName);
-            contains = true;
-            break;
-          }
-        }
-      }
-    } else {
-      if (lastFilt.getInternalName().equals(internalName))
-        contains = true;
-      else if (lastFilt.containsOption(internalName))
-        contains = true;
-      else if (
-        (internalName.indexOf(".") > 0)
-          && !(internalName.endsWith("."))
-          && lastFilt.getInternalName().equals(internalName.split("\\.")[1]))
-        contains = true;
-      else if (lastFilt.getInternalName().matches("\\w+\\." + internalName)){
-	  	contains = true;
-	  	internalName = lastFilt.getInternalName();  
-      }
-      else {
-        lastFilt = null;
-        contains = containsFilterDescription(internalName);
-      }
-    }
-    return contains;
+    return index().getFilter(internalName) != null;
   }
 
 
@@ -1352,46 +1208,19 @@ public boolean containsAttributeList(String internalName) {
    */
   public FilterDescription getFilterDescriptionByFieldNameTableConstraintInternalName(String field, 
   	String tableConstraint, String qualifier, String internalName) {
-	lazyLoad();
-	if (supportsFilterDescription(field, tableConstraint, qualifier, internalName))
-	  return lastSupportingFilter;
-	else
-	  return null;
+    return index().supportingFilter(field, tableConstraint, qualifier, internalName);
   }
 
   /**
    * Determine if this DatasetConfig contains a FilterDescription that supports a given field and tableConstraint.
-   * Calling this method will cache any FilterDescription that supports the field and tableConstraint, and this will
-   * be returned by a getFilterDescriptionByFieldNameTableConstraint call.
    * @param field -- String field of a mart database table
    * @param tableConstraint -- String tableConstraint of a mart database
    * @param qualifier -- Filter qualifier
+   * @param internalName ignored, see getFilterDescriptionByFieldNameTableConstraintInternalName
    * @return boolean, true if the DatasetConfig contains a FilterDescription supporting a given field, tableConstraint, false otherwise.
    */
   public boolean supportsFilterDescription(String field, String tableConstraint, String qualifier, String internalName) {
-	lazyLoad();
-	boolean supports = false;
-
-	//if (lastSupportingFilter == null) {
-	  for (Iterator iter = filterPages.iterator(); iter.hasNext();) {
-		FilterPage element = (FilterPage) iter.next();
-		if (element.supports(field, tableConstraint, qualifier)) {
-		  lastSupportingFilter = element.getFilterDescriptionByFieldNameTableConstraint(field, tableConstraint,qualifier);
-		  supports = true;
-		  if (lastSupportingFilter.getInternalName().equals(internalName)){
-		  	break;
-		  }
-		}
-	  }
-	//} else {
-	//  if (lastSupportingFilter.supports(field, tableConstraint, qualifier))
-	//	supports = true;
-	//  else {
-	//	lastSupportingFilter = null;
-    //		supports = supportsFilterDescription(field, tableConstraint, qualifier, internalName);
-    //	  }
-	//}
-	return supports;
+    return index().supportingFilter(field, tableConstraint, qualifier, internalName) != null;
   }
 
 
@@ -1402,47 +1231,21 @@ public boolean containsAttributeList(String internalName) {
    * @param field -- String field of a mart database table
    * @param tableConstraint -- String tableConstraint of a mart database
    * @param qualifier -- Filter qualifier
-   * @return FilterDescription object supporting the given field and tableConstraint, or null.
+   * @return the first FilterDescription object supporting the given field and tableConstraint, or null.
    */
   public FilterDescription getFilterDescriptionByFieldNameTableConstraint(String field, String tableConstraint, String qualifier) {
-    lazyLoad();
-    if (supportsFilterDescription(field, tableConstraint, qualifier))
-      return lastSupportingFilter;
-    else
-      return null;
+    return index().supportingFilter(field, tableConstraint, qualifier, null);
   }
 
   /**
    * Determine if this DatasetConfig contains a FilterDescription that supports a given field and tableConstraint.
-   * Calling this method will cache any FilterDescription that supports the field and tableConstraint, and this will
-   * be returned by a getFilterDescriptionByFieldNameTableConstraint call.
    * @param field -- String field of a mart database table
    * @param tableConstraint -- String tableConstraint of a mart database
    * @param qualifier -- Filter qualifier
    * @return boolean, true if the DatasetConfig contains a FilterDescription supporting a given field, tableConstraint, false otherwise.
    */
   public boolean supportsFilterDescription(String field, String tableConstraint, String qualifier) {
-    lazyLoad();
-    boolean supports = false;
-
-    if (lastSupportingFilter == null) {
-      for (Iterator iter = filterPages.iterator(); iter.hasNext();) {
-        FilterPage element = (FilterPage) iter.next();
-        if (element.supports(field, tableConstraint, qualifier)) {
-          lastSupportingFilter = element.getFilterDescriptionByFieldNameTableConstraint(field, tableConstraint,qualifier);
-          supports = true;
-          break;
-        }
-      }
-    } else {
-      if (lastSupportingFilter.supports(field, tableConstraint, qualifier))
-        supports = true;
-      else {
-        lastSupportingFilter = null;
-        supports = supportsFilterDescription(field, tableConstraint, qualifier);
-      }
-    }
-    return supports;
+    return index().supportingFilter(field, tableConstraint, qualifier, null) != null;
   }
 
   /**
@@ -1456,14 +1259,8 @@ public boolean containsAttributeList(String internalName) {
    * @return FilterPage object containing the requested FilterDescription
    */
   public FilterPage getPageForFilter(String internalName) {
-    lazyLoad();
-    for (Iterator iter = (Iterator) filterPages.iterator(); iter.hasNext();) {
-      FilterPage page = (FilterPage) iter.next();
-
-      if (page.containsFilterDescription(internalName))
-        	return page;
-    }
-    return null;
+    ConfigIndex.Location location = index().getFilter(internalName);
+    return (location != null) ? (FilterPage) location.page : null;
   }
 
   /**
@@ -1490,18 +1287,18 @@ public boolean containsAttributeList(String internalName) {
    * Note, if a AttributeDescription is contained in multiple AttributePages, this will
    * return the first AttributePage that contains the requested AttributeDescription.
    * 
-   * @param internalName -- String internalName of the requested AttributeDescription
+   * @param internalName -- String internalName of the requested AttributeDescription or AttributeList
    * @return AttributePage containing requested AttributeDescription
    */
   public AttributePage getPageForAttribute(String internalName) {
-    lazyLoad();
-    for (Iterator iter = (Iterator) attributePages.iterator(); iter.hasNext();) {
-      AttributePage page = (AttributePage) iter.next();
+    ConfigIndex.Location location = attributeLocation(internalName);
+    return (location != null) ? (AttributePage) location.page : null;
+  }
 
-      if (page.containsAttributeDescription(internalName)||page.containsAttributeList(internalName))
-        return page;
-    }
-    return null;
+  private ConfigIndex.Location attributeLocation(String internalName) {
+    ConfigIndex index = index();
+    ConfigIndex.Location location = index.getAttributeList(internalName);
+    return (location != null) ? location : index.getAttribute(internalName);
   }
 
   /**
@@ -1615,20 +1412,8 @@ public boolean containsAttributeList(String internalName) {
    * @return FilterGroup for Attrribute Description provided, or null
    */
   public FilterGroup getGroupForFilter(String internalName) {
-    lazyLoad();
-    if (!containsFilterDescription(internalName))
-      return null;
-    else if (lastFiltGroup == null) {
-      lastFiltGroup = getPageForFilter(internalName).getGroupForFilter(internalName);
-      return lastFiltGroup;
-    } else {
-      if (lastFiltGroup.getInternalName().equals(internalName))
-        return lastFiltGroup;
-      else {
-        lastFiltGroup = null;
-        return getGroupForFilter(internalName);
-      }
-    }
+    ConfigIndex.Location location = index().getFilter(internalName);
+    return (location != null) ? (FilterGroup) location.group : null;
   }
 
   /**
@@ -1639,77 +1424,32 @@ public boolean containsAttributeList(String internalName) {
    * @return FilterCollection for Attrribute Description provided, or null
    */
   public FilterCollection getCollectionForFilter(String internalName) {
-    lazyLoad();
-    if (!containsFilterDescription(internalName)) {
-      return null;
-    } else if (lastFiltColl == null) {
-      if (getGroupForFilter(internalName) != null)
-      	lastFiltColl = getGroupForFilter(internalName).getCollectionForFilter(internalName);
-      return lastFiltColl;
-    } else {
-      if (lastFiltColl.getInternalName().equals(internalName))
-        return lastFiltColl;
-      else {
-        lastFiltColl = null;
-        return getCollectionForFilter(internalName);
-      }
-    }
+    ConfigIndex.Location location = index().getFilter(internalName);
+    return (location != null) ? (FilterCollection) location.collection : null;
   }
 
   /**
-   * Returns an AttributeGroup object for a specific AttributeDescription
+   * Returns an AttributeGroup object for a specific AttributeDescription or AttributeList
    * based on its internalName.
    * 
    * @param internalName - String internalName of Attribute Description for which a group is requested.
    * @return FilterGroup for Attrribute Description provided, or null
    */
   public AttributeGroup getGroupForAttribute(String internalName) {
-    lazyLoad();
-    if (!containsAttributeDescription(internalName) && !containsAttributeList(internalName))
-      return null;
-    else if (lastAttGroup == null) {
-    	if (containsAttributeList(internalName)) {
-    		lastAttGroup = getPageForAttribute(internalName).getGroupForAttributeList(internalName);
-    	} else {
-    		lastAttGroup = getPageForAttribute(internalName).getGroupForAttributeDescription(internalName);
-    	}
-    	return lastAttGroup;
-    } else {
-      if (lastAttGroup.getInternalName().equals(internalName))
-        return lastAttGroup;
-      else {
-        lastAttGroup = null;
-        return getGroupForAttribute(internalName);
-      }
-    }
+    ConfigIndex.Location location = attributeLocation(internalName);
+    return (location != null) ? (AttributeGroup) location.group : null;
   }
 
   /**
-   * Returns an AttributeCollection object for a specific AttributeDescription
+   * Returns an AttributeCollection object for a specific AttributeDescription or AttributeList
    * based on its internalName.
    * 
    * @param internalName - String internalName of Attribute Description for which a collection is requested.
    * @return AttributeCollection for Attribute Description provided, or null
    */
   public AttributeCollection getCollectionForAttribute(String internalName) {
-    lazyLoad();
-    if (!containsAttributeDescription(internalName) && !containsAttributeList(internalName)) {
-      return null;
-    } else if (lastAttColl == null) {
-    	if (containsAttributeList(internalName)) {
-    		lastAttColl = getGroupForAttribute(internalName).getCollectionForAttributeList(internalName);
-    	} else {
-    		lastAttColl = getGroupForAttribute(internalName).getCollectionForAttributeDescription(internalName);
-    	}
-    	return lastAttColl;
-    } else {
-      if (lastAttColl.getInternalName().equals(internalName))
-        return lastAttColl;
-      else {
-    	  lastAttColl = null;
-        return getCollectionForAttribute(internalName);
-      }
-    }
+    ConfigIndex.Location location = attributeLocation(internalName);
+    return (location != null) ? (AttributeCollection) location.collection : null;
   }
 
   /**
@@ -1828,7 +1568,37 @@ public boolean containsAttributeList(String internalName) {
   
   private boolean lazyLoaded = false;
   
-  private void lazyLoad() {
+  /**
+   * Returns the lookup tables over the pages, building them if they have been discarded.
+   * Lookups need only hold the lock while the pages are lazy loaded and the tables are
+   * built, so may run concurrently.
+   */
+  private ConfigIndex index() {
+    lazyLoad();
+    synchronized (this) {
+      if (index == null) {
+        AttributePage[] apages = new AttributePage[attributePages.size()];
+        attributePages.toArray(apages);
+        FilterPage[] fpages = new FilterPage[filterPages.size()];
+        filterPages.toArray(fpages);
+        index = new ConfigIndex(this, apages, fpages);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Discards the lookup tables, called when a page, or anything in it, changes.
+   */
+  synchronized void indexChanged() {
+    index = null;
+  }
+
+  /**
+   * Loads the pages from the adaptor on first use.  Synchronized, so that threads making
+   * their first lookup at the same time load the pages only once.
+   */
+  private synchronized void lazyLoad() {
     if (!lazyLoaded && filterPages.size() == 0 && attributePages.size() == 0) {
       if (adaptor == null)
         throw new RuntimeException("DatasetConfig objects must be provided a DSConfigAdaptor to facilitate lazyLoading\n");
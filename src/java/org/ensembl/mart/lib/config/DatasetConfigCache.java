@@ -17,44 +17,53 @@
  */
 package org.ensembl.mart.lib.config;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.prefs.BackingStoreException;
-import java.util.prefs.Preferences;
+import java.util.zip.GZIPInputStream;
+
+import org.jdom.Document;
 
 /**
  * Object to cache DatasetConfiguration objects to the file system.
- * Uses a combination of the client user Preferences, and a files in
- * the home directory of the user under .martj_preferences.   
+ * Uses a single DatasetConfigStore file, datasetconfig.cache, in the home directory of
+ * the user under .martj_preferences, shared by all caches and by concurrent JVMs.
+ * Each cached DatasetConfig is stored as a DatasetConfigSnapshot, with the values needed to
+ * create its lazy loading stub, and its md5sum.  Entries written before snapshots were
+ * introduced hold compressed XML, and are still read.
  * @author <a href="mailto:dlondon@ebi.ac.uk">Darin London</a>
  * @author <a href="mailto:craig@ebi.ac.uk">Craig Melsopp</a>
+ * @see DatasetConfigStore
+ * @see DatasetConfigSnapshot
  */
 public class DatasetConfigCache {
 
   private Logger logger = Logger.getLogger(DatasetConfigCache.class.getName());
 
   private final String XMLDIR = System.getProperty("user.home") + File.separator + ".martj_preferences";
+  private final String STOREFILE = "datasetconfig.cache";
   private final String NAMESEPARATOR = "__";
-  private final String NAMEPREFIX = ".";
-  private final String XMLENDING = ".xml";
-  private final String DNAMEKEY = "displayName";
-  private final String DESCKEY = "description";
-  private final String TYPEKEY = "type";
-  private final String VISIBLEKEY = "visible";
-  private final String VISIBLEFILTERPAGEKEY = "visibleFilterPage";
-  private final String VERSIONKEY = "version";
-  private final String DIGESTKEY = "MD5";
-  private final String XMLKEY = "XML";
-
-  private Preferences xmlPrefs = null;
+
+  // positions of the DatasetConfig values in the metadata of each store entry
+  private final int DNAMEINDEX = 0;
+  private final int DESCINDEX = 1;
+  private final int TYPEINDEX = 2;
+  private final int VISIBLEINDEX = 3;
+  private final int VERSIONINDEX = 4;
+  private final int VISIBLEFILTERPAGEINDEX = 5;
+  private final int NUMMETADATA = 6;
+
+  private DatasetConfigStore store = null;
   private DSConfigAdaptor caller = null;
-  private String[] keys = null;
+  private String keys = null;
   private DatasetConfigXMLUtils dscutils = null;
 
   /**
@@ -67,155 +76,78 @@ public class DatasetConfigCache {
    */
   public DatasetConfigCache(DSConfigAdaptor caller, String[] keys, DatasetConfigXMLUtils dscutils) {
     this.caller = caller;
-    this.keys = keys;
     this.dscutils = dscutils;
-    initCache();
-  }
 
-  private void initCache() {
-    if (xmlPrefs == null) {
-      xmlPrefs = Preferences.userNodeForPackage(caller.getClass());
-      for (int i = 0, n = keys.length; i < n; i++) {
-        String key = keys[i];
-        xmlPrefs = xmlPrefs.node(key);
-      }
-    }
+    StringBuffer buf = new StringBuffer(caller.getClass().getName());
+    for (int i = 0, n = keys.length; i < n; i++)
+      buf.append(NAMESEPARATOR).append(keys[i]);
+    this.keys = buf.toString();
+
+    store = DatasetConfigStore.forFile(new File(XMLDIR, STOREFILE));
   }
 
   /**
-   * Clears the cache for this node, deleting any xml files in $HOME/.martj_preferences
+   * Clears the cache for this node, removing all of its DatasetConfigs from the store.
    * @throws ConfigurationException for underlying exceptions
    */
   public void clearCache() throws ConfigurationException {
-    initCache();
     try {
-      //find any xml files associated with this cache and delete them
-      String[] datasets = xmlPrefs.childrenNames();
-      for (int i = 0, n = datasets.length; i < n; i++) {
-        String dataset = datasets[i];
-        
-        String[] inames = xmlPrefs.node(dataset).childrenNames();
-        for (int j = 0, m = inames.length; j < m; j++) {
-          String iname = inames[j];
-          deleteFile(dataset, iname);
-          xmlPrefs.node(dataset).node(iname).removeNode();
-        }
-        xmlPrefs.node(dataset).removeNode();
-      }
-      
-      //remove the base directory if it is empty
-      File baseDir = initCacheDir();
-      if (baseDir.isDirectory() && baseDir.list().length < 1)
-        baseDir.delete();
-        
-      xmlPrefs.flush();
-    } catch (BackingStoreException e) {
-      throw new ConfigurationException("Caught BackingStoreException clearing cache: " + e.getMessage(), e);
+      store.remove(store.list(keys, null));
+    } catch (IOException e) {
+      throw new ConfigurationException("Caught IOException clearing cache: " + e.getMessage(), e);
     }
   }
 
-  private File initCacheDir() {
-    File baseDir = new File(XMLDIR);
-    if (!baseDir.isDirectory())
-      baseDir.mkdir();
-    return baseDir;
-  }
-
-  private File getFile(String dataset, String iname) {
-    File baseDir = initCacheDir();
-    String fileName = NAMEPREFIX;
-    
-    for (int i = 0, n = keys.length; i < n; i++) {
-      String key = keys[i];
-      fileName += key + NAMESEPARATOR;
-    }
-    
-    fileName += dataset + NAMESEPARATOR + iname + XMLENDING;
-    File ret = new File(baseDir, fileName);
-    return ret; 
-  }
-  
-  private void deleteFile(String dataset, String internalName) {
-    String xmlloc = pathTo(dataset, internalName);
-    if (xmlloc != null) {
-      File xmlfile = new File(xmlloc);
-      if (xmlfile.exists())
-        xmlfile.delete();
-    }
-  }
-  
   /**
-   * Adds a DatasetConfig to the cache. This stores a file to $HOME/.martj_prefs/dataset/internalName.xml,
-   * and stores the identifying values of the DatasetConfig to the preferences object to allow lazy loading, as well
-   * as its file location and md5sum to check if it is up to date with the original source.
+   * Adds a DatasetConfig to the cache. This stores its snapshot, the identifying values of the DatasetConfig
+   * to allow lazy loading, and its md5sum to check if it is up to date with the original source.
    * @param dsc - DatasetConfig to cache
-   * @throws ConfigurationException for underlying BackingStoreExceptions and OutputStream exceptions
+   * @throws ConfigurationException for underlying IOExceptions and OutputStream exceptions
    */
   public void addDatasetConfig(DatasetConfig dsc) throws ConfigurationException {
-    initCache();
+    String[] metadata = new String[NUMMETADATA];
+    //hidden datasets may have null display names
+    metadata[DNAMEINDEX] = dsc.getDisplayName();
+    metadata[DESCINDEX] = dsc.getDescription();
+    metadata[TYPEINDEX] = dsc.getType();
+    metadata[VISIBLEINDEX] = dsc.getVisible();
+    metadata[VERSIONINDEX] = dsc.getVersion();
+    metadata[VISIBLEFILTERPAGEINDEX] = dsc.getVisibleFilterPage();
 
-    String iname = dsc.getInternalName();
-    String dname = dsc.getDisplayName();
-    String dataset = dsc.getDataset();
-    String desc = dsc.getDescription();
     byte[] digest = dsc.getMessageDigest();
-    String type = dsc.getType();
-    String visible = dsc.getVisible();
-    String version = dsc.getVersion();
-
-    deleteFile(dataset, iname);
-    
-    File xmlFile = getFile(dataset, iname);
-    
-    dscutils.writeDatasetConfigToFile(dsc, xmlFile);
-    
-    //hidden datasets may have null display names
-    if (dname != null)
-      xmlPrefs.node(dataset).node(iname).put(DNAMEKEY, dname);
-    
-    if (desc != null)
-      xmlPrefs.node(dataset).node(iname).put(DESCKEY, desc);
-    
-    if (type != null)
-        xmlPrefs.node(dataset).node(iname).put(TYPEKEY, type);
-    
-    if (visible != null)
-        xmlPrefs.node(dataset).node(iname).put(VISIBLEKEY, visible);
-    
-    if (version != null)
-        xmlPrefs.node(dataset).node(iname).put(VERSIONKEY, version);
-    
-    xmlPrefs.node(dataset).node(iname).put(XMLKEY, xmlFile.getAbsolutePath());
-    xmlPrefs.node(dataset).node(iname).putByteArray(DIGESTKEY, digest);
+    if (digest == null)
+      digest = new byte[0];
+    byte[] snapshot = DatasetConfigSnapshot.toBytes(dscutils, dsc, digest);
+
+    try {
+      store.put(keys, dsc.getDataset(), dsc.getInternalName(), metadata, digest, snapshot);
+    } catch (IOException e) {
+      throw new ConfigurationException(
+        "Caught IOException caching DatasetConfig " + dsc.getDataset() + " " + dsc.getInternalName() + " " + e.getMessage(),
+        e);
+    }
   }
 
   /**
-   * Removes all information for a DatasetConfig object specified by dataset and internalName from the cache, 
-   * including its associated file in $HOME/.martj_preferences.
+   * Removes all information for a DatasetConfig object specified by dataset and internalName from the cache.
    * @param dataset - dataset for DatasetConfig to be removed
    * @param iname - internalname for the DatasetConfig to be removed
    * @throws ConfigurationException for underlying exceptions
    */
   public void removeDatasetConfig(String dataset, String iname) throws ConfigurationException {
-    initCache();
-
-    if (cacheExists(dataset, iname)) {
-      try {
-        deleteFile(dataset, iname);
-        xmlPrefs.node(dataset).node(iname).removeNode(); //removes this node entirely
-        if (xmlPrefs.node(dataset).childrenNames().length == 0)
-          xmlPrefs.node(dataset).removeNode(); //removes the dataset node, if empty
-        xmlPrefs.flush();
-      } catch (BackingStoreException e) {
-        throw new ConfigurationException(
-          "Caught BackingStoreException removing DatasetConfig from preferences node "
-            + dataset
-            + " internalName "
-            + iname
-            + " "
-            + e.getMessage()
-            + "\nAssuming it doesnt exist\n");
-      }
+    try {
+      DatasetConfigStore.Entry entry = store.get(keys, dataset, iname);
+      if (entry != null)
+        store.remove(new DatasetConfigStore.Entry[] { entry });
+    } catch (IOException e) {
+      throw new ConfigurationException(
+        "Caught IOException removing DatasetConfig from cache "
+          + dataset
+          + " internalName "
+          + iname
+          + " "
+          + e.getMessage()
+          + "\nAssuming it doesnt exist\n");
     }
   }
 
@@ -225,55 +157,44 @@ public class DatasetConfigCache {
    * @param iname -- internalName for required DatasetConfig
    * @param adaptor -- DSConfigAdaptor to set as the underlying DSConfigAdaptor for the returned DatasetConfig object
    *                   Note, in order to satisfy the contract for the DatasetConfig lazyLoad system, if this is passed null,
-   *                   the system will fully load the resulting DatasetConfig from the xml file before returning it.
-   * @return DatasetConfig for given dataset and internalName
+   *                   the system will fully load the resulting DatasetConfig from the cache before returning it.
+   * @return DatasetConfig for given dataset and internalName, or null if it is not cached
    * @throws ConfigurationException for underlying exceptions
    */
   public DatasetConfig getDatasetConfig(String dataset, String iname, DSConfigAdaptor adaptor)
     throws ConfigurationException {
-    initCache();
-    DatasetConfig dsv = null;
+    DatasetConfigStore.Entry entry = getEntry(dataset, iname);
+    if (entry == null)
+      return null;
 
-    try {
-      if (xmlPrefs.nodeExists(dataset)) {
-        if (xmlPrefs.node(dataset).nodeExists(iname)) {
-
-          byte[] digest = xmlPrefs.node(dataset).node(iname).getByteArray(DIGESTKEY, null);
-
-          if (adaptor == null) {
-
-            dscutils.setFullyLoadMode(true); //temporarily
-            dsv = dscutils.getDatasetConfigForXMLStream(getXMLStream(dataset, iname));
-            dscutils.setFullyLoadMode(false);            
-          } else {
-            String displayName = xmlPrefs.node(dataset).node(iname).get(DNAMEKEY, null);
-            String description = xmlPrefs.node(dataset).node(iname).get(DESCKEY, null);
-            String type = xmlPrefs.node(dataset).node(iname).get(TYPEKEY, null);
-            String visible = xmlPrefs.node(dataset).node(iname).get(VISIBLEKEY, null);
-            String version = xmlPrefs.node(dataset).node(iname).get(VERSIONKEY, null);
-			String visibleFilterPage = xmlPrefs.node(dataset).node(iname).get(VISIBLEFILTERPAGEKEY, null);
-			
-            dsv = new DatasetConfig(iname, displayName, dataset, description, type, visible,visibleFilterPage,version,"","","","","","","","","","","");
-            
-            dsv.setDSConfigAdaptor(adaptor);
-          }
-
-          if (digest != null)
-            dsv.setMessageDigest(digest);
-        }
+    DatasetConfig dsv = null;
+    if (adaptor == null) {
+      dscutils.setFullyLoadMode(true); //temporarily
+      try {
+        dsv = dscutils.getDatasetConfigForDocument(getDocument(entry));
+      } finally {
+        dscutils.setFullyLoadMode(false);
       }
-    } catch (BackingStoreException e) {
-      throw new ConfigurationException(
-        "Caught BackingStoreException getting DatasetConfig from preferences node "
-          + dataset
-          + " internalName "
-          + iname
-          + " "
-          + e.getMessage());
-    } catch (ConfigurationException e) {
-      throw e;
+    } else {
+      String[] metadata = entry.metadata;
+      dsv =
+        new DatasetConfig(
+          iname,
+          metadata[DNAMEINDEX],
+          dataset,
+          metadata[DESCINDEX],
+          metadata[TYPEINDEX],
+          metadata[VISIBLEINDEX],
+          metadata[VISIBLEFILTERPAGEINDEX],
+          metadata[VERSIONINDEX],
+          "","","","","","","","","","","");
+
+      dsv.setDSConfigAdaptor(adaptor);
     }
 
+    if (entry.digest.length > 0)
+      dsv.setMessageDigest(entry.digest);
+
     return dsv;
   }
 
@@ -283,61 +204,68 @@ public class DatasetConfigCache {
    * @throws ConfigurationException for all underlying exceptions that prevent the DatasetView from being lazyLoaded.
    */
   public void lazyLoadWithCache(DatasetConfig dsv) throws ConfigurationException {
-    initCache();
-
     String dataset = dsv.getDataset();
     String iname = dsv.getInternalName();
 
-    if (cacheExists(dataset, iname)) {
-      try {
-        InputStream xmlinput = getXMLStream(dataset, iname);
-        dscutils.loadDatasetConfigWithDocument(
-          dsv,
-          dscutils.getDocumentForXMLStream(xmlinput));
-        xmlinput.close();
-      } catch (ConfigurationException e) {
-        throw e;
-      } catch (IOException e) {
-        if (logger.isLoggable(Level.FINE))
-          logger.fine(
-            "Caught IOException closing Stream: " + e.getMessage() + "\nAssuming datasetview was properly lazyLoaded\n");
-      }
-    } else
+    DatasetConfigStore.Entry entry = getEntry(dataset, iname);
+    if (entry == null)
       throw new ConfigurationException("Cache does not exist for " + dataset + " " + iname + "\n");
+
+    dscutils.loadDatasetConfigWithDocument(dsv, getDocument(entry));
   }
 
-  private String pathTo(String dataset, String iname) {
-    return xmlPrefs.node(dataset).node(iname).get(XMLKEY, null);
+  private DatasetConfigStore.Entry getEntry(String dataset, String iname) throws ConfigurationException {
+    try {
+      return store.get(keys, dataset, iname);
+    } catch (IOException e) {
+      throw new ConfigurationException(
+        "Caught IOException reading cache for dataset " + dataset + " internalName " + iname + " " + e.getMessage(),
+        e);
+    }
   }
-  
-  private InputStream getXMLStream(String dataset, String iname) throws ConfigurationException {
-    FileInputStream ret = null;
 
-    String xmlloc = pathTo(dataset, iname);
-    if (xmlloc == null) {
+  /**
+   * Decodes the Document cached for entry, from its snapshot if it has one matching its digest,
+   * otherwise from the compressed XML of older entries.
+   */
+  private Document getDocument(DatasetConfigStore.Entry entry) throws ConfigurationException {
+    byte[] body = null;
+    try {
+      body = store.getBody(keys, entry.dataset, entry.internalName);
+    } catch (IOException e) {
       throw new ConfigurationException(
         "Could not retrieve cache information for dataset "
-          + dataset
+          + entry.dataset
           + " internalName "
-          + iname
-          + " does not appear to be cached!\n");
-    } else {
-      File xmlfile = new File(xmlloc);
+          + entry.internalName
+          + " does not appear to be cached!\n"
+          + e.getMessage()
+          + "\n",
+        e);
+    }
+    if (body == null)
+      throw new ConfigurationException("Cache does not exist for " + entry.dataset + " " + entry.internalName + "\n");
+
+    if (DatasetConfigSnapshot.isSnapshot(body))
+      return DatasetConfigSnapshot.toDocument(body, entry.digest);
+
+    InputStream xmlinput = null;
+    try {
+      xmlinput = new GZIPInputStream(new ByteArrayInputStream(body));
+      return dscutils.getDocumentForXMLStream(xmlinput);
+    } catch (IOException e) {
+      throw new ConfigurationException(
+        "Caught IOException reading cache for dataset " + entry.dataset + " internalName " + entry.internalName + " " + e.getMessage(),
+        e);
+    } finally {
       try {
-        ret = new FileInputStream(xmlfile);
-      } catch (FileNotFoundException e) {
-        throw new ConfigurationException(
-          "Could not retrieve cache information for dataset "
-            + dataset
-            + " internalName "
-            + iname
-            + " does not appear to be cached!\n"
-            + e.getMessage()
-            + "\n",
-          e);
+        if (xmlinput != null)
+          xmlinput.close();
+      } catch (IOException e) {
+        if (logger.isLoggable(Level.FINE))
+          logger.fine("Caught IOException closing Stream: " + e.getMessage());
       }
     }
-    return ret;
   }
 
   /**
@@ -348,26 +276,16 @@ public class DatasetConfigCache {
    * @throws ConfigurationException for underlying exceptions
    */
   public boolean cacheExists(String dataset, String iname) throws ConfigurationException {
-    initCache();
-    boolean ret = false;
+    if (iname != null)
+      return getEntry(dataset, iname) != null;
 
     try {
-      ret = xmlPrefs.nodeExists(dataset);
-
-      if (ret && iname != null)
-        ret = xmlPrefs.node(dataset).nodeExists(iname);
-    } catch (BackingStoreException e) {
+      return store.list(keys, dataset).length > 0;
+    } catch (IOException e) {
       throw new ConfigurationException(
-        "Recieved BackingStoreException determining existence of cache for "
-          + dataset
-          + " "
-          + iname
-          + "\n"
-          + e.getMessage(),
+        "Recieved IOException determining existence of cache for " + dataset + "\n" + e.getMessage(),
         e);
     }
-
-    return ret;
   }
 
   /**
@@ -381,17 +299,44 @@ public class DatasetConfigCache {
    * @throws ConfigurationException
    */
   public boolean cacheUpToDate(byte[] sourceDigest, String dataset, String iname) throws ConfigurationException {
-    boolean ret = cacheExists(dataset, iname);
+    return cacheUpToDate(new byte[][] { sourceDigest }, new String[] { dataset }, new String[] { iname })[0];
+  }
 
-    if (ret) {
-      byte[] cacheDigest = xmlPrefs.node(dataset).node(iname).getByteArray(DIGESTKEY, new byte[0]);
-      //if the cache cannot return the digest for some reason, it should return an empty byte[]
+  /**
+   * Determines, in one pass over the cache, which of a number of DatasetConfigs are cached and up to date
+   * for their source MD5SUM MessageDigests.  As with the single DatasetConfig version, the cache for any
+   * DatasetConfig which is not up to date is removed, with all of the removals written to the store at once.
+   * @param sourceDigests -- byte[] MD5SUM MessageDigest of each DatasetConfig
+   * @param datasets -- dataset of each DatasetConfig
+   * @param inames -- internalName of each DatasetConfig
+   * @return boolean[], true for each DatasetConfig whose cache exists and matches its sourceDigest
+   * @throws ConfigurationException for underlying exceptions
+   */
+  public boolean[] cacheUpToDate(byte[][] sourceDigests, String[] datasets, String[] inames) throws ConfigurationException {
+    boolean[] ret = new boolean[datasets.length];
+    List stale = new ArrayList();
 
-      ret = MessageDigest.isEqual(cacheDigest, sourceDigest);
-    }
+    try {
+      DatasetConfigStore.Entry[] entries = store.list(keys, null);
+      Map cached = new HashMap();
+      for (int i = 0; i < entries.length; i++)
+        cached.put(entries[i].dataset + '\u0000' + entries[i].internalName, entries[i]);
+
+      for (int i = 0; i < datasets.length; i++) {
+        DatasetConfigStore.Entry entry = (DatasetConfigStore.Entry) cached.get(datasets[i] + '\u0000' + inames[i]);
+        if (entry == null)
+          continue;
+
+        ret[i] = MessageDigest.isEqual(entry.digest, sourceDigests[i]);
+        if (!ret[i])
+          stale.add(entry);
+      }
 
-    if (!ret) {
-      removeDatasetConfig(dataset, iname);
+      store.remove((DatasetConfigStore.Entry[]) stale.toArray(new DatasetConfigStore.Entry[stale.size()]));
+    } catch (IOException e) {
+      throw new ConfigurationException(
+        "Recieved IOException checking cache for " + datasets.length + " DatasetConfigs\n" + e.getMessage(),
+        e);
     }
 
     return ret;
@@ -0,0 +1,271 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jdom.Attribute;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMFactory;
+import org.jdom.UncheckedJDOMFactory;
+
+/**
+ * Compact binary snapshot of a fully loaded DatasetConfig, read far faster than its XML.
+ * <p>
+ * A snapshot holds the element tree that DatasetConfigXMLUtils writes as XML for the
+ * DatasetConfig, with every element name, attribute name and value, and text held once
+ * in a string table and referred to by index.  It is decoded straight into a JDOM
+ * Document, without a SAX parse, DTD resolution or name checking, and then loaded with
+ * DatasetConfigXMLUtils.loadDatasetConfigWithDocument like any other Document.
+ * <p>
+ * Layout: magic, version, the MD5 digest of the DatasetConfig, then the length of
+ * the body and the body, the string table followed by the tree.  A snapshot is only
+ * used when its digest matches that of the DatasetConfig being loaded, and its version
+ * is this one; anything else is treated as absent, and the XML used instead.
+ *
+ * @see DatasetConfigCache
+ */
+public class DatasetConfigSnapshot {
+
+  /** Format version, snapshots of any other version are not read. */
+  public static final int VERSION = 1;
+
+  private static final byte[] MAGIC = { 'M', 'C', 'S', 'N' };
+
+  /**
+   * @param b bytes to check
+   * @return true if b holds a snapshot of the current version
+   */
+  public static boolean isSnapshot(byte[] b) {
+    if (b == null || b.length < MAGIC.length + 2)
+      return false;
+    for (int i = 0; i < MAGIC.length; i++)
+      if (b[i] != MAGIC[i])
+        return false;
+    return ((b[MAGIC.length] & 0xff) << 8 | (b[MAGIC.length + 1] & 0xff)) == VERSION;
+  }
+
+  /**
+   * Creates a snapshot of dsv, which must be fully loaded.
+   * @param dscutils -- creates the element tree for dsv
+   * @param dsv -- DatasetConfig to snapshot
+   * @param digest -- MD5 digest of dsv, the snapshot is only read for a DatasetConfig with this digest
+   * @return byte[] snapshot
+   * @throws ConfigurationException for underlying IOExceptions
+   */
+  public static byte[] toBytes(DatasetConfigXMLUtils dscutils, DatasetConfig dsv, byte[] digest)
+    throws ConfigurationException {
+    return toBytes(dscutils.getDocumentForDatasetConfig(dsv), digest);
+  }
+
+  /**
+   * @param doc -- Document for a DatasetConfig
+   * @param digest -- MD5 digest of the DatasetConfig
+   * @return byte[] snapshot of doc
+   * @throws ConfigurationException for underlying IOExceptions
+   */
+  public static byte[] toBytes(Document doc, byte[] digest) throws ConfigurationException {
+    try {
+      Map strings = new HashMap();
+      ByteArrayOutputStream treeBytes = new ByteArrayOutputStream();
+      DataOutputStream tree = new DataOutputStream(treeBytes);
+      writeElement(doc.getRootElement(), tree, strings);
+      tree.flush();
+
+      ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(treeBytes.size() * 2);
+      DataOutputStream body = new DataOutputStream(bodyBytes);
+      String[] table = new String[strings.size()];
+      for (Iterator iter = strings.entrySet().iterator(); iter.hasNext();) {
+        Map.Entry entry = (Map.Entry) iter.next();
+        table[((Integer) entry.getValue()).intValue()] = (String) entry.getKey();
+      }
+      writeVarInt(body, table.length);
+      for (int i = 0; i < table.length; i++) {
+        byte[] utf8 = table[i].getBytes("UTF-8");
+        writeVarInt(body, utf8.length);
+        body.write(utf8);
+      }
+      treeBytes.writeTo(body);
+      body.flush();
+
+      if (digest == null)
+        digest = new byte[0];
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(bodyBytes.size() + 32);
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.write(MAGIC);
+      out.writeShort(VERSION);
+      out.writeShort(digest.length);
+      out.write(digest);
+      out.writeInt(bodyBytes.size());
+      bodyBytes.writeTo(out);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new ConfigurationException("Caught IOException writing DatasetConfig snapshot: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @param b -- snapshot
+   * @return byte[] digest of the DatasetConfig in the snapshot
+   * @throws ConfigurationException if b is not a snapshot of the current version
+   */
+  public static byte[] getDigest(byte[] b) throws ConfigurationException {
+    if (!isSnapshot(b))
+      throw new ConfigurationException("Not a version " + VERSION + " DatasetConfig snapshot");
+
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(b, MAGIC.length + 2, b.length));
+      byte[] digest = new byte[in.readUnsignedShort()];
+      in.readFully(digest);
+      return digest;
+    } catch (IOException e) {
+      throw new ConfigurationException("Truncated DatasetConfig snapshot: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Decodes the Document held in a snapshot.
+   * @param b -- snapshot
+   * @param digest -- digest the snapshot must have, or null to accept any
+   * @return Document for the DatasetConfig in the snapshot
+   * @throws ConfigurationException if b is not a current snapshot, or has a different digest, or is corrupt
+   */
+  public static Document toDocument(byte[] b, byte[] digest) throws ConfigurationException {
+    byte[] snapshotDigest = getDigest(b);
+    if (digest != null && !MessageDigest.isEqual(digest, snapshotDigest))
+      throw new ConfigurationException("DatasetConfig snapshot is for a different version of the DatasetConfig");
+
+    try {
+      int offset = MAGIC.length + 2 + 2 + snapshotDigest.length;
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(b, offset, b.length - offset));
+      int bodyLength = in.readInt();
+      if (bodyLength != b.length - offset - 4)
+        throw new ConfigurationException("DatasetConfig snapshot body is " + (b.length - offset - 4) + " bytes, expected " + bodyLength);
+
+      String[] table = new String[readVarInt(in)];
+      byte[] utf8 = new byte[256];
+      for (int i = 0; i < table.length; i++) {
+        int length = readVarInt(in);
+        if (length > utf8.length)
+          utf8 = new byte[length];
+        in.readFully(utf8, 0, length);
+        table[i] = new String(utf8, 0, length, "UTF-8");
+      }
+
+      JDOMFactory factory = new UncheckedJDOMFactory();
+      return factory.document(readElement(in, table, factory));
+    } catch (IOException e) {
+      throw new ConfigurationException("Corrupt DatasetConfig snapshot: " + e.getMessage(), e);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new ConfigurationException("Corrupt DatasetConfig snapshot, bad string index: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Loads a DatasetConfig from a snapshot.
+   * @param dscutils -- loads the decoded Document into dsv
+   * @param dsv -- DatasetConfig to load
+   * @param b -- snapshot
+   * @param digest -- digest the snapshot must have, or null to accept any
+   * @throws ConfigurationException if the snapshot cannot be used, see toDocument
+   */
+  public static void load(DatasetConfigXMLUtils dscutils, DatasetConfig dsv, byte[] b, byte[] digest)
+    throws ConfigurationException {
+    dscutils.loadDatasetConfigWithDocument(dsv, toDocument(b, digest));
+  }
+
+  private static void writeElement(Element element, DataOutputStream out, Map strings) throws IOException {
+    writeVarInt(out, index(element.getName(), strings));
+
+    List attributes = element.getAttributes();
+    writeVarInt(out, attributes.size());
+    for (int i = 0, n = attributes.size(); i < n; i++) {
+      Attribute attribute = (Attribute) attributes.get(i);
+      writeVarInt(out, index(attribute.getName(), strings));
+      writeVarInt(out, index(attribute.getValue(), strings));
+    }
+
+    // only text which is more than the whitespace between child elements
+    String text = element.getText();
+    writeVarInt(out, (text.trim().length() > 0) ? index(text, strings) + 1 : 0);
+
+    List children = element.getChildren();
+    writeVarInt(out, children.size());
+    for (int i = 0, n = children.size(); i < n; i++)
+      writeElement((Element) children.get(i), out, strings);
+  }
+
+  private static Element readElement(DataInputStream in, String[] table, JDOMFactory factory) throws IOException {
+    Element element = factory.element(table[readVarInt(in)]);
+
+    for (int i = 0, n = readVarInt(in); i < n; i++) {
+      String name = table[readVarInt(in)];
+      factory.setAttribute(element, factory.attribute(name, table[readVarInt(in)]));
+    }
+
+    int text = readVarInt(in);
+    if (text > 0)
+      factory.addContent(element, factory.text(table[text - 1]));
+
+    for (int i = 0, n = readVarInt(in); i < n; i++)
+      factory.addContent(element, readElement(in, table, factory));
+
+    return element;
+  }
+
+  private static int index(String s, Map strings) {
+    Integer index = (Integer) strings.get(s);
+    if (index == null) {
+      index = new Integer(strings.size());
+      strings.put(s, index);
+    }
+    return index.intValue();
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+    throw new IOException("Malformed length in DatasetConfig snapshot");
+  }
+}
@@ -0,0 +1,542 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.config;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Single file store for cached DatasetConfigs, shared by all DatasetConfigCache objects,
+ * and by all JVMs, using the same file.
+ * <p>
+ * The file is an append-only log of records after a 16 byte header (magic number and
+ * generation).  Each record is a put or a remove of one entry, keyed by (cache keys,
+ * dataset, internalName).  A put holds the entry's metadata, digest and compressed XML
+ * body; each record ends with a CRC32 of its contents, so a record torn by a crash is
+ * detected, and cut off by the next writer.  The index of entries is built with one
+ * sequential read of the file, and brought up to date by reading only what other JVMs
+ * have appended since.
+ * <p>
+ * Writers hold an exclusive FileLock on a companion .lock file, readers a shared one.
+ * Once the file holds more superseded records than live ones it is compacted: the live
+ * records are copied to a new file, with a new generation, which is renamed over the old.
+ * A reader seeing a new generation, or a shorter file, rebuilds its index.
+ * <p>
+ * Bodies are read with positional reads rather than a mapping, as a mapped file cannot be
+ * replaced on some platforms until the mapping is garbage collected.
+ */
+final class DatasetConfigStore {
+
+  /**
+   * A cached DatasetConfig.
+   */
+  static final class Entry {
+    final String keys;
+    final String dataset;
+    final String internalName;
+    final String[] metadata;
+    final byte[] digest;
+    private final long bodyOffset;
+    private final int bodyLength;
+    private final int recordLength;
+
+    private Entry(String keys, String dataset, String internalName, String[] metadata, byte[] digest,
+      long bodyOffset, int bodyLength, int recordLength) {
+      this.keys = keys;
+      this.dataset = dataset;
+      this.internalName = internalName;
+      this.metadata = metadata;
+      this.digest = digest;
+      this.bodyOffset = bodyOffset;
+      this.bodyLength = bodyLength;
+      this.recordLength = recordLength;
+    }
+  }
+
+  private static final Logger logger = Logger.getLogger(DatasetConfigStore.class.getName());
+
+  private static final byte[] MAGIC = { 'M', 'A', 'R', 'T', 'C', 'F', 'G', '1' };
+  private static final int HEADERLENGTH = 16;
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  // length, type and crc
+  private static final int RECORDOVERHEAD = 4 + 8;
+  // largest record accepted when scanning, anything bigger is taken as corruption
+  private static final int MAXRECORDLENGTH = 64 * 1024 * 1024;
+  // compact once superseded records exceed both this and the live records
+  private static final long COMPACTTHRESHOLD = 256 * 1024;
+
+  private static final Map stores = new HashMap();
+
+  /**
+   * @param file store file
+   * @return the store for file, shared within this JVM
+   */
+  static DatasetConfigStore forFile(File file) {
+    synchronized (stores) {
+      File key = file.getAbsoluteFile();
+      DatasetConfigStore store = (DatasetConfigStore) stores.get(key);
+      if (store == null) {
+        store = new DatasetConfigStore(key);
+        stores.put(key, store);
+      }
+      return store;
+    }
+  }
+
+  private final File file;
+  private final File lockFile;
+
+  // all below guarded by this
+  private final Map index = new HashMap();
+  private long generation = 0;
+  private long scanned = 0;
+  private long liveBytes = 0;
+
+  private DatasetConfigStore(File file) {
+    this.file = file;
+    this.lockFile = new File(file.getPath() + ".lock");
+  }
+
+  private static String indexKey(String keys, String dataset, String internalName) {
+    return keys + '\u0000' + dataset + '\u0000' + internalName;
+  }
+
+  /**
+   * @return Entry for keys, dataset and internalName, or null if none is stored
+   */
+  synchronized Entry get(String keys, String dataset, String internalName) throws IOException {
+    if (!file.exists())
+      return null;
+
+    FileLock lock = lock(true);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        refresh(raf, false);
+      } finally {
+        raf.close();
+      }
+    } finally {
+      release(lock);
+    }
+
+    return (Entry) index.get(indexKey(keys, dataset, internalName));
+  }
+
+  /**
+   * @return Entry[] all entries stored for keys, and dataset if it is not null
+   */
+  synchronized Entry[] list(String keys, String dataset) throws IOException {
+    List ret = new ArrayList();
+    if (file.exists()) {
+      FileLock lock = lock(true);
+      try {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+          refresh(raf, false);
+        } finally {
+          raf.close();
+        }
+      } finally {
+        release(lock);
+      }
+
+      for (Iterator iter = index.values().iterator(); iter.hasNext();) {
+        Entry entry = (Entry) iter.next();
+        if (entry.keys.equals(keys) && (dataset == null || entry.dataset.equals(dataset)))
+          ret.add(entry);
+      }
+    }
+
+    Entry[] entries = new Entry[ret.size()];
+    ret.toArray(entries);
+    return entries;
+  }
+
+  /**
+   * @return the compressed body stored for keys, dataset and internalName, or null if none is stored
+   */
+  synchronized byte[] getBody(String keys, String dataset, String internalName) throws IOException {
+    if (!file.exists())
+      return null;
+
+    FileLock lock = lock(true);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        refresh(raf, false);
+        Entry entry = (Entry) index.get(indexKey(keys, dataset, internalName));
+        if (entry == null)
+          return null;
+
+        byte[] body = new byte[entry.bodyLength];
+        readFully(raf.getChannel(), ByteBuffer.wrap(body), entry.bodyOffset);
+        return body;
+      } finally {
+        raf.close();
+      }
+    } finally {
+      release(lock);
+    }
+  }
+
+  /**
+   * Stores an entry, replacing any stored for the same keys, dataset and internalName.
+   */
+  synchronized void put(String keys, String dataset, String internalName, String[] metadata, byte[] digest, byte[] body)
+    throws IOException {
+    file.getParentFile().mkdirs();
+
+    FileLock lock = lock(false);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        refresh(raf, true);
+        append(raf, new byte[][] { putRecord(keys, dataset, internalName, metadata, digest, body)});
+        compactIfNeeded(raf);
+      } finally {
+        raf.close();
+      }
+    } finally {
+      release(lock);
+    }
+  }
+
+  /**
+   * Removes the given entries, if they are still stored.
+   */
+  synchronized void remove(Entry[] entries) throws IOException {
+    if (entries.length == 0 || !file.exists())
+      return;
+
+    FileLock lock = lock(false);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        refresh(raf, true);
+
+        List records = new ArrayList();
+        for (int i = 0; i < entries.length; i++) {
+          Entry entry = entries[i];
+          if (index.containsKey(indexKey(entry.keys, entry.dataset, entry.internalName)))
+            records.add(removeRecord(entry.keys, entry.dataset, entry.internalName));
+        }
+
+        if (records.size() > 0) {
+          append(raf, (byte[][]) records.toArray(new byte[records.size()][]));
+          compactIfNeeded(raf);
+        }
+      } finally {
+        raf.close();
+      }
+    } finally {
+      release(lock);
+    }
+  }
+
+  private FileLock lock(boolean shared) throws IOException {
+    lockFile.getParentFile().mkdirs();
+    RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
+    try {
+      return raf.getChannel().lock(0, Long.MAX_VALUE, shared);
+    } catch (IOException e) {
+      raf.close();
+      throw e;
+    }
+  }
+
+  private void release(FileLock lock) throws IOException {
+    try {
+      lock.release();
+    } finally {
+      lock.channel().close();
+    }
+  }
+
+  /**
+   * Brings the index up to date with the file.  If forWrite, also writes the header of
+   * a new file, and cuts off any torn record at the end of the file.
+   */
+  private void refresh(RandomAccessFile raf, boolean forWrite) throws IOException {
+    long length = raf.length();
+
+    if (length < HEADERLENGTH) {
+      reset(0);
+      if (forWrite) {
+        generation = System.currentTimeMillis();
+        raf.setLength(0);
+        raf.write(header(generation));
+        scanned = HEADERLENGTH;
+      }
+      return;
+    }
+
+    byte[] header = new byte[HEADERLENGTH];
+    raf.seek(0);
+    raf.readFully(header);
+    for (int i = 0; i < MAGIC.length; i++)
+      if (header[i] != MAGIC[i])
+        throw new IOException(file + " is not a DatasetConfig cache store");
+
+    long fileGeneration = new DataInputStream(new ByteArrayInputStream(header, MAGIC.length, 8)).readLong();
+    if (fileGeneration != generation || length < scanned) {
+      // new or compacted file, index it from the start
+      if (logger.isLoggable(Level.FINE) && generation != 0)
+        logger.fine("DatasetConfig cache store " + file + " was replaced, reindexing");
+      reset(fileGeneration);
+    }
+
+    if (length > scanned)
+      scan(length);
+
+    if (forWrite && length > scanned) {
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning("Discarding " + (length - scanned) + " bytes of incomplete record from " + file);
+      raf.setLength(scanned);
+    }
+  }
+
+  private void reset(long newGeneration) {
+    index.clear();
+    generation = newGeneration;
+    scanned = HEADERLENGTH;
+    liveBytes = 0;
+  }
+
+  /**
+   * Reads records from scanned up to length in one sequential pass, stopping at the first
+   * incomplete or corrupt record.
+   */
+  private void scan(long length) throws IOException {
+    FileInputStream fin = new FileInputStream(file);
+    try {
+      fin.getChannel().position(scanned);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(fin, 64 * 1024));
+      CRC32 crc = new CRC32();
+
+      while (scanned + RECORDOVERHEAD <= length) {
+        int recordLength = in.readInt();
+        if (recordLength <= 0 || recordLength > MAXRECORDLENGTH || scanned + RECORDOVERHEAD + recordLength > length)
+          break;
+
+        byte[] record = new byte[recordLength];
+        in.readFully(record);
+        long checksum = in.readLong();
+
+        crc.reset();
+        crc.update(record);
+        if (crc.getValue() != checksum)
+          break;
+
+        apply(record, scanned);
+        scanned += RECORDOVERHEAD + recordLength;
+      }
+    } catch (EOFException e) {
+      // file shorter than its length said, the next writer cuts off the torn record
+    } finally {
+      fin.close();
+    }
+  }
+
+  /**
+   * Applies a record, found at offset in the file, to the index.
+   */
+  private void apply(byte[] record, long offset) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    byte type = in.readByte();
+    String keys = in.readUTF();
+    String dataset = in.readUTF();
+    String internalName = in.readUTF();
+    String key = indexKey(keys, dataset, internalName);
+
+    Entry old = (Entry) index.remove(key);
+    if (old != null)
+      liveBytes -= old.recordLength;
+
+    if (type == PUT) {
+      String[] metadata = new String[in.readInt()];
+      for (int i = 0; i < metadata.length; i++)
+        metadata[i] = in.readBoolean() ? in.readUTF() : null;
+
+      byte[] digest = new byte[in.readInt()];
+      in.readFully(digest);
+
+      int bodyLength = in.readInt();
+      long bodyOffset = offset + 4 + (record.length - bodyLength);
+      int recordLength = RECORDOVERHEAD + record.length;
+
+      index.put(key, new Entry(keys, dataset, internalName, metadata, digest, bodyOffset, bodyLength, recordLength));
+      liveBytes += recordLength;
+    }
+  }
+
+  private void append(RandomAccessFile raf, byte[][] records) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    CRC32 crc = new CRC32();
+    for (int i = 0; i < records.length; i++) {
+      crc.reset();
+      crc.update(records[i]);
+      out.writeInt(records[i].length);
+      out.write(records[i]);
+      out.writeLong(crc.getValue());
+    }
+    out.flush();
+
+    FileChannel channel = raf.getChannel();
+    channel.write(ByteBuffer.wrap(bytes.toByteArray()), scanned);
+    channel.force(false);
+
+    long offset = scanned;
+    for (int i = 0; i < records.length; i++) {
+      apply(records[i], offset);
+      offset += RECORDOVERHEAD + records[i].length;
+    }
+    scanned = offset;
+  }
+
+  /**
+   * Rewrites the file without dead records once they take up more than half of it.
+   * Closes raf before replacing the file, as an open file can not be renamed over or
+   * deleted on Windows, so raf must not be used after this is called.
+   */
+  private void compactIfNeeded(RandomAccessFile raf) throws IOException {
+    long dead = scanned - HEADERLENGTH - liveBytes;
+    if (dead < COMPACTTHRESHOLD || dead < liveBytes)
+      return;
+
+    long newGeneration = Math.max(System.currentTimeMillis(), generation + 1);
+    File tmp = new File(file.getPath() + ".tmp");
+    RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+    List entries = new ArrayList(index.values());
+    List records = new ArrayList();
+    try {
+      out.setLength(0);
+      out.write(header(newGeneration));
+
+      FileChannel channel = raf.getChannel();
+      for (Iterator iter = entries.iterator(); iter.hasNext();) {
+        Entry entry = (Entry) iter.next();
+        byte[] body = new byte[entry.bodyLength];
+        readFully(channel, ByteBuffer.wrap(body), entry.bodyOffset);
+        records.add(putRecord(entry.keys, entry.dataset, entry.internalName, entry.metadata, entry.digest, body));
+      }
+
+      reset(newGeneration);
+      append(out, (byte[][]) records.toArray(new byte[records.size()][]));
+    } finally {
+      out.close();
+    }
+
+    raf.close();
+    if (!tmp.renameTo(file)) {
+      // platforms which will not rename over an existing file
+      file.delete();
+      if (!tmp.renameTo(file))
+        throw new IOException("Could not replace " + file + " with compacted " + tmp);
+    }
+
+    if (logger.isLoggable(Level.FINE))
+      logger.fine("Compacted DatasetConfig cache store " + file + " from " + (dead + liveBytes) + " to " + liveBytes + " bytes");
+  }
+
+  private static byte[] header(long generation) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADERLENGTH);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.write(MAGIC);
+    out.writeLong(generation);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] putRecord(String keys, String dataset, String internalName, String[] metadata, byte[] digest, byte[] body)
+    throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 512);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(PUT);
+    out.writeUTF(keys);
+    out.writeUTF(dataset);
+    out.writeUTF(internalName);
+    out.writeInt(metadata.length);
+    for (int i = 0; i < metadata.length; i++) {
+      out.writeBoolean(metadata[i] != null);
+      if (metadata[i] != null)
+        out.writeUTF(metadata[i]);
+    }
+    if (digest == null)
+      digest = new byte[0];
+    out.writeInt(digest.length);
+    out.write(digest);
+    // the body must come last, its offset is worked out from the record length
+    out.writeInt(body.length);
+    out.write(body);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] removeRecord(String keys, String dataset, String internalName) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(REMOVE);
+    out.writeUTF(keys);
+    out.writeUTF(dataset);
+    out.writeUTF(internalName);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position + buffer.position());
+      if (n < 0)
+        throw new EOFException("DatasetConfig cache store ended before the end of a record");
+    }
+  }
+
+  public synchronized String toString() {
+    StringBuffer buf = new StringBuffer();
+    buf.append("[DatasetConfigStore");
+    buf.append(" file=").append(file);
+    buf.append(", entries=").append(index.size());
+    buf.append(", liveBytes=").append(liveBytes);
+    buf.append(", length=").append(scanned);
+    buf.append("]");
+    return buf.toString();
+  }
+}
@@ -0,0 +1,390 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Loads a DatasetConfig straight from the SAX events of its XML, without building a JDOM
+ * Document first.  Each element is turned into its configuration object as it starts, and
+ * added to the object of its enclosing element when it ends, so that, as with
+ * DatasetConfigXMLUtils.loadDatasetConfigWithDocument, objects are only added once they are
+ * complete.  Only the open elements are held, never the whole document.
+ * <p>
+ * Elements are attached where loadDatasetConfigWithDocument would find them: Option and
+ * PushAction elements to their parent element, all others to their nearest enclosing element
+ * of the owning type.  Hidden members are left out as they are there, taking their contents with them.
+ * <p>
+ * The parts of the DatasetConfig to load are given as a mask of the DatasetConfigXMLUtils
+ * LOAD constants; the elements of other parts are parsed past without creating any objects.
+ * With no parts, parsing stops after the attributes of the DatasetConfig element.
+ *
+ * @see DatasetConfigXMLUtils#loadDatasetConfigWithXMLStream(DatasetConfig, InputStream, int)
+ */
+class DatasetConfigStreamLoader extends DefaultHandler {
+
+  // element names
+  private static final String STARBASE = "MainTable";
+  private static final String PRIMARYKEY = "Key";
+  private static final String BATCHSIZE = "BatchSize";
+  private static final String IMPORTABLE = "Importable";
+  private static final String EXPORTABLE = "Exportable";
+  private static final String FILTERPAGE = "FilterPage";
+  private static final String FILTERGROUP = "FilterGroup";
+  private static final String FILTERCOLLECTION = "FilterCollection";
+  private static final String FILTERDESCRIPTION = "FilterDescription";
+  private static final String MAPFILTERDESCRIPTION = "MapFilterDescription";
+  private static final String ATTRIBUTEPAGE = "AttributePage";
+  private static final String ATTRIBUTEGROUP = "AttributeGroup";
+  private static final String ATTRIBUTECOLLECTION = "AttributeCollection";
+  private static final String ATTRIBUTEDESCRIPTION = "AttributeDescription";
+  private static final String ATTRIBUTELIST = "AttributeList";
+  private static final String SPECIFICOPTIONCONTENT = "SpecificOptionContent";
+  private static final String SPECIFICFILTERCONTENT = "SpecificFilterContent";
+  private static final String SPECIFICATTRIBUTECONTENT = "SpecificAttributeContent";
+  private static final String DYNAMICDATASET = "DynamicDataset";
+  private static final String OPTION = "Option";
+  private static final String PUSHACTION = "PushAction";
+
+  private static final String HIDDEN = "hidden";
+
+  private static final SAXParserFactory factory = SAXParserFactory.newInstance();
+
+  /**
+   * Thrown to stop parsing once everything asked for has been loaded.
+   */
+  private static class LoadComplete extends SAXException {
+    private static final long serialVersionUID = 1L;
+
+    LoadComplete() {
+      super("DatasetConfig loaded");
+    }
+  }
+
+  /**
+   * An open element, with the object it is being loaded into, or null if it is not loaded.
+   */
+  private static class Frame {
+    final String name;
+    final Object object;
+    final StringBuffer text;
+
+    Frame(String name, Object object, boolean keepText) {
+      this.name = name;
+      this.object = object;
+      this.text = (keepText) ? new StringBuffer() : null;
+    }
+  }
+
+  private final DatasetConfig dsv;
+  private final boolean includeHiddenMembers;
+  private final int parts;
+
+  private final ClasspathDTDEntityResolver resolver = new ClasspathDTDEntityResolver();
+  private final List stack = new ArrayList();
+  private final List filterDescriptions = new ArrayList();
+
+  /**
+   * @param dsv -- DatasetConfig to load
+   * @param includeHiddenMembers -- if false, hidden members are left out
+   * @param parts -- mask of DatasetConfigXMLUtils LOAD constants
+   */
+  DatasetConfigStreamLoader(DatasetConfig dsv, boolean includeHiddenMembers, int parts) {
+    this.dsv = dsv;
+    this.includeHiddenMembers = includeHiddenMembers;
+    this.parts = parts;
+  }
+
+  /**
+   * Parses xmlinput, loading the requested parts into the DatasetConfig.  Does not close xmlinput.
+   * @param xmlinput -- InputStream containing DatasetConfig.dtd compliant XML
+   * @throws ConfigurationException for all underlying Exceptions
+   */
+  void load(InputStream xmlinput) throws ConfigurationException {
+    try {
+      SAXParser parser;
+      synchronized (factory) {
+        parser = factory.newSAXParser();
+      }
+
+      try {
+        parser.parse(new InputSource(xmlinput), this);
+      } catch (LoadComplete e) {
+        // stopped early, everything requested is loaded
+      }
+    } catch (ParserConfigurationException e) {
+      throw new ConfigurationException(e);
+    } catch (SAXException e) {
+      Exception cause = e.getException();
+      if (cause instanceof ConfigurationException)
+        throw (ConfigurationException) cause;
+      throw new ConfigurationException(e);
+    } catch (IOException e) {
+      throw new ConfigurationException(e);
+    }
+
+    if ((parts & DatasetConfigXMLUtils.LOAD_FILTERPAGES) != 0) {
+      // as for loadDatasetConfigWithDocument, set the parents of the push action options
+      for (Iterator iter = filterDescriptions.iterator(); iter.hasNext();)
+        ((FilterDescription) iter.next()).setParentsForAllPushOptionOptions(dsv);
+    }
+  }
+
+  /**
+   * Gets the DTD from the Classpath where asked to, as getDocumentForXMLStream does.
+   */
+  public InputSource resolveEntity(String publicID, String systemID) throws SAXException {
+    try {
+      return resolver.resolveEntity(publicID, systemID);
+    } catch (IOException e) {
+      throw new SAXException(e);
+    }
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    if (stack.isEmpty()) {
+      loadAttributes(atts, dsv);
+      stack.add(new Frame(qName, dsv, false));
+      if (parts == 0)
+        throw new LoadComplete();
+      return;
+    }
+
+    Object object = null;
+    boolean keepText = false;
+    boolean hidden = Boolean.valueOf(atts.getValue(HIDDEN)).booleanValue();
+    boolean visible = includeHiddenMembers || !hidden;
+
+    if (qName.equals(OPTION)) {
+      Object parent = ((Frame) stack.get(stack.size() - 1)).object;
+      // options of the DatasetConfig itself are always left out when hidden
+      if (parent == dsv)
+        visible = !hidden && (parts & DatasetConfigXMLUtils.LOAD_OPTIONS) != 0;
+      else
+        visible = visible && (parent instanceof Option
+          || parent instanceof PushAction
+          || parent instanceof FilterDescription
+          || parent instanceof SpecificFilterContent
+          || parent instanceof SpecificOptionContent);
+      if (visible)
+        object = new Option();
+    } else if (qName.equals(PUSHACTION)) {
+      if (((Frame) stack.get(stack.size() - 1)).object instanceof Option)
+        object = new PushAction();
+    } else if (qName.equals(STARBASE) || qName.equals(PRIMARYKEY) || qName.equals(BATCHSIZE)) {
+      keepText = visible && (parts & DatasetConfigXMLUtils.LOAD_TABLES) != 0;
+    } else if (qName.equals(DYNAMICDATASET)) {
+      if (visible && (parts & DatasetConfigXMLUtils.LOAD_DYNAMICDATASETS) != 0)
+        object = new DynamicDataset();
+    } else if (qName.equals(IMPORTABLE)) {
+      if (visible && (parts & DatasetConfigXMLUtils.LOAD_LINKS) != 0)
+        object = new Importable();
+    } else if (qName.equals(EXPORTABLE)) {
+      if (visible && (parts & DatasetConfigXMLUtils.LOAD_LINKS) != 0)
+        object = new Exportable();
+    } else if (qName.equals(FILTERPAGE)) {
+      if (visible && (parts & DatasetConfigXMLUtils.LOAD_FILTERPAGES) != 0)
+        object = new FilterPage();
+    } else if (qName.equals(FILTERGROUP)) {
+      if (visible && enclosing(FILTERPAGE) != null)
+        object = new FilterGroup();
+    } else if (qName.equals(FILTERCOLLECTION)) {
+      if (visible && enclosing(FILTERGROUP) != null)
+        object = new FilterCollection();
+    } else if (qName.equals(FILTERDESCRIPTION) || qName.equals(MAPFILTERDESCRIPTION)) {
+      if (visible && enclosing(FILTERCOLLECTION) != null)
+        object = new FilterDescription();
+    } else if (qName.equals(SPECIFICFILTERCONTENT)) {
+      if (visible && enclosingFilterDescription() != null)
+        object = new SpecificFilterContent();
+    } else if (qName.equals(SPECIFICOPTIONCONTENT)) {
+      if (visible && enclosing(OPTION) != null)
+        object = new SpecificOptionContent();
+    } else if (qName.equals(ATTRIBUTEPAGE)) {
+      if (visible && (parts & DatasetConfigXMLUtils.LOAD_ATTRIBUTEPAGES) != 0)
+        object = new AttributePage();
+    } else if (qName.equals(ATTRIBUTEGROUP)) {
+      // attribute groups are loaded whether hidden or not
+      if (enclosing(ATTRIBUTEPAGE) != null)
+        object = new AttributeGroup();
+    } else if (qName.equals(ATTRIBUTECOLLECTION)) {
+      if (visible && enclosing(ATTRIBUTEGROUP) != null)
+        object = new AttributeCollection();
+    } else if (qName.equals(ATTRIBUTEDESCRIPTION)) {
+      if (visible && enclosing(ATTRIBUTECOLLECTION) != null)
+        object = new AttributeDescription();
+    } else if (qName.equals(ATTRIBUTELIST)) {
+      if (visible && enclosing(ATTRIBUTECOLLECTION) != null)
+        object = new AttributeList();
+    } else if (qName.equals(SPECIFICATTRIBUTECONTENT)) {
+      if (visible && enclosing(ATTRIBUTEDESCRIPTION) != null)
+        object = new SpecificAttributeContent();
+    }
+
+    if (object != null)
+      loadAttributes(atts, (BaseConfigurationObject) object);
+    stack.add(new Frame(qName, object, keepText));
+  }
+
+  public void characters(char[] ch, int start, int length) {
+    Frame frame = (Frame) stack.get(stack.size() - 1);
+    if (frame.text != null)
+      frame.text.append(ch, start, length);
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    Frame frame = (Frame) stack.remove(stack.size() - 1);
+    if (stack.isEmpty())
+      return;
+
+    try {
+      if (frame.text != null)
+        addText(frame);
+      else if (frame.object != null)
+        add(frame.object, ((Frame) stack.get(stack.size() - 1)).object);
+    } catch (ConfigurationException e) {
+      throw new SAXException(e);
+    }
+  }
+
+  private void addText(Frame frame) {
+    String text = normalize(frame.text);
+    if (frame.name.equals(STARBASE))
+      dsv.addMainTable(text);
+    else if (frame.name.equals(PRIMARYKEY))
+      dsv.addPrimaryKey(text);
+    else
+      dsv.addBatchSize(text);
+  }
+
+  private void add(Object object, Object parent) throws ConfigurationException {
+    if (object instanceof Option) {
+      Option o = (Option) object;
+      if (parent == dsv)
+        dsv.addOption(o);
+      else if (parent instanceof Option) {
+        o.setParent((Option) parent);
+        ((Option) parent).addOption(o);
+      } else if (parent instanceof PushAction)
+        ((PushAction) parent).addOption(o);
+      else if (parent instanceof FilterDescription) {
+        o.setParent((FilterDescription) parent);
+        ((FilterDescription) parent).addOption(o);
+      } else if (parent instanceof SpecificFilterContent) {
+        o.setParent(null);
+        ((SpecificFilterContent) parent).addOption(o);
+      } else if (parent instanceof SpecificOptionContent) {
+        o.setParent(null);
+        ((SpecificOptionContent) parent).addOption(o);
+      }
+    } else if (object instanceof PushAction)
+      ((Option) parent).addPushAction((PushAction) object);
+    else if (object instanceof DynamicDataset)
+      dsv.addDynamicDataset((DynamicDataset) object);
+    else if (object instanceof Importable)
+      dsv.addImportable((Importable) object);
+    else if (object instanceof Exportable)
+      dsv.addExportable((Exportable) object);
+    else if (object instanceof FilterPage)
+      dsv.addFilterPage((FilterPage) object);
+    else if (object instanceof FilterGroup)
+      ((FilterPage) enclosing(FILTERPAGE)).addFilterGroup((FilterGroup) object);
+    else if (object instanceof FilterCollection)
+      ((FilterGroup) enclosing(FILTERGROUP)).addFilterCollection((FilterCollection) object);
+    else if (object instanceof FilterDescription) {
+      ((FilterCollection) enclosing(FILTERCOLLECTION)).addFilterDescription((FilterDescription) object);
+      filterDescriptions.add(object);
+    } else if (object instanceof SpecificFilterContent)
+      enclosingFilterDescription().addSpecificFilterContent((SpecificFilterContent) object);
+    else if (object instanceof SpecificOptionContent)
+      ((Option) enclosing(OPTION)).addSpecificOptionContent((SpecificOptionContent) object);
+    else if (object instanceof AttributePage)
+      dsv.addAttributePage((AttributePage) object);
+    else if (object instanceof AttributeGroup)
+      ((AttributePage) enclosing(ATTRIBUTEPAGE)).addAttributeGroup((AttributeGroup) object);
+    else if (object instanceof AttributeCollection)
+      ((AttributeGroup) enclosing(ATTRIBUTEGROUP)).addAttributeCollection((AttributeCollection) object);
+    else if (object instanceof AttributeDescription)
+      ((AttributeCollection) enclosing(ATTRIBUTECOLLECTION)).addAttributeDescription((AttributeDescription) object);
+    else if (object instanceof AttributeList)
+      ((AttributeCollection) enclosing(ATTRIBUTECOLLECTION)).addAttributeList((AttributeList) object);
+    else if (object instanceof SpecificAttributeContent)
+      ((AttributeDescription) enclosing(ATTRIBUTEDESCRIPTION)).addSpecificAttributeContent((SpecificAttributeContent) object);
+  }
+
+  /**
+   * @return object of the nearest open element called name, null if there is none, or it is not loaded
+   */
+  private Object enclosing(String name) {
+    for (int i = stack.size() - 1; i >= 0; i--) {
+      Frame frame = (Frame) stack.get(i);
+      if (frame.name.equals(name))
+        return frame.object;
+    }
+    return null;
+  }
+
+  private FilterDescription enclosingFilterDescription() {
+    for (int i = stack.size() - 1; i >= 0; i--) {
+      Frame frame = (Frame) stack.get(i);
+      if (frame.name.equals(FILTERDESCRIPTION) || frame.name.equals(MAPFILTERDESCRIPTION))
+        return (FilterDescription) frame.object;
+    }
+    return null;
+  }
+
+  private void loadAttributes(Attributes atts, BaseConfigurationObject obj) {
+    for (int i = 0, n = atts.getLength(); i < n; i++)
+      obj.setAttribute(atts.getQName(i), atts.getValue(i));
+  }
+
+  /**
+   * Trims text and collapses each run of whitespace within it to a single space,
+   * as org.jdom.Element.getTextNormalize does.
+   */
+  private static String normalize(StringBuffer text) {
+    StringBuffer buf = new StringBuffer(text.length());
+    boolean space = false;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = text.charAt(i);
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+        space = buf.length() > 0;
+      else {
+        if (space)
+          buf.append(' ');
+        buf.append(c);
+        space = false;
+      }
+    }
+    return buf.toString();
+  }
+}
@@ -56,6 +56,22 @@ public class DatasetConfigXMLUtils {
   //this is the only digest algorithm we support
   public static String DEFAULTDIGESTALGORITHM = "MD5";
 
+  // parts of a DatasetConfig which loadDatasetConfigWithXMLStream can load, combined as a mask
+  /** Options of the DatasetConfig itself */
+  public static final int LOAD_OPTIONS = 1;
+  /** MainTables, Keys and BatchSizes */
+  public static final int LOAD_TABLES = 2;
+  /** DynamicDatasets */
+  public static final int LOAD_DYNAMICDATASETS = 4;
+  /** Importables and Exportables, which link the DatasetConfig to others */
+  public static final int LOAD_LINKS = 8;
+  /** FilterPages, with all of their contents */
+  public static final int LOAD_FILTERPAGES = 16;
+  /** AttributePages, with all of their contents */
+  public static final int LOAD_ATTRIBUTEPAGES = 32;
+  /** everything */
+  public static final int LOAD_ALL = 63;
+
   // element names
   private final String DATASETCONFIG = "DatasetConfig";
   private final String STARBASE = "MainTable";
@@ -145,7 +161,39 @@ public class DatasetConfigXMLUtils {
    * @see java.security.MessageDigest
    */
   public DatasetConfig getDatasetConfigForXMLStream(InputStream xmlinput, byte[] digest) throws ConfigurationException {
-    return getDatasetConfigForDocument(getDocumentForXMLStream(xmlinput), digest);
+    DatasetConfig d = new DatasetConfig();
+    new DatasetConfigStreamLoader(d, includeHiddenMembers, (loadFully) ? LOAD_ALL : 0).load(xmlinput);
+
+    if (digest != null)
+      d.setMessageDigest(digest);
+
+    return d;
+  }
+
+  /**
+   * Loads all of the information in the XML for a DatasetConfig into an existing DatasetConfig reference,
+   * as loadDatasetConfigWithDocument does, but straight from the XML, without building a JDOM Document.
+   * @param dsv -- DatasetConfig reference to be updated
+   * @param xmlinput -- InputStream containing DatasetConfig.dtd compliant XML for dsv, not closed
+   * @throws ConfigurationException for all underlying Exceptions
+   */
+  public void loadDatasetConfigWithXMLStream(DatasetConfig dsv, InputStream xmlinput) throws ConfigurationException {
+    loadDatasetConfigWithXMLStream(dsv, xmlinput, LOAD_ALL);
+  }
+
+  /**
+   * Loads only the given parts of the XML for a DatasetConfig into an existing DatasetConfig reference,
+   * straight from the XML.  Elements of other parts are parsed past, but no objects are created for them.
+   * Note that a DatasetConfig with FilterPages or AttributePages will not lazyLoad any parts left out.
+   * @param dsv -- DatasetConfig reference to be updated
+   * @param xmlinput -- InputStream containing DatasetConfig.dtd compliant XML for dsv, not closed
+   * @param parts -- mask of the LOAD constants of the parts to load, eg. LOAD_FILTERPAGES | LOAD_LINKS.
+   *                 If 0, only the attributes of the DatasetConfig are loaded, and the rest of the XML is not read.
+   * @throws ConfigurationException for all underlying Exceptions
+   */
+  public void loadDatasetConfigWithXMLStream(DatasetConfig dsv, InputStream xmlinput, int parts)
+    throws ConfigurationException {
+    new DatasetConfigStreamLoader(dsv, includeHiddenMembers, parts).load(xmlinput);
   }
 
   /**
@@ -0,0 +1,337 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.mart.lib.DetailedDataSource;
+
+/**
+ * Cache of the distinct non null values of table columns, read to make the Options of
+ * drop down filters and push actions.  Each entry is kept with the version of its table,
+ * see SchemaMetadata.getTableVersion, and is read again once the table has changed.
+ * <p>
+ * Lookups of the values of a column for each value of a second column, as push actions
+ * make, are read in one scan grouped by the second column, instead of one query per value.
+ * Reads of a single column may be given a limit, above which the values are not kept,
+ * and the number of values can be had without reading them.
+ *
+ * @see DatabaseDatasetConfigUtils
+ */
+public final class DistinctValueCache {
+
+  /**
+   * Distinct values of a column, with the matching values of a display column if one
+   * was given, in the order read.
+   */
+  public static final class Values {
+    public final String[] values;
+    public final String[] displays;
+
+    private Values(List values, List displays) {
+      this.values = (String[]) values.toArray(new String[values.size()]);
+      this.displays = (displays == null) ? null : (String[]) displays.toArray(new String[displays.size()]);
+    }
+  }
+
+  private static final class Entry {
+    final String version;
+    // null until read in full
+    Values values = null;
+    // grouped lookups, value of the grouping column to Values
+    Map groups = null;
+    // number of distinct values, -1 if not known
+    int count = -1;
+    // largest limit the values are known to be over, 0 if none
+    int over = 0;
+
+    Entry(String version) {
+      this.version = version;
+    }
+  }
+
+  private static final Logger logger = Logger.getLogger(DistinctValueCache.class.getName());
+
+  private static final Values NOVALUES = new Values(new ArrayList(), null);
+
+  private final DetailedDataSource dsource;
+
+  // guarded by this, least recently used first
+  private final Map entries;
+
+  /**
+   * @param dsource -- DataSource to read values from
+   * @param maxEntries -- number of columns, or grouped lookups, to keep the values of
+   */
+  public DistinctValueCache(DetailedDataSource dsource, final int maxEntries) {
+    this.dsource = dsource;
+    this.entries = new LinkedHashMap(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(Map.Entry eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @param version -- current version of the table
+   * @param schema -- schema of the table
+   * @param table -- table name
+   * @param column -- column to read the distinct values of
+   * @param colForDisplay -- column holding display names for the values, or null
+   * @param limit -- largest number of values wanted, 0 for all
+   * @return distinct values of column ordered by colForDisplay if given, otherwise by column,
+   *         or null if there are more than limit of them
+   * @throws SQLException if the values could not be read
+   */
+  public Values getValues(String version, String schema, String table, String column, String colForDisplay, int limit)
+    throws SQLException {
+    boolean display = colForDisplay != null && colForDisplay.length() > 0;
+    String key = schema + "." + table + "." + column + "|" + (display ? colForDisplay : "");
+    Entry entry = getEntry(key, version);
+    synchronized (entry) {
+      if (entry.values != null)
+        return entry.values;
+      if (limit > 0 && limit <= entry.over)
+        return null;
+      if (limit > 0 && entry.count > limit)
+        return null;
+
+      String sql =
+        "SELECT DISTINCT "
+          + column
+          + (display ? "," + colForDisplay : "")
+          + " FROM "
+          + schema
+          + "."
+          + table
+          + " WHERE "
+          + column
+          + " IS NOT NULL ORDER BY "
+          + (display ? colForDisplay : column);
+
+      List values = new ArrayList();
+      List displays = display ? new ArrayList() : null;
+      long start = System.currentTimeMillis();
+      Connection conn = null;
+      try {
+        conn = dsource.getConnection();
+        PreparedStatement ps = conn.prepareStatement(sql);
+        if (limit > 0)
+          ps.setMaxRows(limit + 1);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+          values.add(rs.getString(1));
+          if (display)
+            displays.add(rs.getString(2));
+        }
+        rs.close();
+        ps.close();
+      } finally {
+        DetailedDataSource.close(conn);
+      }
+
+      if (logger.isLoggable(Level.FINE))
+        logger.fine(
+          "Read " + values.size() + " values in " + (System.currentTimeMillis() - start) + " ms with " + sql + "\n");
+
+      if (limit > 0 && values.size() > limit) {
+        entry.over = Math.max(entry.over, limit);
+        return null;
+      }
+
+      entry.values = new Values(values, displays);
+      entry.count = values.size();
+      return entry.values;
+    }
+  }
+
+  /**
+   * @param version -- current version of the table
+   * @param schema -- schema of the table
+   * @param table -- table name
+   * @param column -- column to count the distinct values of
+   * @return number of distinct non null values of column, counted by the database unless
+   *         they have already been read
+   * @throws SQLException if the values could not be counted
+   */
+  public int getCount(String version, String schema, String table, String column) throws SQLException {
+    Entry entry = getEntry(schema + "." + table + "." + column + "|", version);
+    synchronized (entry) {
+      if (entry.count < 0) {
+        Connection conn = null;
+        try {
+          conn = dsource.getConnection();
+          PreparedStatement ps =
+            conn.prepareStatement(
+              "SELECT COUNT(DISTINCT " + column + ") FROM " + schema + "." + table + " WHERE " + column + " IS NOT NULL");
+          ResultSet rs = ps.executeQuery();
+          rs.next();
+          entry.count = rs.getInt(1);
+          rs.close();
+          ps.close();
+        } finally {
+          DetailedDataSource.close(conn);
+        }
+      }
+      return entry.count;
+    }
+  }
+
+  /**
+   * Distinct values of column in the rows where groupColumn equals groupValue.  The values for
+   * every value of groupColumn are read in one scan on first use, ordered by groupColumn then
+   * orderSQL.
+   *
+   * @param version -- current version of the table
+   * @param schema -- schema of the table
+   * @param table -- table name
+   * @param column -- column to read the distinct values of
+   * @param colForDisplay -- column holding display names for the values, or null
+   * @param groupColumn -- column to group the values by
+   * @param groupValue -- value of groupColumn to return the values for
+   * @param orderSQL -- ORDER BY clause for the values within each group, without the ORDER BY
+   * @return distinct values of column where groupColumn is groupValue, empty if none
+   * @throws SQLException if the values could not be read
+   */
+  public Values getGroupedValues(
+    String version,
+    String schema,
+    String table,
+    String column,
+    String colForDisplay,
+    String groupColumn,
+    String groupValue,
+    String orderSQL)
+    throws SQLException {
+    boolean display = colForDisplay != null && colForDisplay.length() > 0;
+    String key =
+      schema + "." + table + "." + column + "|" + (display ? colForDisplay : "") + "|" + groupColumn + "|" + orderSQL;
+    Entry entry = getEntry(key, version);
+    synchronized (entry) {
+      if (entry.groups == null) {
+        String sql =
+          "SELECT DISTINCT "
+            + groupColumn
+            + ","
+            + column
+            + (display ? "," + colForDisplay : "")
+            + " FROM "
+            + schema
+            + "."
+            + table
+            + " WHERE "
+            + groupColumn
+            + " IS NOT NULL AND "
+            + column
+            + " IS NOT NULL ORDER BY "
+            + groupColumn
+            + ","
+            + orderSQL;
+
+        // value of groupColumn to the lists of values and displays read for it.  Under a
+        // collation which is not binary, ORDER BY may interleave group values which compare
+        // equal, such as "A", "a", "A", so a group may be read in more than one run.
+        Map groupLists = new HashMap();
+        long start = System.currentTimeMillis();
+        int rows = 0;
+        Connection conn = null;
+        try {
+          conn = dsource.getConnection();
+          PreparedStatement ps = conn.prepareStatement(sql);
+          ResultSet rs = ps.executeQuery();
+          String lastGroup = null;
+          List[] lists = null;
+          while (rs.next()) {
+            String group = rs.getString(1);
+            if (!group.equals(lastGroup)) {
+              lists = (List[]) groupLists.get(group);
+              if (lists == null) {
+                lists = new List[] { new ArrayList(), display ? new ArrayList() : null };
+                groupLists.put(group, lists);
+              }
+              lastGroup = group;
+            }
+            lists[0].add(rs.getString(2));
+            if (display)
+              lists[1].add(rs.getString(3));
+            rows++;
+          }
+          rs.close();
+          ps.close();
+        } finally {
+          DetailedDataSource.close(conn);
+        }
+
+        Map groups = new HashMap();
+        for (Iterator iter = groupLists.entrySet().iterator(); iter.hasNext();) {
+          Map.Entry group = (Map.Entry) iter.next();
+          List[] lists = (List[]) group.getValue();
+          groups.put(group.getKey(), new Values(lists[0], lists[1]));
+        }
+
+        if (logger.isLoggable(Level.FINE))
+          logger.fine(
+            "Read "
+              + rows
+              + " values in "
+              + groups.size()
+              + " groups in "
+              + (System.currentTimeMillis() - start)
+              + " ms with "
+              + sql
+              + "\n");
+
+        entry.groups = groups;
+      }
+
+      Values values = (Values) entry.groups.get(groupValue);
+      return (values == null) ? NOVALUES : values;
+    }
+  }
+
+  /**
+   * Discards all values.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private synchronized Entry getEntry(String key, String version) {
+    Entry entry = (Entry) entries.get(key);
+    if (entry == null || !entry.version.equals(version)) {
+      entry = new Entry(version);
+      entries.put(key, entry);
+    }
+    return entry;
+  }
+}
@@ -106,6 +106,7 @@ public class FilterCollection extends BaseNamedConfigurationObject {
 	 * @param f a FilterDescription object
 	 */
 	public void addFilterDescription(FilterDescription f) {
+		modified();
 		filters.add(f);
 		filterNameMap.put(f.getInternalName(), f);
 	}
@@ -115,6 +116,7 @@ public class FilterCollection extends BaseNamedConfigurationObject {
    * @param f -- FilterDescription to remove.
    */
   public void removeFilterDescription(FilterDescription f) {
+    modified();
     filterNameMap.remove(f.getInternalName());
     filters.remove(f);
     // fix to stop containsFilterDescription breaking after a remove
@@ -129,6 +131,7 @@ public class FilterCollection extends BaseNamedConfigurationObject {
    * @param f -- FilterDescription to be inserted.
    */
   public void insertFilterDescription(int position, FilterDescription f) {
+    modified();
     filters.add(position, f);
     filterNameMap.put(f.getInternalName(), f);
   }
@@ -140,6 +143,7 @@ public class FilterCollection extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the FilterCollection does not contain a FilterDescription named by internalName.
    */
   public void insertFilterDescriptionBeforeFilterDescription(String internalName, FilterDescription f) throws ConfigurationException {
+    modified();
     if (!filterNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterCollection does not contain FilterDescription " + internalName + "\n");
     insertFilterDescription( filters.indexOf( filterNameMap.get(internalName) ), f );
@@ -152,6 +156,7 @@ public class FilterCollection extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the FilterCollection does not contain a FilterDescription named by internalName.
    */
   public void insertFilterDescriptionAfterFilterDescription(String internalName, FilterDescription f) throws ConfigurationException {
+    modified();
     if (!filterNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterCollection does not contain FilterDescription " + internalName + "\n");
     insertFilterDescription( filters.indexOf( filterNameMap.get(internalName) ) + 1, f );
@@ -165,6 +170,7 @@ public class FilterCollection extends BaseNamedConfigurationObject {
 	 * @param f an array of FilterDescription objects.
 	 */
 	public void addFilterDescriptions(FilterDescription[] f) {
+		modified();
 		for (int i = 0, n = f.length; i < n; i++) {
 			filters.add(f[i]);
 			filterNameMap.put(f[i].getInternalName(), f[i]);
@@ -90,8 +90,8 @@ public class FilterDescription extends QueryFilterSettings {
   	super(o);
 		
 		//need to remove some Option specific attributes
-		attributes.remove("ref");
-		attributes.remove("isSelectable");
+		removeAttributeValue("ref");
+		removeAttributeValue("isSelectable");
 		
 		Option[] os = o.getOptions();
 		for (int i = 0, n = os.length; i < n; i++) {
@@ -549,6 +549,7 @@ public class FilterDescription extends QueryFilterSettings {
 	 * @param o - an Option object
 	 */
 	public void addOption(Option o) {
+		modified();
 		uiOptions.add(o);
 		uiOptionNameMap.put(o.getInternalName(), o);
 		hasOptions = true;
@@ -559,6 +560,7 @@ public class FilterDescription extends QueryFilterSettings {
    * @param o -- Option to be removed
    */
   public void removeOption(Option o) {
+    modified();
     uiOptionNameMap.remove(o.getInternalName());
     uiOptions.remove(o);
     if (uiOptions.size() < 1)
@@ -569,6 +571,7 @@ public class FilterDescription extends QueryFilterSettings {
    * Remove Options from the FilterDescription.
    */
   public void removeOptions() {
+  	modified();
   	//uiOptionNameMap.clear();
   	//uiOptions.clear();
 	uiOptionNameMap = new Hashtable();
@@ -587,6 +590,7 @@ public class FilterDescription extends QueryFilterSettings {
    * @param o -- Option to be inserted.
    */
   public void insertOption(int position, Option o) {
+    modified();
     uiOptions.add(position, o);
     uiOptionNameMap.put(o.getInternalName(), o);
     hasOptions = true;
@@ -601,6 +605,7 @@ public class FilterDescription extends QueryFilterSettings {
    * @throws ConfigurationException when the FilterDescription does not contain an Option named by internalName.
    */
   public void insertOptionBeforeOption(String internalName, Option o) throws ConfigurationException {
+    modified();
     if (!uiOptionNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterDescription does not contain an Option " + internalName + "\n");
     insertOption( uiOptions.indexOf( uiOptionNameMap.get(internalName) ), o );
@@ -613,6 +618,7 @@ public class FilterDescription extends QueryFilterSettings {
    * @throws ConfigurationException when the FilterDescription does not contain an Option named by internalName.
    */
   public void insertOptionAfterOption(String internalName, Option o) throws ConfigurationException {
+    modified();
     if (!uiOptionNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterDescription does not contain an Option " + internalName + "\n");
     insertOption( uiOptions.indexOf( uiOptionNameMap.get(internalName) ) + 1, o );
@@ -624,6 +630,7 @@ public class FilterDescription extends QueryFilterSettings {
    * @param o - an array of Option objects
    */
   public void addOptions(Option[] o) {
+    modified();
     for (int i = 0, n = o.length; i < n; i++) {
       uiOptions.add(o[i]);
       uiOptionNameMap.put(o[i].getInternalName(), o[i]);
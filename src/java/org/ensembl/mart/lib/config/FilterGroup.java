@@ -91,6 +91,7 @@ public class FilterGroup extends BaseNamedConfigurationObject {
 	 * @param f a FilterCollection object
 	 */
 	public void addFilterCollection(FilterCollection f) {
+		modified();
 		filterCollections.add(f);
 		filterCollectionNameMap.put(f.getInternalName(), f);
 	}
@@ -100,6 +101,7 @@ public class FilterGroup extends BaseNamedConfigurationObject {
    * @param f -- FilterCollection to be removed.
    */
   public void removeFilterCollection(FilterCollection f) {
+    modified();
     filterCollectionNameMap.remove(f.getInternalName());
     filterCollections.remove(f);
   }
@@ -111,6 +113,7 @@ public class FilterGroup extends BaseNamedConfigurationObject {
    * @param f -- FilterCollection to insert.
    */
   public void insertFilterCollection(int position, FilterCollection f) {
+    modified();
     filterCollections.add(position, f);
     filterCollectionNameMap.put(f.getInternalName(), f);
   }
@@ -122,6 +125,7 @@ public class FilterGroup extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the FilterGroup does not contain a FilterCollection named by internalName.
    */
   public void insertFilterCollectionBeforeFilterCollection(String internalName, FilterCollection f) throws ConfigurationException {
+    modified();
     if (!filterCollectionNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterGroup does not contain a FilterCollection named by " + internalName +"\n");
     insertFilterCollection( filterCollections.indexOf( filterCollectionNameMap.get(internalName) ) , f);
@@ -134,6 +138,7 @@ public class FilterGroup extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the FilterGroup does not contain a FilterCollection named by internalName.
    */
   public void insertFilterCollectionAfterFilterCollection(String internalName, FilterCollection f) throws ConfigurationException {
+    modified();
     if (!filterCollectionNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterGroup does not contain a FilterCollection named by " + internalName +"\n");
     insertFilterCollection( filterCollections.indexOf( filterCollectionNameMap.get(internalName) ) + 1, f);
@@ -146,6 +151,7 @@ public class FilterGroup extends BaseNamedConfigurationObject {
 	 * @param f an Array of FilterCollection objects
 	 */
 	public void addFilterCollections(FilterCollection[] f) {
+		modified();
 		for (int i = 0, n = f.length; i < n; i++) {
 			filterCollections.add(f[i]);
 			filterCollectionNameMap.put(f[i].getInternalName(), f[i]);
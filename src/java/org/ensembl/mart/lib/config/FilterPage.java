@@ -98,6 +98,7 @@ public class FilterPage extends BaseNamedConfigurationObject {
 	 * @param fg a FilterGroup object.
 	 */
 	public void addFilterGroup(FilterGroup fg) {
+		modified();
 		filterGroups.add(fg);
 		filterGroupNameMap.put(fg.getInternalName(), fg);
 	}
@@ -107,6 +108,7 @@ public class FilterPage extends BaseNamedConfigurationObject {
    * @param fg -- FilterGroup to be removed.
    */
   public void removeFilterGroup(FilterGroup fg) {
+    modified();
     filterGroupNameMap.remove(fg.getInternalName());
     filterGroups.remove(fg);
   }
@@ -118,6 +120,7 @@ public class FilterPage extends BaseNamedConfigurationObject {
    * @param fg -- FilterGroup to insert
    */
   public void insertFilterGroup(int position, FilterGroup fg) {
+    modified();
     filterGroups.add(position, fg);
     filterGroupNameMap.put(fg.getInternalName(), fg);
   }
@@ -129,6 +132,7 @@ public class FilterPage extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the FilterPage does not contain a FilterGroup named by internalName.
    */
   public void insertFilterGroupBeforeFilterGroup(String internalName, FilterGroup fg) throws ConfigurationException {
+    modified();
     if (!filterGroupNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterPage does not contain FilterGroup " + internalName + "\n" );
     insertFilterGroup( filterGroups.indexOf( filterGroupNameMap.get(internalName) ), fg );
@@ -141,6 +145,7 @@ public class FilterPage extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when the FilterPage does not contain a FilterGroup named by internalName.
    */
   public void insertFilterGroupAfterFilterGroup(String internalName, FilterGroup fg) throws ConfigurationException {
+    modified();
     if (!filterGroupNameMap.containsKey(internalName))
       throw new ConfigurationException("FilterPage does not contain FilterGroup " + internalName + "\n" );
     insertFilterGroup( filterGroups.indexOf( filterGroupNameMap.get(internalName) ) + 1, fg );
@@ -154,6 +159,7 @@ public class FilterPage extends BaseNamedConfigurationObject {
 	 * @param fg An Array of FilterGroup objects.
 	 */
 	public void addFilterGroups(FilterGroup[] fg) {
+		modified();
 		for (int i = 0, n = fg.length; i < n; i++) {
 			filterGroups.add(fg[i]);
 			filterGroupNameMap.put(fg[i].getInternalName(), fg[i]);
@@ -0,0 +1,187 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.config;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the DSConfigAdaptors for the MartLocations of a MartRegistry concurrently.
+ * At most parallelism locations are loaded at once, each on its own daemon thread.
+ * A location which fails, or takes longer than the timeout, is skipped, so that one
+ * unreachable host does not hold up or break the rest of the registry.  A location
+ * which times out no longer counts against parallelism; its thread is abandoned, and
+ * its adaptor discarded if it is ever created.
+ * <p>
+ * Adaptors are returned by location index, so callers can add them in registry order.
+ *
+ * @see RegistryDSConfigAdaptor
+ */
+class LocationLoader {
+
+  /**
+   * Creates the adaptor for a single location.
+   */
+  interface AdaptorFactory {
+    /**
+     * @return adaptor for location, or null if location is not to be loaded
+     */
+    public DSConfigAdaptor createAdaptor(MartLocation location) throws ConfigurationException;
+  }
+
+  private static final Logger logger = Logger.getLogger(LocationLoader.class.getName());
+
+  private static final int PENDING = 0;
+  private static final int RUNNING = 1;
+  private static final int LOADED = 2;
+  private static final int FAILED = 3;
+  private static final int TIMEDOUT = 4;
+
+  private final MartLocation[] locations;
+  private final AdaptorFactory factory;
+  private final int parallelism;
+  private final long timeout;
+
+  // all below guarded by this
+  private final int[] states;
+  private final long[] deadlines;
+  private final DSConfigAdaptor[] adaptors;
+  private final Exception[] failures;
+  private int running = 0;
+  private int finished = 0;
+
+  /**
+   * @param locations locations to load
+   * @param factory creates the adaptor for each location
+   * @param parallelism maximum number of locations loaded at once
+   * @param timeout milliseconds a location may take to load, 0 for no limit
+   */
+  LocationLoader(MartLocation[] locations, AdaptorFactory factory, int parallelism, long timeout) {
+    this.locations = locations;
+    this.factory = factory;
+    this.parallelism = Math.max(1, parallelism);
+    this.timeout = timeout;
+    this.states = new int[locations.length];
+    this.deadlines = new long[locations.length];
+    this.adaptors = new DSConfigAdaptor[locations.length];
+    this.failures = new Exception[locations.length];
+  }
+
+  /**
+   * Loads all locations, returning when each has loaded, failed, or timed out.
+   * @throws ConfigurationException if interrupted while waiting for the locations
+   */
+  synchronized void load() throws ConfigurationException {
+    int next = 0;
+
+    while (finished < locations.length) {
+      while (running < parallelism && next < locations.length)
+        start(next++);
+
+      long now = System.currentTimeMillis();
+      long wait = 0;
+      for (int i = 0; i < next; i++) {
+        if (states[i] != RUNNING || timeout <= 0)
+          continue;
+
+        if (deadlines[i] <= now) {
+          states[i] = TIMEDOUT;
+          failures[i] = new ConfigurationException("Timed out after " + timeout + " ms loading " + describe(i));
+          running--;
+          finished++;
+          if (logger.isLoggable(Level.WARNING))
+            logger.warning(failures[i].getMessage() + ", skipping it");
+        } else if (wait == 0 || deadlines[i] - now < wait)
+          wait = deadlines[i] - now;
+      }
+
+      if (finished == locations.length || (running < parallelism && next < locations.length))
+        continue;
+
+      try {
+        wait(wait);
+      } catch (InterruptedException e) {
+        throw new ConfigurationException("Interrupted while loading MartRegistry locations", e);
+      }
+    }
+  }
+
+  private void start(final int index) {
+    states[index] = RUNNING;
+    deadlines[index] = System.currentTimeMillis() + timeout;
+    running++;
+
+    Thread loader = new Thread(new Runnable() {
+      public void run() {
+        DSConfigAdaptor adaptor = null;
+        Exception failure = null;
+        try {
+          adaptor = factory.createAdaptor(locations[index]);
+        } catch (Exception e) {
+          failure = e;
+        }
+        completed(index, adaptor, failure);
+      }
+    }, "MartLocationLoader-" + index);
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  private synchronized void completed(int index, DSConfigAdaptor adaptor, Exception failure) {
+    if (states[index] != RUNNING) {
+      if (logger.isLoggable(Level.FINE))
+        logger.fine("Discarding " + describe(index) + ", which finished after timing out");
+      return;
+    }
+
+    if (failure == null) {
+      states[index] = LOADED;
+      adaptors[index] = adaptor;
+    } else {
+      states[index] = FAILED;
+      failures[index] = failure;
+      if (logger.isLoggable(Level.WARNING))
+        logger.warning("Could not load " + describe(index) + ", skipping it: " + failure.getMessage());
+    }
+
+    running--;
+    finished++;
+    notifyAll();
+  }
+
+  private String describe(int index) {
+    MartLocation location = locations[index];
+    String name = location.getName();
+    return location.getType() + " location " + ((name != null) ? name : String.valueOf(index));
+  }
+
+  /**
+   * @return adaptor for each location, null where the location was not loaded
+   */
+  synchronized DSConfigAdaptor[] getAdaptors() {
+    return adaptors;
+  }
+
+  /**
+   * @return failure for each location, null where the location did not fail or time out
+   */
+  synchronized Exception[] getFailures() {
+    return failures;
+  }
+}
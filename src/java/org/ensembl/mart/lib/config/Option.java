@@ -234,6 +234,7 @@ public class Option extends QueryFilterSettings {
 	 * @param o - an Option object
 	 */
 	public void addOption(Option o) {
+		modified();
 		uiOptions.add(o);
 		uiOptionNameMap.put(o.getInternalName(), o);
 		hasOptions = true;
@@ -244,6 +245,7 @@ public class Option extends QueryFilterSettings {
 	 * @param o -- Option to be removed.
 	 */
 	public void removeOption(Option o) {
+		modified();
 		uiOptionNameMap.remove(o.getInternalName());
 		uiOptions.remove(o);
 
@@ -258,6 +260,7 @@ public class Option extends QueryFilterSettings {
 	 * @param o -- Option to insert.
 	 */
 	public void insertOption(int position, Option o) {
+		modified();
 		uiOptions.add(position, o);
 		uiOptionNameMap.put(o.getInternalName(), o);
 		hasOptions = true;
@@ -270,6 +273,7 @@ public class Option extends QueryFilterSettings {
 	 * @throws ConfigurationExction when the Option does not contain an Option named by internalName
 	 */
 	public void insertOptionBeforeOption(String internalName, Option o) throws ConfigurationException {
+		modified();
 		if (!uiOptionNameMap.containsKey(internalName))
 			throw new ConfigurationException("Option does not contain an Option " + internalName + "\n");
 		insertOption(uiOptions.indexOf(uiOptionNameMap.get(internalName)), o);
@@ -282,6 +286,7 @@ public class Option extends QueryFilterSettings {
 	 * @throws ConfigurationExction when the Option does not contain an Option named by internalName
 	 */
 	public void insertOptionAfterOption(String internalName, Option o) throws ConfigurationException {
+		modified();
 		if (!uiOptionNameMap.containsKey(internalName))
 			throw new ConfigurationException("Option does not contain an Option " + internalName + "\n");
 		insertOption(uiOptions.indexOf(uiOptionNameMap.get(internalName)) + 1, o);
@@ -293,6 +298,7 @@ public class Option extends QueryFilterSettings {
 	 * @param o - an array of Option objects
 	 */
 	public void addOptions(Option[] o) {
+		modified();
 		for (int i = 0, n = o.length; i < n; i++) {
 			uiOptions.add(o[i]);
 			uiOptionNameMap.put(o[i].getInternalName(), o[i]);
@@ -362,7 +368,7 @@ public class Option extends QueryFilterSettings {
 
 	public String getDisplayName(String refIname) {
 		if (uiOptionNameMap.containsKey(refIname))
-			return ((Option) uiOptionNameMap.get( attributes.getProperty(internalNameKey) )).getDisplayName(refIname);
+			return ((Option) uiOptionNameMap.get( getAttribute(internalNameKey) )).getDisplayName(refIname);
 		else {
 			if (pushActions.size() < 1)
 				return null;
@@ -379,7 +385,7 @@ public class Option extends QueryFilterSettings {
 
 	public String getDescription(String refIname) {
 		if (uiOptionNameMap.containsKey(refIname))
-			return ((Option) uiOptionNameMap.get( attributes.getProperty(internalNameKey) )).getDescription(refIname);
+			return ((Option) uiOptionNameMap.get( getAttribute(internalNameKey) )).getDescription(refIname);
 		else {
 			if (pushActions.size() < 1)
 				return null;
@@ -402,7 +408,7 @@ public class Option extends QueryFilterSettings {
 	 */
 	public String getField(String refIname) {
 		if (uiOptionNameMap.containsKey(refIname))
-			return ((Option) uiOptionNameMap.get( attributes.getProperty(internalNameKey) )).getField(refIname);
+			return ((Option) uiOptionNameMap.get( getAttribute(internalNameKey) )).getField(refIname);
 		else {
 			if (pushActions.size() < 1)
 				return null;
@@ -425,7 +431,7 @@ public class Option extends QueryFilterSettings {
 	 */
 	public String getTableConstraint(String refIname) {
 		if (uiOptionNameMap.containsKey(refIname))
-			return ((Option) uiOptionNameMap.get( attributes.getProperty(internalNameKey) )).getTableConstraint(refIname);
+			return ((Option) uiOptionNameMap.get( getAttribute(internalNameKey) )).getTableConstraint(refIname);
 		else {
 			if (pushActions.size() < 1)
 				return null;
@@ -448,7 +454,7 @@ public class Option extends QueryFilterSettings {
 	*/
 	public String getKey(String refIname) {
 			if (uiOptionNameMap.containsKey(refIname))
-				return ((Option) uiOptionNameMap.get( attributes.getProperty(internalNameKey) )).getKey(refIname);
+				return ((Option) uiOptionNameMap.get( getAttribute(internalNameKey) )).getKey(refIname);
 			else {
 				if (pushActions.size() < 1)
 					return null;
@@ -485,10 +491,10 @@ public class Option extends QueryFilterSettings {
 //
 //				if (option.getField() != null && option.getField().length() > 0 && option.getType() != null && option.getType().length() > 0) {
 //					//push option filter, should get superoption.subotion as name
-//					completer =  attributes.getProperty(internalNameKey)  + "." + option.getInternalName();
+//					completer =  getAttribute(internalNameKey)  + "." + option.getInternalName();
 //				} else if (option.getValue() != null && option.getValue().length() > 0) {
 //					//push option value, should get superoption.pushoptionref as name
-//					completer =  attributes.getProperty(internalNameKey)  + "." + element.getRef();
+//					completer =  getAttribute(internalNameKey)  + "." + element.getRef();
 //				} // else not needed
 //
 //				if (!(completer == null || names.contains(completer)))
@@ -527,6 +533,7 @@ public class Option extends QueryFilterSettings {
 	 * @param PushAction object to be added.
 	 */
 	public void addPushAction(PushAction optionPush) {
+		modified();
 		pushActions.add(optionPush);
 	}
 
@@ -537,6 +544,7 @@ public class Option extends QueryFilterSettings {
 	 * @param o -- PushAction to insert.
 	 */
 	public void insertPushAction(int position, PushAction o) {
+		modified();
 		pushActions.add(position, o);
 	}
 
@@ -545,6 +553,7 @@ public class Option extends QueryFilterSettings {
    * @param pushactions  Array of PushActions
    */
   public void addPushActions(PushAction[] pushactions) {
+    modified();
     pushActions.addAll(Arrays.asList(pushactions));
   }
   
@@ -553,6 +562,7 @@ public class Option extends QueryFilterSettings {
 	 * @param pa -- PushAction to be removed.
 	 */
 	public void removePushAction(PushAction pa) {
+		modified();
 		pushActions.remove(pa);
 	}
 
@@ -563,7 +573,7 @@ public class Option extends QueryFilterSettings {
 	 */
 	public String getLegalQualifiers(String refIname) {
 		if (uiOptionNameMap.containsKey(refIname))
-			return ((Option) uiOptionNameMap.get( attributes.getProperty(internalNameKey) )).getLegalQualifiers(refIname);
+			return ((Option) uiOptionNameMap.get( getAttribute(internalNameKey) )).getLegalQualifiers(refIname);
 		else {
 			if (pushActions.size() < 1)
 				return null;
@@ -586,7 +596,7 @@ public class Option extends QueryFilterSettings {
 	 */
 	public String getType(String refIname) {
 		if (uiOptionNameMap.containsKey(refIname))
-			return ((Option) uiOptionNameMap.get( attributes.getProperty(internalNameKey) )).getType(refIname);
+			return ((Option) uiOptionNameMap.get( getAttribute(internalNameKey) )).getType(refIname);
 		else {
 			if (pushActions.size() < 1)
 				return null;
@@ -670,12 +680,12 @@ public class Option extends QueryFilterSettings {
 		if (getAttribute(fieldKey) != null && getAttribute(fieldKey).equals(field) 
     && getAttribute(tableConstraintKey) != null && getAttribute(tableConstraintKey).equals(tableConstraint)
     &&  getAttribute(qualifier) != null &&  getAttribute(qualifier).equals(qualifier))
-			return  attributes.getProperty(internalNameKey) ;
+			return  getAttribute(internalNameKey) ;
 		else {
 			for (int i = 0, n = pushActions.size(); i < n; i++) {
 				PushAction element = (PushAction) pushActions.get(i);
 				if (element.supports(field, tableConstraint, qualifier)) {
-					return  attributes.getProperty(internalNameKey)  + "." + element.getOptionInternalNameByFieldNameTableConstraint(field, tableConstraint, qualifier);
+					return  getAttribute(internalNameKey)  + "." + element.getOptionInternalNameByFieldNameTableConstraint(field, tableConstraint, qualifier);
 				}
 			}
 		}
@@ -692,12 +702,12 @@ public class Option extends QueryFilterSettings {
    */
   public String getDisplayNameByFieldNameTableConstraint(String field, String tableConstraint, String qualifier) {
     if (getAttribute(fieldKey) != null && getAttribute(fieldKey).equals(field) && getAttribute(tableConstraintKey) != null && getAttribute(tableConstraintKey).equals(tableConstraint))
-      return  attributes.getProperty(displayNameKey) ;
+      return  getAttribute(displayNameKey) ;
     else {
       for (int i = 0, n = pushActions.size(); i < n; i++) {
         PushAction element = (PushAction) pushActions.get(i);
         if (element.supports(field, tableConstraint, qualifier)) {
-          return  attributes.getProperty(displayNameKey)  + "." + element.getOptionDisplayNameByFieldNameTableConstraint(field, tableConstraint, qualifier);
+          return  getAttribute(displayNameKey)  + "." + element.getOptionDisplayNameByFieldNameTableConstraint(field, tableConstraint, qualifier);
         }
       }
     }
@@ -120,6 +120,7 @@ public class PushAction extends BaseNamedConfigurationObject {
 	 * @param option an option that should be set on the target filter.
 	 */
 	public void addOption(Option option) {
+		modified();
 		options.add(option);
 	}
 
@@ -128,6 +129,7 @@ public class PushAction extends BaseNamedConfigurationObject {
    * @param option Option to remove
    */
   public void removeOption(Option option) {
+    modified();
     options.remove(option);
   }
   
@@ -138,6 +140,7 @@ public class PushAction extends BaseNamedConfigurationObject {
    * @param option -- option to insert
    */
   public void insertOption(int position, Option option) {
+    modified();
     options.add(position, option);
   }
   
@@ -148,6 +151,7 @@ public class PushAction extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when no Option with internalName exists.
    */
   public void insertOptionBeforeOption(String internalName, Option option) throws ConfigurationException {
+    modified();
     if(!containsOption(internalName))
       throw new ConfigurationException("PushAction does not contain Option named " + internalName + "\n");
     insertOption(options.indexOf(lastOption), option);
@@ -160,6 +164,7 @@ public class PushAction extends BaseNamedConfigurationObject {
    * @throws ConfigurationException when no Option with internalName exists.
    */
   public void insertOptionAfterOption(String internalName, Option option) throws ConfigurationException {
+    modified();
     if(!containsOption(internalName))
       throw new ConfigurationException("PushAction does not contain Option named " + internalName + "\n");
     insertOption(options.indexOf(lastOption) + 1, option);
@@ -170,6 +175,7 @@ public class PushAction extends BaseNamedConfigurationObject {
    * @param os -- Array of Option objects
    */
   public void addOptions(Option[] os) {
+    modified();
     options.addAll(Arrays.asList(os));
   }
   
@@ -21,7 +21,10 @@ package org.ensembl.mart.lib.config;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -42,6 +45,10 @@ public class RegistryDSConfigAdaptor extends CompositeDSConfigAdaptor {
 	private boolean ignoreCache = false;
 	private boolean includeHiddenMembers = false;
 	private boolean loadFully = false;
+	private List failedLocations = new ArrayList();
+
+	private static int loadParallelism = 8;
+	private static long locationTimeout = 120000;
 
 	/**
 	 * Constructs an empty RegistryDSConfigAdaptor.  A URL for
@@ -284,23 +291,100 @@ public class RegistryDSConfigAdaptor extends CompositeDSConfigAdaptor {
 	 * DatasetConfig specifications for the same Dataset from multiple adaptors which differ in their filters/attributes could be mis - handled.
 	 */
 	private void loadAdaptorsFromRegistry() throws ConfigurationException {
+		List locations = new ArrayList();
+
 		Object[] elements = martreg.getElementsInOrder();
 		for (int i = 0, n = elements.length; i < n; i++) {
             if (elements[i] instanceof MartLocation) {
-				addLocation( (MartLocation) elements[i]);
+				locations.add(elements[i]);
             } else {
                 //virtualSchema
                 virtualSchema schema = (virtualSchema) elements[i];
                 
-                MartLocation[] locs = schema.getMartLocations();
-                for (int j = 0, m = locs.length; j < m; j++) {
-                    addLocation(locs[j]);
-                }
+                locations.addAll(Arrays.asList(schema.getMartLocations()));
             }
         }
+
+		MartLocation[] locs = new MartLocation[locations.size()];
+		locations.toArray(locs);
+
+		LocationLoader loader = new LocationLoader(locs, new LocationLoader.AdaptorFactory() {
+			public DSConfigAdaptor createAdaptor(MartLocation location) throws ConfigurationException {
+				return RegistryDSConfigAdaptor.this.createAdaptor(location);
+			}
+		}, loadParallelism, locationTimeout);
+		loader.load();
+
+		// add in registry order, whatever order the locations finished loading in
+		DSConfigAdaptor[] loaded = loader.getAdaptors();
+		Exception[] failures = loader.getFailures();
+		Exception firstFailure = null;
+		int nLoaded = 0;
+		for (int i = 0; i < locs.length; i++) {
+			if (failures[i] != null) {
+				failedLocations.add(locs[i]);
+				if (firstFailure == null)
+					firstFailure = failures[i];
+			} else if (loaded[i] != null) {
+				add(loaded[i]);
+				if (loaded[i] instanceof RegistryDSConfigAdaptor)
+					martRegs.add(((RegistryDSConfigAdaptor) loaded[i]).martreg);
+				nLoaded++;
+			}
+		}
+
+		// a registry none of whose locations could be loaded is broken, rather than partly available
+		if (nLoaded == 0 && firstFailure != null) {
+			if (firstFailure instanceof ConfigurationException)
+				throw (ConfigurationException) firstFailure;
+			throw new ConfigurationException("Could not load any MartRegistry location: " + firstFailure.getMessage(), firstFailure);
+		}
+	}
+
+	/**
+	 * Returns the MartLocations of the underlying MartRegistry which could not be loaded,
+	 * because creating their adaptor failed or timed out.  These are skipped, leaving the
+	 * rest of the registry available.
+	 * @return MartLocation[] locations skipped, empty if all were loaded
+	 */
+	public MartLocation[] getFailedLocations() {
+		MartLocation[] ret = new MartLocation[failedLocations.size()];
+		failedLocations.toArray(ret);
+		return ret;
+	}
+
+	/**
+	 * Sets the number of MartRegistry locations loaded at once by RegistryDSConfigAdaptors
+	 * created after this call.
+	 * @param parallelism -- maximum number of locations to load concurrently, default 8
+	 */
+	public static void setLoadParallelism(int parallelism) {
+		loadParallelism = Math.max(1, parallelism);
+	}
+
+	public static int getLoadParallelism() {
+		return loadParallelism;
+	}
+
+	/**
+	 * Sets how long RegistryDSConfigAdaptors created after this call wait for any one
+	 * MartRegistry location to load before skipping it.
+	 * @param millis -- timeout in milliseconds, 0 to wait indefinitely; default 120000
+	 */
+	public static void setLocationTimeout(long millis) {
+		locationTimeout = Math.max(0, millis);
+	}
+
+	public static long getLocationTimeout() {
+		return locationTimeout;
 	}
 	
-	private void addLocation(MartLocation location) throws ConfigurationException {
+	/**
+	 * Creates the adaptor for a single MartLocation of the registry.  Called concurrently
+	 * for the locations of the registry by loadAdaptorsFromRegistry.
+	 * @return adaptor for location, or null if it is hidden and hidden members are not included
+	 */
+	private DSConfigAdaptor createAdaptor(MartLocation location) throws ConfigurationException {
 		if ( ( location.getType().equals(MartLocationBase.REGISTRYDB) )
 				  || (includeHiddenMembers)
 				  || (location.isVisible())
@@ -324,8 +408,7 @@ public class RegistryDSConfigAdaptor extends CompositeDSConfigAdaptor {
 
 						RegistryDSConfigAdaptor adaptor = new RegistryDSConfigAdaptor(subreg, url, ignoreCache, loadFully, includeHiddenMembers);
 						adaptor.setName(location.getName());
-						add(adaptor);
-						martRegs.add(subreg);
+						return adaptor;
 
 					} else if (location.getType().equals(MartLocationBase.REGISTRYDB)) {
 						//create underlying MartRegistry objects with this, check against martreg list before creating an adaptor for it (may point to the same martreg document)
@@ -334,14 +417,13 @@ public class RegistryDSConfigAdaptor extends CompositeDSConfigAdaptor {
 
 						RegistryDSConfigAdaptor adaptor = new RegistryDSConfigAdaptor(subreg, dsource, ignoreCache, loadFully, includeHiddenMembers);
 						adaptor.setName(location.getName());
-						add(adaptor);
-						martRegs.add(subreg);
+						return adaptor;
 					} else if (location.getType().equals(MartLocationBase.URL)) {					
 							if (((URLLocation) location).getUrl() != null){
 								URLDSConfigAdaptor adaptor =
 									new URLDSConfigAdaptor(((URLLocation) location).getUrl(), ignoreCache, includeHiddenMembers);
 								adaptor.setName(location.getName());
-								add(adaptor);
+								return adaptor;
 							}
 					} else if (location.getType().equals(MartLocationBase.DATABASE)) {
 						DatabaseLocation dbloc = (DatabaseLocation) location;
@@ -387,7 +469,7 @@ public class RegistryDSConfigAdaptor extends CompositeDSConfigAdaptor {
 						DatabaseDSConfigAdaptor adaptor =
 							new DatabaseDSConfigAdaptor(dsource, user, martUser, ignoreCache, loadFully, includeHiddenMembers, true);
 						adaptor.setName(location.getName());
-						add(adaptor);
+						return adaptor;
 
 					} else
 						throw new ConfigurationException(
@@ -395,8 +477,10 @@ public class RegistryDSConfigAdaptor extends CompositeDSConfigAdaptor {
 								+ location.getType()
 								+ " in MartRegistry Document\n");
 				}
+		return null;
 	}
 
+
 	//	/**
 	//	 * Adds adaptor.  
 	//	 * @param adaptor adaptor to be added. Do not add an ancestor CompositeDSConfigAdaptor
@@ -0,0 +1,321 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.config;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.mart.lib.DetailedDataSource;
+
+/**
+ * Snapshot of the tables and columns of one schema, taken with a single DatabaseMetaData
+ * getTables and a single getColumns scan, instead of a metadata call for each element being
+ * validated or generated.  Table and column patterns are matched as DatabaseMetaData matches
+ * them, '%' for any characters, '_' for any one character, case sensitively, and matches are
+ * returned in the order DatabaseMetaData returns them.  Tables are read with a null catalog,
+ * so that the tables of the schema are found whatever catalog they are in, where "" would
+ * only find tables without a catalog.  Also remembers which columns have been found to
+ * hold only nulls, and the version of each table whose values are cached.
+ * <p>
+ * The snapshot is taken on first use.  It is not refreshed: callers replace it once it
+ * is older than their time to live.
+ *
+ * @see DatabaseDatasetConfigUtils
+ */
+public final class SchemaMetadata {
+
+  /**
+   * A column, as described by DatabaseMetaData.getColumns.
+   */
+  public static final class Column {
+    public final String table;
+    public final String name;
+    public final int javaType;
+    public final String dbType;
+    public final int maxLength;
+
+    private Column(String table, String name, int javaType, String dbType, int maxLength) {
+      this.table = table;
+      this.name = name;
+      this.javaType = javaType;
+      this.dbType = dbType;
+      this.maxLength = maxLength;
+    }
+  }
+
+  private static final Logger logger = Logger.getLogger(SchemaMetadata.class.getName());
+
+  private static final Column[] NOCOLUMNS = new Column[0];
+
+  private final DetailedDataSource dsource;
+  private final String schema;
+  private final long created = System.currentTimeMillis();
+
+  // all below guarded by this
+  private boolean loaded = false;
+  private String[] tables = null;
+  private Map columns = null;
+  private final Map tablesForPattern = new HashMap();
+  private final Map allNull = new HashMap();
+  private final Map versions = new HashMap();
+
+  /**
+   * @param dsource -- DataSource to read the metadata from
+   * @param schema -- schema to take the snapshot of
+   */
+  public SchemaMetadata(DetailedDataSource dsource, String schema) {
+    this.dsource = dsource;
+    this.schema = schema;
+  }
+
+  /**
+   * @param ttl -- milliseconds a snapshot may be used for
+   * @return true if this snapshot is older than ttl
+   */
+  public boolean isExpired(long ttl) {
+    return System.currentTimeMillis() - created > ttl;
+  }
+
+  /**
+   * @param tablePattern -- table name pattern
+   * @return names of the tables matching tablePattern
+   * @throws SQLException if the snapshot could not be taken
+   */
+  public synchronized String[] getTables(String tablePattern) throws SQLException {
+    load();
+
+    String[] matches = (String[]) tablesForPattern.get(tablePattern);
+    if (matches == null) {
+      List l = new ArrayList();
+      for (int i = 0; i < tables.length; i++)
+        if (matches(tablePattern, tables[i]))
+          l.add(tables[i]);
+
+      matches = (String[]) l.toArray(new String[l.size()]);
+      tablesForPattern.put(tablePattern, matches);
+    }
+
+    return matches;
+  }
+
+  /**
+   * @param tablePattern -- table name pattern
+   * @param columnPattern -- column name pattern, null for all columns
+   * @return the columns matching columnPattern of the tables matching tablePattern
+   * @throws SQLException if the snapshot could not be taken
+   */
+  public synchronized Column[] getColumns(String tablePattern, String columnPattern) throws SQLException {
+    String[] matchingTables = getTables(tablePattern);
+
+    List l = new ArrayList();
+    for (int i = 0; i < matchingTables.length; i++) {
+      Column[] tableColumns = (Column[]) columns.get(matchingTables[i]);
+      for (int j = 0; tableColumns != null && j < tableColumns.length; j++)
+        if (columnPattern == null || matches(columnPattern, tableColumns[j].name))
+          l.add(tableColumns[j]);
+    }
+
+    return (Column[]) l.toArray(new Column[l.size()]);
+  }
+
+  /**
+   * @param table -- table name
+   * @param column -- column name
+   * @return Boolean.TRUE if column of table is known to hold only nulls, FALSE if it is known
+   *         not to, or null if it has not been checked
+   */
+  synchronized Boolean getAllNull(String table, String column) {
+    return (Boolean) allNull.get(table + "." + column);
+  }
+
+  /**
+   * Records whether column of table holds only nulls.
+   */
+  synchronized void setAllNull(String table, String column, boolean isAllNull) {
+    allNull.put(table + "." + column, Boolean.valueOf(isAllNull));
+  }
+
+  /**
+   * Something which changes when the contents of table change, for keying caches of values
+   * read from it.  On MySQL this is the row count and update time recorded in
+   * information_schema, elsewhere, or if those are not available, the row count.
+   * Read once per snapshot.
+   *
+   * @param table -- table name
+   * @return version of table
+   * @throws SQLException if the version could not be read
+   */
+  synchronized String getTableVersion(String table) throws SQLException {
+    String version = (String) versions.get(table);
+    if (version != null)
+      return version;
+
+    Connection conn = null;
+    try {
+      conn = dsource.getConnection();
+
+      if ("mysql".equals(dsource.getDatabaseType())) {
+        try {
+          PreparedStatement ps =
+            conn.prepareStatement(
+              "SELECT TABLE_ROWS, UPDATE_TIME FROM information_schema.TABLES WHERE TABLE_SCHEMA=? AND TABLE_NAME=?");
+          ps.setString(1, schema);
+          ps.setString(2, table);
+          ResultSet rs = ps.executeQuery();
+          if (rs.next() && rs.getString(2) != null)
+            version = rs.getString(1) + "/" + rs.getString(2);
+          rs.close();
+          ps.close();
+        } catch (SQLException e) {
+          // no information_schema before MySQL 5, count the rows instead
+          if (logger.isLoggable(Level.FINE))
+            logger.fine("Could not read information_schema for " + table + ": " + e.getMessage() + "\n");
+        }
+      }
+
+      if (version == null) {
+        PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM " + schema + "." + table);
+        ResultSet rs = ps.executeQuery();
+        rs.next();
+        version = rs.getString(1);
+        rs.close();
+        ps.close();
+      }
+    } finally {
+      DetailedDataSource.close(conn);
+    }
+
+    versions.put(table, version);
+    return version;
+  }
+
+  private void load() throws SQLException {
+    if (loaded)
+      return;
+
+    long start = System.currentTimeMillis();
+    List tableList = new ArrayList();
+    Map columnMap = new HashMap();
+
+    Connection conn = null;
+    try {
+      conn = dsource.getConnection();
+      DatabaseMetaData dmd = conn.getMetaData();
+
+      ResultSet rs = dmd.getTables(null, schema, "%", null);
+      while (rs.next())
+        tableList.add(rs.getString(3));
+      rs.close();
+
+      rs = dmd.getColumns(null, schema, "%", "%");
+      String lastTable = null;
+      List tableColumns = null;
+      while (rs.next()) {
+        String table = rs.getString(3);
+        if (!table.equals(lastTable)) {
+          tableColumns = (List) columnMap.get(table);
+          if (tableColumns == null) {
+            tableColumns = new ArrayList();
+            columnMap.put(table, tableColumns);
+          }
+          lastTable = table;
+        }
+        tableColumns.add(new Column(table, rs.getString(4), rs.getInt(5), rs.getString(6), rs.getInt(7)));
+      }
+      rs.close();
+    } finally {
+      DetailedDataSource.close(conn);
+    }
+
+    tables = (String[]) tableList.toArray(new String[tableList.size()]);
+    columns = new HashMap();
+    int nColumns = 0;
+    for (int i = 0; i < tables.length; i++) {
+      List tableColumns = (List) columnMap.get(tables[i]);
+      Column[] c = (tableColumns == null) ? NOCOLUMNS : (Column[]) tableColumns.toArray(new Column[tableColumns.size()]);
+      columns.put(tables[i], c);
+      nColumns += c.length;
+    }
+    loaded = true;
+
+    if (logger.isLoggable(Level.INFO))
+      logger.info(
+        "Read metadata for "
+          + tables.length
+          + " tables, "
+          + nColumns
+          + " columns of schema "
+          + schema
+          + " in "
+          + (System.currentTimeMillis() - start)
+          + " ms\n");
+  }
+
+  /**
+   * Matches s against a DatabaseMetaData search pattern, in which '%' matches any
+   * characters, '_' any one character, and '\' escapes the next character.
+   */
+  public static boolean matches(String pattern, String s) {
+    return matches(pattern, 0, s, 0);
+  }
+
+  private static boolean matches(String pattern, int p, String s, int i) {
+    int plen = pattern.length();
+    int slen = s.length();
+
+    while (p < plen) {
+      char c = pattern.charAt(p);
+      if (c == '%') {
+        // collapse runs of %, then try each remaining suffix of s
+        while (p < plen && pattern.charAt(p) == '%')
+          p++;
+        if (p == plen)
+          return true;
+        for (int j = i; j <= slen; j++)
+          if (matches(pattern, p, s, j))
+            return true;
+        return false;
+      }
+
+      if (i == slen)
+        return false;
+
+      if (c == '\\' && p + 1 < plen) {
+        p++;
+        if (pattern.charAt(p) != s.charAt(i))
+          return false;
+      } else if (c != '_' && c != s.charAt(i))
+        return false;
+
+      p++;
+      i++;
+    }
+
+    return i == slen;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.config;
+
+/**
+ * Told of the progress of DatabaseDatasetConfigUtils.updateConfigsToTemplate
+ * as each dataset using the template is finished.  Called from the worker
+ * threads, but never by two at once.
+ *
+ * @see DatabaseDatasetConfigUtils#updateConfigsToTemplate(String, String, String, DatasetConfig, int, TemplateUpdateListener)
+ */
+public interface TemplateUpdateListener {
+
+  /**
+   * @param dataset -- dataset finished
+   * @param done -- number of datasets finished so far, including this one
+   * @param total -- number of datasets using the template
+   * @param failure -- why the dataset could not be updated, or null if it was stored
+   */
+  public void datasetUpdated(String dataset, int done, int total, ConfigurationException failure);
+}
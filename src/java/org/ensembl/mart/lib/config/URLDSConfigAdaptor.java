@@ -20,6 +20,7 @@ package org.ensembl.mart.lib.config;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
@@ -148,7 +149,12 @@ public class URLDSConfigAdaptor extends LeafDSConfigAdaptor implements DSConfigA
    */
   public void lazyLoad(DatasetConfig dsv) throws ConfigurationException {
     try {
-      dscutils.loadDatasetConfigWithDocument( dsv, dscutils.getDocumentForXMLStream( InputSourceUtil.getStreamForURL( dsvurl ) ) );
+      InputStream xmlinput = InputSourceUtil.getStreamForURL(dsvurl);
+      try {
+        dscutils.loadDatasetConfigWithXMLStream(dsv, xmlinput);
+      } finally {
+        xmlinput.close();
+      }
     } catch (IOException e) {
       throw new ConfigurationException("Recieved IOException lazyLoading DatasetConfig: " + e.getMessage(), e);
     }
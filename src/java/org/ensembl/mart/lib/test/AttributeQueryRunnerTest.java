@@ -21,6 +21,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import junit.textui.TestRunner;
 
+import org.ensembl.mart.lib.AttributeQueryRunner;
 import org.ensembl.mart.lib.BasicFilter;
 import org.ensembl.mart.lib.BooleanFilter;
 import org.ensembl.mart.lib.FieldAttribute;
@@ -359,6 +360,99 @@ public class AttributeQueryRunnerTest extends Base {
     executeQuery(q, hardLimit);
   }
   
+  /**
+   * Test that the streaming, keyset and legacy batched execution modes
+   * return the same number of rows for a result set requiring batching
+   * @throws Exception
+   */
+  public void testExecutionModesAgree() throws Exception {
+    Query q = new Query(genequery);
+    q.addAttribute(new FieldAttribute("hgbaseid", "hsapiens_gene_ensembl__snp__dm", "transcript_id_key"));
+    q.addFilter(new BasicFilter("chr_name","main","gene_id_key", "=", "18"));
+
+    int batched = countLines(q, AttributeQueryRunner.BATCHED, NO_HARD_LIMIT);
+    assertTrue("No lines returned from query", batched > 0);
+    assertEquals("Streaming line count differs from batched\n", batched, countLines(q, AttributeQueryRunner.STREAMING, NO_HARD_LIMIT));
+    assertEquals("Keyset line count differs from batched\n", batched, countLines(q, AttributeQueryRunner.KEYSET, NO_HARD_LIMIT));
+
+    assertEquals("Streaming ignored hardLimit\n", SMALL_HARD_LIMIT, countLines(q, AttributeQueryRunner.STREAMING, SMALL_HARD_LIMIT));
+    assertEquals("Keyset ignored hardLimit\n", SMALL_HARD_LIMIT, countLines(q, AttributeQueryRunner.KEYSET, SMALL_HARD_LIMIT));
+  }
+
+  /**
+   * Test that a big list executed with parallel batches returns the same rows
+   * as sequential batches, and still honours the hardLimit
+   * @throws Exception
+   */
+  public void testParallelBigListBatches() throws Exception {
+    Query q = new Query(genequery);
+    q.addAttribute(new FieldAttribute("gene_stable_id","main","gene_id_key"));
+
+    //create a big resultset subquery and add it to main q
+    Query subq = new Query(genequery);
+    subq.addAttribute(new FieldAttribute("gene_stable_id","main","gene_id_key"));
+    subq.addFilter(new BooleanFilter("disease_gene_bool","main","gene_id_key", BooleanFilter.isNotNULL));
+    q.addFilter(new IDListFilter("gene_stable_id","main","gene_id_key", subq));
+
+    int sequential = countLines(q, AttributeQueryRunner.STREAMING, NO_HARD_LIMIT);
+    assertTrue("No lines returned from query", sequential > 0);
+
+    engine.setIDListTempTableThreshold(0);
+    engine.setIDListParallelism(4);
+    try {
+      assertEquals("Parallel ordered line count differs from sequential\n", sequential, countLines(q, AttributeQueryRunner.STREAMING, NO_HARD_LIMIT));
+      assertEquals("Parallel batches ignored hardLimit\n", SMALL_HARD_LIMIT, countLines(q, AttributeQueryRunner.STREAMING, SMALL_HARD_LIMIT));
+
+      engine.setIDListOrdered(false);
+      assertEquals("Parallel unordered line count differs from sequential\n", sequential, countLines(q, AttributeQueryRunner.STREAMING, NO_HARD_LIMIT));
+    } finally {
+      engine.setIDListParallelism(1);
+      engine.setIDListOrdered(true);
+      engine.setIDListTempTableThreshold(AttributeQueryRunner.DEFAULTTEMPTABLETHRESHOLD);
+    }
+  }
+
+  /**
+   * Test that joining a big list from a temporary table returns the same rows
+   * as executing it in batches
+   * @throws Exception
+   */
+  public void testBigListTempTable() throws Exception {
+    Query q = new Query(genequery);
+    q.addAttribute(new FieldAttribute("gene_stable_id","main","gene_id_key"));
+
+    //create a big resultset subquery and add it to main q
+    Query subq = new Query(genequery);
+    subq.addAttribute(new FieldAttribute("gene_stable_id","main","gene_id_key"));
+    subq.addFilter(new BooleanFilter("disease_gene_bool","main","gene_id_key", BooleanFilter.isNotNULL));
+    q.addFilter(new IDListFilter("gene_stable_id","main","gene_id_key", subq));
+
+    try {
+      engine.setIDListTempTableThreshold(0);
+      int batched = countLines(q, AttributeQueryRunner.STREAMING, NO_HARD_LIMIT);
+      assertTrue("No lines returned from query", batched > 0);
+
+      engine.setIDListTempTableThreshold(1);
+      assertEquals("Temporary table line count differs from batched\n", batched, countLines(q, AttributeQueryRunner.STREAMING, NO_HARD_LIMIT));
+      assertEquals("Temporary table ignored hardLimit\n", SMALL_HARD_LIMIT, countLines(q, AttributeQueryRunner.STREAMING, SMALL_HARD_LIMIT));
+    } finally {
+      engine.setIDListTempTableThreshold(AttributeQueryRunner.DEFAULTTEMPTABLETHRESHOLD);
+    }
+  }
+
+  private int countLines(Query q, int mode, int hardLimit) throws Exception {
+    StatOutputStream stats = new StatOutputStream();
+    engine.setAttributeExecutionMode(mode);
+    try {
+      engine.execute(q, new FormatSpec(FormatSpec.TABULATED), stats, hardLimit);
+    } finally {
+      engine.setAttributeExecutionMode(AttributeQueryRunner.BATCHED);
+    }
+    int lines = stats.getLineCount();
+    stats.close();
+    return lines;
+  }
+
   private void executeQuery(Query q, int hardLimit) throws Exception {
     StatOutputStream stats = new StatOutputStream();
     engine.execute(q, new FormatSpec(FormatSpec.TABULATED), stats, hardLimit);
@@ -0,0 +1,105 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ensembl.mart.lib.config.DatasetConfig;
+import org.ensembl.mart.lib.config.DatasetConfigXMLUtils;
+import org.jdom.Document;
+
+/**
+ * Measures the heap held by fully loaded DatasetConfig objects.  Fully loads the
+ * DatasetConfig documents under data/unitTests, including those referenced by the
+ * example registries there, the given number of times, keeping every copy reachable,
+ * and reports the growth of the used heap after garbage collection.
+ * <p>
+ * Run from the top of the distribution, with the distribution directory on the classpath
+ * so that the DTDs resolve:
+ * <pre>
+ *   java -cp .:build/classes:lib/... org.ensembl.mart.lib.test.ConfigHeapBenchmark [copies]
+ * </pre>
+ */
+public class ConfigHeapBenchmark {
+
+  private static final String[] CONFIGS = {
+    "data/unitTests/testDatasetConfig.xml",
+    "data/unitTests/testDatasetConfigMod.xml",
+    "data/unitTests/testDatasetConfigRegFile.xml",
+    "data/unitTests/testDatasetConfigRegReg.xml",
+    "data/unitTests/testDatasetConfigRegDB.xml"
+  };
+
+  public static void main(String[] args) throws Exception {
+    int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+
+    // warm up class loading and any static pools before taking the baseline
+    load(1);
+
+    long before = usedHeap();
+    long start = System.currentTimeMillis();
+    List held = load(copies);
+    long elapsed = System.currentTimeMillis() - start;
+    long after = usedHeap();
+
+    int nConfigs = held.size();
+    long bytes = after - before;
+    System.out.println("configs loaded   : " + nConfigs);
+    System.out.println("load time (ms)   : " + elapsed);
+    System.out.println("heap growth (KB) : " + bytes / 1024);
+    System.out.println("bytes per config : " + ((nConfigs > 0) ? bytes / nConfigs : 0));
+
+    // keep held reachable until after the measurement
+    if (held.size() < 0)
+      System.out.println(held);
+  }
+
+  private static List load(int copies) throws Exception {
+    List held = new ArrayList();
+    DatasetConfigXMLUtils utils = new DatasetConfigXMLUtils(true);
+
+    for (int c = 0; c < copies; c++) {
+      for (int i = 0; i < CONFIGS.length; i++) {
+        InputStream in = new FileInputStream(CONFIGS[i]);
+        try {
+          Document doc = utils.getDocumentForXMLStream(in);
+          DatasetConfig config = utils.getDatasetConfigForDocument(doc);
+          utils.loadDatasetConfigWithDocument(config, doc);
+          held.add(config);
+        } finally {
+          in.close();
+        }
+      }
+    }
+
+    return held;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
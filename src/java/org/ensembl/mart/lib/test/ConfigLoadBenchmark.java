@@ -0,0 +1,160 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import org.ensembl.mart.lib.config.DatasetConfig;
+import org.ensembl.mart.lib.config.DatasetConfigSnapshot;
+import org.ensembl.mart.lib.config.DatasetConfigXMLUtils;
+import org.jdom.Document;
+
+/**
+ * Compares the time taken to fully load DatasetConfig objects from their XML, through a
+ * JDOM Document and straight from the SAX events, with the time taken to load them from
+ * DatasetConfigSnapshots, as DatasetConfigCache does.
+ * Uses the DatasetConfig documents under data/unitTests, each loaded the given number
+ * of times from bytes held in memory, so that only decoding and loading are timed.
+ * Checks that the streamed XML and each snapshot load a DatasetConfig with the digest of the original.
+ * <p>
+ * Run from the top of the distribution, with the distribution directory on the classpath
+ * so that the DTDs resolve:
+ * <pre>
+ *   java -cp .:build/classes:lib/... org.ensembl.mart.lib.test.ConfigLoadBenchmark [iterations]
+ * </pre>
+ */
+public class ConfigLoadBenchmark {
+
+  private static final String[] CONFIGS = {
+    "data/unitTests/testDatasetConfig.xml",
+    "data/unitTests/testDatasetConfigMod.xml",
+    "data/unitTests/testDatasetConfigRegFile.xml",
+    "data/unitTests/testDatasetConfigRegReg.xml",
+    "data/unitTests/testDatasetConfigRegDB.xml"
+  };
+
+  public static void main(String[] args) throws Exception {
+    int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+    DatasetConfigXMLUtils utils = new DatasetConfigXMLUtils(true);
+
+    byte[][] xml = new byte[CONFIGS.length][];
+    byte[][] snapshots = new byte[CONFIGS.length][];
+    byte[][] digests = new byte[CONFIGS.length][];
+    long xmlBytes = 0;
+    long snapshotBytes = 0;
+
+    for (int i = 0; i < CONFIGS.length; i++) {
+      DatasetConfig config = loadXML(utils, readFile(CONFIGS[i]));
+      digests[i] = utils.getMessageDigestForDatasetConfig(config);
+      xml[i] = utils.getByteArrayForDatasetConfig(config);
+      snapshots[i] = DatasetConfigSnapshot.toBytes(utils, config, digests[i]);
+      xmlBytes += xml[i].length;
+      snapshotBytes += snapshots[i].length;
+
+      DatasetConfig copy = loadSnapshot(utils, snapshots[i], digests[i]);
+      if (!MessageDigest.isEqual(digests[i], utils.getMessageDigestForDatasetConfig(copy)))
+        throw new IllegalStateException("Snapshot of " + CONFIGS[i] + " does not load the same DatasetConfig");
+      copy = streamXML(utils, xml[i]);
+      if (!MessageDigest.isEqual(digests[i], utils.getMessageDigestForDatasetConfig(copy)))
+        throw new IllegalStateException("Streaming " + CONFIGS[i] + " does not load the same DatasetConfig");
+    }
+
+    // warm up all paths before timing them
+    run(utils, xml, snapshots, digests, Math.max(1, iterations / 10));
+
+    long[] times = run(utils, xml, snapshots, digests, iterations);
+    int loads = iterations * CONFIGS.length;
+
+    System.out.println("configs loaded          : " + loads + " each way");
+    System.out.println("xml size (bytes)        : " + xmlBytes);
+    System.out.println("snapshot size (bytes)   : " + snapshotBytes);
+    System.out.println("xml load time (ms)      : " + times[0]);
+    System.out.println("stream load time (ms)   : " + times[2]);
+    System.out.println("snapshot load time (ms) : " + times[1]);
+    System.out.println("us per config, xml      : " + times[0] * 1000 / loads);
+    System.out.println("us per config, stream   : " + times[2] * 1000 / loads);
+    System.out.println("us per config, snapshot : " + times[1] * 1000 / loads);
+  }
+
+  private static long[] run(
+    DatasetConfigXMLUtils utils,
+    byte[][] xml,
+    byte[][] snapshots,
+    byte[][] digests,
+    int iterations)
+    throws Exception {
+    long start = System.currentTimeMillis();
+    for (int n = 0; n < iterations; n++)
+      for (int i = 0; i < xml.length; i++)
+        loadXML(utils, xml[i]);
+    long xmlTime = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    for (int n = 0; n < iterations; n++)
+      for (int i = 0; i < snapshots.length; i++)
+        loadSnapshot(utils, snapshots[i], digests[i]);
+    long snapshotTime = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    for (int n = 0; n < iterations; n++)
+      for (int i = 0; i < xml.length; i++)
+        streamXML(utils, xml[i]);
+    long streamTime = System.currentTimeMillis() - start;
+
+    return new long[] { xmlTime, snapshotTime, streamTime };
+  }
+
+  private static DatasetConfig loadXML(DatasetConfigXMLUtils utils, byte[] xml) throws Exception {
+    Document doc = utils.getDocumentForXMLStream(new ByteArrayInputStream(xml));
+    DatasetConfig config = utils.getDatasetConfigForDocument(doc);
+    utils.loadDatasetConfigWithDocument(config, doc);
+    return config;
+  }
+
+  private static DatasetConfig streamXML(DatasetConfigXMLUtils utils, byte[] xml) throws Exception {
+    DatasetConfig config = new DatasetConfig();
+    utils.loadDatasetConfigWithXMLStream(config, new ByteArrayInputStream(xml));
+    return config;
+  }
+
+  private static DatasetConfig loadSnapshot(DatasetConfigXMLUtils utils, byte[] snapshot, byte[] digest)
+    throws Exception {
+    Document doc = DatasetConfigSnapshot.toDocument(snapshot, digest);
+    DatasetConfig config = utils.getDatasetConfigForDocument(doc);
+    utils.loadDatasetConfigWithDocument(config, doc);
+    return config;
+  }
+
+  private static byte[] readFile(String file) throws Exception {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      for (int n; (n = in.read(buf)) > 0;)
+        out.write(buf, 0, n);
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.ConnectionPool;
+import org.ensembl.mart.lib.DetailedDataSource;
+
+/**
+ * Tests ConnectionPool borrowing and returning connections, and reusing their
+ * statements through the StatementCache, including statements returned with a
+ * streaming result set still open.  Uses FakeJDBCDriver, so does not need a
+ * database connection.
+ */
+public class ConnectionPoolTest extends TestCase {
+
+  private static final String SQL = "select gene_stable_id from gene_main";
+  private static final String OTHERSQL = "select transcript_stable_id from transcript_main";
+
+  private ConnectionPool pool;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(ConnectionPoolTest.class);
+  }
+
+  public ConnectionPoolTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    Class.forName(FakeJDBCDriver.class.getName());
+    FakeJDBCDriver.reset();
+    pool =
+      new ConnectionPool(
+        FakeJDBCDriver.class.getName(),
+        FakeJDBCDriver.URLPREFIX + getName(),
+        "",
+        "",
+        DetailedDataSource.DEFAULTDATABASETYPE,
+        1);
+  }
+
+  protected void tearDown() throws Exception {
+    pool.close();
+  }
+
+  public void testConnectionAndStatementReused() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      Connection conn = pool.getConnection();
+      PreparedStatement ps = conn.prepareStatement(SQL);
+      ResultSet rs = ps.executeQuery();
+      while (rs.next());
+      rs.close();
+      ps.close();
+      conn.close();
+    }
+
+    assertEquals("Physical connection not reused", 1, FakeJDBCDriver.getConnectCount());
+    assertEquals("Statement not reused", 1, FakeJDBCDriver.getPrepareCount());
+    assertEquals(3, pool.getBorrowCount());
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  public void testStatementReturnedWithOpenStreamingResultSet() throws Exception {
+    Connection conn = pool.getConnection();
+    conn.setAutoCommit(false);
+
+    PreparedStatement ps = conn.prepareStatement(SQL);
+    ps.setFetchSize(Integer.MIN_VALUE);
+    ResultSet rs = ps.executeQuery();
+    assertTrue(rs.next());
+    ps.close();
+
+    assertTrue("Result set left open on returned statement", FakeJDBCDriver.isClosed(rs));
+
+    // the connection can run the same and other statements again
+    ps = conn.prepareStatement(SQL);
+    assertTrue(ps.executeQuery().next());
+    ps.close();
+    ps = conn.prepareStatement(OTHERSQL);
+    assertTrue(ps.executeQuery().next());
+    ps.close();
+
+    // and its transaction can be rolled back when it is returned
+    conn.close();
+    assertEquals("Connection discarded on return", 0, pool.getDestroyedCount());
+    assertEquals(1, pool.getIdleCount());
+    assertEquals(2, FakeJDBCDriver.getPrepareCount());
+  }
+
+  public void testStatementsLeftOpenClosedWithConnection() throws Exception {
+    Connection conn = pool.getConnection();
+    conn.setAutoCommit(false);
+
+    PreparedStatement ps = conn.prepareStatement(SQL);
+    ps.setFetchSize(Integer.MIN_VALUE);
+    ResultSet rs = ps.executeQuery();
+    assertTrue(rs.next());
+    conn.close();
+
+    assertTrue("Result set left open on returned connection", FakeJDBCDriver.isClosed(rs));
+    assertEquals("Connection discarded on return", 0, pool.getDestroyedCount());
+
+    try {
+      ps.executeQuery();
+      fail("Statement usable after its connection was returned");
+    } catch (SQLException e) {
+      // expected
+    }
+
+    conn = pool.getConnection();
+    ps = conn.prepareStatement(SQL);
+    assertTrue(ps.executeQuery().next());
+    conn.close();
+    assertEquals("Statement not reused", 1, FakeJDBCDriver.getPrepareCount());
+  }
+
+  public void testExhaustedPoolTimesOut() throws Exception {
+    pool.setMaxWaitMillis(50);
+    Connection conn = pool.getConnection();
+
+    try {
+      pool.getConnection();
+      fail("Borrowed more than maxSize connections");
+    } catch (SQLException e) {
+      // expected
+    }
+    assertEquals(1, pool.getTimeoutCount());
+
+    conn.close();
+    pool.getConnection().close();
+    assertEquals(1, FakeJDBCDriver.getConnectCount());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.test;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.DNAChunkCache;
+
+/**
+ * Tests the byte budget and least recently used eviction of DNAChunkCache.
+ * Does not need a database connection.
+ */
+public class DNAChunkCacheTest extends TestCase {
+
+  private static final String TABLE = "jdbc:mysql://localhost/test_mart.dna_chunks";
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(DNAChunkCacheTest.class);
+  }
+
+  public DNAChunkCacheTest(String name) {
+    super(name);
+  }
+
+  public void testHitsAndMisses() {
+    DNAChunkCache cache = new DNAChunkCache(1000);
+
+    assertNull(cache.get(TABLE, "1", 1));
+    cache.put(TABLE, "1", 1, new byte[100]);
+    assertNotNull(cache.get(TABLE, "1", 1));
+    assertNull("chunks from another table must not be shared", cache.get("other", "1", 1));
+
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  public void testByteBudgetEvictsLeastRecentlyUsed() {
+    DNAChunkCache cache = new DNAChunkCache(300);
+
+    cache.put(TABLE, "1", 1, new byte[100]);
+    cache.put(TABLE, "1", 101, new byte[100]);
+    cache.put(TABLE, "1", 201, new byte[100]);
+
+    // touch the first chunk, so the second is now least recently used
+    cache.get(TABLE, "1", 1);
+    cache.put(TABLE, "1", 301, new byte[100]);
+
+    assertEquals(300, cache.getBytes());
+    assertEquals(1, cache.getEvictions());
+    assertNotNull(cache.get(TABLE, "1", 1));
+    assertNull(cache.get(TABLE, "1", 101));
+  }
+
+  public void testDisabled() {
+    DNAChunkCache cache = new DNAChunkCache(0);
+
+    assertTrue("cache should be disabled", !cache.isEnabled());
+    cache.put(TABLE, "1", 1, new byte[10]);
+    assertEquals(0, cache.getChunkCount());
+  }
+}
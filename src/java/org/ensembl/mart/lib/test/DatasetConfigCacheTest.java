@@ -0,0 +1,186 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.config.DatasetConfig;
+import org.ensembl.mart.lib.config.ConfigurationException;
+import org.ensembl.mart.lib.config.DatasetConfigCache;
+import org.ensembl.mart.lib.config.DatasetConfigSnapshot;
+import org.ensembl.mart.lib.config.DatasetConfigXMLUtils;
+import org.ensembl.mart.lib.config.URLDSConfigAdaptor;
+
+/**
+ * Tests DatasetConfigCache, and the store file behind it, using
+ * data/unitTests/testDatasetConfig.xml and a temporary home directory.
+ * Does not need a database connection.
+ */
+public class DatasetConfigCacheTest extends TestCase {
+
+  private static final String CONFIGFILE = "data/unitTests/testDatasetConfig.xml";
+
+  private String userHome;
+  private File home;
+  private DatasetConfigXMLUtils dscutils;
+  private URLDSConfigAdaptor adaptor;
+  private DatasetConfig config;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(DatasetConfigCacheTest.class);
+  }
+
+  public DatasetConfigCacheTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    userHome = System.getProperty("user.home");
+    home = File.createTempFile("configcache", "");
+    home.delete();
+    home.mkdir();
+    System.setProperty("user.home", home.getPath());
+
+    dscutils = new DatasetConfigXMLUtils(true);
+    adaptor = new URLDSConfigAdaptor(new File(CONFIGFILE).toURI().toURL(), true, true);
+    config = (DatasetConfig) adaptor.getDatasetConfigs().next();
+    config.setMessageDigest(dscutils.getMessageDigestForDatasetConfig(config));
+  }
+
+  protected void tearDown() {
+    System.setProperty("user.home", userHome);
+    File dir = new File(home, ".martj_preferences");
+    File[] files = dir.listFiles();
+    for (int i = 0; files != null && i < files.length; i++)
+      files[i].delete();
+    dir.delete();
+    home.delete();
+  }
+
+  private DatasetConfigCache cache() {
+    return new DatasetConfigCache(adaptor, new String[] { "testhost__testmart", "test" }, dscutils);
+  }
+
+  private File storeFile() {
+    return new File(new File(home, ".martj_preferences"), "datasetconfig.cache");
+  }
+
+  public void testAddAndGet() throws Exception {
+    String dataset = config.getDataset();
+    String iname = config.getInternalName();
+    cache().addDatasetConfig(config);
+
+    DatasetConfigCache cache = cache();
+    assertTrue("config should be cached", cache.cacheExists(dataset, iname));
+    assertTrue("dataset should be cached", cache.cacheExists(dataset, null));
+    assertTrue("unknown config should not be cached", !cache.cacheExists(dataset, "nosuchconfig"));
+
+    DatasetConfig stub = cache.getDatasetConfig(dataset, iname, adaptor);
+    assertEquals(config.getDisplayName(), stub.getDisplayName());
+    assertTrue("digest not cached", MessageDigest.isEqual(config.getMessageDigest(), stub.getMessageDigest()));
+
+    DatasetConfig full = cache.getDatasetConfig(dataset, iname, null);
+    assertTrue(
+      "cached XML differs",
+      MessageDigest.isEqual(config.getMessageDigest(), dscutils.getMessageDigestForDatasetConfig(full)));
+
+    cache.removeDatasetConfig(dataset, iname);
+    assertTrue("config should be removed", !cache().cacheExists(dataset, iname));
+  }
+
+  public void testSnapshot() throws Exception {
+    byte[] snapshot = DatasetConfigSnapshot.toBytes(dscutils, config, config.getMessageDigest());
+    assertTrue("snapshot not recognised", DatasetConfigSnapshot.isSnapshot(snapshot));
+    assertTrue("XML taken for a snapshot", !DatasetConfigSnapshot.isSnapshot(dscutils.getByteArrayForDatasetConfig(config)));
+    assertTrue("snapshot digest", MessageDigest.isEqual(config.getMessageDigest(), DatasetConfigSnapshot.getDigest(snapshot)));
+
+    DatasetConfig copy = dscutils.getDatasetConfigForDocument(DatasetConfigSnapshot.toDocument(snapshot, null));
+    DatasetConfigSnapshot.load(dscutils, copy, snapshot, config.getMessageDigest());
+    assertTrue(
+      "snapshot loads a different DatasetConfig",
+      MessageDigest.isEqual(config.getMessageDigest(), dscutils.getMessageDigestForDatasetConfig(copy)));
+
+    try {
+      DatasetConfigSnapshot.toDocument(snapshot, new byte[] { 1, 2, 3 });
+      fail("snapshot with a different digest should not be read");
+    } catch (ConfigurationException e) {
+      // expected
+    }
+  }
+
+  public void testCacheUpToDate() throws Exception {
+    String dataset = config.getDataset();
+    String iname = config.getInternalName();
+    DatasetConfigCache cache = cache();
+    cache.addDatasetConfig(config);
+
+    boolean[] upToDate =
+      cache.cacheUpToDate(
+        new byte[][] { config.getMessageDigest(), config.getMessageDigest() },
+        new String[] { dataset, dataset },
+        new String[] { iname, "nosuchconfig" });
+    assertTrue("cache should be up to date", upToDate[0]);
+    assertTrue("missing config should not be up to date", !upToDate[1]);
+
+    assertTrue("stale cache should be reported", !cache.cacheUpToDate(new byte[] { 1, 2, 3 }, dataset, iname));
+    assertTrue("stale cache should be removed", !cache.cacheExists(dataset, iname));
+  }
+
+  public void testTornRecordIgnored() throws Exception {
+    String dataset = config.getDataset();
+    String iname = config.getInternalName();
+    cache().addDatasetConfig(config);
+    long length = storeFile().length();
+
+    // as left by a writer which died part way through a record
+    FileOutputStream out = new FileOutputStream(storeFile(), true);
+    out.write(new byte[] { 0, 0, 1, 0, 1, 2, 3 });
+    out.close();
+
+    DatasetConfigCache cache = cache();
+    assertTrue("config before torn record should be readable", cache.cacheExists(dataset, iname));
+    cache.addDatasetConfig(config);
+    assertTrue("torn record should be cut off", storeFile().length() < 2 * length);
+    assertTrue("config should still be readable", cache.getDatasetConfig(dataset, iname, null) != null);
+  }
+
+  public void testCompaction() throws Exception {
+    DatasetConfigCache cache = cache();
+    cache.addDatasetConfig(config);
+    long length = storeFile().length();
+
+    for (int i = 0; i < 1000 && storeFile().length() < 4 * 256 * 1024; i++)
+      cache.addDatasetConfig(config);
+
+    assertTrue("superseded records should be compacted away", storeFile().length() < 2 * 256 * 1024 + length);
+    assertTrue("config should survive compaction", cache.getDatasetConfig(config.getDataset(), config.getInternalName(), null) != null);
+  }
+}
@@ -0,0 +1,145 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.config.AttributeCollection;
+import org.ensembl.mart.lib.config.AttributeDescription;
+import org.ensembl.mart.lib.config.AttributeGroup;
+import org.ensembl.mart.lib.config.AttributePage;
+import org.ensembl.mart.lib.config.DatasetConfig;
+import org.ensembl.mart.lib.config.FilterCollection;
+import org.ensembl.mart.lib.config.FilterDescription;
+import org.ensembl.mart.lib.config.FilterGroup;
+import org.ensembl.mart.lib.config.FilterPage;
+import org.ensembl.mart.lib.config.Option;
+import org.ensembl.mart.lib.config.PushAction;
+
+/**
+ * Tests the name and field lookups of DatasetConfig, and that they follow changes
+ * made to its pages.  Does not need a database connection.
+ */
+public class DatasetConfigLookupTest extends TestCase {
+
+  private DatasetConfig config;
+  private AttributeCollection attColl;
+  private FilterCollection filtColl;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(DatasetConfigLookupTest.class);
+  }
+
+  public DatasetConfigLookupTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    config = new DatasetConfig("gene", "gene", "hsapiens_gene_ensembl");
+
+    AttributePage attPage = new AttributePage("features");
+    AttributeGroup attGroup = new AttributeGroup("gene");
+    attColl = new AttributeCollection("ids");
+    attColl.addAttributeDescription(attribute("gene_stable_id", "gene_stable_id", "gene_main"));
+    attColl.addAttributeDescription(attribute("chromosome_name", "chr_name", "gene_main"));
+    attGroup.addAttributeCollection(attColl);
+    attPage.addAttributeGroup(attGroup);
+    config.addAttributePage(attPage);
+
+    FilterPage filtPage = new FilterPage("filters");
+    FilterGroup filtGroup = new FilterGroup("region");
+    filtColl = new FilterCollection("chromosome");
+
+    FilterDescription chromosome = new FilterDescription("chromosome_name", "chr_name", "list", "=");
+    chromosome.setTableConstraint("gene_main");
+    Option chr1 = new Option("1", "true");
+    PushAction bands = new PushAction("band_push", "", "", "band", "");
+    bands.addOption(new Option("p36.33", "true"));
+    chr1.addPushAction(bands);
+    chromosome.addOption(chr1);
+    filtColl.addFilterDescription(chromosome);
+
+    FilterDescription status = new FilterDescription("status", "", "list", "=");
+    Option known = new Option("known", "true");
+    known.setField("status");
+    known.setTableConstraint("gene_main");
+    known.setQualifier("=");
+    status.addOption(known);
+    filtColl.addFilterDescription(status);
+
+    filtGroup.addFilterCollection(filtColl);
+    filtPage.addFilterGroup(filtGroup);
+    config.addFilterPage(filtPage);
+  }
+
+  private AttributeDescription attribute(String internalName, String field, String tableConstraint) throws Exception {
+    AttributeDescription desc = new AttributeDescription(internalName, field);
+    desc.setTableConstraint(tableConstraint);
+    return desc;
+  }
+
+  public void testAttributeLookups() throws Exception {
+    assertTrue(config.containsAttributeDescription("gene_stable_id"));
+    assertTrue(config.containsAttributeDescription("chromosome_name"));
+    assertTrue(!config.containsAttributeDescription("status"));
+
+    assertEquals("chromosome_name", config.getAttributeDescriptionByFieldNameTableConstraint("chr_name", "gene_main").getInternalName());
+    assertNull(config.getAttributeDescriptionByFieldNameTableConstraint("chr_name", "transcript_main"));
+    assertEquals("ids", config.getCollectionForAttribute("gene_stable_id").getInternalName());
+    assertEquals("features", config.getPageForAttribute("gene_stable_id").getInternalName());
+  }
+
+  public void testFilterLookups() throws Exception {
+    assertEquals("chromosome_name", config.getFilterDescriptionByInternalName("chromosome_name").getInternalName());
+    assertEquals("options resolve to their FilterDescription", "status", config.getFilterDescriptionByInternalName("known").getInternalName());
+    assertEquals("chromosome_name", config.getFilterDescriptionByInternalName("gene.chromosome_name").getInternalName());
+    assertEquals("pushed options resolve to their FilterDescription", "chromosome_name",
+      config.getFilterDescriptionByInternalName("1.p36.33").getInternalName());
+    assertTrue(!config.containsFilterDescription("band"));
+
+    assertEquals("status", config.getFilterDescriptionByFieldNameTableConstraint("status", "gene_main", "=").getInternalName());
+    assertNull(config.getFilterDescriptionByFieldNameTableConstraint("status", "gene_main", ">"));
+    assertEquals("region", config.getGroupForFilter("known").getInternalName());
+  }
+
+  public void testLookupsFollowChanges() throws Exception {
+    assertTrue(!config.containsAttributeDescription("transcript_stable_id"));
+    attColl.addAttributeDescription(attribute("transcript_stable_id", "transcript_stable_id", "gene_main"));
+    assertTrue(config.containsAttributeDescription("transcript_stable_id"));
+
+    AttributeDescription gene = config.getAttributeDescriptionByInternalName("gene_stable_id");
+    attColl.removeAttributeDescription(gene);
+    assertTrue(!config.containsAttributeDescription("gene_stable_id"));
+
+    config.getAttributeDescriptionByInternalName("chromosome_name").setField("chromosome");
+    assertNull(config.getAttributeDescriptionByFieldNameTableConstraint("chr_name", "gene_main"));
+    assertNotNull(config.getAttributeDescriptionByFieldNameTableConstraint("chromosome", "gene_main"));
+
+    filtColl.removeFilterDescription(config.getFilterDescriptionByInternalName("status"));
+    assertTrue(!config.containsFilterDescription("known"));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.config.DatasetConfig;
+import org.ensembl.mart.lib.config.DatasetConfigXMLUtils;
+import org.jdom.Document;
+
+/**
+ * Tests that DatasetConfigs loaded straight from their XML stream match those loaded
+ * through a JDOM Document, using the DatasetConfig files under data/unitTests.
+ * Does not need a database connection.
+ */
+public class DatasetConfigStreamTest extends TestCase {
+
+  private static final String[] CONFIGS = {
+    "data/unitTests/testDatasetConfig.xml",
+    "data/unitTests/testDatasetConfigMod.xml",
+    "data/unitTests/testDatasetConfigRegFile.xml"
+  };
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(DatasetConfigStreamTest.class);
+  }
+
+  public DatasetConfigStreamTest(String name) {
+    super(name);
+  }
+
+  private DatasetConfig loadDocument(DatasetConfigXMLUtils dscutils, String file) throws Exception {
+    InputStream in = new FileInputStream(file);
+    try {
+      Document doc = dscutils.getDocumentForXMLStream(in);
+      DatasetConfig config = dscutils.getDatasetConfigForDocument(doc);
+      dscutils.loadDatasetConfigWithDocument(config, doc);
+      return config;
+    } finally {
+      in.close();
+    }
+  }
+
+  private DatasetConfig loadStream(DatasetConfigXMLUtils dscutils, String file, int parts) throws Exception {
+    InputStream in = new FileInputStream(file);
+    try {
+      DatasetConfig config = new DatasetConfig();
+      dscutils.loadDatasetConfigWithXMLStream(config, in, parts);
+      return config;
+    } finally {
+      in.close();
+    }
+  }
+
+  public void testStreamMatchesDocument() throws Exception {
+    boolean[] hidden = { true, false };
+    for (int h = 0; h < hidden.length; h++) {
+      DatasetConfigXMLUtils dscutils = new DatasetConfigXMLUtils(hidden[h]);
+      for (int i = 0; i < CONFIGS.length; i++) {
+        byte[] expected = dscutils.getMessageDigestForDatasetConfig(loadDocument(dscutils, CONFIGS[i]));
+        byte[] streamed =
+          dscutils.getMessageDigestForDatasetConfig(loadStream(dscutils, CONFIGS[i], DatasetConfigXMLUtils.LOAD_ALL));
+        assertTrue(CONFIGS[i] + " streamed differently", MessageDigest.isEqual(expected, streamed));
+      }
+    }
+  }
+
+  public void testPartialLoad() throws Exception {
+    DatasetConfigXMLUtils dscutils = new DatasetConfigXMLUtils(true);
+    DatasetConfig full = loadDocument(dscutils, CONFIGS[0]);
+
+    DatasetConfig header = loadStream(dscutils, CONFIGS[0], 0);
+    assertEquals(full.getInternalName(), header.getInternalName());
+    assertEquals(full.getDisplayName(), header.getDisplayName());
+
+    DatasetConfig filters = loadStream(dscutils, CONFIGS[0], DatasetConfigXMLUtils.LOAD_FILTERPAGES | DatasetConfigXMLUtils.LOAD_LINKS);
+    assertEquals("filter pages not loaded", full.getFilterPages().length, filters.getFilterPages().length);
+    assertEquals("attribute pages should not be loaded", 0, filters.getAttributePages().length);
+    assertEquals("main tables should not be loaded", 0, filters.getStarBases().length);
+  }
+}
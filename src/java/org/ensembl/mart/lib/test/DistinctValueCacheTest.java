@@ -0,0 +1,127 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.DetailedDataSource;
+import org.ensembl.mart.lib.config.DistinctValueCache;
+
+/**
+ * Tests the grouped lookups of DistinctValueCache, as push actions make them, including
+ * group values which a collation that is not binary interleaves.  Uses FakeJDBCDriver,
+ * so does not need a database connection.
+ */
+public class DistinctValueCacheTest extends TestCase {
+
+  private DistinctValueCache cache;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(DistinctValueCacheTest.class);
+  }
+
+  public DistinctValueCacheTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    Class.forName(FakeJDBCDriver.class.getName());
+    FakeJDBCDriver.reset();
+
+    DetailedDataSource ds =
+      new DetailedDataSource(
+        DetailedDataSource.DEFAULTDATABASETYPE,
+        "localhost",
+        DetailedDataSource.DEFAULTPORT,
+        "ensembl_mart",
+        "ensembl_mart",
+        FakeJDBCDriver.URLPREFIX + "ensembl_mart",
+        "user",
+        null,
+        null,
+        1,
+        FakeJDBCDriver.class.getName(),
+        null);
+    cache = new DistinctValueCache(ds, 10);
+  }
+
+  protected void tearDown() throws Exception {
+    FakeJDBCDriver.reset();
+  }
+
+  private DistinctValueCache.Values group(String groupValue) throws Exception {
+    return cache.getGroupedValues(
+      "1",
+      "ensembl_mart",
+      "hsapiens_gene_ensembl__karyotype__main",
+      "band",
+      "band_display",
+      "chr_name",
+      groupValue,
+      "band");
+  }
+
+  public void testGroupedValues() throws Exception {
+    FakeJDBCDriver.setQueryRows(
+      new Object[][] {
+        { "1", "p11", "1p11" },
+        { "1", "p12", "1p12" },
+        { "2", "q21", "2q21" }});
+
+    assertValues(new String[] { "p11", "p12" }, new String[] { "1p11", "1p12" }, group("1"));
+    assertValues(new String[] { "q21" }, new String[] { "2q21" }, group("2"));
+    assertEquals(0, group("3").values.length);
+    assertEquals("groups not read in one scan", 1, FakeJDBCDriver.getPrepareCount());
+  }
+
+  public void testInterleavedGroupsKeepAllValues() throws Exception {
+    // as a case insensitive collation may order "X" and "x", which compare equal
+    FakeJDBCDriver.setQueryRows(
+      new Object[][] {
+        { "X", "p11", "Xp11" },
+        { "x", "p12", "xp12" },
+        { "X", "p13", "Xp13" },
+        { "x", "q11", "xq11" },
+        { "X", "q21", "Xq21" },
+        { "Y", "p11", "Yp11" }});
+
+    assertValues(
+      new String[] { "p11", "p13", "q21" },
+      new String[] { "Xp11", "Xp13", "Xq21" },
+      group("X"));
+    assertValues(new String[] { "p12", "q11" }, new String[] { "xp12", "xq11" }, group("x"));
+    assertValues(new String[] { "p11" }, new String[] { "Yp11" }, group("Y"));
+  }
+
+  private void assertValues(String[] values, String[] displays, DistinctValueCache.Values actual) {
+    assertEquals(values.length, actual.values.length);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(values[i], actual.values[i]);
+      assertEquals(displays[i], actual.displays[i]);
+    }
+  }
+}
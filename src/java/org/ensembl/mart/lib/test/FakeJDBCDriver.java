@@ -0,0 +1,585 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * JDBC driver for jdbc:fake: URLs, used by tests so that they do not need a database.
+ * Every query returns ROWS numbered rows, the rows given to setQueryRows, or those
+ * chosen by the QueryResponder given to setQueryResponder.
+ * Like MySQL, a connection with a streaming result set open (fetch size
+ * Integer.MIN_VALUE) refuses to run another query or end a transaction until it is
+ * closed.  DatabaseMetaData describes the tables given to setTables.  Statements which
+ * do not return rows are recorded, with their parameters, for getUpdates.  Connections,
+ * statements, result sets and metadata are java.lang.reflect proxies.
+ */
+public class FakeJDBCDriver implements Driver {
+
+  public static final String URLPREFIX = "jdbc:fake:";
+
+  /** rows returned by every query */
+  public static final int ROWS = 3;
+
+  private static int prepareCount = 0;
+  private static int connectCount = 0;
+
+  // catalog, table name, column names of the tables described by getMetaData
+  private static Object[][] tableRows = new Object[0][];
+  // catalogs asked for by getTables and getColumns
+  private static final List catalogs = new ArrayList();
+  // rows returned by every query, null for ROWS numbered rows
+  private static Object[][] queryRows = null;
+  // chooses the rows of each query, null to use queryRows
+  private static QueryResponder responder = null;
+  // Updates executed, in execution order
+  private static final List updates = new ArrayList();
+
+  /**
+   * Chooses the rows a query returns from its SQL and parameters.  Called from
+   * whichever thread runs the query.
+   */
+  public interface QueryResponder {
+    /**
+     * @param sql SQL of the query
+     * @param parameters values bound to its parameters, in parameter order
+     * @return column values of each row, in column order, or null for the rows
+     *         given to setQueryRows
+     */
+    public Object[][] rows(String sql, Object[] parameters);
+  }
+
+  /**
+   * A statement which did not return rows, as executed, or added to a batch.
+   * Streams bound as parameters are recorded as the byte[] or String read from them.
+   */
+  public static class Update {
+    public final String sql;
+    /** values bound to the parameters, in parameter order */
+    public final Object[] parameters;
+
+    private Update(String sql, Object[] parameters) {
+      this.sql = sql;
+      this.parameters = parameters;
+    }
+  }
+
+  static {
+    try {
+      DriverManager.registerDriver(new FakeJDBCDriver());
+    } catch (SQLException e) {
+      throw new RuntimeException(e.getMessage());
+    }
+  }
+
+  /**
+   * @return number of statements prepared on physical connections
+   */
+  public static synchronized int getPrepareCount() {
+    return prepareCount;
+  }
+
+  /**
+   * @return number of physical connections opened
+   */
+  public static synchronized int getConnectCount() {
+    return connectCount;
+  }
+
+  /**
+   * @param jdbcObject connection, statement or result set made by this driver
+   * @return true if it has been closed, without needing the JDBC 4 isClosed methods
+   */
+  public static boolean isClosed(Object jdbcObject) {
+    Object handler = Proxy.getInvocationHandler(jdbcObject);
+    if (handler instanceof FakeConnection)
+      return ((FakeConnection) handler).closed;
+    if (handler instanceof FakeStatement)
+      return ((FakeStatement) handler).closed;
+    return ((FakeResultSet) handler).closed;
+  }
+
+  /**
+   * Sets the tables the DatabaseMetaData of every connection describes.
+   * @param catalogs catalog of each table, null for none
+   * @param tables table names
+   * @param columns column names of each table
+   */
+  public static synchronized void setTables(String[] catalogs, String[] tables, String[][] columns) {
+    tableRows = new Object[tables.length][];
+    for (int i = 0; i < tables.length; i++)
+      tableRows[i] = new Object[] { catalogs[i], tables[i], columns[i] };
+  }
+
+  /**
+   * Sets the rows every query returns, instead of ROWS numbered rows.
+   * @param rows column values of each row, in column order, or null for numbered rows
+   */
+  public static synchronized void setQueryRows(Object[][] rows) {
+    queryRows = rows;
+  }
+
+  /**
+   * @param queryResponder chooses the rows of each query, or null for the rows
+   *          given to setQueryRows
+   */
+  public static synchronized void setQueryResponder(QueryResponder queryResponder) {
+    responder = queryResponder;
+  }
+
+  private static Object[][] getQueryRows(String sql, Map parameters) {
+    QueryResponder queryResponder;
+    synchronized (FakeJDBCDriver.class) {
+      queryResponder = responder;
+    }
+    Object[][] rows = null;
+    if (queryResponder != null)
+      rows = queryResponder.rows(sql, parameters.values().toArray());
+    if (rows == null) {
+      synchronized (FakeJDBCDriver.class) {
+        rows = queryRows;
+      }
+    }
+    return rows;
+  }
+
+  private static synchronized Object[][] getTableRows() {
+    return tableRows;
+  }
+
+  /**
+   * @return catalogs passed to DatabaseMetaData getTables and getColumns, in call order
+   */
+  public static synchronized String[] getRequestedCatalogs() {
+    return (String[]) catalogs.toArray(new String[catalogs.size()]);
+  }
+
+  /**
+   * @return Updates executed on any connection since the last reset, in execution order
+   */
+  public static synchronized List getUpdates() {
+    return new ArrayList(updates);
+  }
+
+  private static synchronized void updated(String sql, Map parameters) {
+    updates.add(new Update(sql, parameters.values().toArray()));
+  }
+
+  public static synchronized void reset() {
+    updates.clear();
+    prepareCount = 0;
+    connectCount = 0;
+    tableRows = new Object[0][];
+    catalogs.clear();
+    queryRows = null;
+    responder = null;
+  }
+
+  private static synchronized void prepared() {
+    prepareCount++;
+  }
+
+  public Connection connect(String url, Properties info) throws SQLException {
+    if (!acceptsURL(url))
+      return null;
+
+    synchronized (FakeJDBCDriver.class) {
+      connectCount++;
+    }
+    return (Connection) proxy(Connection.class, new FakeConnection());
+  }
+
+  public boolean acceptsURL(String url) {
+    return url != null && url.startsWith(URLPREFIX);
+  }
+
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  public int getMajorVersion() {
+    return 1;
+  }
+
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  public java.util.logging.Logger getParentLogger() {
+    return null;
+  }
+
+  private static Object proxy(Class type, InvocationHandler handler) {
+    return Proxy.newProxyInstance(FakeJDBCDriver.class.getClassLoader(), new Class[] { type }, handler);
+  }
+
+  /**
+   * Value returned by methods the fakes do not implement.
+   */
+  private static Object defaultValue(Method method) {
+    Class type = method.getReturnType();
+    if (type == Boolean.TYPE)
+      return Boolean.FALSE;
+    if (type == Integer.TYPE)
+      return new Integer(0);
+    if (type == Long.TYPE)
+      return new Long(0);
+    return null;
+  }
+
+  /**
+   * @return the bytes or characters of a stream bound as a parameter, otherwise value
+   */
+  private static Object read(Object value) throws IOException {
+    if (value instanceof InputStream) {
+      InputStream in = (InputStream) value;
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      for (int n = in.read(buf); n > 0; n = in.read(buf))
+        out.write(buf, 0, n);
+      return out.toByteArray();
+    }
+    if (value instanceof Reader) {
+      Reader in = (Reader) value;
+      StringBuffer out = new StringBuffer();
+      char[] buf = new char[4096];
+      for (int n = in.read(buf); n > 0; n = in.read(buf))
+        out.append(buf, 0, n);
+      return out.toString();
+    }
+    return value;
+  }
+
+  private static class FakeConnection implements InvocationHandler {
+    private boolean closed = false;
+    private boolean autoCommit = true;
+    private final List openStreams = new ArrayList();
+
+    public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+
+      if (name.equals("equals"))
+        return Boolean.valueOf(proxy == args[0]);
+      if (name.equals("hashCode"))
+        return new Integer(System.identityHashCode(proxy));
+      if (name.equals("toString"))
+        return "FakeConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+      if (name.equals("isClosed"))
+        return Boolean.valueOf(closed);
+      if (name.equals("close")) {
+        closed = true;
+        return null;
+      }
+
+      if (closed)
+        throw new SQLException("Connection is closed");
+
+      if (name.equals("prepareStatement") || name.equals("createStatement")) {
+        prepared();
+        String sql = (args != null && args.length > 0) ? (String) args[0] : null;
+        return proxy(PreparedStatement.class, new FakeStatement(this, (Connection) proxy, sql));
+      }
+      if (name.equals("getMetaData"))
+        return proxy(DatabaseMetaData.class, new FakeMetaData(this));
+      if (name.equals("getAutoCommit"))
+        return Boolean.valueOf(autoCommit);
+      if (name.equals("setAutoCommit") || name.equals("commit") || name.equals("rollback")) {
+        checkNoStream();
+        if (name.equals("setAutoCommit"))
+          autoCommit = ((Boolean) args[0]).booleanValue();
+        return null;
+      }
+
+      return defaultValue(method);
+    }
+
+    private synchronized void checkNoStream() throws SQLException {
+      if (!openStreams.isEmpty())
+        throw new SQLException("Streaming result set is still active");
+    }
+
+    private synchronized void streamOpened(FakeResultSet rs) {
+      openStreams.add(rs);
+    }
+
+    private synchronized void streamClosed(FakeResultSet rs) {
+      openStreams.remove(rs);
+    }
+  }
+
+  private static class FakeStatement implements InvocationHandler {
+    private final FakeConnection conn;
+    private final Connection connProxy;
+    private final String sql;
+    // parameter index to bound value
+    private final Map parameters = new TreeMap();
+    private int batched = 0;
+    private boolean closed = false;
+    private int fetchSize = 0;
+    private int maxRows = 0;
+    private ResultSet current = null;
+
+    private FakeStatement(FakeConnection conn, Connection connProxy, String sql) {
+      this.conn = conn;
+      this.connProxy = connProxy;
+      this.sql = sql;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+
+      if (name.equals("equals"))
+        return Boolean.valueOf(proxy == args[0]);
+      if (name.equals("hashCode"))
+        return new Integer(System.identityHashCode(proxy));
+      if (name.equals("toString"))
+        return "FakeStatement@" + Integer.toHexString(System.identityHashCode(proxy));
+      if (name.equals("isClosed"))
+        return Boolean.valueOf(closed);
+      if (name.equals("getConnection"))
+        return connProxy;
+      if (name.equals("close")) {
+        closeCurrent();
+        closed = true;
+        return null;
+      }
+
+      if (closed)
+        throw new SQLException("Statement is closed");
+
+      if (name.equals("executeQuery")) {
+        closeCurrent();
+        conn.checkNoStream();
+        String querySQL = (args != null && args.length > 0) ? (String) args[0] : sql;
+        Object[][] rows = getQueryRows(querySQL, (args != null && args.length > 0) ? new TreeMap() : parameters);
+        FakeResultSet rs =
+          (rows != null) ? new FakeResultSet(conn, rows) : new FakeResultSet(conn, fetchSize == Integer.MIN_VALUE);
+        current = (ResultSet) proxy(ResultSet.class, rs);
+        return current;
+      }
+      if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+        parameters.put(args[0], read(args[1]));
+        return null;
+      }
+      if (name.equals("clearParameters")) {
+        parameters.clear();
+        return null;
+      }
+      if (name.equals("addBatch")) {
+        if (args != null && args.length > 0)
+          updated((String) args[0], new TreeMap());
+        else
+          updated(sql, parameters);
+        batched++;
+        return null;
+      }
+      if (name.equals("executeBatch")) {
+        int[] counts = new int[batched];
+        for (int i = 0; i < counts.length; i++)
+          counts[i] = 1;
+        batched = 0;
+        return counts;
+      }
+      if (name.equals("execute") || name.equals("executeUpdate")) {
+        if (args != null && args.length > 0)
+          updated((String) args[0], new TreeMap());
+        else
+          updated(sql, parameters);
+        return name.equals("execute") ? (Object) Boolean.FALSE : new Integer(1);
+      }
+      if (name.equals("getResultSet"))
+        return current;
+      if (name.equals("setFetchSize")) {
+        fetchSize = ((Integer) args[0]).intValue();
+        return null;
+      }
+      if (name.equals("getFetchSize"))
+        return new Integer(fetchSize);
+      if (name.equals("setMaxRows")) {
+        maxRows = ((Integer) args[0]).intValue();
+        return null;
+      }
+      if (name.equals("getMaxRows"))
+        return new Integer(maxRows);
+
+      return defaultValue(method);
+    }
+
+    private void closeCurrent() throws SQLException {
+      if (current != null)
+        current.close();
+      current = null;
+    }
+  }
+
+  private static class FakeResultSet implements InvocationHandler {
+    private final FakeConnection conn;
+    private final boolean streaming;
+    private final Object[][] rows;
+    private boolean closed = false;
+    private int row = 0;
+
+    private FakeResultSet(FakeConnection conn, boolean streaming) {
+      this.conn = conn;
+      this.streaming = streaming;
+      this.rows = null;
+      if (streaming)
+        conn.streamOpened(this);
+    }
+
+    /**
+     * Result set returning the given rows, of column values in column order.
+     */
+    private FakeResultSet(FakeConnection conn, Object[][] rows) {
+      this.conn = conn;
+      this.streaming = false;
+      this.rows = rows;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+
+      if (name.equals("equals"))
+        return Boolean.valueOf(proxy == args[0]);
+      if (name.equals("hashCode"))
+        return new Integer(System.identityHashCode(proxy));
+      if (name.equals("isClosed"))
+        return Boolean.valueOf(closed);
+      if (name.equals("close")) {
+        if (!closed && streaming)
+          conn.streamClosed(this);
+        closed = true;
+        return null;
+      }
+
+      if (closed)
+        throw new SQLException("ResultSet is closed");
+
+      if (name.equals("next"))
+        return Boolean.valueOf(++row <= ((rows != null) ? rows.length : ROWS));
+
+      if (rows == null) {
+        if (name.equals("getInt"))
+          return new Integer(row);
+        if (name.equals("getString"))
+          return String.valueOf(row);
+      } else if (name.startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+        Object value = rows[row - 1][((Integer) args[0]).intValue() - 1];
+        if (name.equals("getString"))
+          return (value != null) ? value.toString() : null;
+        if (name.equals("getInt"))
+          return (value != null) ? new Integer(value.toString()) : new Integer(0);
+        if (name.equals("getLong"))
+          return (value != null) ? new Long(value.toString()) : new Long(0);
+        if (name.equals("getBytes"))
+          return (value instanceof String) ? ((String) value).getBytes() : value;
+        if (name.equals("getBinaryStream"))
+          return (value != null) ? new ByteArrayInputStream((value instanceof String) ? ((String) value).getBytes() : (byte[]) value) : null;
+        return value;
+      }
+
+      return defaultValue(method);
+    }
+  }
+
+  /**
+   * DatabaseMetaData answering getTables and getColumns from the tables set with
+   * setTables, matching catalogs as JDBC does: a null catalog matches every table,
+   * "" only tables without a catalog.  Table and column patterns are ignored, as
+   * callers are expected to match them themselves.
+   */
+  private static class FakeMetaData implements InvocationHandler {
+    private final FakeConnection conn;
+
+    private FakeMetaData(FakeConnection conn) {
+      this.conn = conn;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+
+      if (name.equals("equals"))
+        return Boolean.valueOf(proxy == args[0]);
+      if (name.equals("hashCode"))
+        return new Integer(System.identityHashCode(proxy));
+
+      if (name.equals("getTables") || name.equals("getColumns")) {
+        String catalog = (String) args[0];
+        synchronized (FakeJDBCDriver.class) {
+          catalogs.add(catalog);
+        }
+
+        List result = new ArrayList();
+        Object[][] tables = getTableRows();
+        for (int i = 0; i < tables.length; i++) {
+          String tableCatalog = (String) tables[i][0];
+          if (catalog != null && !catalog.equals((tableCatalog != null) ? tableCatalog : ""))
+            continue;
+
+          String table = (String) tables[i][1];
+          if (name.equals("getTables"))
+            result.add(new Object[] { tableCatalog, args[1], table, "TABLE" });
+          else {
+            String[] columns = (String[]) tables[i][2];
+            for (int j = 0; j < columns.length; j++)
+              result.add(
+                new Object[] {
+                  tableCatalog,
+                  args[1],
+                  table,
+                  columns[j],
+                  new Integer(Types.VARCHAR),
+                  "varchar",
+                  new Integer(255)});
+          }
+        }
+
+        return proxy(ResultSet.class, new FakeResultSet(conn, (Object[][]) result.toArray(new Object[result.size()][])));
+      }
+
+      return defaultValue(method);
+    }
+  }
+}
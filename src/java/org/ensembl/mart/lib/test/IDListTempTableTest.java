@@ -0,0 +1,96 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.DetailedDataSource;
+import org.ensembl.mart.lib.IDListTempTable;
+
+/**
+ * Tests that IDListTempTable loads each identifier of a list once, in list
+ * order, so that a list with repeats does not break the primary key of the
+ * table.  Uses FakeJDBCDriver, so does not need a database connection.
+ */
+public class IDListTempTableTest extends TestCase {
+
+  private Connection conn;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(IDListTempTableTest.class);
+  }
+
+  public IDListTempTableTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    Class.forName(FakeJDBCDriver.class.getName());
+    FakeJDBCDriver.reset();
+    conn = DriverManager.getConnection(FakeJDBCDriver.URLPREFIX + getName());
+  }
+
+  protected void tearDown() throws Exception {
+    conn.close();
+  }
+
+  public void testRepeatedIdentifiersLoadedOnce() throws Exception {
+    IDListTempTable table = IDListTempTable.getInstance(DetailedDataSource.DEFAULTDATABASETYPE);
+    table.load(conn, new String[] { "ENSG3", "ENSG1", "ENSG3", "ENSG2", "ENSG1", "ENSG3" });
+
+    List updates = FakeJDBCDriver.getUpdates();
+    assertEquals("create and three inserts expected", 4, updates.size());
+    assertTrue(((FakeJDBCDriver.Update) updates.get(0)).sql.startsWith("create temporary table " + table.getTableName()));
+
+    String[] expected = new String[] { "ENSG3", "ENSG1", "ENSG2" };
+    for (int i = 0; i < expected.length; i++) {
+      FakeJDBCDriver.Update insert = (FakeJDBCDriver.Update) updates.get(i + 1);
+      assertTrue(insert.sql.startsWith("insert into " + table.getTableName()));
+      assertEquals(1, insert.parameters.length);
+      assertEquals("identifiers not loaded once in list order", expected[i], insert.parameters[0]);
+    }
+  }
+
+  public void testDistinctIdentifiersAllLoaded() throws Exception {
+    IDListTempTable table = IDListTempTable.getInstance(DetailedDataSource.POSTGRES);
+    String[] ids = new String[2500];
+    for (int i = 0; i < ids.length; i++)
+      ids[i] = "ENSG" + i;
+    table.load(conn, ids);
+
+    List updates = FakeJDBCDriver.getUpdates();
+    // create, the inserts, and analyze
+    assertEquals(ids.length + 2, updates.size());
+    for (int i = 0; i < ids.length; i++)
+      assertEquals(ids[i], ((FakeJDBCDriver.Update) updates.get(i + 1)).parameters[0]);
+    assertEquals("analyze " + table.getTableName(), ((FakeJDBCDriver.Update) updates.get(updates.size() - 1)).sql);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package org.ensembl.mart.lib.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.MappedSequenceSource;
+import org.ensembl.mart.lib.SequenceLocation;
+
+/**
+ * Tests reading sequence from a memory mapped FASTA file through its index.
+ * Does not need a database connection.
+ */
+public class MappedSequenceSourceTest extends TestCase {
+
+  // 4 bases per line, chr 2 has a partial last line
+  private static final String FASTA = ">1\nACGT\nACGT\nAC\n>2\nTTTT\nGG\n";
+  private static final String INDEX = "1\t10\t3\t4\t5\n2\t6\t19\t4\t5\n";
+
+  private File fasta;
+  private MappedSequenceSource source;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(MappedSequenceSourceTest.class);
+  }
+
+  public MappedSequenceSourceTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    fasta = File.createTempFile("martj", ".fa");
+    write(fasta, FASTA);
+    write(new File(fasta.getPath() + MappedSequenceSource.INDEXSUFFIX), INDEX);
+    source = new MappedSequenceSource(fasta);
+  }
+
+  protected void tearDown() throws Exception {
+    source.close();
+    new File(fasta.getPath() + MappedSequenceSource.INDEXSUFFIX).delete();
+    fasta.delete();
+  }
+
+  private void write(File f, String text) throws IOException {
+    FileOutputStream out = new FileOutputStream(f);
+    out.write(text.getBytes());
+    out.close();
+  }
+
+  public void testAcrossLines() throws Exception {
+    assertEquals("GTACGTA", new String(source.getSequence("1", 3, 9)));
+    assertEquals("TTGG", new String(source.getSequence("2", 3, 6)));
+  }
+
+  public void testClippedAtChromosomeEnd() throws Exception {
+    assertEquals("AC", new String(source.getSequence("1", 9, 20)));
+  }
+
+  public void testUnknownChromosome() throws Exception {
+    assertEquals("NNN", new String(source.getSequence("X", 1, 3)));
+  }
+
+  public void testGetSequences() throws Exception {
+    List locations = new ArrayList();
+    locations.add(new SequenceLocation("2", 5, 6, -1));
+    locations.add(new SequenceLocation("1", 1, 4, 1));
+    locations.add(new SequenceLocation("X", 1, 2, 1));
+
+    byte[][] sequences = source.getSequences(locations);
+    assertEquals(3, sequences.length);
+    assertEquals("GG", new String(sequences[0]));
+    assertEquals("ACGT", new String(sequences[1]));
+    assertEquals("NN", new String(sequences[2]));
+  }
+}
@@ -0,0 +1,154 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.DetailedDataSource;
+import org.ensembl.mart.lib.ParallelTasks;
+
+/**
+ * Tests the bounded parallelism used to load DatasetConfigs from a database:
+ * ParallelTasks.boundParallelism and runAll.  Does not need a database
+ * connection.
+ */
+public class ParallelLoadTest extends TestCase {
+
+  private final Object lock = new Object();
+  private int running = 0;
+  private int maxRunning = 0;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(ParallelLoadTest.class);
+  }
+
+  public ParallelLoadTest(String name) {
+    super(name);
+  }
+
+  public void testBoundedByPoolSize() throws Exception {
+    DetailedDataSource ds =
+      new DetailedDataSource(
+        DetailedDataSource.DEFAULTDATABASETYPE,
+        "localhost",
+        DetailedDataSource.DEFAULTPORT,
+        "test",
+        "test",
+        "jdbc:mysql://localhost:3306/test",
+        "user",
+        null,
+        null,
+        2,
+        DetailedDataSource.DEFAULTDRIVER,
+        null);
+
+    assertEquals(2, ParallelTasks.boundParallelism(4, ds, 1));
+    assertEquals(1, ParallelTasks.boundParallelism(4, ds, 2));
+    assertEquals("at least one", 1, ParallelTasks.boundParallelism(4, ds, 3));
+    assertEquals(4, ParallelTasks.boundParallelism(4, null, 1));
+  }
+
+  public void testRunAllBoundsRunningTasks() throws Exception {
+    Runnable[] tasks = new Runnable[20];
+    final boolean[] ran = new boolean[tasks.length];
+    for (int i = 0; i < tasks.length; i++) {
+      final int index = i;
+      tasks[i] = new Runnable() {
+        public void run() {
+          started();
+          try {
+            Thread.sleep(5);
+          } catch (InterruptedException e) {
+            // finish early
+          }
+          ran[index] = true;
+          finished();
+        }
+      };
+    }
+
+    ParallelTasks.runAll(tasks, 3, "ParallelLoadTest");
+
+    for (int i = 0; i < ran.length; i++)
+      assertTrue("task " + i + " did not run", ran[i]);
+    assertTrue("more than 3 tasks ran at once: " + maxRunning, maxRunning <= 3);
+  }
+
+  public void testRunAllSerialInCallingThread() throws Exception {
+    final Thread caller = Thread.currentThread();
+    final boolean[] inCaller = new boolean[] { true };
+    Runnable[] tasks = new Runnable[5];
+    for (int i = 0; i < tasks.length; i++)
+      tasks[i] = new Runnable() {
+        public void run() {
+          if (Thread.currentThread() != caller)
+            inCaller[0] = false;
+        }
+      };
+
+    ParallelTasks.runAll(tasks, 1, "ParallelLoadTest");
+    assertTrue("serial tasks ran on another thread", inCaller[0]);
+  }
+
+  public void testFailedTaskDoesNotStopOthers() throws Exception {
+    Runnable[] tasks = new Runnable[10];
+    final boolean[] ran = new boolean[tasks.length];
+    for (int i = 0; i < tasks.length; i++) {
+      final int index = i;
+      tasks[i] = new Runnable() {
+        public void run() {
+          ran[index] = true;
+          if (index == 2)
+            throw new IllegalStateException("task 2 failed");
+        }
+      };
+    }
+
+    try {
+      ParallelTasks.runAll(tasks, 4, "ParallelLoadTest");
+      fail("failure of task 2 not reported");
+    } catch (IllegalStateException e) {
+      assertEquals("task 2 failed", e.getMessage());
+    }
+
+    for (int i = 0; i < ran.length; i++)
+      assertTrue("task " + i + " did not run", ran[i]);
+  }
+
+  private void started() {
+    synchronized (lock) {
+      running++;
+      maxRunning = Math.max(maxRunning, running);
+    }
+  }
+
+  private void finished() {
+    synchronized (lock) {
+      running--;
+    }
+  }
+}
@@ -8,11 +8,13 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.ensembl.mart.lib.BasicFilter;
+import org.ensembl.mart.lib.CompiledQuery;
 import org.ensembl.mart.lib.FieldAttribute;
 import org.ensembl.mart.lib.Filter;
 import org.ensembl.mart.lib.FormatSpec;
 import org.ensembl.mart.lib.IDListFilter;
 import org.ensembl.mart.lib.Query;
+import org.ensembl.mart.lib.QueryCompiler;
 import org.ensembl.util.PropertiesUtil;
 
 /** JUnit TestSuite. 
@@ -71,6 +73,25 @@ public class QueryCompilerTest extends Base {
 		executeQuery(q);
 	}
 
+	/**
+	 * Queries differing only in filter values share one compiled plan.
+	 */
+	public void testPlanSharedAcrossFilterValues() throws Exception {
+		Query q1 = new Query(genequery);
+		q1.addAttribute(new FieldAttribute("gene_stable_id","main","gene_id_key"));
+		Query q2 = new Query(q1);
+
+		q1.addFilter(new BasicFilter("chr_name","main","gene_id_key", "=", "3"));
+		q2.addFilter(new BasicFilter("chr_name","main","gene_id_key", "=", "4"));
+
+		CompiledQuery p1 = new QueryCompiler(q1, q1.getDataSource()).getCompiledQuery();
+		CompiledQuery p2 = new QueryCompiler(q2, q2.getDataSource()).getCompiledQuery();
+		assertSame("Plan not shared between queries of the same shape", p1, p2);
+		assertEquals(1, p1.getParameterCount());
+
+		executeQuery(q2);
+	}
+
 	public void testStableIDQuery() throws Exception {
 		Query q = new Query(genequery);
 
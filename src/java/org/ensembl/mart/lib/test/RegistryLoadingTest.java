@@ -0,0 +1,103 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.io.File;
+import java.net.URL;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.config.ConfigurationException;
+import org.ensembl.mart.lib.config.DSConfigAdaptor;
+import org.ensembl.mart.lib.config.MartLocation;
+import org.ensembl.mart.lib.config.MartRegistry;
+import org.ensembl.mart.lib.config.RegistryDSConfigAdaptor;
+import org.ensembl.mart.lib.config.URLLocation;
+
+/**
+ * Tests that the locations of a MartRegistry, which are loaded concurrently, are
+ * added in registry order, and that a location which fails to load is skipped.
+ * Uses the DatasetConfig files under data/unitTests, and does not need a database connection.
+ */
+public class RegistryLoadingTest extends TestCase {
+
+  private static final String[] CONFIGS = {
+    "data/unitTests/testDatasetConfigRegReg.xml",
+    "data/unitTests/testDatasetConfig.xml",
+    "data/unitTests/testDatasetConfigRegFile.xml",
+    "data/unitTests/testDatasetConfigMod.xml"
+  };
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(RegistryLoadingTest.class);
+  }
+
+  public RegistryLoadingTest(String name) {
+    super(name);
+  }
+
+  private MartRegistry registry(String[] files) throws Exception {
+    MartRegistry registry = new MartRegistry();
+    for (int i = 0; i < files.length; i++)
+      registry.addMartLocation(new URLLocation(new File(files[i]).toURI().toURL(), "location" + i, "true"));
+    return registry;
+  }
+
+  public void testRegistryOrder() throws Exception {
+    RegistryDSConfigAdaptor adaptor = new RegistryDSConfigAdaptor(registry(CONFIGS), (URL) null, true, false, true);
+
+    DSConfigAdaptor[] leaves = adaptor.getLeafAdaptors();
+    assertEquals("wrong number of adaptors", CONFIGS.length, leaves.length);
+    for (int i = 0; i < leaves.length; i++)
+      assertEquals("adaptor out of registry order", "location" + i, leaves[i].getName());
+    assertEquals("unexpected failed locations", 0, adaptor.getFailedLocations().length);
+  }
+
+  public void testFailedLocationSkipped() throws Exception {
+    String[] files = { CONFIGS[0], "data/unitTests/noSuchDatasetConfig.xml", CONFIGS[1] };
+    RegistryDSConfigAdaptor adaptor = new RegistryDSConfigAdaptor(registry(files), (URL) null, true, false, true);
+
+    DSConfigAdaptor[] leaves = adaptor.getLeafAdaptors();
+    assertEquals("failed location should be skipped", 2, leaves.length);
+    assertEquals("location0", leaves[0].getName());
+    assertEquals("location2", leaves[1].getName());
+
+    MartLocation[] failed = adaptor.getFailedLocations();
+    assertEquals("failed location not reported", 1, failed.length);
+    assertEquals("location1", failed[0].getName());
+  }
+
+  public void testAllLocationsFailed() throws Exception {
+    String[] files = { "data/unitTests/noSuchDatasetConfig.xml" };
+    try {
+      new RegistryDSConfigAdaptor(registry(files), (URL) null, true, false, true);
+      fail("registry with no loadable locations should not load");
+    } catch (ConfigurationException e) {
+      // expected
+    }
+  }
+}
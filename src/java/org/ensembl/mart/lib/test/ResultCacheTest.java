@@ -0,0 +1,162 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.BasicFilter;
+import org.ensembl.mart.lib.FieldAttribute;
+import org.ensembl.mart.lib.FormatSpec;
+import org.ensembl.mart.lib.Query;
+import org.ensembl.mart.lib.ResultCache;
+import org.ensembl.mart.lib.config.DatasetConfig;
+
+/**
+ * Tests storing, serving, invalidating and evicting results in a ResultCache.
+ * Does not need a database connection.
+ */
+public class ResultCacheTest extends TestCase {
+
+  private static final FormatSpec FORMAT = new FormatSpec(FormatSpec.TABULATED, "\t");
+
+  private File directory;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(ResultCacheTest.class);
+  }
+
+  public ResultCacheTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    directory = File.createTempFile("resultcache", "");
+    directory.delete();
+  }
+
+  protected void tearDown() {
+    File[] files = directory.listFiles();
+    for (int i = 0; files != null && i < files.length; i++)
+      files[i].delete();
+    directory.delete();
+  }
+
+  private Query query(DatasetConfig config, String chromosome) {
+    Query query = new Query();
+    query.setDatasetConfig(config);
+    query.setDataset(config.getDataset());
+    query.setMainTables(new String[] { "gene_main" });
+    query.setPrimaryKeys(new String[] { "gene_id_key" });
+    query.addAttribute(new FieldAttribute("gene_stable_id", "gene_main", "gene_id_key"));
+    query.addFilter(new BasicFilter("chr_name", "gene_main", "gene_id_key", "=", chromosome));
+    return query;
+  }
+
+  private DatasetConfig config(byte[] digest) throws Exception {
+    DatasetConfig config = new DatasetConfig("gene", "gene", "hsapiens_gene_ensembl");
+    config.setMessageDigest(digest);
+    return config;
+  }
+
+  private void store(ResultCache cache, Query query, String results) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ResultCache.Recorder recorder = cache.record(query, FORMAT, 0, out);
+    assertNotNull(recorder);
+    recorder.write(results.getBytes());
+    recorder.commit();
+    assertEquals("results must be passed through", results, out.toString());
+  }
+
+  private String read(ResultCache cache, Query query) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    return cache.write(query, FORMAT, 0, out) ? out.toString() : null;
+  }
+
+  public void testHitsAndMisses() throws Exception {
+    ResultCache cache = new ResultCache(directory, ResultCache.DEFAULTMAXBYTES);
+    DatasetConfig config = config(new byte[] { 1, 2, 3 });
+
+    assertNull(read(cache, query(config, "1")));
+    store(cache, query(config, "1"), "ENSG1\nENSG2\n");
+
+    assertEquals("ENSG1\nENSG2\n", read(cache, query(config, "1")));
+    assertNull("different filter values must not share results", read(cache, query(config, "2")));
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+
+    ResultCache reopened = new ResultCache(directory, ResultCache.DEFAULTMAXBYTES);
+    assertEquals("entries should survive reopening", "ENSG1\nENSG2\n", read(reopened, query(config, "1")));
+  }
+
+  public void testNoDigestNotCached() throws Exception {
+    ResultCache cache = new ResultCache(directory, ResultCache.DEFAULTMAXBYTES);
+    assertNull(cache.record(query(config(null), "1"), FORMAT, 0, new ByteArrayOutputStream()));
+  }
+
+  public void testChangedDigestInvalidates() throws Exception {
+    ResultCache cache = new ResultCache(directory, ResultCache.DEFAULTMAXBYTES);
+    store(cache, query(config(new byte[] { 1 }), "1"), "ENSG1\n");
+
+    assertNull(read(cache, query(config(new byte[] { 2 }), "1")));
+    assertEquals(1, cache.getInvalidations());
+    assertEquals(0, cache.getEntryCount());
+  }
+
+  public void testAbortAndMaxEntryBytes() throws Exception {
+    ResultCache cache = new ResultCache(directory, ResultCache.DEFAULTMAXBYTES);
+    DatasetConfig config = config(new byte[] { 1 });
+
+    ResultCache.Recorder recorder = cache.record(query(config, "1"), FORMAT, 0, new ByteArrayOutputStream());
+    recorder.write("ENSG1\n".getBytes());
+    recorder.abort();
+    assertNull(read(cache, query(config, "1")));
+
+    cache.setMaxEntryBytes(10);
+    store(cache, query(config, "1"), "ENSG1\nENSG2\nENSG3\nENSG4\nENSG5\nENSG6\n");
+    assertEquals(0, cache.getEntryCount());
+    assertEquals("temporary files must be removed", 0, directory.listFiles().length);
+  }
+
+  public void testByteBudgetEvictsLeastRecentlyUsed() throws Exception {
+    ResultCache cache = new ResultCache(directory, ResultCache.DEFAULTMAXBYTES);
+    DatasetConfig config = config(new byte[] { 1 });
+
+    store(cache, query(config, "1"), "ENSG1\n");
+    long entryBytes = cache.getBytes();
+    store(cache, query(config, "2"), "ENSG1\n");
+    read(cache, query(config, "1"));
+
+    cache.setMaxBytes(entryBytes + entryBytes / 2);
+    assertEquals(1, cache.getEvictions());
+    assertNotNull(read(cache, query(config, "1")));
+    assertNull(read(cache, query(config, "2")));
+  }
+}
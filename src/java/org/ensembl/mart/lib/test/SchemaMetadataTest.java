@@ -0,0 +1,167 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.DetailedDataSource;
+import org.ensembl.mart.lib.config.SchemaMetadata;
+
+/**
+ * Tests the table and column pattern matching of SchemaMetadata, and that its
+ * snapshot is read with a null catalog.  Uses FakeJDBCDriver, so does not need a
+ * database connection.
+ */
+public class SchemaMetadataTest extends TestCase {
+
+  private static final String[] TABLES = {
+    "hsapiens_gene_ensembl__gene__main",
+    "hsapiens_gene_ensembl__transcript__main",
+    "hsapiens_gene_ensembl__xref_go__dm",
+    "HSAPIENS_GENE_ENSEMBL__EXON__MAIN",
+    "mmusculus_gene_ensembl__gene__main"
+  };
+
+  private static final String[][] COLUMNS = {
+    { "gene_id_key", "gene_stable_id", "chr_name" },
+    { "gene_id_key", "transcript_id_key", "transcript_stable_id" },
+    { "gene_id_key", "dbprimary_id" },
+    { "EXON_ID_KEY" },
+    { "gene_id_key", "chr_name" }
+  };
+
+  private SchemaMetadata metadata;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(SchemaMetadataTest.class);
+  }
+
+  public SchemaMetadataTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    Class.forName(FakeJDBCDriver.class.getName());
+    FakeJDBCDriver.reset();
+    // the first two tables are reported in a catalog, the rest without one
+    FakeJDBCDriver.setTables(new String[] { "ensembl_mart", "ensembl_mart", null, null, null }, TABLES, COLUMNS);
+
+    DetailedDataSource ds =
+      new DetailedDataSource(
+        DetailedDataSource.DEFAULTDATABASETYPE,
+        "localhost",
+        DetailedDataSource.DEFAULTPORT,
+        "ensembl_mart",
+        "ensembl_mart",
+        FakeJDBCDriver.URLPREFIX + "ensembl_mart",
+        "user",
+        null,
+        null,
+        1,
+        FakeJDBCDriver.class.getName(),
+        null);
+    metadata = new SchemaMetadata(ds, "ensembl_mart");
+  }
+
+  public void testMatches() {
+    assertTrue(SchemaMetadata.matches("gene_main", "gene_main"));
+    assertTrue(SchemaMetadata.matches("%", ""));
+    assertTrue(SchemaMetadata.matches("%", "gene_main"));
+    assertTrue(SchemaMetadata.matches("gene%", "gene_main"));
+    assertTrue(SchemaMetadata.matches("%main", "gene_main"));
+    assertTrue(SchemaMetadata.matches("%__%__main", "hsapiens__gene__main"));
+    assertTrue(SchemaMetadata.matches("gene%%main", "gene_main"));
+    assertTrue(SchemaMetadata.matches("gene_main", "geneXmain"));
+    assertTrue(SchemaMetadata.matches("g_n_", "gene"));
+
+    assertTrue(!SchemaMetadata.matches("gene", "gene_main"));
+    assertTrue(!SchemaMetadata.matches("gene_main", "gene_mai"));
+    assertTrue(!SchemaMetadata.matches("%dm", "gene_main"));
+    assertTrue(!SchemaMetadata.matches("_", ""));
+    assertTrue(!SchemaMetadata.matches("g_n_", "genes"));
+  }
+
+  public void testEscapedWildcards() {
+    assertTrue(SchemaMetadata.matches("gene\\_main", "gene_main"));
+    assertTrue(!SchemaMetadata.matches("gene\\_main", "geneXmain"));
+    assertTrue(SchemaMetadata.matches("100\\%", "100%"));
+    assertTrue(!SchemaMetadata.matches("100\\%", "1000"));
+  }
+
+  public void testCaseSensitive() {
+    assertTrue(!SchemaMetadata.matches("gene_main", "GENE_MAIN"));
+    assertTrue(!SchemaMetadata.matches("%MAIN", "gene_main"));
+  }
+
+  public void testTablePatterns() throws Exception {
+    assertEquals(
+      new String[] { "hsapiens_gene_ensembl__gene__main", "hsapiens_gene_ensembl__transcript__main" },
+      metadata.getTables("hsapiens_gene_ensembl__%__main"));
+    assertEquals(
+      new String[] { "HSAPIENS_GENE_ENSEMBL__EXON__MAIN" },
+      metadata.getTables("HSAPIENS_GENE_ENSEMBL__%__MAIN"));
+    assertEquals(
+      new String[] { "hsapiens_gene_ensembl__gene__main", "mmusculus_gene_ensembl__gene__main" },
+      metadata.getTables("%\\_\\_gene\\_\\_main"));
+    assertEquals(new String[0], metadata.getTables("hsapiens_gene_ensembl__gene"));
+
+    // the same array is handed out for a pattern already seen
+    assertSame(metadata.getTables("%__dm"), metadata.getTables("%__dm"));
+  }
+
+  public void testColumnPatterns() throws Exception {
+    SchemaMetadata.Column[] columns = metadata.getColumns("%__gene__main", "chr%");
+    assertEquals(2, columns.length);
+    assertEquals("hsapiens_gene_ensembl__gene__main", columns[0].table);
+    assertEquals("chr_name", columns[0].name);
+    assertEquals("mmusculus_gene_ensembl__gene__main", columns[1].table);
+
+    assertEquals(3, metadata.getColumns("hsapiens_gene_ensembl__gene__main", null).length);
+    assertEquals(4, metadata.getColumns("%", "gene_id_key").length);
+    assertEquals(0, metadata.getColumns("%", "GENE_ID_KEY").length);
+    assertEquals(1, metadata.getColumns("%", "EXON%").length);
+  }
+
+  public void testSnapshotReadWithNullCatalog() throws Exception {
+    // tables in a catalog are only found if the catalog is not narrowed to ""
+    assertEquals(TABLES.length, metadata.getTables("%").length);
+
+    String[] catalogs = FakeJDBCDriver.getRequestedCatalogs();
+    assertEquals("one getTables and one getColumns scan", 2, catalogs.length);
+    assertNull(catalogs[0]);
+    assertNull(catalogs[1]);
+
+    metadata.getColumns("%", "%");
+    assertEquals("snapshot read again", 2, FakeJDBCDriver.getRequestedCatalogs().length);
+  }
+
+  private void assertEquals(String[] expected, String[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++)
+      assertEquals(expected[i], actual[i]);
+  }
+}
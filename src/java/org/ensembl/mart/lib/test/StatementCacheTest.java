@@ -0,0 +1,128 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.StatementCache;
+
+/**
+ * Tests that StatementCache hands statements out again on the same connection,
+ * resets them between uses and bounds what it holds.  Uses FakeJDBCDriver, so
+ * does not need a database connection.
+ */
+public class StatementCacheTest extends TestCase {
+
+  private static final String SQL = "select gene_stable_id from gene_main where chr_name = ?";
+  private static final String OTHERSQL = "select gene_stable_id from gene_main where gene_id > ?";
+
+  private Connection conn;
+  private int maxStatements;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(StatementCacheTest.class);
+  }
+
+  public StatementCacheTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    Class.forName(FakeJDBCDriver.class.getName());
+    conn = DriverManager.getConnection(FakeJDBCDriver.URLPREFIX + "cache", "", "");
+    maxStatements = StatementCache.getMaxStatements();
+    FakeJDBCDriver.reset();
+  }
+
+  protected void tearDown() throws Exception {
+    StatementCache.closeAll(conn);
+    StatementCache.setMaxStatements(maxStatements);
+    conn.close();
+  }
+
+  public void testReleasedStatementIsReused() throws Exception {
+    long hits = StatementCache.getHits();
+
+    PreparedStatement ps = StatementCache.prepare(conn, SQL);
+    StatementCache.release(conn, SQL, ps);
+
+    for (int i = 0; i < 5; i++) {
+      PreparedStatement again = StatementCache.prepare(conn, SQL);
+      assertSame("Released statement not handed out again", ps, again);
+      StatementCache.release(conn, SQL, again);
+    }
+
+    assertEquals("Statement prepared more than once", 1, FakeJDBCDriver.getPrepareCount());
+    assertEquals(5, StatementCache.getHits() - hits);
+  }
+
+  public void testStatementInUseIsNotShared() throws Exception {
+    PreparedStatement first = StatementCache.prepare(conn, SQL);
+    PreparedStatement second = StatementCache.prepare(conn, SQL);
+
+    assertTrue("Statement in use handed out twice", first != second);
+    assertEquals(2, FakeJDBCDriver.getPrepareCount());
+
+    StatementCache.release(conn, SQL, first);
+    StatementCache.release(conn, SQL, second);
+    assertTrue("Replaced statement left open", FakeJDBCDriver.isClosed(first));
+  }
+
+  public void testReleaseResetsRowLimit() throws Exception {
+    PreparedStatement ps = StatementCache.prepare(conn, SQL);
+    ps.setMaxRows(100);
+    StatementCache.release(conn, SQL, ps);
+
+    assertEquals(0, StatementCache.prepare(conn, SQL).getMaxRows());
+  }
+
+  public void testLeastRecentlyUsedStatementIsClosed() throws Exception {
+    StatementCache.setMaxStatements(1);
+
+    PreparedStatement ps = StatementCache.prepare(conn, SQL);
+    PreparedStatement other = StatementCache.prepare(conn, OTHERSQL);
+    StatementCache.release(conn, SQL, ps);
+    StatementCache.release(conn, OTHERSQL, other);
+
+    assertTrue("Evicted statement left open", FakeJDBCDriver.isClosed(ps));
+    assertTrue(!FakeJDBCDriver.isClosed(other));
+    assertSame(other, StatementCache.prepare(conn, OTHERSQL));
+  }
+
+  public void testCloseAllClosesCachedStatements() throws Exception {
+    PreparedStatement ps = StatementCache.prepare(conn, SQL);
+    StatementCache.release(conn, SQL, ps);
+    StatementCache.closeAll(conn);
+
+    assertTrue("Cached statement left open", FakeJDBCDriver.isClosed(ps));
+    assertTrue(ps != StatementCache.prepare(conn, SQL));
+  }
+}
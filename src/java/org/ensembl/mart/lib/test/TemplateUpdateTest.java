@@ -0,0 +1,303 @@
+/*
+    Copyright (C) 2003 EBI, GRL
+
+    This library is free software; you can redistribute it and/or
+    modify it under the terms of the GNU Lesser General Public
+    License as published by the Free Software Foundation; either
+    version 2.1 of the License, or (at your option) any later version.
+
+    This library is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+    Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public
+    License along with this library; if not, write to the Free Software
+    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+
+package org.ensembl.mart.lib.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.ensembl.mart.lib.DetailedDataSource;
+import org.ensembl.mart.lib.config.AttributeCollection;
+import org.ensembl.mart.lib.config.AttributeDescription;
+import org.ensembl.mart.lib.config.AttributeGroup;
+import org.ensembl.mart.lib.config.AttributePage;
+import org.ensembl.mart.lib.config.ConfigurationException;
+import org.ensembl.mart.lib.config.DatabaseDatasetConfigUtils;
+import org.ensembl.mart.lib.config.DatasetConfig;
+import org.ensembl.mart.lib.config.DatasetConfigXMLUtils;
+import org.ensembl.mart.lib.config.DynamicDataset;
+import org.ensembl.mart.lib.config.TemplateUpdateListener;
+
+/**
+ * Tests DatabaseDatasetConfigUtils.updateConfigsToTemplate updating several
+ * datasets at once: the failures returned, the progress reported, and the XML
+ * stored for each dataset.  Also tests that configs stored at the same time
+ * without a dataset id are given different ones.  Uses FakeJDBCDriver, so does
+ * not need a database connection.
+ */
+public class TemplateUpdateTest extends TestCase {
+
+  private static final String TEMPLATE = "gene_template";
+  private static final String XMLINSERT = "INSERT INTO test_mart.meta_conf__xml__dm";
+  private static final String DATASETINSERT = "INSERT INTO test_mart.meta_conf__dataset__main";
+
+  private final DatasetConfigXMLUtils xmlUtils = new DatasetConfigXMLUtils(true);
+  // dataset id to the stored XML of its config
+  private final Map storedXML = new HashMap();
+  private DatabaseDatasetConfigUtils dbutils;
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+
+  public static Test suite() {
+    return new TestSuite(TemplateUpdateTest.class);
+  }
+
+  public TemplateUpdateTest(String name) {
+    super(name);
+  }
+
+  protected void setUp() throws Exception {
+    Class.forName(FakeJDBCDriver.class.getName());
+    FakeJDBCDriver.reset();
+    // no rows, unless the responder below says otherwise
+    FakeJDBCDriver.setQueryRows(new Object[0][]);
+    FakeJDBCDriver.setQueryResponder(new FakeJDBCDriver.QueryResponder() {
+      public Object[][] rows(String sql, Object[] parameters) {
+        if (sql.startsWith("SELECT interface, display_name"))
+          return headers(new String[] { "1", "2", "3", "4" });
+        if (sql.startsWith("SELECT mart_user") || sql.startsWith("SELECT interface FROM"))
+          return new Object[][] { { "default" } };
+        if (sql.startsWith("select xml, compressed_xml") && storedXML.containsKey(parameters[0]))
+          return new Object[][] { { storedXML.get(parameters[0]), null } };
+        if (sql.startsWith("SELECT MAX(dataset_id_key)"))
+          return new Object[][] { { new Integer(7) } };
+        return null;
+      }
+    });
+
+    DetailedDataSource ds =
+      new DetailedDataSource(
+        DetailedDataSource.DEFAULTDATABASETYPE,
+        "localhost",
+        DetailedDataSource.DEFAULTPORT,
+        "test_mart",
+        "test_mart",
+        FakeJDBCDriver.URLPREFIX + getName(),
+        "user",
+        null,
+        null,
+        10,
+        FakeJDBCDriver.class.getName(),
+        null);
+    dbutils = new DatabaseDatasetConfigUtils(xmlUtils, ds, false);
+  }
+
+  protected void tearDown() throws Exception {
+    FakeJDBCDriver.reset();
+  }
+
+  public void testDatasetsUpdatedToTemplate() throws Exception {
+    storeXML("1", config("hsapiens_gene"));
+    storeXML("2", config("mmusculus_gene"));
+    // stored, but not a DatasetConfig
+    storedXML.put("3", "<Broken".getBytes());
+    storeXML("4", config("rnorvegicus_gene"));
+
+    DatasetConfig template =
+      template(new String[] { "hsapiens_gene", "mmusculus_gene", "drerio_gene", "rnorvegicus_gene", "ggallus_gene" });
+
+    final List progress = new ArrayList();
+    Map failed = dbutils.updateConfigsToTemplate("user", "default", TEMPLATE, template, 3, new TemplateUpdateListener() {
+      public void datasetUpdated(String dataset, int done, int total, ConfigurationException failure) {
+        progress.add(new Object[] { dataset, new Integer(done), new Integer(total), failure });
+      }
+    });
+
+    // ggallus_gene has no stored config, so is dropped from the template
+    assertEquals("only the broken config should fail", 1, failed.size());
+    assertTrue(failed.containsKey("drerio_gene"));
+    assertNotNull(failed.get("drerio_gene"));
+
+    assertEquals("every dataset reported once", 5, progress.size());
+    Set reported = new HashSet();
+    for (int i = 0; i < progress.size(); i++) {
+      Object[] update = (Object[]) progress.get(i);
+      reported.add(update[0]);
+      assertEquals("datasets finished out of order", new Integer(i + 1), update[1]);
+      assertEquals(new Integer(5), update[2]);
+      assertEquals("failure of " + update[0], update[0].equals("drerio_gene"), update[3] != null);
+    }
+    assertEquals(5, reported.size());
+
+    Map stored = storedConfigs();
+    assertEquals("configs of the datasets which did not fail should be stored", 3, stored.size());
+    String[] ids = new String[] { "1", "2", "4" };
+    String[] datasets = new String[] { "hsapiens_gene", "mmusculus_gene", "rnorvegicus_gene" };
+    for (int i = 0; i < ids.length; i++) {
+      String xml = (String) stored.get(ids[i]);
+      assertNotNull("no XML stored for " + datasets[i], xml);
+      assertTrue(xml.indexOf("dataset=\"" + datasets[i] + "\"") >= 0);
+      assertTrue("template attribute missing from " + datasets[i], xml.indexOf("internalName=\"gene_stable_id\"") >= 0);
+      assertTrue("old attribute kept in " + datasets[i], xml.indexOf("internalName=\"old_id\"") < 0);
+    }
+    assertTrue(template.getDynamicDataset("drerio_gene") != null);
+    assertTrue("dataset without a config left in template", template.getDynamicDataset("ggallus_gene") == null);
+  }
+
+  public void testParallelStoresGetDistinctDatasetIDs() throws Exception {
+    final int n = 6;
+    final Exception[] failures = new Exception[n];
+    Thread[] threads = new Thread[n];
+    for (int i = 0; i < n; i++) {
+      final int index = i;
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            DatasetConfig config = config("dataset" + index);
+            config.setDatasetID("");
+            dbutils.storeDatasetConfiguration(
+              "user",
+              config.getInternalName(),
+              config.getDisplayName(),
+              config.getDataset(),
+              config.getDescription(),
+              xmlUtils.getDocumentForDatasetConfig(config),
+              true,
+              config.getType(),
+              config.getVisible(),
+              config.getVersion(),
+              config.getDatasetID(),
+              config.getMartUsers(),
+              config.getInterfaces(),
+              config);
+          } catch (Exception e) {
+            failures[index] = e;
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (int i = 0; i < n; i++)
+      threads[i].join();
+    for (int i = 0; i < n; i++)
+      if (failures[i] != null)
+        throw failures[i];
+
+    Set ids = new HashSet();
+    for (Iterator i = FakeJDBCDriver.getUpdates().iterator(); i.hasNext();) {
+      FakeJDBCDriver.Update update = (FakeJDBCDriver.Update) i.next();
+      if (update.sql.startsWith(DATASETINSERT))
+        assertTrue("dataset id " + update.parameters[6] + " given twice", ids.add(update.parameters[6]));
+    }
+    assertEquals(n, ids.size());
+    for (int i = 0; i < n; i++)
+      assertTrue("ids should follow the highest stored", ids.contains(String.valueOf(8 + i)));
+  }
+
+  /**
+   * @return rows of the stored config headers with the given dataset ids
+   */
+  private Object[][] headers(String[] ids) {
+    String[] datasets = new String[] { "hsapiens_gene", "mmusculus_gene", "drerio_gene", "rnorvegicus_gene" };
+    Object[][] rows = new Object[ids.length][];
+    for (int i = 0; i < ids.length; i++)
+      rows[i] =
+        new Object[] { "default", datasets[i] + " genes", datasets[i], "", "digest", "TableSet", "1", "0.1", ids[i], new Timestamp(0)};
+    return rows;
+  }
+
+  private void storeXML(String datasetID, DatasetConfig config) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xmlUtils.writeDatasetConfigToOutputStream(config, out);
+    storedXML.put(datasetID, out.toByteArray());
+  }
+
+  /**
+   * @return dataset id to the XML stored for it, checking that the compressed
+   *         XML stored with it is the same
+   */
+  private Map storedConfigs() throws Exception {
+    Map stored = new HashMap();
+    for (Iterator i = FakeJDBCDriver.getUpdates().iterator(); i.hasNext();) {
+      FakeJDBCDriver.Update update = (FakeJDBCDriver.Update) i.next();
+      if (!update.sql.startsWith(XMLINSERT))
+        continue;
+
+      String xml = new String((byte[]) update.parameters[1], "UTF-8");
+      String compressed = new String(read(new GZIPInputStream(new ByteArrayInputStream((byte[]) update.parameters[2]))), "UTF-8");
+      assertEquals("compressed XML differs", xml, compressed);
+      assertNull("config stored twice", stored.put(update.parameters[0], xml));
+    }
+    return stored;
+  }
+
+  private static byte[] read(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    for (int n = in.read(buf); n > 0; n = in.read(buf))
+      out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+
+  private static DatasetConfig config(String dataset) throws Exception {
+    DatasetConfig config = new DatasetConfig(dataset, dataset + " genes", dataset);
+    config.setType("TableSet");
+    config.setVisible("1");
+    config.setVersion("0.1");
+    config.setTemplate(TEMPLATE);
+    config.addAttributePage(page("old_page", "old_id"));
+    return config;
+  }
+
+  private static DatasetConfig template(String[] datasets) throws Exception {
+    DatasetConfig template = new DatasetConfig(TEMPLATE, "Genes", TEMPLATE);
+    template.setTemplate(TEMPLATE);
+    template.setTemplateFlag("1");
+    AttributePage page = page("feature_page", "gene_stable_id");
+    // a pointer attribute, as its table is not checked against the schema,
+    // which FakeJDBCDriver has no metadata for
+    AttributeDescription pointer = page.getAttributeDescriptionByInternalName("gene_stable_id");
+    pointer.setPointerDataset("hsapiens_gene");
+    pointer.setPointerAttribute("gene_stable_id");
+    template.addAttributePage(page);
+    for (int i = 0; i < datasets.length; i++)
+      template.addDynamicDataset(new DynamicDataset(datasets[i], null));
+    return template;
+  }
+
+  private static AttributePage page(String name, String attribute) throws Exception {
+    AttributeCollection collection = new AttributeCollection(name + "_collection");
+    AttributeDescription description = new AttributeDescription(attribute, attribute);
+    description.setTableConstraint("main");
+    description.setKey("gene_id_key");
+    collection.addAttributeDescription(description);
+    AttributeGroup group = new AttributeGroup(name + "_group");
+    group.addAttributeCollection(collection);
+    AttributePage page = new AttributePage(name);
+    page.addAttributeGroup(group);
+    return page;
+  }
+}